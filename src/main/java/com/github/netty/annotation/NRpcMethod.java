@@ -31,4 +31,26 @@ public @interface NRpcMethod {
      * @return method timeout
      */
     int timeout() default -1;
+
+    /**
+     * bulkhead of the method. the max running requests of the method in the rpc thread pool.
+     *
+     * @return 0 is use the bulkhead of the service {@link NRpcService#maxConcurrent()}
+     */
+    int maxConcurrent() default 0;
+
+    /**
+     * the max waiting requests when the bulkhead is full. more than it will be rejected (status 503)
+     *
+     * @return queue size
+     */
+    int maxQueue() default 1024;
+
+    /**
+     * not invoke the request, if the client timeout already expired before it start.
+     * both of the method and the service is true will drop.
+     *
+     * @return true=drop, false=invoke
+     */
+    boolean dropExpired() default true;
 }
\ No newline at end of file
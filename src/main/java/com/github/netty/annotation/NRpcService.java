@@ -45,4 +45,26 @@ public @interface NRpcService {
      * @return method timeout (milliseconds)
      */
     int timeout() default DEFAULT_TIME_OUT;
+
+    /**
+     * bulkhead of the service. the max running requests of the service in the rpc thread pool.
+     * the method with {@link NRpcMethod#maxConcurrent()} use it's own bulkhead.
+     *
+     * @return 0 is no limit
+     */
+    int maxConcurrent() default 0;
+
+    /**
+     * the max waiting requests when the bulkhead is full. more than it will be rejected (status 503)
+     *
+     * @return queue size
+     */
+    int maxQueue() default 1024;
+
+    /**
+     * not invoke the request, if the client timeout already expired before it start. (the client not wait the response)
+     *
+     * @return true=drop, false=invoke
+     */
+    boolean dropExpired() default true;
 }
@@ -0,0 +1,246 @@
+package com.github.netty.core.util;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded thread pool with an AIMD (additive increase, multiplicative decrease) concurrency limit.
+ * <p>
+ * 1. in-flight = queued + running tasks, never exceed {@link #getLimit()}. {@link #tryExecute(Runnable)} return false immediately (load shedding) instead of create thread.
+ * 2. on every completion the sojourn time (queue wait + run) is measured.
+ * if latency > targetLatency, limit = limit * backoffRatio (at most once per targetLatency).
+ * if latency <= targetLatency and the pool is busy, limit + 1 per limit completions (one window).
+ * 3. the limit always between [minLimit, maxThreads + queues], so the pool itself never reject.
+ * 4. the core pool size follow the limit (between [coreThreads, maxThreads]). the thread pool only create the non-core
+ * thread when the queue is full, so without it the running threads never grow past coreThreads.
+ * the queue is used when the limit more than maxThreads.
+ *
+ * @author wangzihao
+ */
+public class AdaptiveThreadPoolExecutor extends NettyThreadPoolExecutor {
+    private final RejectedExecutionHandler rejectedHandler;
+    private final int coreThreads;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile int limit;
+    private volatile long lastDecreaseTime = System.nanoTime();
+    private final AtomicInteger windowCompleted = new AtomicInteger();
+    private volatile long latencyEwmaNanos;
+    private volatile long minLatencyNanos = Long.MAX_VALUE;
+
+    private final LongAdder acceptedCount = new LongAdder();
+    private final LongAdder sheddingCount = new LongAdder();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder increaseCount = new LongAdder();
+    private final LongAdder decreaseCount = new LongAdder();
+
+    /**
+     * @param coreThreads        core threads
+     * @param maxThreads         max threads
+     * @param queues             bounded queue capacity. must > 0
+     * @param keepAliveSeconds   keepAliveSeconds
+     * @param poolName           poolName
+     * @param daemon             daemon
+     * @param minLimit           min concurrency limit
+     * @param initLimit          initial concurrency limit
+     * @param targetLatencyMillis latency over this will decrease limit
+     * @param backoffRatio       decrease ratio. (0,1)
+     * @param rejectedHandler    invoke when {@link #execute(Runnable)} shedding
+     */
+    public AdaptiveThreadPoolExecutor(int coreThreads, int maxThreads, int queues, long keepAliveSeconds,
+                                      String poolName, boolean daemon,
+                                      int minLimit, int initLimit, long targetLatencyMillis, double backoffRatio,
+                                      RejectedExecutionHandler rejectedHandler) {
+        super(coreThreads, maxThreads, keepAliveSeconds, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queues)), poolName, Thread.NORM_PRIORITY, daemon, new AbortPolicy());
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be in (0,1). backoffRatio=" + backoffRatio);
+        }
+        this.rejectedHandler = rejectedHandler;
+        this.coreThreads = coreThreads;
+        this.maxLimit = maxThreads + Math.max(1, queues);
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.limit = Math.max(this.minLimit, Math.min(initLimit, maxLimit));
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.backoffRatio = backoffRatio;
+        updateCorePoolSize(limit);
+    }
+
+    /**
+     * Submit the task if the concurrency limit allows.
+     *
+     * @param command task
+     * @return false = shedding. the caller should respond busy (e.g. http 503)
+     */
+    public boolean tryExecute(Runnable command) {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                sheddingCount.increment();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        try {
+            super.execute(new AdaptiveTask(command, System.nanoTime()));
+        } catch (RejectedExecutionException e) {
+            inflight.decrementAndGet();
+            sheddingCount.increment();
+            return false;
+        }
+        acceptedCount.increment();
+        return true;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (!tryExecute(command)) {
+            rejectedHandler.rejectedExecution(command, this);
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        if (r instanceof AdaptiveTask) {
+            inflight.decrementAndGet();
+            completedCount.increment();
+            onLatency(System.nanoTime() - ((AdaptiveTask) r).submitTime);
+        }
+    }
+
+    protected void onLatency(long latencyNanos) {
+        long ewma = latencyEwmaNanos;
+        latencyEwmaNanos = ewma == 0 ? latencyNanos : ewma + ((latencyNanos - ewma) >> 3);
+        if (latencyNanos < minLatencyNanos) {
+            minLatencyNanos = latencyNanos;
+        }
+
+        int currentLimit = limit;
+        if (latencyNanos > targetLatencyNanos) {
+            timeoutCount.increment();
+            long now = System.nanoTime();
+            if (now - lastDecreaseTime > targetLatencyNanos) {
+                lastDecreaseTime = now;
+                windowCompleted.set(0);
+                int newLimit = Math.max(minLimit, (int) (currentLimit * backoffRatio));
+                if (newLimit != currentLimit) {
+                    limit = newLimit;
+                    decreaseCount.increment();
+                    updateCorePoolSize(newLimit);
+                }
+            }
+        } else if (inflight.get() * 2 >= currentLimit
+                && windowCompleted.incrementAndGet() >= currentLimit) {
+            windowCompleted.set(0);
+            if (currentLimit < maxLimit) {
+                limit = currentLimit + 1;
+                increaseCount.increment();
+                updateCorePoolSize(currentLimit + 1);
+            }
+        }
+    }
+
+    /**
+     * the worker threads follow the limit. the decreased idle threads exit after keepAlive.
+     *
+     * @param limit the concurrency limit
+     */
+    private void updateCorePoolSize(int limit) {
+        int core = Math.max(coreThreads, Math.min(limit, getMaximumPoolSize()));
+        if (core != getCorePoolSize()) {
+            setCorePoolSize(core);
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.sum();
+    }
+
+    public long getSheddingCount() {
+        return sheddingCount.sum();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getIncreaseCount() {
+        return increaseCount.sum();
+    }
+
+    public long getDecreaseCount() {
+        return decreaseCount.sum();
+    }
+
+    public long getLatencyEwmaMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(latencyEwmaNanos);
+    }
+
+    public long getMinLatencyMillis() {
+        long min = minLatencyNanos;
+        return min == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(min);
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveThreadPoolExecutor{" +
+                "limit=" + limit +
+                ", inflight=" + inflight.get() +
+                ", accepted=" + acceptedCount.sum() +
+                ", shedding=" + sheddingCount.sum() +
+                ", completed=" + completedCount.sum() +
+                ", timeout=" + timeoutCount.sum() +
+                ", increase=" + increaseCount.sum() +
+                ", decrease=" + decreaseCount.sum() +
+                ", latencyEwmaMillis=" + getLatencyEwmaMillis() +
+                ", pool=" + super.toString() +
+                '}';
+    }
+
+    private static class AdaptiveTask implements Runnable {
+        private final Runnable task;
+        private final long submitTime;
+
+        AdaptiveTask(Runnable task, long submitTime) {
+            this.task = task;
+            this.submitTime = submitTime;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(task);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.github.netty.core.util;
 
+import io.netty.util.internal.PlatformDependent;
+
 import java.lang.ref.Reference;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.*;
 
 /**
@@ -17,6 +21,8 @@ import java.util.function.*;
  * 6. 统计功能(miss, hit) {@link #getHitCount()} {@link #getMissCount()}
  * 7. null值替换, 防止缓存击穿 {@link #setReplaceNullValueFlag(boolean)} {@link #NULL} if(data == ExpiryLRUMap.NULL)
  * <p>
+ * 过期由分片的层级时间轮驱动 {@link TimingWheel}, 插入与取消都是O(1), 精度为一个tick(默认10毫秒)
+ * <p>
  * 常用场景 ： localCache
  *
  * @author wangzihao
@@ -28,17 +34,7 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
             return "ExpiryLRUMap.NULL";
         }
     };
-    private static final ConcurrentSkipListSet<Node> NO_EXPIRY_NODES = new ConcurrentSkipListSet<>((o1, o2) -> {
-        if (o1 == o2) {
-            return 0;
-        }
-        long x = o1.getExpiryTimestamp();
-        long y = o2.getExpiryTimestamp();
-        return x <= y ? -1 : 1;
-    });
-    private static final BlockingQueue<Node<?, ?>> EXPIRY_NOTIFY_QUEUE = new LinkedBlockingQueue<>();
     private static final Set<ExpiryLRUMap<?, ?>> INSTANCE_SET = Collections.newSetFromMap(new WeakHashMap<>());
-    private static volatile ScheduledFuture<?> SCHEDULED_FUTURE;
     private final transient LongAdder missCount = new LongAdder();
     private final transient LongAdder hitCount = new LongAdder();
     private final ConcurrentLinkedHashMap<K, Node<K, V>> map;
@@ -61,6 +57,10 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
      * 用户主动删除 删除通知
      */
     private transient volatile Consumer<Node<K, V>> onRemoveConsumer = this::onRemove;
+    /**
+     * 固定使用的时间轮. null则按线程选择分片
+     */
+    private final transient TimingWheel timingWheel;
 
     /**
      * 默认永不过期 (相当于普通的 ConcurrentMap)
@@ -87,6 +87,12 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
      *                          else if {@link java.lang.ref.SoftReference}
      */
     public ExpiryLRUMap(int initialCapacity, long maxCacheSize, long defaultExpiryTime, ConcurrentLinkedHashMap.Weigher<Node<K, V>> weigher, Class<? extends Reference> referenceType) {
+        this(initialCapacity, maxCacheSize, defaultExpiryTime, weigher, referenceType, null);
+    }
+
+    ExpiryLRUMap(int initialCapacity, long maxCacheSize, long defaultExpiryTime, ConcurrentLinkedHashMap.Weigher<Node<K, V>> weigher, Class<? extends Reference> referenceType,
+                 TimingWheel timingWheel) {
+        this.timingWheel = timingWheel;
         this.defaultExpiryTime = defaultExpiryTime < 0 ? -1 : defaultExpiryTime;
         this.map = new ConcurrentLinkedHashMap.Builder<K, Node<K, V>>()
                 .initialCapacity(initialCapacity)
@@ -94,6 +100,7 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
                 .referenceType(referenceType)
                 .weigher(weigher == null ? ConcurrentLinkedHashMap.Weighers.singleton() : weigher)
                 .listener((key, value) -> {
+                    TimingWheel.cancel(value);
                     Consumer<Node<K, V>> onEvictionConsumer = ExpiryLRUMap.this.onEvictionConsumer;
                     if (onEvictionConsumer != null) {
                         onEvictionConsumer.accept(value);
@@ -101,12 +108,8 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
                 })
 //                .catchup()
                 .build();
-        //init static block. thread scheduled.
         synchronized (INSTANCE_SET) {
             INSTANCE_SET.add(this);
-            if (SCHEDULED_FUTURE == null) {
-                SCHEDULED_FUTURE = ExpiresScan.scheduleWithFixedDelay();
-            }
         }
     }
 
@@ -114,10 +117,6 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
         return Collections.unmodifiableSet(INSTANCE_SET);
     }
 
-    public static BlockingQueue<Node<?, ?>> getExpiryNotifyQueue() {
-        return EXPIRY_NOTIFY_QUEUE;
-    }
-
     public static boolean isExpiry(Node node) {
         if (node.expiryTimestamp == Long.MAX_VALUE) {
             return false;
@@ -248,14 +247,42 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
             synchronized (old) {
                 old.covered = true;
                 map.put(key, node);
+                TimingWheel.schedule(node);
                 return old.getData();
             }
         } else {
             map.put(key, node);
+            TimingWheel.schedule(node);
             return null;
         }
     }
 
+    /**
+     * Refresh the expiry of the key, the value is not changed.
+     *
+     * @param key     key
+     * @param timeout 键值对有效期 毫秒(Long.MAX_VALUE 表示永不过期)
+     * @return false if the key not exist or already expiry
+     */
+    public boolean touch(K key, long timeout) {
+        while (true) {
+            Node<K, V> old = map.get(key);
+            if (old == null || old.isExpiry()) {
+                return false;
+            }
+            synchronized (old) {
+                if (old.covered || map.get(key) != old) {
+                    continue;
+                }
+                old.covered = true;
+                Node<K, V> node = new Node<>(timeout, key, old.data, this);
+                map.put(key, node);
+                TimingWheel.schedule(node);
+                return true;
+            }
+        }
+    }
+
     @Override
     public boolean containsKey(Object key) {
         return map.containsKey(key);
@@ -287,6 +314,7 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
         if (old == null) {
             return null;
         } else {
+            TimingWheel.cancel(old);
             notifyRemove(old);
             return old.getData();
         }
@@ -332,6 +360,9 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
 
     @Override
     public void clear() {
+        for (Node<K, V> node : map.values()) {
+            TimingWheel.cancel(node);
+        }
         map.clear();
     }
 
@@ -380,7 +411,9 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
     public boolean remove(Object key, Object value) {
         Node<K, V> old = map.get(key);
         if (old != null && Objects.equals(old.getData(), value)) {
-            map.remove(key, old);
+            if (map.remove(key, old)) {
+                TimingWheel.cancel(old);
+            }
             notifyRemove(old);
             return true;
         }
@@ -391,7 +424,7 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
     public V replace(K key, V newValue) {
         Node<K, V> old = map.get(key);
         if (old != null) {
-            map.put(key, new Node<>(old.expiryTime, key, newValue, this));
+            replaceNode(key, old, newValue);
             return old.getData();
         }
         return null;
@@ -401,12 +434,19 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
     public boolean replace(K key, V oldValue, V newValue) {
         Node<K, V> old = map.get(key);
         if (old != null && Objects.equals(old.getData(), oldValue)) {
-            map.put(key, new Node<>(old.expiryTime, key, newValue, this));
+            replaceNode(key, old, newValue);
             return true;
         }
         return false;
     }
 
+    private void replaceNode(K key, Node<K, V> old, V newValue) {
+        Node<K, V> node = new Node<>(old.expiryTime, key, newValue, this);
+        map.put(key, node);
+        TimingWheel.cancel(old);
+        TimingWheel.schedule(node);
+    }
+
     @Override
     public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
         Objects.requireNonNull(function);
@@ -415,7 +455,10 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
             K key = entry.getKey();
             V value = old.getData();
             V newValue = function.apply(key, value);
-            entry.setValue(new Node<>(old.expiryTime, key, newValue, this));
+            Node<K, V> node = new Node<>(old.expiryTime, key, newValue, this);
+            entry.setValue(node);
+            TimingWheel.cancel(old);
+            TimingWheel.schedule(node);
         }
     }
 
@@ -586,6 +629,7 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
     }
 
     public static class Node<KEY, VALUE> {
+        private static final AtomicIntegerFieldUpdater<Node> WHEEL_STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Node.class, "wheelState");
         private final ExpiryLRUMap<KEY, VALUE> expiryLRUMap;
         private final long createTimestamp = System.currentTimeMillis();
         private final long expiryTimestamp;
@@ -596,6 +640,18 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
          * 是否被put方法覆盖
          */
         private volatile boolean covered = false;
+        /**
+         * 所在的时间轮分片. 永不过期的为null
+         */
+        private final TimingWheel wheel;
+        private final long deadlineTick;
+        private volatile int wheelState = TimingWheel.ST_PENDING;
+        /**
+         * 时间轮的槽位链表. 只由时间轮的工作线程访问
+         */
+        private TimingWheel.Bucket wheelBucket;
+        private Node<?, ?> wheelPrev;
+        private Node<?, ?> wheelNext;
 
         Node(long timeout, KEY key, VALUE value, ExpiryLRUMap<KEY, VALUE> expiryLRUMap) {
             long expiryTimestamp;
@@ -614,7 +670,11 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
             this.data = value;
             this.expiryLRUMap = expiryLRUMap;
             if (expiryLRUMap != null && expiryTimestamp != Long.MAX_VALUE) {
-                NO_EXPIRY_NODES.add(this);
+                this.wheel = expiryLRUMap.timingWheel != null ? expiryLRUMap.timingWheel : TimingWheel.chooseShard();
+                this.deadlineTick = wheel.toTick(expiryTimestamp);
+            } else {
+                this.wheel = null;
+                this.deadlineTick = Long.MAX_VALUE;
             }
         }
 
@@ -680,12 +740,18 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
     }
 
     public static class ExpiresNotify extends Thread {
+        private final BlockingQueue<Node<?, ?>> queue;
+
+        public ExpiresNotify(BlockingQueue<Node<?, ?>> queue) {
+            this.queue = queue;
+        }
+
         @Override
         public void run() {
             while (true) {
                 ExpiryLRUMap.Node node;
                 try {
-                    node = EXPIRY_NOTIFY_QUEUE.take();
+                    node = queue.take();
                 } catch (InterruptedException e) {
                     return;
                 }
@@ -701,80 +767,327 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
         }
     }
 
-    public static class ExpiresScan implements Runnable {
-        public static final ExpiresNotify NOTIFY_INSTANCE = new ExpiresNotify();
-        static final ScheduledExecutorService SCHEDULED = Executors.newScheduledThreadPool(1, runnable -> {
-            Thread thread = new Thread(runnable);
-            thread.setDaemon(true);
-            thread.setName("ExpiryLRUMap-ExpiresScan-" + thread.getId());
-            thread.setPriority(Thread.MIN_PRIORITY);
-            return thread;
-        });
-        private static final ExpiresScan INSTANCE = new ExpiresScan();
+    /**
+     * 层级时间轮 (按线程分片, 每个分片一个工作线程和一个通知线程)
+     * <p>
+     * level0 256个槽位, 每个槽位1个tick. level1~3 各64个槽位, 每个槽位是下一层的一圈.
+     * 超出最高层的节点先放在最高层的最远槽位, 降级时重新计算.
+     * <p>
+     * 1. 插入与取消只是入队 (mpsc queue), O(1). 槽位链表只由工作线程访问, 不需要锁
+     * 2. 精度为一个tick, 不再依赖扫描间隔
+     * 3. 到期后交给分片自己的通知线程 {@link ExpiresNotify}, 回调慢不会影响时间轮
+     * <p>
+     * -DExpiryLRUMap-TimingWheel.tick=10 (毫秒)
+     * -DExpiryLRUMap-TimingWheel.shards=4
+     */
+    static final class TimingWheel implements Runnable {
+        static final int ST_PENDING = 0;
+        static final int ST_CANCELLED = 1;
+        static final int ST_EXPIRED = 2;
+        private static final int LEVEL0_BITS = 8;
+        private static final int LEVEL_BITS = 6;
+        private static final int LEVEL0_MASK = (1 << LEVEL0_BITS) - 1;
+        private static final int LEVEL_MASK = (1 << LEVEL_BITS) - 1;
+        private static final int LEVEL1_SHIFT = LEVEL0_BITS;
+        private static final int LEVEL2_SHIFT = LEVEL1_SHIFT + LEVEL_BITS;
+        private static final int LEVEL3_SHIFT = LEVEL2_SHIFT + LEVEL_BITS;
+        private static final long MAX_DELTA = (1L << (LEVEL3_SHIFT + LEVEL_BITS)) - 1;
+        private static final TimingWheel[] SHARDS = newShards();
+
+        private final Queue<Node<?, ?>> scheduleQueue = PlatformDependent.newMpscQueue();
+        private final Queue<Node<?, ?>> cancelQueue = PlatformDependent.newMpscQueue();
+        private final BlockingQueue<Node<?, ?>> notifyQueue = new LinkedBlockingQueue<>();
+        private final Bucket[] level0 = newBuckets(1 << LEVEL0_BITS);
+        private final Bucket[] level1 = newBuckets(1 << LEVEL_BITS);
+        private final Bucket[] level2 = newBuckets(1 << LEVEL_BITS);
+        private final Bucket[] level3 = newBuckets(1 << LEVEL_BITS);
+        private final long tickMs;
+        private final long startTimestamp;
+        private final Thread workerThread;
+        private volatile boolean idle;
+        private long currentTick;
+        private int pendingCount;
+
+        /**
+         * @param index          the index of the shard. -1 not start the threads, drive by {@link #runOnce(long)}
+         * @param tickMs         tickMs
+         * @param startTimestamp the timestamp of the tick 0
+         */
+        TimingWheel(int index, long tickMs, long startTimestamp) {
+            this.tickMs = tickMs;
+            this.startTimestamp = startTimestamp;
+            if (index < 0) {
+                this.workerThread = null;
+                return;
+            }
 
-        static {
-            NOTIFY_INSTANCE.setDaemon(true);
-            NOTIFY_INSTANCE.setName("ExpiryLRUMap-ExpiresNotify-" + NOTIFY_INSTANCE.getId());
-            NOTIFY_INSTANCE.start();
+            ExpiresNotify notifyThread = new ExpiresNotify(notifyQueue);
+            notifyThread.setDaemon(true);
+            notifyThread.setName("ExpiryLRUMap-ExpiresNotify-" + index);
+            notifyThread.start();
+
+            this.workerThread = new Thread(this, "ExpiryLRUMap-TimingWheel-" + index);
+            workerThread.setDaemon(true);
+            workerThread.start();
         }
 
-        private final Consumer<Node<?, ?>> removeConsumer = EXPIRY_NOTIFY_QUEUE::offer;
+        private static TimingWheel[] newShards() {
+            long tickMs = Math.max(1L, getLongProperty("ExpiryLRUMap-TimingWheel.tick", 10L));
+            int shards = (int) Math.max(1L, getLongProperty("ExpiryLRUMap-TimingWheel.shards",
+                    Math.min(4, Runtime.getRuntime().availableProcessors())));
+            TimingWheel[] wheels = new TimingWheel[shards];
+            for (int i = 0; i < shards; i++) {
+                wheels[i] = new TimingWheel(i, tickMs, System.currentTimeMillis());
+            }
+            return wheels;
+        }
 
-        static long getScheduleInterval() {
-            String intervalMillisecond = System.getProperty("ExpiryLRUMap-ExpiresScan.interval");
-            long intervalLong = 100;
-            if (intervalMillisecond != null && !intervalMillisecond.isEmpty()) {
+        private static long getLongProperty(String name, long defaultValue) {
+            String value = System.getProperty(name);
+            if (value != null && !value.isEmpty()) {
                 try {
-                    intervalLong = Long.parseLong(intervalMillisecond);
+                    return Long.parseLong(value);
                 } catch (Exception e) {
                     //skip
                 }
             }
-            return intervalLong;
+            return defaultValue;
+        }
+
+        private static Bucket[] newBuckets(int size) {
+            Bucket[] buckets = new Bucket[size];
+            for (int i = 0; i < size; i++) {
+                buckets[i] = new Bucket();
+            }
+            return buckets;
         }
 
-        public static ScheduledFuture<?> scheduleWithFixedDelay() {
-            long intervalLong = getScheduleInterval();
-            return SCHEDULED.scheduleWithFixedDelay(INSTANCE, intervalLong, intervalLong, TimeUnit.MILLISECONDS);
+        /**
+         * the same thread (e.g. an event loop) always use the same shard, so the producers of one queue are few.
+         */
+        static TimingWheel chooseShard() {
+            TimingWheel[] shards = SHARDS;
+            return shards[(int) (Thread.currentThread().getId() % shards.length)];
+        }
+
+        static void schedule(Node<?, ?> node) {
+            TimingWheel wheel = node.wheel;
+            if (wheel == null) {
+                return;
+            }
+            wheel.scheduleQueue.offer(node);
+            if (wheel.idle) {
+                LockSupport.unpark(wheel.workerThread);
+            }
+        }
+
+        static void cancel(Node<?, ?> node) {
+            TimingWheel wheel = node.wheel;
+            if (wheel != null && Node.WHEEL_STATE_UPDATER.compareAndSet(node, ST_PENDING, ST_CANCELLED)) {
+                wheel.cancelQueue.offer(node);
+            }
+        }
+
+        long toTick(long timestamp) {
+            long duration = timestamp - startTimestamp;
+            if (duration <= 0) {
+                return 0;
+            }
+            // round up. never expiry before the timestamp
+            return (duration + tickMs - 1) / tickMs;
         }
 
         @Override
         public void run() {
-            if (INSTANCE_SET.isEmpty()) {
-                synchronized (INSTANCE_SET) {
-                    if (INSTANCE_SET.isEmpty()) {
-                        NO_EXPIRY_NODES.clear();
-                        ScheduledFuture<?> scheduledFuture = SCHEDULED_FUTURE;
-                        scheduledFuture.cancel(false);
-                        SCHEDULED_FUTURE = null;
+            while (true) {
+                try {
+                    runOnce(System.currentTimeMillis());
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                }
+
+                if (pendingCount == 0) {
+                    idle = true;
+                    if (scheduleQueue.isEmpty()) {
+                        LockSupport.park(this);
                     }
+                    idle = false;
+                } else {
+                    long nextTickTimestamp = startTimestamp + (currentTick + 1) * tickMs;
+                    long sleepMs = Math.max(1L, nextTickTimestamp - System.currentTimeMillis());
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(sleepMs));
+                }
+            }
+        }
+
+        void runOnce(long now) {
+            advance(now);
+            drainScheduleQueue();
+            drainCancelQueue();
+        }
+
+        int getPendingCount() {
+            return pendingCount;
+        }
+
+        /**
+         * @return the expired node that not notify yet. (the notify thread is not start if the index is -1)
+         */
+        Node<?, ?> pollExpired() {
+            return notifyQueue.poll();
+        }
+
+        private void advance(long now) {
+            long targetTick = (now - startTimestamp) / tickMs;
+            if (pendingCount == 0) {
+                // nothing in the wheel, skip the idle ticks
+                if (targetTick > currentTick) {
+                    currentTick = targetTick;
                 }
                 return;
             }
-            if (NO_EXPIRY_NODES.isEmpty()) {
+            while (currentTick < targetTick) {
+                long tick = ++currentTick;
+                if ((tick & LEVEL0_MASK) == 0) {
+                    cascade(level1[(int) ((tick >>> LEVEL1_SHIFT) & LEVEL_MASK)]);
+                    if (((tick >>> LEVEL1_SHIFT) & LEVEL_MASK) == 0) {
+                        cascade(level2[(int) ((tick >>> LEVEL2_SHIFT) & LEVEL_MASK)]);
+                        if (((tick >>> LEVEL2_SHIFT) & LEVEL_MASK) == 0) {
+                            cascade(level3[(int) ((tick >>> LEVEL3_SHIFT) & LEVEL_MASK)]);
+                        }
+                    }
+                }
+                Bucket bucket = level0[(int) (tick & LEVEL0_MASK)];
+                Node<?, ?> node = bucket.clear();
+                while (node != null) {
+                    Node<?, ?> next = node.wheelNext;
+                    node.wheelNext = null;
+                    pendingCount--;
+                    expire(node);
+                    node = next;
+                }
+            }
+        }
+
+        private void cascade(Bucket bucket) {
+            Node<?, ?> node = bucket.clear();
+            while (node != null) {
+                Node<?, ?> next = node.wheelNext;
+                node.wheelNext = null;
+                pendingCount--;
+                place(node);
+                node = next;
+            }
+        }
+
+        private void drainScheduleQueue() {
+            Node<?, ?> node;
+            while ((node = scheduleQueue.poll()) != null) {
+                if (node.wheelState == ST_PENDING) {
+                    place(node);
+                }
+            }
+        }
+
+        private void drainCancelQueue() {
+            Node<?, ?> node;
+            while ((node = cancelQueue.poll()) != null) {
+                Bucket bucket = node.wheelBucket;
+                if (bucket != null) {
+                    bucket.remove(node);
+                    pendingCount--;
+                }
+            }
+        }
+
+        private void place(Node<?, ?> node) {
+            long deadlineTick = node.deadlineTick;
+            long delta = deadlineTick - currentTick;
+            Bucket bucket;
+            if (delta <= 0) {
+                expire(node);
                 return;
+            } else if (delta <= LEVEL0_MASK) {
+                bucket = level0[(int) (deadlineTick & LEVEL0_MASK)];
+            } else if (delta < 1L << LEVEL2_SHIFT) {
+                bucket = level1[(int) ((deadlineTick >>> LEVEL1_SHIFT) & LEVEL_MASK)];
+            } else if (delta < 1L << LEVEL3_SHIFT) {
+                bucket = level2[(int) ((deadlineTick >>> LEVEL2_SHIFT) & LEVEL_MASK)];
+            } else {
+                if (delta > MAX_DELTA) {
+                    // out of range, wait in the farthest slot, and place again when it cascade.
+                    deadlineTick = currentTick + MAX_DELTA;
+                }
+                bucket = level3[(int) ((deadlineTick >>> LEVEL3_SHIFT) & LEVEL_MASK)];
             }
-            Node now = new Node<>(0, null, null, null);
-            NavigableSet<Node> expiryNodes = NO_EXPIRY_NODES.headSet(now);
-            if (expiryNodes.isEmpty()) {
+            bucket.add(node);
+            pendingCount++;
+        }
+
+        private void expire(Node<?, ?> node) {
+            if (!Node.WHEEL_STATE_UPDATER.compareAndSet(node, ST_PENDING, ST_EXPIRED)) {
                 return;
             }
-            Iterator<Node> iterator = expiryNodes.iterator();
-            while (iterator.hasNext()) {
-                Node expiryRemoveNode = iterator.next();
-                synchronized (expiryRemoveNode) {
-                    boolean remove = expiryRemoveNode.getExpiryLRUMap().map.remove(expiryRemoveNode.getKey(), expiryRemoveNode);
-                    if (!remove && !expiryRemoveNode.covered) {
-                        continue;
+            try {
+                synchronized (node) {
+                    boolean remove = node.expiryLRUMap.map.remove(node.getKey(), node);
+                    if (!remove && !node.covered) {
+                        return;
                     }
                 }
+                notifyQueue.offer(node);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
 
-                try {
-                    iterator.remove();
-                    removeConsumer.accept(expiryRemoveNode);
-                } catch (Exception e) {
-                    e.printStackTrace();
+        /**
+         * doubly linked list of the slot. only access by the worker thread
+         */
+        static final class Bucket {
+            private Node<?, ?> head;
+            private Node<?, ?> tail;
+
+            void add(Node<?, ?> node) {
+                node.wheelBucket = this;
+                if (head == null) {
+                    head = tail = node;
+                } else {
+                    tail.wheelNext = node;
+                    node.wheelPrev = tail;
+                    tail = node;
+                }
+            }
+
+            void remove(Node<?, ?> node) {
+                Node<?, ?> prev = node.wheelPrev;
+                Node<?, ?> next = node.wheelNext;
+                if (prev == null) {
+                    head = next;
+                } else {
+                    prev.wheelNext = next;
+                }
+                if (next == null) {
+                    tail = prev;
+                } else {
+                    next.wheelPrev = prev;
+                }
+                node.wheelPrev = null;
+                node.wheelNext = null;
+                node.wheelBucket = null;
+            }
+
+            /**
+             * @return the head of the detached list (linked by wheelNext)
+             */
+            Node<?, ?> clear() {
+                Node<?, ?> node = head;
+                head = tail = null;
+                for (Node<?, ?> n = node; n != null; n = n.wheelNext) {
+                    n.wheelBucket = null;
+                    n.wheelPrev = null;
                 }
+                return node;
             }
         }
     }
@@ -853,7 +1166,10 @@ public class ExpiryLRUMap<K, V> extends AbstractMap<K, V> implements ConcurrentM
                             if (old == null) {
                                 return null;
                             } else {
-                                next.setValue(new Node<>(old.expiryTime, key, value, ExpiryLRUMap.this));
+                                Node<K, V> node = new Node<>(old.expiryTime, key, value, ExpiryLRUMap.this);
+                                next.setValue(node);
+                                TimingWheel.cancel(old);
+                                TimingWheel.schedule(node);
                                 return old.getData();
                             }
                         }
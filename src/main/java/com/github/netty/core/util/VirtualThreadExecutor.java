@@ -0,0 +1,149 @@
+package com.github.netty.core.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One virtual thread per task (JDK 21+).
+ * The project compiles against 1.8, so {@code Thread.ofVirtual()} is looked up reflectively.
+ * Use {@link #isSupported()} before construct, and fall back to a platform pool on older jvm.
+ * <p>
+ * pinnedDiagnostics = true
+ * 1. turn on -Djdk.tracePinnedThreads=short (if not set by user). the jvm prints the stack when a virtual thread pinned its carrier.
+ * 2. every virtual thread named by {@link #newThreadName(Runnable, long)}, so the pinned stack can be associated with the task.
+ *
+ * @author wangzihao
+ */
+public class VirtualThreadExecutor implements Executor {
+    private static final LoggerX LOGGER = LoggerFactoryX.getLogger(VirtualThreadExecutor.class);
+    private static final MethodHandle OF_VIRTUAL_METHOD;
+    private static final MethodHandle BUILDER_FACTORY_METHOD;
+    private final String poolName;
+    private final boolean pinnedDiagnostics;
+    private final ThreadFactory threadFactory;
+    private final AtomicLong threadIdIncr = new AtomicLong();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong completedTaskCount = new AtomicLong();
+
+    static {
+        MethodHandle ofVirtual;
+        MethodHandle factory;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualClass));
+            factory = lookup.findVirtual(builderClass, "factory", MethodType.methodType(ThreadFactory.class));
+        } catch (Throwable e) {
+            ofVirtual = null;
+            factory = null;
+        }
+        OF_VIRTUAL_METHOD = ofVirtual;
+        BUILDER_FACTORY_METHOD = factory;
+    }
+
+    public VirtualThreadExecutor(String poolName) {
+        this(poolName, false);
+    }
+
+    public VirtualThreadExecutor(String poolName, boolean pinnedDiagnostics) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("virtual thread unsupported. java.version=" + System.getProperty("java.version"));
+        }
+        this.poolName = poolName;
+        this.pinnedDiagnostics = pinnedDiagnostics;
+        if (pinnedDiagnostics && System.getProperty("jdk.tracePinnedThreads") == null) {
+            // read once by the jvm when the first virtual thread created.
+            System.setProperty("jdk.tracePinnedThreads", "short");
+        }
+        try {
+            Object builder = OF_VIRTUAL_METHOD.invoke();
+            this.threadFactory = (ThreadFactory) BUILDER_FACTORY_METHOD.invoke(builder);
+        } catch (Throwable e) {
+            throw new UnsupportedOperationException("virtual thread create fail. error=" + e, e);
+        }
+    }
+
+    /**
+     * Is the current jvm support virtual thread
+     *
+     * @return true = JDK 21+
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL_METHOD != null && BUILDER_FACTORY_METHOD != null;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Thread thread = threadFactory.newThread(new TaskWrapper(command));
+        if (thread == null) {
+            throw new RejectedExecutionException("Task " + command + " rejected from " + this);
+        }
+        thread.setName(newThreadName(command, threadIdIncr.incrementAndGet()));
+        thread.start();
+    }
+
+    /**
+     * Name of the virtual thread. when pinnedDiagnostics is enabled, the name will be output in the pinned stack.
+     *
+     * @param task     task
+     * @param threadId thread sequence of this executor
+     * @return thread name
+     */
+    protected String newThreadName(Runnable task, long threadId) {
+        return poolName + "-" + threadId;
+    }
+
+    public boolean isPinnedDiagnostics() {
+        return pinnedDiagnostics;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public long getCompletedTaskCount() {
+        return completedTaskCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualThreadExecutor{" +
+                "poolName='" + poolName + '\'' +
+                ", active=" + activeCount.get() +
+                ", completed=" + completedTaskCount.get() +
+                ", pinnedDiagnostics=" + pinnedDiagnostics +
+                '}';
+    }
+
+    private class TaskWrapper implements Runnable {
+        private final Runnable task;
+
+        TaskWrapper(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            activeCount.incrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOGGER.warn("virtual thread task error. thread={}, error={}", Thread.currentThread().getName(), t.toString(), t);
+            } finally {
+                activeCount.decrementAndGet();
+                completedTaskCount.incrementAndGet();
+            }
+        }
+    }
+}
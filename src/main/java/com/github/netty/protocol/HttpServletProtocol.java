@@ -413,6 +413,18 @@ public class HttpServletProtocol extends AbstractProtocol {
         }
     }
 
+    public String[] getCompressionMimeTypes() {
+        return compressionMimeTypes;
+    }
+
+    public boolean isEnableContentCompression() {
+        return enableContentCompression;
+    }
+
+    public int getContentSizeThreshold() {
+        return contentSizeThreshold;
+    }
+
     public void setEnableContentCompression(boolean enableContentCompression) {
         this.enableContentCompression = enableContentCompression;
     }
@@ -437,6 +449,10 @@ public class HttpServletProtocol extends AbstractProtocol {
             if (response instanceof NettyHttpResponse && ((NettyHttpResponse) response).isWriteSendFile()) {
                 return null;
             }
+            // already encoded. e.g. DefaultServlet precompressed resource
+            if (response.headers().contains(HttpHeaderConstants.CONTENT_ENCODING)) {
+                return null;
+            }
             if (compressionMimeTypes.length > 0) {
                 List<String> values = response.headers().getAll(HttpHeaderConstants.CONTENT_TYPE);
                 for (String mimeType : compressionMimeTypes) {
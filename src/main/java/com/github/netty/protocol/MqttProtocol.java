@@ -103,7 +103,7 @@ public class MqttProtocol extends AbstractProtocol {
 
         ISubscriptionsDirectory subscriptions = new CTrieSubscriptionDirectory(new MemorySubscriptionsRepository());
         MqttSessionRegistry sessions = new MqttSessionRegistry(subscriptions, new MemoryQueueRepository());
-        mqttPostOffice = new MqttPostOffice(subscriptions, authorizatorPolicy, new MemoryRetainedRepository(), sessions, interceptor);
+        mqttPostOffice = new MqttPostOffice(subscriptions, authorizatorPolicy, new TrieRetainedRepository(), sessions, interceptor);
         mqttServerChannelHandler = new MqttServerChannelHandler(interceptor, new BrokerConfiguration(), new AcceptAllAuthenticator(), sessions, mqttPostOffice);
     }
 
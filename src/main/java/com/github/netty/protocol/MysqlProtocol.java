@@ -1,11 +1,15 @@
 package com.github.netty.protocol;
 
 import com.github.netty.core.AbstractNettyClient;
+import com.github.netty.core.AbstractNettyServer;
 import com.github.netty.core.AbstractProtocol;
 import com.github.netty.core.util.LoggerFactoryX;
 import com.github.netty.core.util.LoggerX;
 import com.github.netty.protocol.mysql.Constants;
+import com.github.netty.protocol.mysql.MysqlBackendPool;
 import com.github.netty.protocol.mysql.MysqlProxyHandler;
+import com.github.netty.protocol.mysql.MysqlQueryCache;
+import com.github.netty.protocol.mysql.MysqlReplicaRouter;
 import com.github.netty.protocol.mysql.Session;
 import com.github.netty.protocol.mysql.client.ClientConnectionDecoder;
 import com.github.netty.protocol.mysql.client.ClientPacketEncoder;
@@ -16,12 +20,13 @@ import com.github.netty.protocol.mysql.server.MysqlBackendBusinessHandler;
 import com.github.netty.protocol.mysql.server.ServerConnectionDecoder;
 import com.github.netty.protocol.mysql.server.ServerErrorPacket;
 import com.github.netty.protocol.mysql.server.ServerPacketEncoder;
+import com.github.netty.protocol.mysql.server.ServerResultsetDecoder;
+import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelFutureListener;
-import io.netty.channel.ChannelHandler;
-import io.netty.channel.ChannelInitializer;
+import io.netty.channel.*;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
 
 import java.net.InetSocketAddress;
 import java.util.List;
@@ -51,6 +56,14 @@ public class MysqlProtocol extends AbstractProtocol {
     private int maxPacketSize = Constants.DEFAULT_MAX_PACKET_SIZE;
     private Supplier<MysqlBackendBusinessHandler> backendBusinessHandler = MysqlBackendBusinessHandler::new;
     private Supplier<MysqlFrontendBusinessHandler> frontendBusinessHandler = MysqlFrontendBusinessHandler::new;
+    private MysqlBackendPool backendPool;
+    private MysqlReplicaRouter replicaRouter;
+    private MysqlQueryCache queryCache;
+    /**
+     * true = forward the data without copy, and only decode the required packets. see {@link MysqlProxyHandler}
+     * default false. the existing listeners that not override {@link MysqlPacketListener#isSubscribeResultsetRow()} still receive the rows.
+     */
+    private boolean passthrough = false;
 
     public MysqlProtocol() {
     }
@@ -121,26 +134,55 @@ public class MysqlProtocol extends AbstractProtocol {
     public void addPipeline(Channel frontendChannel, ByteBuf clientFirstMsg) throws Exception {
         Session session = new Session(newSessionId((InetSocketAddress) frontendChannel.remoteAddress(), mysqlAddress));
         session.setFrontendChannel(frontendChannel);
+        session.setDecodeResultsetRow(!passthrough || isSubscribeResultsetRow());
+
+        MysqlFrontendBusinessHandler frontendBusinessHandler = this.frontendBusinessHandler.get();
+        frontendBusinessHandler.setMaxPacketSize(maxPacketSize);
+        frontendBusinessHandler.setSession(session);
+        frontendBusinessHandler.setMysqlPacketListeners(mysqlPacketListeners);
+        MysqlReplicaRouter replicaRouter = this.replicaRouter;
+        if (replicaRouter != null) {
+            // the replica connection is authenticated, forward the response to the client like the primary
+            frontendBusinessHandler.setReplicaRoute(replicaRouter.newRoute(session, () -> newBackendHandlers(session, true)));
+        }
+        ChannelPipeline pipeline = frontendChannel.pipeline();
+        pipeline.addLast(
+                new MysqlProxyHandler(newBackendChannelSupplier(session), passthrough),
+                new ClientConnectionDecoder(session, maxPacketSize),
+                new ClientPacketEncoder(session),
+                new ServerPacketEncoder(session));
+        MysqlBackendPool backendPool = this.backendPool;
+        if (backendPool != null) {
+            // the pool send the handshake to the client, and bind a authenticated backend connection
+            pipeline.addLast(backendPool.newFrontendHandler(session, () -> newBackendHandlers(session, true)));
+        }
+        pipeline.addLast(frontendBusinessHandler);
+        MysqlQueryCache queryCache = this.queryCache;
+        if (queryCache != null) {
+            // the last, capture the response that forwarded to the client
+            MysqlQueryCache.SessionCache sessionCache = queryCache.newSessionCache(session);
+            frontendBusinessHandler.setQueryCache(sessionCache);
+            pipeline.addLast(sessionCache);
+        }
+        if (backendPool != null) {
+            return;
+        }
 
-        SimpleNettyClient mysqlClient = new SimpleNettyClient("Mysql");
-        mysqlClient.handlers(() -> {
-            MysqlBackendBusinessHandler backendBusinessHandler = this.backendBusinessHandler.get();
-            backendBusinessHandler.setMysqlPacketListeners(mysqlPacketListeners);
-            backendBusinessHandler.setMaxPacketSize(maxPacketSize);
-            backendBusinessHandler.setSession(session);
-            return new ChannelHandler[]{
-                    new MysqlProxyHandler(session::getFrontendChannel),
-                    new ServerConnectionDecoder(session, maxPacketSize),
-                    new ClientPacketEncoder(session),
-                    new ServerPacketEncoder(session),
-                    backendBusinessHandler};
-        })
-                .ioRatio(80)
-                .ioThreadCount(1)
-                .connect(mysqlAddress).get()
+        // the backend connection use the event loop of the frontend connection. not need the new thread, and not block the I/O thread.
+        newBackendBootstrap(frontendChannel)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(newBackendHandlers(session, false));
+                    }
+                })
+                .connect(mysqlAddress)
                 .addListener((ChannelFutureListener) future -> {
                     if (future.isSuccess()) {
                         session.setBackendChannel(future.channel());
+                        if (!frontendChannel.isActive()) {
+                            future.channel().close();
+                        }
                     } else {
                         String stackTrace = ProxyException.stackTraceToString(future.cause());
                         ServerErrorPacket errorPacket = new ServerErrorPacket(
@@ -149,17 +191,43 @@ public class MysqlProtocol extends AbstractProtocol {
                         frontendChannel.writeAndFlush(errorPacket).addListener(ChannelFutureListener.CLOSE);
                     }
                 });
+    }
 
-        MysqlFrontendBusinessHandler frontendBusinessHandler = this.frontendBusinessHandler.get();
-        frontendBusinessHandler.setMaxPacketSize(maxPacketSize);
-        frontendBusinessHandler.setSession(session);
-        frontendBusinessHandler.setMysqlPacketListeners(mysqlPacketListeners);
-        frontendChannel.pipeline().addLast(
-                new MysqlProxyHandler(newBackendChannelSupplier(session)),
-                new ClientConnectionDecoder(session, maxPacketSize),
+    protected Bootstrap newBackendBootstrap(Channel frontendChannel) {
+        Class<? extends Channel> channelClass = frontendChannel instanceof EpollSocketChannel ?
+                EpollSocketChannel.class : NioSocketChannel.class;
+        return new Bootstrap()
+                .group(frontendChannel.eventLoop())
+                .channel(channelClass)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true);
+    }
+
+    /**
+     * @param session       session
+     * @param authenticated true if the backend connection is authenticated (from the pool)
+     * @return the handlers of the backend connection
+     */
+    protected ChannelHandler[] newBackendHandlers(Session session, boolean authenticated) {
+        MysqlBackendBusinessHandler backendBusinessHandler = this.backendBusinessHandler.get();
+        backendBusinessHandler.setMysqlPacketListeners(mysqlPacketListeners);
+        backendBusinessHandler.setMaxPacketSize(maxPacketSize);
+        backendBusinessHandler.setSession(session);
+        return new ChannelHandler[]{
+                new MysqlProxyHandler(session::getFrontendChannel, passthrough),
+                authenticated ? new ServerResultsetDecoder(session, maxPacketSize) : new ServerConnectionDecoder(session, maxPacketSize),
                 new ClientPacketEncoder(session),
                 new ServerPacketEncoder(session),
-                frontendBusinessHandler);
+                backendBusinessHandler};
+    }
+
+    protected boolean isSubscribeResultsetRow() {
+        for (MysqlPacketListener listener : mysqlPacketListeners) {
+            if (listener.isSubscribeResultsetRow()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     protected Supplier<Channel> newBackendChannelSupplier(Session session) {
@@ -188,6 +256,71 @@ public class MysqlProtocol extends AbstractProtocol {
         this.mysqlAddress = mysqlAddress;
     }
 
+    public boolean isPassthrough() {
+        return passthrough;
+    }
+
+    public void setPassthrough(boolean passthrough) {
+        this.passthrough = passthrough;
+    }
+
+    public MysqlBackendPool getBackendPool() {
+        return backendPool;
+    }
+
+    /**
+     * @param backendPool the pool of the pre-authenticated backend connections. null is connect a new backend connection per client.
+     */
+    public void setBackendPool(MysqlBackendPool backendPool) {
+        this.backendPool = backendPool;
+    }
+
+    public MysqlReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+
+    /**
+     * @param replicaRouter read/write splitting. null is all on the backend of the mysqlAddress.
+     */
+    public void setReplicaRouter(MysqlReplicaRouter replicaRouter) {
+        this.replicaRouter = replicaRouter;
+    }
+
+    public MysqlQueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * @param queryCache the result set cache of the read only select. null is not cache.
+     */
+    public void setQueryCache(MysqlQueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
+    @Override
+    public <T extends AbstractNettyServer> void onServerStart(T server) throws Exception {
+        MysqlReplicaRouter replicaRouter = this.replicaRouter;
+        if (replicaRouter != null) {
+            replicaRouter.start();
+        }
+    }
+
+    @Override
+    public <T extends AbstractNettyServer> void onServerStop(T server) throws Exception {
+        MysqlBackendPool backendPool = this.backendPool;
+        if (backendPool != null) {
+            backendPool.close();
+        }
+        MysqlReplicaRouter replicaRouter = this.replicaRouter;
+        if (replicaRouter != null) {
+            replicaRouter.close();
+        }
+        MysqlQueryCache queryCache = this.queryCache;
+        if (queryCache != null) {
+            queryCache.invalidateAll();
+        }
+    }
+
     public int getMaxPacketSize() {
         return maxPacketSize;
     }
@@ -57,7 +57,7 @@ public final class MemoryRetainedRepository implements IRetainedRepository {
         final List<MqttRetainedMessage> matchingMessages = new ArrayList<>();
         for (Map.Entry<Topic, MqttRetainedMessage> entry : storage.entrySet()) {
             final Topic scanTopic = entry.getKey();
-            if (searchTopic.match(scanTopic)) {
+            if (scanTopic.match(searchTopic)) {
                 matchingMessages.add(entry.getValue());
             }
         }
@@ -27,6 +27,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.codec.mqtt.*;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.ReferenceCountUtil;
 
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
@@ -55,6 +56,10 @@ public final class MqttConnection {
     private MqttSessionRegistry sessionRegistry;
     private boolean connected;
     private boolean authFlushed;
+    /**
+     * write by {@link MqttFanout}, the fan-out flush once after the batch. (only access by the event loop)
+     */
+    boolean fanoutWriting;
 
     public MqttConnection(BrokerInterceptor interceptor, Channel channel, BrokerConfiguration brokerConfig, IAuthenticator authenticator,
                           MqttSessionRegistry sessionRegistry, MqttPostOffice postOffice) {
@@ -375,7 +380,7 @@ public final class MqttConnection {
                 msg.variableHeader().packetId(), qos);
         ByteBuf payload = msg.payload();
         final boolean retain = msg.fixedHeader().isRetain();
-        final Topic topic = new Topic(topicName);
+        final Topic topic = Topic.intern(topicName);
         if (!topic.isValid()) {
             LOG.debug("Drop connection because of invalid topic format");
             dropConnection();
@@ -438,11 +443,14 @@ public final class MqttConnection {
             LOG.debug("OUT {} on channel {}", msg.fixedHeader().messageType(), channel);
         }
         if (channel.isWritable()) {
-            if (authFlushed) {
+            if (authFlushed || fanoutWriting) {
                 channel.write(msg).addListener(FIRE_EXCEPTION_ON_FAILURE);
             } else {
                 channel.writeAndFlush(msg).addListener(FIRE_EXCEPTION_ON_FAILURE);
             }
+        } else {
+            // drop. release the payload like the encoder do after write
+            ReferenceCountUtil.release(msg);
         }
     }
 
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2012-2018 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * The Apache License v2.0 is available at
+ * http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+package com.github.netty.protocol.mqtt;
+
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import com.github.netty.core.util.SystemPropertyUtil;
+import com.github.netty.protocol.mqtt.subscriptions.Topic;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Fan-out of a publish to the subscriber sessions.
+ * <p>
+ * The publisher's event loop only group the target sessions by the event loop of the session channel,
+ * and hand one batch to each loop. the session state (inflight window, queue) is then only touched by its own loop.
+ * <p>
+ * 1. each loop has a shard. the shard drain the batches in order, write without flush, then flush every written channel once.
+ * 2. a drain write at most chunkSize messages, then re-schedule itself, so the big fan-out (e.g. 50k subscribers)
+ * not monopolize the I/O thread. the remaining targets resume in the next run.
+ * <p>
+ * -Dnetty-mqtt.fanout.enable=true
+ * -Dnetty-mqtt.fanout.chunkSize=1024
+ */
+class MqttFanout {
+    static final boolean ENABLE = SystemPropertyUtil.getBoolean("netty-mqtt.fanout.enable", true);
+    private static final LoggerX LOG = LoggerFactoryX.getLogger(MqttFanout.class);
+    private static final int CHUNK_SIZE = SystemPropertyUtil.getInt("netty-mqtt.fanout.chunkSize", 1024);
+    private static final FastThreadLocal<Map<EventLoop, Batch>> GROUP_LOCAL = new FastThreadLocal<Map<EventLoop, Batch>>() {
+        @Override
+        protected Map<EventLoop, Batch> initialValue() throws Exception {
+            return new IdentityHashMap<>();
+        }
+    };
+    private final Map<EventLoop, Shard> shardMap = new ConcurrentHashMap<>();
+    private final int chunkSize;
+
+    MqttFanout() {
+        this(CHUNK_SIZE);
+    }
+
+    MqttFanout(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * begin a fan-out of the publishing thread
+     *
+     * @return the group of the target by event loop. use {@link #add(Map, Topic, ByteBuf, MqttSession, MqttConnection, MqttQoS)} then {@link #submit(Map)}
+     */
+    Map<EventLoop, Batch> begin() {
+        return GROUP_LOCAL.get();
+    }
+
+    void add(Map<EventLoop, Batch> group, Topic topic, ByteBuf origPayload, MqttSession session, MqttConnection connection, MqttQoS qos) {
+        EventLoop eventLoop = connection.channel.eventLoop();
+        Batch batch = group.get(eventLoop);
+        if (batch == null) {
+            // retain once for the batch, the target duplicate it when write
+            batch = new Batch(topic, origPayload.retainedDuplicate());
+            group.put(eventLoop, batch);
+        }
+        batch.add(session, qos);
+    }
+
+    void submit(Map<EventLoop, Batch> group) {
+        try {
+            for (Map.Entry<EventLoop, Batch> entry : group.entrySet()) {
+                shardMap.computeIfAbsent(entry.getKey(), eventLoop -> new Shard(this, eventLoop)).offer(entry.getValue());
+            }
+        } finally {
+            group.clear();
+        }
+    }
+
+    /**
+     * The targets of a publish on a loop. resumable, {@link #index} is the next target.
+     */
+    static class Batch {
+        private final Topic topic;
+        private final ByteBuf payload;
+        private final List<MqttSession> sessions = new ArrayList<>();
+        private final List<MqttQoS> qosList = new ArrayList<>();
+        private int index;
+
+        Batch(Topic topic, ByteBuf payload) {
+            this.topic = topic;
+            this.payload = payload;
+        }
+
+        void add(MqttSession session, MqttQoS qos) {
+            sessions.add(session);
+            qosList.add(qos);
+        }
+
+        /**
+         * @param max     write at most
+         * @param written the connection that write without flush
+         * @return the count of write
+         */
+        int write(int max, List<MqttConnection> written) {
+            int end = Math.min(sessions.size(), index + max);
+            int begin = index;
+            for (; index < end; index++) {
+                MqttSession session = sessions.get(index);
+                MqttConnection connection = session.connection();
+                if (connection != null && !connection.fanoutWriting) {
+                    connection.fanoutWriting = true;
+                    written.add(connection);
+                }
+                try {
+                    // we need to retain because duplicate only copy r/w indexes and don't retain() causing refCnt = 0
+                    session.sendPublishOnSessionAtQos(topic, qosList.get(index), payload.retainedDuplicate());
+                } catch (Exception e) {
+                    LOG.warn("Fan-out PUBLISH fail. CId: {}, topic: {}, error: {}", session.getClientID(), topic, e.toString());
+                }
+            }
+            return end - begin;
+        }
+
+        boolean isDone() {
+            return index >= sessions.size();
+        }
+
+        void release() {
+            ReferenceCountUtil.safeRelease(payload);
+        }
+    }
+
+    /**
+     * The fan-out of a event loop. (like the write batcher of the nrpc)
+     */
+    static class Shard implements Runnable {
+        private static final AtomicIntegerFieldUpdater<Shard> DRAIN_SCHEDULED_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Shard.class, "drainScheduled");
+        private final MqttFanout fanout;
+        private final EventLoop eventLoop;
+        private final Queue<Batch> queue = PlatformDependent.newMpscQueue();
+        /**
+         * only access by the event loop
+         */
+        private final List<MqttConnection> written = new ArrayList<>();
+        private volatile int drainScheduled;
+
+        Shard(MqttFanout fanout, EventLoop eventLoop) {
+            this.fanout = fanout;
+            this.eventLoop = eventLoop;
+        }
+
+        void offer(Batch batch) {
+            queue.offer(batch);
+            schedule();
+        }
+
+        private void schedule() {
+            if (DRAIN_SCHEDULED_UPDATER.compareAndSet(this, 0, 1)) {
+                try {
+                    eventLoop.execute(this);
+                } catch (RejectedExecutionException e) {
+                    drainScheduled = 0;
+                    Batch batch;
+                    while ((batch = queue.poll()) != null) {
+                        batch.release();
+                    }
+                    fanout.shardMap.remove(eventLoop, this);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            // reset before poll, the batch offer after poll will schedule a new drain
+            drainScheduled = 0;
+            int budget = fanout.chunkSize;
+            Batch batch;
+            try {
+                while (budget > 0 && (batch = queue.peek()) != null) {
+                    budget -= batch.write(budget, written);
+                    if (batch.isDone()) {
+                        queue.poll();
+                        batch.release();
+                    }
+                }
+            } finally {
+                for (MqttConnection connection : written) {
+                    connection.fanoutWriting = false;
+                    if (!connection.isAuthFlushed()) {
+                        connection.channel.flush();
+                    }
+                }
+                written.clear();
+            }
+            if (!queue.isEmpty()) {
+                // yield the I/O thread, resume at next run
+                schedule();
+            }
+        }
+    }
+}
@@ -24,10 +24,12 @@ import com.github.netty.protocol.mqtt.subscriptions.Subscription;
 import com.github.netty.protocol.mqtt.subscriptions.Topic;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoop;
 import io.netty.handler.codec.mqtt.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -41,6 +43,7 @@ public class MqttPostOffice {
     private final IAuthorizatorPolicy authorizatorPolicy;
     private final ISubscriptionsDirectory subscriptions;
     private final IRetainedRepository retainedRepository;
+    private final MqttFanout fanout = MqttFanout.ENABLE ? new MqttFanout() : null;
     private MqttSessionRegistry sessionRegistry;
     private BrokerInterceptor interceptor;
 
@@ -146,9 +149,9 @@ public class MqttPostOffice {
                 final MqttQoS retainedQos = retainedMsg.qosLevel();
                 MqttQoS qos = lowerQosToTheSubscriptionDesired(subscription, retainedQos);
 
-//                final ByteBuf origPayload = retainedMsg.getPayload();
-                final ByteBuf payloadBuf = Unpooled.wrappedBuffer(retainedMsg.getPayload());
-//                ByteBuf payload = origPayload.retainedDuplicate();
+                // the off-heap payload of the store is retained for us, send without copy
+                final ByteBuf payloadBuf = retainedMsg.getPayloadBuf() != null
+                        ? retainedMsg.getPayloadBuf() : Unpooled.wrappedBuffer(retainedMsg.getPayload());
                 targetSession.sendRetainedPublishOnSessionAtQos(subscription.getTopicFilter(), qos, payloadBuf);
             }
         }
@@ -244,6 +247,10 @@ public class MqttPostOffice {
 
     private void publish2Subscribers(ByteBuf origPayload, Topic topic, MqttQoS publishingQos) {
         Set<Subscription> topicMatchingSubscriptions = subscriptions.matchQosSharpening(topic);
+        if (fanout != null) {
+            fanout2Subscribers(origPayload, topic, publishingQos, topicMatchingSubscriptions);
+            return;
+        }
 
         for (final Subscription sub : topicMatchingSubscriptions) {
             MqttQoS qos = lowerQosToTheSubscriptionDesired(sub, publishingQos);
@@ -271,13 +278,45 @@ public class MqttPostOffice {
         }
     }
 
+    /**
+     * Group the target sessions by the event loop, each loop write its sessions. see {@link MqttFanout}
+     */
+    private void fanout2Subscribers(ByteBuf origPayload, Topic topic, MqttQoS publishingQos, Set<Subscription> topicMatchingSubscriptions) {
+        Map<EventLoop, MqttFanout.Batch> group = fanout.begin();
+        try {
+            for (final Subscription sub : topicMatchingSubscriptions) {
+                MqttQoS qos = lowerQosToTheSubscriptionDesired(sub, publishingQos);
+                MqttSession targetSession = this.sessionRegistry.retrieve(sub.getClientId());
+                if (targetSession == null) {
+                    LOG.debug("PUBLISH to not yet present session. CId: {}, topicFilter: {}, qos: {}", sub.getClientId(),
+                            sub.getTopicFilter(), qos);
+                    continue;
+                }
+                //TODO determine the user bounded to targetSession
+                if (!authorizatorPolicy.canRead(topic, "TODO", sub.getClientId())) {
+                    LOG.debug("Authorizator prohibit Client {} to be notified on {}", sub.getClientId(), topic);
+                    continue;
+                }
+                MqttConnection connection = targetSession.connection();
+                if (connection == null) {
+                    // offline session, only enqueue
+                    targetSession.sendPublishOnSessionAtQos(topic, qos, origPayload.retainedDuplicate());
+                } else {
+                    fanout.add(group, topic, origPayload, targetSession, connection, qos);
+                }
+            }
+        } finally {
+            fanout.submit(group);
+        }
+    }
+
     /**
      * First phase of a publish QoS2 protocol, sent by publisher to the broker. Publish to all interested
      * subscribers.
      */
     void receivedPublishQos2(MqttConnection connection, MqttPublishMessage mqttPublishMessage, String username) {
         LOG.trace("Processing PUBREL message on connection: {}", connection);
-        final Topic topic = new Topic(mqttPublishMessage.variableHeader().topicName());
+        final Topic topic = Topic.intern(mqttPublishMessage.variableHeader().topicName());
         final ByteBuf payload = mqttPublishMessage.payload();
 
         final String clientId = connection.getClientId();
@@ -313,7 +352,7 @@ public class MqttPostOffice {
      */
     public void internalPublish(MqttPublishMessage msg) {
         final MqttQoS qos = msg.fixedHeader().qosLevel();
-        final Topic topic = new Topic(msg.variableHeader().topicName());
+        final Topic topic = Topic.intern(msg.variableHeader().topicName());
         final ByteBuf payload = msg.payload();
         LOG.info("Sending internal PUBLISH message Topic={}, qos={}", topic, qos);
 
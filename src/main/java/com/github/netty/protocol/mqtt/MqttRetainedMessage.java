@@ -1,5 +1,7 @@
 package com.github.netty.protocol.mqtt;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.mqtt.MqttQoS;
 
 import java.io.Serializable;
@@ -8,10 +10,22 @@ public class MqttRetainedMessage implements Serializable {
 
     private final MqttQoS qos;
     private final byte[] payload;
+    private final transient ByteBuf payloadBuf;
 
     public MqttRetainedMessage(MqttQoS qos, byte[] payload) {
         this.qos = qos;
         this.payload = payload;
+        this.payloadBuf = null;
+    }
+
+    /**
+     * @param qos        qos
+     * @param payloadBuf the payload owned by the message receiver, release after send.
+     */
+    public MqttRetainedMessage(MqttQoS qos, ByteBuf payloadBuf) {
+        this.qos = qos;
+        this.payload = null;
+        this.payloadBuf = payloadBuf;
     }
 
     public MqttQoS qosLevel() {
@@ -19,6 +33,16 @@ public class MqttRetainedMessage implements Serializable {
     }
 
     public byte[] getPayload() {
+        if (payload == null && payloadBuf != null) {
+            return ByteBufUtil.getBytes(payloadBuf);
+        }
         return payload;
     }
+
+    /**
+     * @return null if the payload is byte[]
+     */
+    public ByteBuf getPayloadBuf() {
+        return payloadBuf;
+    }
 }
@@ -71,6 +71,10 @@ class MqttSession {
         this.mqttConnection = mqttConnection;
     }
 
+    MqttConnection connection() {
+        return mqttConnection;
+    }
+
     public boolean disconnected() {
         return status.get() == SessionStatus.DISCONNECTED;
     }
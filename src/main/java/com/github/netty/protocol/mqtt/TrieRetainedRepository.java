@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2012-2018 The original author or authors
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * The Apache License v2.0 is available at
+ * http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+package com.github.netty.protocol.mqtt;
+
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import com.github.netty.core.util.SystemPropertyUtil;
+import com.github.netty.protocol.mqtt.subscriptions.Token;
+import com.github.netty.protocol.mqtt.subscriptions.Topic;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Retained messages indexed by a trie of the topic levels.
+ * <p>
+ * 1. the lookup of a topic filter only visit the matching path. (a/+/c visit the children of a, a/# visit the subtree of a)
+ * not scan all retained messages, so the subscribe storm after reconnect cost is proportional to the matches.
+ * 2. the payload is stored off-heap (direct buffer), the total size is bounded by maxBytes.
+ * if full, the new retained message is dropped and the old one of the topic is removed. (not deliver the stale state)
+ * 3. the lookup return the retained duplicate of the payload, the caller send it without copy (release after write).
+ * <p>
+ * -Dnetty-mqtt.retained.maxBytes=268435456 (less than 0 is unbounded)
+ */
+public class TrieRetainedRepository implements IRetainedRepository {
+    private static final LoggerX LOG = LoggerFactoryX.getLogger(TrieRetainedRepository.class);
+    private static final String MULTI = "#";
+    private static final String SINGLE = "+";
+    private final Node root = new Node(null, null);
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong count = new AtomicLong();
+    /**
+     * lookup (read) retain the payload, store/clean (write) release the payload.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long maxBytes;
+    private final ByteBufAllocator allocator;
+
+    public TrieRetainedRepository() {
+        this(SystemPropertyUtil.getLong("netty-mqtt.retained.maxBytes", 256L * 1024L * 1024L));
+    }
+
+    public TrieRetainedRepository(long maxBytes) {
+        this(maxBytes, UnpooledByteBufAllocator.DEFAULT);
+    }
+
+    public TrieRetainedRepository(long maxBytes, ByteBufAllocator allocator) {
+        this.maxBytes = maxBytes;
+        this.allocator = allocator;
+    }
+
+    @Override
+    public void cleanRetained(Topic topic) {
+        lock.writeLock().lock();
+        try {
+            Node node = find(topic);
+            if (node != null) {
+                clean(node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void retain(Topic topic, MqttPublishMessage msg) {
+        final ByteBuf payload = msg.content();
+        int length = payload.readableBytes();
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            for (Token level : topic.getTokens()) {
+                final Node parent = node;
+                node = parent.children.computeIfAbsent(level.toString(), name -> new Node(name, parent));
+            }
+            Stored old = node.stored;
+            long oldLength = old == null ? 0 : old.payload.readableBytes();
+            if (maxBytes >= 0 && usedBytes.get() - oldLength + length > maxBytes) {
+                LOG.warn("Retained store is full, drop the retained message. topic: {}, used: {}, max: {}", topic, usedBytes.get(), maxBytes);
+                clean(node);
+                return;
+            }
+            ByteBuf offHeap = allocator.directBuffer(length, length);
+            offHeap.writeBytes(payload, payload.readerIndex(), length);
+            node.stored = new Stored(msg.fixedHeader().qosLevel(), offHeap);
+            usedBytes.addAndGet(length - oldLength);
+            if (old == null) {
+                count.incrementAndGet();
+            } else {
+                old.payload.release();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    /**
+     * @param topic the topic filter of the subscription. (can contains + and #)
+     * @return the matching retained messages. the payload is owned by the caller. ({@link MqttRetainedMessage#getPayloadBuf()})
+     */
+    @Override
+    public List<MqttRetainedMessage> retainedOnTopic(String topic) {
+        if (isEmpty()) {
+            return Collections.emptyList();
+        }
+        Topic filter = new Topic(topic);
+        if (!filter.isValid()) {
+            return Collections.emptyList();
+        }
+        List<Token> levels = filter.getTokens();
+        List<MqttRetainedMessage> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            match(root, levels, 0, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long size() {
+        return count.get();
+    }
+
+    private void match(Node node, List<Token> levels, int index, List<MqttRetainedMessage> result) {
+        if (index == levels.size()) {
+            add(node, result);
+            return;
+        }
+        String level = levels.get(index).toString();
+        if (MULTI.equals(level)) {
+            // a/# match a, and all the levels under a. [MQTT-4.7.1-2]
+            if (node != root) {
+                add(node, result);
+            }
+            for (Node child : node.children.values()) {
+                if (!isSystemTopic(node, child)) {
+                    addAll(child, result);
+                }
+            }
+        } else if (SINGLE.equals(level)) {
+            for (Node child : node.children.values()) {
+                if (!isSystemTopic(node, child)) {
+                    match(child, levels, index + 1, result);
+                }
+            }
+        } else {
+            Node child = node.children.get(level);
+            if (child != null) {
+                match(child, levels, index + 1, result);
+            }
+        }
+    }
+
+    /**
+     * the wildcard at the first level not match the topic start with $. [MQTT-4.7.2-1]
+     */
+    private boolean isSystemTopic(Node parent, Node child) {
+        return parent == root && child.name.startsWith("$");
+    }
+
+    private void addAll(Node node, List<MqttRetainedMessage> result) {
+        add(node, result);
+        for (Node child : node.children.values()) {
+            addAll(child, result);
+        }
+    }
+
+    private void add(Node node, List<MqttRetainedMessage> result) {
+        Stored stored = node.stored;
+        if (stored != null) {
+            result.add(new MqttRetainedMessage(stored.qos, stored.payload.retainedDuplicate()));
+        }
+    }
+
+    private Node find(Topic topic) {
+        Node node = root;
+        for (Token level : topic.getTokens()) {
+            node = node.children.get(level.toString());
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private void clean(Node node) {
+        Stored old = node.stored;
+        if (old == null) {
+            return;
+        }
+        node.stored = null;
+        usedBytes.addAndGet(-old.payload.readableBytes());
+        count.decrementAndGet();
+        old.payload.release();
+        // remove the empty path
+        while (node.parent != null && node.stored == null && node.children.isEmpty()) {
+            node.parent.children.remove(node.name);
+            node = node.parent;
+        }
+    }
+
+    private static class Stored {
+        private final MqttQoS qos;
+        private final ByteBuf payload;
+
+        private Stored(MqttQoS qos, ByteBuf payload) {
+            this.qos = qos;
+            this.payload = payload;
+        }
+    }
+
+    private static class Node {
+        private final String name;
+        private final Node parent;
+        /**
+         * access under the lock
+         */
+        private final Map<String, Node> children = new HashMap<>(4);
+        private Stored stored;
+
+        private Node(String name, Node parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+    }
+}
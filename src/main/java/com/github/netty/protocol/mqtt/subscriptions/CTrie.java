@@ -1,14 +1,18 @@
 package com.github.netty.protocol.mqtt.subscriptions;
 
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CTrie {
 
     private static final Token ROOT = new Token("root");
     private static final INode NO_PARENT = null;
+    /**
+     * increment after every mutation of the tree. the match result of a older generation is stale.
+     */
+    private final AtomicLong generation = new AtomicLong();
     INode root;
 
     CTrie() {
@@ -46,30 +50,46 @@ public class CTrie {
     }
 
     public Set<Subscription> recursiveMatch(Topic topic) {
-        return recursiveMatch(topic, this.root);
+        Set<Subscription> subscriptions = new HashSet<>();
+        recursiveMatch(topic, subscriptions);
+        return subscriptions;
     }
 
-    private Set<Subscription> recursiveMatch(Topic topic, INode inode) {
+    /**
+     * @param topic  the publish topic
+     * @param result add the matching subscriptions to the result. (the caller can reuse it)
+     */
+    public void recursiveMatch(Topic topic, Set<Subscription> result) {
+        recursiveMatch(topic, this.root, result);
+    }
+
+    private void recursiveMatch(Topic topic, INode inode, Set<Subscription> result) {
         CNode cnode = inode.mainNode();
         NavigationAction action = evaluate(topic, cnode);
         if (action == NavigationAction.MATCH) {
-            return cnode.subscriptions;
+            result.addAll(cnode.subscriptions);
+            return;
         }
         if (action == NavigationAction.STOP) {
-            return Collections.emptySet();
+            return;
         }
         if (cnode instanceof TNode) {
-            return Collections.emptySet();
+            return;
         }
         Topic remainingTopic = (ROOT.equals(cnode.token)) ? topic : topic.exceptHeadToken();
-        Set<Subscription> subscriptions = new HashSet<>();
         if (remainingTopic.isEmpty()) {
-            subscriptions.addAll(cnode.subscriptions);
+            result.addAll(cnode.subscriptions);
         }
         for (INode subInode : cnode.allChildren()) {
-            subscriptions.addAll(recursiveMatch(remainingTopic, subInode));
+            recursiveMatch(remainingTopic, subInode, result);
         }
-        return subscriptions;
+    }
+
+    /**
+     * @return the generation of the tree. change after add or remove subscription
+     */
+    public long getGeneration() {
+        return generation.get();
     }
 
     public void addToTree(Subscription newSubscription) {
@@ -77,6 +97,7 @@ public class CTrie {
         do {
             res = insert(newSubscription.topicFilter, this.root, newSubscription);
         } while (res == Action.REPEAT);
+        generation.incrementAndGet();
     }
 
     private Action insert(Topic topic, final INode inode, Subscription newSubscription) {
@@ -139,6 +160,7 @@ public class CTrie {
         do {
             res = remove(clientID, topic, this.root, NO_PARENT);
         } while (res == Action.REPEAT);
+        generation.incrementAndGet();
     }
 
     private Action remove(String clientId, Topic topic, INode inode, INode iParent) {
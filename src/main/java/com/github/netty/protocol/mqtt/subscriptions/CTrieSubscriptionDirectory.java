@@ -17,13 +17,30 @@ package com.github.netty.protocol.mqtt.subscriptions;
 
 import com.github.netty.core.util.LoggerFactoryX;
 import com.github.netty.core.util.LoggerX;
+import com.github.netty.core.util.SystemPropertyUtil;
 import com.github.netty.protocol.mqtt.ISubscriptionsRepository;
+import io.netty.util.concurrent.FastThreadLocal;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CTrieSubscriptionDirectory implements ISubscriptionsDirectory {
 
     private static final LoggerX LOG = LoggerFactoryX.getLogger(CTrieSubscriptionDirectory.class);
+    /**
+     * -Dnetty-mqtt.matchCache.maxSize=4096 (0 is disable)
+     */
+    private static final int MATCH_CACHE_MAX_SIZE = SystemPropertyUtil.getInt("netty-mqtt.matchCache.maxSize", 4096);
+    private static final FastThreadLocal<MatchBuffer> MATCH_BUFFER_LOCAL = new FastThreadLocal<MatchBuffer>() {
+        @Override
+        protected MatchBuffer initialValue() throws Exception {
+            return new MatchBuffer();
+        }
+    };
+    /**
+     * topic name : the sharpening match result. valid if the generation equals the generation of the ctrie.
+     */
+    private final Map<String, MatchResult> matchCache = new ConcurrentHashMap<>();
     private CTrie ctrie;
     private volatile ISubscriptionsRepository subscriptionsRepository;
 
@@ -64,23 +81,58 @@ public class CTrieSubscriptionDirectory implements ISubscriptionsDirectory {
         return ctrie.recursiveMatch(topic);
     }
 
+    /**
+     * The stable topic set (e.g. telemetry) hit the cache, return the same unmodifiable set. no allocation.
+     *
+     * @param topic the publish topic
+     * @return the unmodifiable matching subscriptions, one per client (the greatest qos).
+     */
     @Override
     public Set<Subscription> matchQosSharpening(Topic topic) {
-        final Set<Subscription> subscriptions = matchWithoutQosSharpening(topic);
-
-        Map<String, Subscription> subsGroupedByClient = new HashMap<>();
-        for (Subscription sub : subscriptions) {
-            Subscription existingSub = subsGroupedByClient.get(sub.clientId);
-            // update the selected subscriptions if not present or if has a greater qos
-            if (existingSub == null || existingSub.qosLessThan(sub)) {
-                subsGroupedByClient.put(sub.clientId, sub);
+        if (MATCH_CACHE_MAX_SIZE <= 0) {
+            return matchQosSharpeningNoCache(topic);
+        }
+        // read the generation before match. if the tree change during the match, the result is stale at once
+        long generation = ctrie.getGeneration();
+        String topicName = topic.toString();
+        MatchResult cached = matchCache.get(topicName);
+        if (cached != null && cached.generation == generation) {
+            return cached.subscriptions;
+        }
+        Set<Subscription> subscriptions = matchQosSharpeningNoCache(topic);
+        if (cached == null && matchCache.size() >= MATCH_CACHE_MAX_SIZE) {
+            matchCache.clear();
+        }
+        matchCache.put(topicName, new MatchResult(generation, subscriptions));
+        return subscriptions;
+    }
+
+    private Set<Subscription> matchQosSharpeningNoCache(Topic topic) {
+        MatchBuffer buffer = MATCH_BUFFER_LOCAL.get();
+        Set<Subscription> subscriptions = buffer.subscriptions;
+        Map<String, Subscription> subsGroupedByClient = buffer.subsGroupedByClient;
+        try {
+            ctrie.recursiveMatch(topic, subscriptions);
+            if (subscriptions.isEmpty()) {
+                return Collections.emptySet();
+            }
+            for (Subscription sub : subscriptions) {
+                Subscription existingSub = subsGroupedByClient.get(sub.clientId);
+                // update the selected subscriptions if not present or if has a greater qos
+                if (existingSub == null || existingSub.qosLessThan(sub)) {
+                    subsGroupedByClient.put(sub.clientId, sub);
+                }
             }
+            return Collections.unmodifiableSet(new HashSet<>(subsGroupedByClient.values()));
+        } finally {
+            subscriptions.clear();
+            subsGroupedByClient.clear();
         }
-        return new HashSet<>(subsGroupedByClient.values());
     }
 
     @Override
     public void add(Subscription newSubscription) {
+        // the ctrie increment the generation, the cached match result is stale
         ctrie.addToTree(newSubscription);
         subscriptionsRepository.addNewSubscription(newSubscription);
     }
@@ -107,4 +159,22 @@ public class CTrieSubscriptionDirectory implements ISubscriptionsDirectory {
     public String dumpTree() {
         return ctrie.dumpTree();
     }
+
+    private static class MatchResult {
+        private final long generation;
+        private final Set<Subscription> subscriptions;
+
+        private MatchResult(long generation, Set<Subscription> subscriptions) {
+            this.generation = generation;
+            this.subscriptions = subscriptions;
+        }
+    }
+
+    /**
+     * the reusable buffer of the match. (per thread)
+     */
+    private static class MatchBuffer {
+        private final Set<Subscription> subscriptions = new HashSet<>();
+        private final Map<String, Subscription> subsGroupedByClient = new HashMap<>();
+    }
 }
@@ -18,22 +18,33 @@ package com.github.netty.protocol.mqtt.subscriptions;
 
 import com.github.netty.core.util.LoggerFactoryX;
 import com.github.netty.core.util.LoggerX;
+import com.github.netty.core.util.SystemPropertyUtil;
 
 import java.io.Serializable;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Topic implements Serializable {
 
     private static final LoggerX LOG = LoggerFactoryX.getLogger(Topic.class);
 
     private static final long serialVersionUID = 2438799283749822L;
+    /**
+     * the interned publish topics. (parse once, not every message)
+     * -Dnetty-mqtt.topicCache.maxSize=4096
+     */
+    private static final int CACHE_MAX_SIZE = SystemPropertyUtil.getInt("netty-mqtt.topicCache.maxSize", 4096);
+    private static final Map<String, Topic> CACHE = new ConcurrentHashMap<>();
 
-    private final String topic;
+    /**
+     * the sub topic (exceptHeadToken) join the tokens when need.
+     */
+    private String topic;
 
     private transient List<Token> tokens;
 
@@ -45,8 +56,6 @@ public class Topic implements Serializable {
 
     Topic(List<Token> tokens) {
         this.tokens = tokens;
-        List<String> strTokens = tokens.stream().map(Token::toString).collect(Collectors.toList());
-        this.topic = String.join("/", strTokens);
         this.valid = true;
     }
 
@@ -60,6 +69,26 @@ public class Topic implements Serializable {
         return new Topic(s);
     }
 
+    /**
+     * Interned topic of the publish message. the tokens are parsed once.
+     * the cache is cleared when it is full, so a unbounded topic set (e.g. topic contains id) not leak.
+     *
+     * @param s the topic name
+     * @return the shared Topic instance. (immutable after parse)
+     */
+    public static Topic intern(String s) {
+        Topic topic = CACHE.get(s);
+        if (topic == null) {
+            topic = new Topic(s);
+            topic.getTokens();
+            if (CACHE.size() >= CACHE_MAX_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(s, topic);
+        }
+        return topic;
+    }
+
     public List<Token> getTokens() {
         if (tokens == null) {
             try {
@@ -80,22 +109,12 @@ public class Topic implements Serializable {
                     "this was empty", 0);
         }
         List<Token> res = new ArrayList<>();
-        String[] splitted = topic.split("/");
-
-        if (splitted.length == 0) {
-            res.add(Token.EMPTY);
-        }
-
-        if (topic.endsWith("/")) {
-            // Add a fictious space
-            String[] newSplitted = new String[splitted.length + 1];
-            System.arraycopy(splitted, 0, newSplitted, 0, splitted.length);
-            newSplitted[splitted.length] = "";
-            splitted = newSplitted;
-        }
-
-        for (int i = 0; i < splitted.length; i++) {
-            String s = splitted[i];
+        // each '/' separate a level, "a/b/" is [a, b, ""]. (not String.split, no regex)
+        int begin = 0;
+        for (int i = 0; ; i++) {
+            int end = topic.indexOf('/', begin);
+            boolean last = end == -1;
+            String s = topic.substring(begin, last ? topic.length() : end);
             if (s.isEmpty()) {
                 // if (i != 0) {
                 // throw new ParseException("Bad format of topic, expetec topic name between
@@ -104,7 +123,7 @@ public class Topic implements Serializable {
                 res.add(Token.EMPTY);
             } else if (s.equals("#")) {
                 // check that multi is the last symbol
-                if (i != splitted.length - 1) {
+                if (!last) {
                     throw new ParseException(
                             "Bad format of topic, the multi symbol (#) has to be the last one after a separator",
                             i);
@@ -119,6 +138,10 @@ public class Topic implements Serializable {
             } else {
                 res.add(new Token(s));
             }
+            if (last) {
+                break;
+            }
+            begin = end + 1;
         }
 
         return res;
@@ -143,12 +166,11 @@ public class Topic implements Serializable {
      */
     public Topic exceptHeadToken() {
         List<Token> tokens = getTokens();
-        if (tokens.isEmpty()) {
+        if (tokens.size() <= 1) {
             return new Topic(Collections.emptyList());
         }
-        List<Token> tokensCopy = new ArrayList<>(tokens);
-        tokensCopy.remove(0);
-        return new Topic(tokensCopy);
+        // view of the tokens, not copy
+        return new Topic(tokens.subList(1, tokens.size()));
     }
 
     public boolean isValid() {
@@ -193,6 +215,18 @@ public class Topic implements Serializable {
 
     @Override
     public String toString() {
+        String topic = this.topic;
+        if (topic == null) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < tokens.size(); i++) {
+                if (i > 0) {
+                    builder.append('/');
+                }
+                builder.append(tokens.get(i).name);
+            }
+            topic = builder.toString();
+            this.topic = topic;
+        }
         return topic;
     }
 
@@ -206,12 +240,12 @@ public class Topic implements Serializable {
         }
         Topic other = (Topic) obj;
 
-        return Objects.equals(this.topic, other.topic);
+        return Objects.equals(toString(), other.toString());
     }
 
     @Override
     public int hashCode() {
-        return topic.hashCode();
+        return toString().hashCode();
     }
 
 }
@@ -43,6 +43,24 @@ public abstract class AbstractPacketDecoder extends ByteToMessageDecoder impleme
 
     protected abstract void decodePacket(ChannelHandlerContext ctx, int sequenceId, ByteBuf packet, List<Object> out);
 
+    /**
+     * @return true if all the packets is required. (not need to ask {@link #isDecodeRequired(int, int)})
+     */
+    public boolean isDecodeAll() {
+        return true;
+    }
+
+    /**
+     * In the passthrough mode, the packet is not give to the decoder if not required. (only forward)
+     *
+     * @param header       the first byte of the payload. -1 if the payload is empty
+     * @param packetLength payload_length
+     * @return true = decode the packet
+     */
+    public boolean isDecodeRequired(int header, int packetLength) {
+        return true;
+    }
+
     protected ServerOkPacket decodeOkResponse(int sequenceId, ByteBuf packet, Set<CapabilityFlags> capabilities,
                                               MysqlCharacterSet charset) {
 
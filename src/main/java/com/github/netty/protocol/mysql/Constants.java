@@ -42,6 +42,10 @@ public interface Constants {
     String MYSQL_NATIVE_PASSWORD = "mysql_native_password";
 
     int DEFAULT_MAX_PACKET_SIZE = 0xFFFFFF;//1048576
+    /**
+     * the max payload_length of a packet. the bigger payload is split, the next packet is the continuation
+     */
+    int MAX_PACKET_LENGTH = 0xFFFFFF;
 
     String HANDLER_TYPE_FRONTEND = "frontend";
     String HANDLER_TYPE_BACKEND = "backend";
@@ -0,0 +1,642 @@
+package com.github.netty.protocol.mysql;
+
+import com.github.netty.core.AbstractChannelHandler;
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import com.github.netty.protocol.mysql.client.*;
+import com.github.netty.protocol.mysql.exception.ProxyException;
+import com.github.netty.protocol.mysql.server.*;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.*;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * The pool of the pre-authenticated backend connections.
+ * <p>
+ * 1. the pooled connection is authenticated by the configured account (mysql_native_password).
+ * on client connect, the proxy send its own handshake to the client and check the client by the same account,
+ * so the client not wait the connect and the full handshake of the mysql.
+ * 2. each event loop has its own idle connections, a client only take the connection of its event loop. (no thread switch, no lock)
+ * 3. the client COM_QUIT is not send to the mysql, the connection is reset by COM_RESET_CONNECTION and return to the idle.
+ * if the client close without COM_QUIT, or send COM_CHANGE_USER, the connection is closed. (the session state is unknown)
+ * <p>
+ * Note: the client must login with the pool account, and the capabilities of the client is limited to {@link #CAPABILITIES}.
+ */
+public class MysqlBackendPool implements Closeable {
+    /**
+     * the capabilities negotiated with the mysql. not contains the flags that change the packet format
+     * by the optional client feature. (CLIENT_DEPRECATE_EOF, CLIENT_SESSION_TRACK, CLIENT_COMPRESS, CLIENT_SSL...)
+     */
+    public static final Set<CapabilityFlags> CAPABILITIES = Collections.unmodifiableSet(EnumSet.of(
+            CapabilityFlags.CLIENT_LONG_PASSWORD,
+            CapabilityFlags.CLIENT_LONG_FLAG,
+            CapabilityFlags.CLIENT_CONNECT_WITH_DB,
+            CapabilityFlags.CLIENT_PROTOCOL_41,
+            CapabilityFlags.CLIENT_TRANSACTIONS,
+            CapabilityFlags.CLIENT_SECURE_CONNECTION,
+            CapabilityFlags.CLIENT_MULTI_RESULTS,
+            CapabilityFlags.CLIENT_PS_MULTI_RESULTS,
+            CapabilityFlags.CLIENT_PLUGIN_AUTH));
+    private static final LoggerX logger = LoggerFactoryX.getLogger(MysqlBackendPool.class);
+    private static final AttributeKey<Pooled> POOLED_ATTR = AttributeKey.valueOf(MysqlBackendPool.class + "#Pooled");
+    private static final int ERROR_ACCESS_DENIED = 1045;
+    private final Map<EventLoop, Idle> idleMap = new ConcurrentHashMap<>();
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final InetSocketAddress mysqlAddress;
+    private final String username;
+    private final String password;
+    private final String database;
+    private int maxPacketSize = Constants.DEFAULT_MAX_PACKET_SIZE;
+    /**
+     * the idle connections of each event loop at least. (connect in the background)
+     */
+    private int minIdle = 0;
+    /**
+     * the idle connections of each event loop at most. the more is closed when return.
+     */
+    private int maxIdle = 8;
+    private volatile boolean closed;
+
+    public MysqlBackendPool(InetSocketAddress mysqlAddress, String username, String password, String database) {
+        this.mysqlAddress = Objects.requireNonNull(mysqlAddress, "mysqlAddress");
+        this.username = Objects.requireNonNull(username, "username");
+        this.password = password == null ? "" : password;
+        this.database = database == null ? "" : database;
+    }
+
+    /**
+     * take a idle connection of the event loop of the frontendChannel, or connect a new one.
+     * must call in the event loop of the frontendChannel.
+     *
+     * @param frontendChannel frontendChannel
+     * @return the authenticated backendChannel (still in the pool pipeline, see {@link #bind(Channel, ChannelHandler...)})
+     */
+    public Future<Channel> acquire(Channel frontendChannel) {
+        Class<? extends Channel> channelClass = frontendChannel instanceof EpollSocketChannel ?
+                EpollSocketChannel.class : NioSocketChannel.class;
+        return acquire(frontendChannel.eventLoop(), channelClass);
+    }
+
+    /**
+     * take a idle connection of the event loop, or connect a new one. must call in the event loop.
+     *
+     * @param eventLoop    eventLoop
+     * @param channelClass the channel class of the event loop. (EpollSocketChannel or NioSocketChannel)
+     * @return the authenticated backendChannel (still in the pool pipeline, see {@link #bind(Channel, ChannelHandler...)})
+     */
+    public Future<Channel> acquire(EventLoop eventLoop, Class<? extends Channel> channelClass) {
+        Promise<Channel> promise = eventLoop.newPromise();
+        if (closed) {
+            promise.setFailure(new ProxyException(ProxyException.ERROR_BACKEND_NO_CONNECTION, "backend pool is closed"));
+            return promise;
+        }
+        Idle idle = idleMap.computeIfAbsent(eventLoop, e -> new Idle());
+        Channel channel;
+        while ((channel = idle.channels.pollFirst()) != null) {
+            if (channel.isActive()) {
+                promise.setSuccess(channel);
+                break;
+            }
+        }
+        if (channel == null) {
+            connect(eventLoop, channelClass, promise);
+        }
+        fill(eventLoop, channelClass, idle);
+        return promise;
+    }
+
+    /**
+     * the acquired backendChannel use the pipeline of the session
+     *
+     * @param backendChannel backendChannel
+     * @param handlers       the handlers of the session. (the connection is authenticated, not need the connection decoder)
+     */
+    public void bind(Channel backendChannel, ChannelHandler... handlers) {
+        ChannelPipeline pipeline = backendChannel.pipeline();
+        while (pipeline.last() != null) {
+            pipeline.removeLast();
+        }
+        pipeline.addLast(handlers);
+    }
+
+    /**
+     * return the backendChannel. (call in the event loop of the backendChannel)
+     *
+     * @param backendChannel backendChannel
+     * @param reusable       false if the session state is unknown, the connection is closed.
+     */
+    public void release(Channel backendChannel, boolean reusable) {
+        Pooled pooled = backendChannel.attr(POOLED_ATTR).get();
+        if (pooled == null || !reusable || closed || !backendChannel.isActive()) {
+            backendChannel.close();
+            return;
+        }
+        bind(backendChannel, newPoolHandlers(pooled));
+        command(backendChannel, new ClientCommandPacket(0, Command.COM_RESET_CONNECTION)).addListener(reset -> {
+            if (!reset.isSuccess()) {
+                logger.debug("reset backend connection fail. {}, {}", backendChannel, reset.cause().toString());
+                backendChannel.close();
+            } else if (database.isEmpty()) {
+                offer(backendChannel);
+            } else {
+                // COM_RESET_CONNECTION keep the current database, switch back to the pool database
+                command(backendChannel, new ClientQueryPacket(0, Command.COM_INIT_DB, database)).addListener(initDb -> {
+                    if (initDb.isSuccess()) {
+                        offer(backendChannel);
+                    } else {
+                        backendChannel.close();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * send a command to the pooled connection, and wait the OK packet.
+     *
+     * @param backendChannel backendChannel (in the pool pipeline)
+     * @param packet         packet
+     * @return the backendChannel, or fail if the mysql reply the error packet
+     */
+    public Future<Channel> command(Channel backendChannel, ClientCommandPacket packet) {
+        Pooled pooled = backendChannel.attr(POOLED_ATTR).get();
+        Promise<Channel> promise = backendChannel.eventLoop().newPromise();
+        pooled.pending = promise;
+        backendChannel.writeAndFlush(packet).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                promise.tryFailure(future.cause());
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * execute a query on the pooled connection, and collect the result set. (e.g. the health check)
+     *
+     * @param backendChannel backendChannel (in the pool pipeline)
+     * @param sql            sql
+     * @return the column definitions and the rows, or fail if the mysql reply the error packet
+     */
+    public Future<List<ServerPacket>> query(Channel backendChannel, String sql) {
+        Pooled pooled = backendChannel.attr(POOLED_ATTR).get();
+        Promise<List<ServerPacket>> promise = backendChannel.eventLoop().newPromise();
+        bind(backendChannel,
+                new ServerResultsetDecoder(pooled.session, maxPacketSize),
+                new ClientPacketEncoder(pooled.session),
+                new QueryHandler(pooled, promise));
+        backendChannel.writeAndFlush(new ClientQueryPacket(0, sql)).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                promise.tryFailure(future.cause());
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * @param session         the session of the frontendChannel
+     * @param backendHandlers the handlers of the backendChannel after acquire
+     * @return the handler of the frontendChannel. (before the frontend business handler)
+     */
+    public ChannelHandler newFrontendHandler(Session session, Supplier<ChannelHandler[]> backendHandlers) {
+        return new FrontendHandler(session, backendHandlers);
+    }
+
+    protected ChannelHandler[] newPoolHandlers(Pooled pooled) {
+        return new ChannelHandler[]{
+                new ServerConnectionDecoder(pooled.session, maxPacketSize),
+                new ClientPacketEncoder(pooled.session),
+                new PoolHandler(pooled)};
+    }
+
+    private void fill(EventLoop eventLoop, Class<? extends Channel> channelClass, Idle idle) {
+        while (!closed && idle.channels.size() + idle.connecting < minIdle) {
+            idle.connecting++;
+            Promise<Channel> promise = eventLoop.newPromise();
+            promise.addListener(future -> {
+                idle.connecting--;
+                if (future.isSuccess()) {
+                    offer((Channel) future.getNow());
+                } else {
+                    logger.warn("backend pool connect fail. {}", future.cause().toString());
+                }
+            });
+            connect(eventLoop, channelClass, promise);
+        }
+    }
+
+    private void offer(Channel backendChannel) {
+        Idle idle = idleMap.computeIfAbsent(backendChannel.eventLoop(), e -> new Idle());
+        if (closed || idle.channels.size() >= maxIdle) {
+            backendChannel.close();
+        } else {
+            // most recently used first
+            idle.channels.offerFirst(backendChannel);
+        }
+    }
+
+    private void connect(EventLoop eventLoop, Class<? extends Channel> channelClass, Promise<Channel> promise) {
+        new Bootstrap()
+                .group(eventLoop)
+                .channel(channelClass)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        Session session = new Session("pool-" + mysqlAddress.getHostString() + "_" + mysqlAddress.getPort());
+                        session.setBackendChannel(ch);
+                        Pooled pooled = new Pooled(session);
+                        pooled.pending = promise;
+                        ch.attr(POOLED_ATTR).set(pooled);
+                        ch.pipeline().addLast(newPoolHandlers(pooled));
+                    }
+                })
+                .connect(mysqlAddress)
+                .addListener((ChannelFutureListener) future -> {
+                    if (future.isSuccess()) {
+                        channels.add(future.channel());
+                    } else {
+                        promise.tryFailure(future.cause());
+                    }
+                });
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        channels.close();
+    }
+
+    public InetSocketAddress getMysqlAddress() {
+        return mysqlAddress;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public int getMaxPacketSize() {
+        return maxPacketSize;
+    }
+
+    public void setMaxPacketSize(int maxPacketSize) {
+        this.maxPacketSize = maxPacketSize;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    public int getIdleCount() {
+        int count = 0;
+        for (Idle idle : idleMap.values()) {
+            count += idle.channels.size();
+        }
+        return count;
+    }
+
+    /**
+     * only access by the event loop
+     */
+    private static class Idle {
+        private final ArrayDeque<Channel> channels = new ArrayDeque<>();
+        private int connecting;
+    }
+
+    /**
+     * the state of the pooled connection
+     */
+    protected static class Pooled {
+        private final Session session;
+        private ServerHandshakePacket handshake;
+        private Set<CapabilityFlags> capabilities;
+        private Promise<Channel> pending;
+
+        Pooled(Session session) {
+            this.session = session;
+        }
+    }
+
+    /**
+     * login with the pool account, and complete the command of the pool.
+     */
+    private class PoolHandler extends AbstractChannelHandler<ServerPacket, MysqlPacket> {
+        private final Pooled pooled;
+
+        PoolHandler(Pooled pooled) {
+            super(false);
+            this.pooled = pooled;
+        }
+
+        @Override
+        protected void onMessageReceived(ChannelHandlerContext ctx, ServerPacket msg) {
+            Promise<Channel> pending = pooled.pending;
+            pooled.pending = null;
+            if (msg instanceof ServerHandshakePacket) {
+                pooled.pending = pending;
+                onHandshake(ctx, (ServerHandshakePacket) msg);
+            } else if (pending == null) {
+                logger.warn("unexpected packet on idle backend connection. {}, {}", ctx.channel(), msg);
+                ctx.close();
+            } else if (msg instanceof ServerOkPacket) {
+                pending.trySuccess(ctx.channel());
+            } else if (msg instanceof ServerErrorPacket) {
+                ServerErrorPacket error = (ServerErrorPacket) msg;
+                pending.tryFailure(new ProxyException(error.getErrorNumber(), error.getMessage()));
+            } else {
+                // mysql require auth switch. the pool only support mysql_native_password
+                pending.tryFailure(new ProxyException(ProxyException.ERROR_BACKEND_CONNECT_FAIL,
+                        "backend pool login fail. the account need " + Constants.MYSQL_NATIVE_PASSWORD + ", packet=" + msg));
+                ctx.close();
+            }
+        }
+
+        private void onHandshake(ChannelHandlerContext ctx, ServerHandshakePacket handshake) {
+            EnumSet<CapabilityFlags> capabilities = EnumSet.copyOf(CAPABILITIES);
+            capabilities.retainAll(handshake.getCapabilities());
+            if (database.isEmpty()) {
+                capabilities.remove(CapabilityFlags.CLIENT_CONNECT_WITH_DB);
+            }
+            byte[] salt = ByteBufUtil.getBytes(handshake.getAuthPluginData());
+            ClientHandshakePacket.Builder builder = ClientHandshakePacket.create()
+                    .sequenceId(handshake.getSequenceId() + 1)
+                    .addCapabilities(capabilities)
+                    .maxPacketSize(maxPacketSize)
+                    .characterSet(handshake.getCharacterSet())
+                    .username(username)
+                    .addAuthData(password.isEmpty() ? new byte[0] : MysqlNativePasswordUtil.hashPassword(password, salt))
+                    .authPluginName(Constants.MYSQL_NATIVE_PASSWORD);
+            if (!database.isEmpty()) {
+                builder.database(database);
+            }
+            ClientHandshakePacket packet = builder.build();
+            pooled.handshake = handshake;
+            pooled.capabilities = packet.getCapabilities();
+            pooled.session.setBackendCapabilities(packet.getCapabilities());
+            ctx.writeAndFlush(packet);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            Promise<Channel> pending = pooled.pending;
+            pooled.pending = null;
+            if (pending != null) {
+                pending.tryFailure(cause);
+            }
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            Promise<Channel> pending = pooled.pending;
+            pooled.pending = null;
+            if (pending != null) {
+                pending.tryFailure(new ProxyException(ProxyException.ERROR_BACKEND_NO_CONNECTION, "backend connection closed"));
+            }
+            super.channelInactive(ctx);
+        }
+    }
+
+    /**
+     * collect the result set of {@link #query(Channel, String)}, then back to the pool pipeline.
+     */
+    private class QueryHandler extends AbstractChannelHandler<ServerPacket, MysqlPacket> {
+        private final Pooled pooled;
+        private final Promise<List<ServerPacket>> promise;
+        private final List<ServerPacket> packets = new ArrayList<>();
+        private int eofCount;
+
+        QueryHandler(Pooled pooled, Promise<List<ServerPacket>> promise) {
+            super(false);
+            this.pooled = pooled;
+            this.promise = promise;
+        }
+
+        @Override
+        protected void onMessageReceived(ChannelHandlerContext ctx, ServerPacket msg) {
+            if (msg instanceof ServerErrorPacket) {
+                ServerErrorPacket error = (ServerErrorPacket) msg;
+                complete(ctx, new ProxyException(error.getErrorNumber(), error.getMessage()));
+            } else if (msg instanceof ServerOkPacket) {
+                complete(ctx, null);
+            } else if (msg instanceof ServerEofPacket) {
+                // the end of the column definitions, and the end of the rows
+                if (++eofCount == 2) {
+                    complete(ctx, null);
+                }
+            } else {
+                packets.add(msg);
+            }
+        }
+
+        private void complete(ChannelHandlerContext ctx, Throwable cause) {
+            MysqlBackendPool.this.bind(ctx.channel(), newPoolHandlers(pooled));
+            if (cause == null) {
+                promise.trySuccess(packets);
+            } else {
+                promise.tryFailure(cause);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            promise.tryFailure(cause);
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            promise.tryFailure(new ProxyException(ProxyException.ERROR_BACKEND_NO_CONNECTION, "backend connection closed"));
+            super.channelInactive(ctx);
+        }
+    }
+
+    /**
+     * act as the mysql server to the client. send the handshake of the pooled connection and check the client login.
+     */
+    private class FrontendHandler extends AbstractChannelHandler<ClientPacket, MysqlPacket> {
+        private final Session session;
+        private final Supplier<ChannelHandler[]> backendHandlers;
+        private byte[] salt;
+        private ServerHandshakePacket handshake;
+        /**
+         * the client quit, or login fail. the backend connection state is clean
+         */
+        private boolean reusable;
+        private boolean changeUser;
+
+        FrontendHandler(Session session, Supplier<ChannelHandler[]> backendHandlers) {
+            super(false);
+            this.session = session;
+            this.backendHandlers = backendHandlers;
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            acquire(ctx.channel()).addListener(future -> {
+                Channel frontendChannel = ctx.channel();
+                if (!future.isSuccess()) {
+                    String stackTrace = ProxyException.stackTraceToString(future.cause());
+                    ServerErrorPacket errorPacket = new ServerErrorPacket(
+                            0, ProxyException.ERROR_BACKEND_CONNECT_FAIL, "#HY000".getBytes(), stackTrace);
+                    frontendChannel.writeAndFlush(errorPacket).addListener(ChannelFutureListener.CLOSE);
+                    return;
+                }
+                Channel backendChannel = (Channel) future.getNow();
+                if (!frontendChannel.isActive()) {
+                    offer(backendChannel);
+                    return;
+                }
+                Pooled pooled = backendChannel.attr(POOLED_ATTR).get();
+                session.setBackendChannel(backendChannel, ch -> release(ch, reusable && !changeUser));
+                session.setBackendCapabilities(pooled.capabilities);
+                session.setServerCharsetAttr(pooled.handshake.getCharacterSet());
+                session.setConnectionId(pooled.handshake.getConnectionId());
+                ctx.writeAndFlush(newHandshake(pooled));
+            });
+        }
+
+        private ServerHandshakePacket newHandshake(Pooled pooled) {
+            salt = new byte[20];
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < salt.length; i++) {
+                // printable, not contains NUL and '$'
+                byte b;
+                do {
+                    b = (byte) random.nextInt(33, 127);
+                } while (b == '$');
+                salt[i] = b;
+            }
+            handshake = ServerHandshakePacket.builder()
+                    .serverVersion(pooled.handshake.getServerVersion())
+                    .connectionId(pooled.handshake.getConnectionId())
+                    .characterSet(pooled.handshake.getCharacterSet())
+                    .addServerStatus(ServerStatusFlag.AUTO_COMMIT)
+                    .addCapabilities(pooled.capabilities)
+                    .addAuthData(salt)
+                    .addAuthData(new byte[]{Constants.NUL_BYTE})
+                    .authPluginName(Constants.MYSQL_NATIVE_PASSWORD)
+                    .build();
+            return handshake;
+        }
+
+        @Override
+        protected void onMessageReceived(ChannelHandlerContext ctx, ClientPacket msg) {
+            Channel backendChannel = session.getBackendChannel();
+            if (msg instanceof ClientHandshakePacket) {
+                discardReadyWritePacket(backendChannel);
+                ClientHandshakePacket packet = (ClientHandshakePacket) msg;
+                ctx.fireChannelRead(msg);
+                onHandshake(ctx, backendChannel, packet);
+                return;
+            }
+            if (msg instanceof ClientCommandPacket) {
+                Command command = ((ClientCommandPacket) msg).getCommand();
+                if (command == Command.COM_QUIT) {
+                    // keep the backend connection
+                    discardReadyWritePacket(backendChannel);
+                    reusable = true;
+                } else if (command == Command.COM_CHANGE_USER) {
+                    changeUser = true;
+                }
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        private void onHandshake(ChannelHandlerContext ctx, Channel backendChannel, ClientHandshakePacket packet) {
+            int sequenceId = packet.getSequenceId() + 1;
+            String authPluginName = packet.getAuthPluginName();
+            if (authPluginName != null && !authPluginName.isEmpty() && !Constants.MYSQL_NATIVE_PASSWORD.equals(authPluginName)) {
+                writeAndClose(ctx, sequenceId, ERROR_ACCESS_DENIED, "#28000",
+                        "Authentication plugin '" + authPluginName + "' is not supported by the proxy");
+                return;
+            }
+            byte[] expect = password.isEmpty() ? new byte[0] : MysqlNativePasswordUtil.hashPassword(password, salt);
+            byte[] actual = ByteBufUtil.getBytes(packet.getAuthPluginData());
+            if (!username.equals(packet.getUsername()) || !MessageDigest.isEqual(expect, actual)) {
+                writeAndClose(ctx, sequenceId, ERROR_ACCESS_DENIED, "#28000",
+                        "Access denied for user '" + packet.getUsername() + "'");
+                return;
+            }
+            String clientDatabase = packet.getDatabase();
+            if (clientDatabase == null || clientDatabase.isEmpty() || clientDatabase.equals(database)) {
+                onLogin(ctx, backendChannel, sequenceId);
+                return;
+            }
+            command(backendChannel, new ClientQueryPacket(0, Command.COM_INIT_DB, clientDatabase)).addListener(future -> {
+                if (future.isSuccess()) {
+                    onLogin(ctx, backendChannel, sequenceId);
+                } else if (future.cause() instanceof ProxyException) {
+                    writeAndClose(ctx, sequenceId, ((ProxyException) future.cause()).getErrorNumber(), "#42000", future.cause().getMessage());
+                } else {
+                    writeAndClose(ctx, sequenceId, ProxyException.ERROR_BACKEND_NO_CONNECTION, "#HY000", future.cause().toString());
+                }
+            });
+        }
+
+        private void onLogin(ChannelHandlerContext ctx, Channel backendChannel, int sequenceId) {
+            MysqlBackendPool.this.bind(backendChannel, backendHandlers.get());
+            ServerOkPacket okPacket = ServerOkPacket.builder()
+                    .sequenceId(sequenceId)
+                    .addStatusFlags(ServerStatusFlag.AUTO_COMMIT)
+                    .build();
+            ctx.writeAndFlush(okPacket);
+            EventHandshakeSuccessful eventHandshakeSuccessful = new EventHandshakeSuccessful(handshake, okPacket);
+            backendChannel.pipeline().fireUserEventTriggered(eventHandshakeSuccessful);
+            ctx.pipeline().fireUserEventTriggered(eventHandshakeSuccessful);
+        }
+
+        private void writeAndClose(ChannelHandlerContext ctx, int sequenceId, int errorNumber, String sqlState, String message) {
+            reusable = true;
+            ServerErrorPacket errorPacket = new ServerErrorPacket(sequenceId, errorNumber, sqlState.getBytes(), message);
+            ctx.writeAndFlush(errorPacket).addListener(ChannelFutureListener.CLOSE);
+        }
+
+        private void discardReadyWritePacket(Channel backendChannel) {
+            ByteBuf readyWritePacket = MysqlProxyHandler.getReadyWritePacket(backendChannel);
+            MysqlProxyHandler.setReadyWritePacket(backendChannel, null);
+            ReferenceCountUtil.release(readyWritePacket);
+        }
+    }
+}
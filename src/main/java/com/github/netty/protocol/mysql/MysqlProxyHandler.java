@@ -12,13 +12,37 @@ import io.netty.util.AttributeKey;
 
 import java.util.function.Supplier;
 
+/**
+ * Forward the data to the other side, and give the packets to the decoder. (the decoded packet for the listener and business handler)
+ * <p>
+ * 1. passthrough = false. the decoder read a copy of the data.
+ * 2. passthrough = true. not copy, the decoder read the retained slice of the data.
+ * the packet that the decoder not need is skipped. (e.g. the result set rows, see {@link AbstractPacketDecoder#isDecodeRequired(int, int)})
+ */
 public class MysqlProxyHandler extends AbstractChannelHandler<ByteBuf, ByteBuf> {
     private static final AttributeKey<ByteBuf> READY_WRITE_PACKET_ATTR = AttributeKey.valueOf(MysqlProxyHandler.class + "#ByteBuf");
+    /**
+     * payload_length(3) + sequence_id(1)
+     */
+    private static final int HEADER_LENGTH = 4;
     private final Supplier<Channel> channelSupplier;
+    private final boolean passthrough;
+    /**
+     * passthrough state. the header of the next packet (contains the first byte of the payload)
+     */
+    private final ByteBuf header = Unpooled.buffer(HEADER_LENGTH + 1, HEADER_LENGTH + 1);
+    private int bodyRemaining;
+    private boolean bodyDecode;
+    private boolean continuation;
 
     public MysqlProxyHandler(Supplier<Channel> channelSupplier) {
+        this(channelSupplier, false);
+    }
+
+    public MysqlProxyHandler(Supplier<Channel> channelSupplier, boolean passthrough) {
         super(false);
         this.channelSupplier = channelSupplier;
+        this.passthrough = passthrough;
     }
 
     public static void setReadyWritePacket(Channel channel, ByteBuf byteBuf) {
@@ -29,6 +53,15 @@ public class MysqlProxyHandler extends AbstractChannelHandler<ByteBuf, ByteBuf>
         return channel.attr(READY_WRITE_PACKET_ATTR).get();
     }
 
+    /**
+     * @param readyWritePacket the data of a read
+     * @return true if the data is one whole packet. (the command is not split into many reads, nothing is forwarded yet)
+     */
+    public static boolean isWholePacket(ByteBuf readyWritePacket) {
+        int length = readyWritePacket.readableBytes();
+        return length > HEADER_LENGTH && readyWritePacket.getUnsignedMediumLE(readyWritePacket.readerIndex()) == length - HEADER_LENGTH;
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         ServerErrorPacket errorPacket;
@@ -47,18 +80,109 @@ public class MysqlProxyHandler extends AbstractChannelHandler<ByteBuf, ByteBuf>
     @Override
     protected void onMessageReceived(ChannelHandlerContext ctx, ByteBuf msg) throws Exception {
         // directly write getFrontendChannel data to getMysqlChannel real mysql connection
-        ByteBuf userByteBuf = ctx.alloc().heapBuffer(msg.readableBytes());
-        msg.getBytes(0, userByteBuf);
-
         Channel channel = channelSupplier.get();
         setReadyWritePacket(channel, msg);
-        ctx.fireChannelRead(userByteBuf);
+        if (passthrough) {
+            fireRequiredPackets(ctx, msg);
+        } else {
+            ByteBuf userByteBuf = ctx.alloc().heapBuffer(msg.readableBytes());
+            msg.getBytes(0, userByteBuf);
+            ctx.fireChannelRead(userByteBuf);
+        }
         ByteBuf readyWritePacket = getReadyWritePacket(channel);
         if (readyWritePacket != null) {
             channel.write(readyWritePacket);
         }
     }
 
+    /**
+     * give the required packets to the decoder. the packet may be split into many reads, the state is kept in the fields.
+     * <p>
+     * if the decoder need all, the contiguous packets is give in one slice. (the decoder not copy into the cumulation)
+     * else the decoder read each required packet before ask the next, so the skip is always decide by the latest state of the decoder.
+     *
+     * @param ctx ctx
+     * @param msg the data of this read. not change the reader index (forward later)
+     */
+    protected void fireRequiredPackets(ChannelHandlerContext ctx, ByteBuf msg) {
+        AbstractPacketDecoder decoder = ctx.pipeline().get(AbstractPacketDecoder.class);
+        int index = msg.readerIndex();
+        int end = msg.writerIndex();
+        int headerStart = -1;
+        // the pending range of the required packets
+        int pendingStart = -1;
+        int pendingEnd = -1;
+        while (index < end) {
+            if (bodyRemaining > 0) {
+                int length = Math.min(bodyRemaining, end - index);
+                if (bodyDecode) {
+                    pendingStart = index;
+                    pendingEnd = index + length;
+                }
+                index += length;
+                bodyRemaining -= length;
+                continue;
+            }
+            if (!header.isReadable()) {
+                headerStart = index;
+            }
+            int headerLength = header.readableBytes() < HEADER_LENGTH || header.getUnsignedMediumLE(0) == 0 ?
+                    HEADER_LENGTH : HEADER_LENGTH + 1;
+            int length = Math.min(headerLength - header.readableBytes(), end - index);
+            header.writeBytes(msg, index, length);
+            index += length;
+            if (header.readableBytes() < headerLength) {
+                continue;
+            }
+            if (headerLength == HEADER_LENGTH && header.getUnsignedMediumLE(0) != 0) {
+                // the payload_length is known now, read the first byte of the payload
+                continue;
+            }
+
+            int packetLength = header.getUnsignedMediumLE(0);
+            int first = packetLength == 0 ? -1 : header.getUnsignedByte(HEADER_LENGTH);
+            boolean decode;
+            if (continuation) {
+                decode = bodyDecode;
+            } else if (decoder == null || decoder.isDecodeAll()) {
+                decode = true;
+            } else {
+                fireSlice(ctx, msg, pendingStart, pendingEnd);
+                pendingStart = -1;
+                decode = decoder.isDecodeRequired(first, packetLength);
+            }
+            continuation = packetLength == Constants.MAX_PACKET_LENGTH;
+            bodyDecode = decode;
+            bodyRemaining = packetLength - (header.readableBytes() - HEADER_LENGTH);
+            int bodyLength = Math.min(bodyRemaining, end - index);
+            if (decode) {
+                if (headerStart == -1) {
+                    // the header is split into two reads
+                    ctx.fireChannelRead(ctx.alloc().buffer(header.readableBytes()).writeBytes(header));
+                    pendingStart = index;
+                } else if (pendingStart == -1 || pendingEnd != headerStart) {
+                    fireSlice(ctx, msg, pendingStart, pendingEnd);
+                    pendingStart = headerStart;
+                }
+                pendingEnd = index + bodyLength;
+            } else if (pendingStart != -1) {
+                fireSlice(ctx, msg, pendingStart, pendingEnd);
+                pendingStart = -1;
+            }
+            index += bodyLength;
+            bodyRemaining -= bodyLength;
+            header.clear();
+            headerStart = -1;
+        }
+        fireSlice(ctx, msg, pendingStart, pendingEnd);
+    }
+
+    private static void fireSlice(ChannelHandlerContext ctx, ByteBuf msg, int start, int end) {
+        if (start != -1 && end > start) {
+            ctx.fireChannelRead(msg.retainedSlice(start, end - start));
+        }
+    }
+
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
         channelSupplier.get().writeAndFlush(Unpooled.EMPTY_BUFFER);
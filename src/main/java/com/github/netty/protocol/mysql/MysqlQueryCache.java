@@ -0,0 +1,681 @@
+package com.github.netty.protocol.mysql;
+
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import com.github.netty.protocol.mysql.client.ClientCommandPacket;
+import com.github.netty.protocol.mysql.client.ClientQueryPacket;
+import com.github.netty.protocol.mysql.client.StatementType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The result set cache of the read only select.
+ * <p>
+ * 1. the key is the normalized sql, the login user (the grants), the backend address, the login database, the client charset,
+ * the session statements (SET, USE), and the client capabilities that change the result format.
+ * 2. the value is the packets of the response as the mysql send (column count, column definitions, rows, EOF/OK),
+ * stored off-heap. the total size is bounded by maxBytes (the oldest is evicted), and expired by the ttl.
+ * 3. a hit is write to the client directly, the query is not send to the backend.
+ * a miss is captured from the forwarded response. (the primary or the replica)
+ * 4. the write statement (INSERT, UPDATE, DELETE, DDL...) of the proxy invalidate the cache of the tables.
+ * the write in the transaction invalidate again at the end of the transaction.
+ * the statement that the tables is unknown (CALL, multi statements...) invalidate all.
+ * <p>
+ * Note: the write that not through this proxy is not detected, the entry is stale at most ttlMs.
+ * not cache: in the transaction, the non-deterministic function (NOW(), RAND()...), the user variables, SQL_NO_CACHE, the multi results.
+ */
+public class MysqlQueryCache {
+    private static final LoggerX logger = LoggerFactoryX.getLogger(MysqlQueryCache.class);
+    private static final int HEADER_LENGTH = 4;
+    private static final int SERVER_MORE_RESULTS_EXISTS = 0x0008;
+    private static final String[] NOT_CACHE_KEYWORDS = {
+            "sql_no_cache", "@", "now(", "rand(", "uuid", "sysdate(", "current_", "curdate(", "curtime(", "localtime",
+            "unix_timestamp(", "utc_", "connection_id(", "database(", "schema(", "user(", "sleep(", "benchmark(",
+            "information_schema", "performance_schema"};
+    private static final Set<String> READ_ONLY_OTHER = new HashSet<>(Arrays.asList("show", "explain", "desc", "describe", "help"));
+    /**
+     * the identifier that not a table, not index it
+     */
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "select", "from", "where", "and", "or", "not", "in", "is", "null", "as", "on", "join", "inner", "left", "right",
+            "outer", "cross", "natural", "using", "group", "by", "order", "asc", "desc", "limit", "offset", "having",
+            "union", "all", "distinct", "exists", "between", "like", "case", "when", "then", "else", "end", "count",
+            "sum", "min", "max", "avg", "insert", "into", "values", "value", "update", "set", "delete", "replace",
+            "ignore", "low_priority", "high_priority", "delayed", "quick", "table", "tables", "truncate", "alter",
+            "drop", "create", "rename", "to", "if", "load", "data", "infile", "local", "straight_join", "partition", "duplicate", "key"));
+    private static final Set<String> WRITE_TARGET_END = new HashSet<>(Arrays.asList(
+            "set", "values", "value", "select", "where", "partition", "using", "order", "limit"));
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, Set<String>> tableIndex = new HashMap<>();
+    /**
+     * get (read) retain the data, put/invalidate (write) release the data. (like the retained store of the mqtt)
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * change on every invalidate. the capture that start before the invalidate is not stored. (the result maybe stale)
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final ByteBufAllocator allocator;
+    private long maxBytes = 64L * 1024L * 1024L;
+    private int maxEntryBytes = 1024 * 1024;
+    private long ttlMs = 5000;
+
+    public MysqlQueryCache() {
+        this(UnpooledByteBufAllocator.DEFAULT);
+    }
+
+    public MysqlQueryCache(ByteBufAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    /**
+     * remove the space, the comment, and the end semicolon. (not in the quote)
+     *
+     * @param sql sql
+     * @return the normalized sql
+     */
+    public static String normalize(String sql) {
+        StringBuilder builder = new StringBuilder(sql.length());
+        int length = sql.length();
+        boolean space = false;
+        for (int i = StatementType.skipComment(sql, 0); i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                int end = endOfQuote(sql, i);
+                if (space && builder.length() > 0) {
+                    builder.append(' ');
+                }
+                space = false;
+                builder.append(sql, i, end);
+                i = end - 1;
+            } else if (Character.isWhitespace(c)) {
+                space = true;
+            } else if (c == '/' && sql.startsWith("/*", i) && !sql.startsWith("/*!", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end == -1 ? length : end + 1;
+                space = true;
+            } else {
+                if (space && builder.length() > 0) {
+                    builder.append(' ');
+                }
+                space = false;
+                builder.append(c);
+            }
+        }
+        int end = builder.length();
+        while (end > 0 && (builder.charAt(end - 1) == ';' || builder.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        builder.setLength(end);
+        return builder.toString();
+    }
+
+    /**
+     * @param sql   the select
+     * @param write true is the written tables of the write statement, false is the read tables of the select
+     * @return the table names (lower case, without the database). over the real is ok (invalidate more), less is not.
+     */
+    public static Set<String> tables(String sql, boolean write) {
+        Set<String> tables = new HashSet<>();
+        int length = sql.length();
+        int index = StatementType.skipComment(sql, 0);
+        while (index < length) {
+            char c = sql.charAt(index);
+            if (c == '\'' || c == '"') {
+                index = endOfQuote(sql, index);
+            } else if (c == '`' || Character.isLetterOrDigit(c) || c == '_' || c == '$') {
+                int start = index;
+                // the last part is quoted. (`order`, db.`order`) the quoted identifier is never a keyword
+                boolean quoted = false;
+                while (index < length) {
+                    char ch = sql.charAt(index);
+                    if (ch == '`') {
+                        index = endOfQuote(sql, index);
+                        quoted = true;
+                    } else if (ch == '.') {
+                        index++;
+                        quoted = false;
+                    } else if (Character.isLetterOrDigit(ch) || ch == '_' || ch == '$') {
+                        index++;
+                        quoted = false;
+                    } else {
+                        break;
+                    }
+                }
+                String identifier = sql.substring(start, index).replace("`", "").toLowerCase();
+                if (write && !quoted && WRITE_TARGET_END.contains(identifier) && !tables.isEmpty()) {
+                    break;
+                }
+                int dot = identifier.lastIndexOf('.');
+                String name = dot == -1 ? identifier : identifier.substring(dot + 1);
+                if (!name.isEmpty() && (quoted || (!KEYWORDS.contains(name) && !Character.isDigit(name.charAt(0))))) {
+                    tables.add(name);
+                }
+            } else if (write && c == '(' && !tables.isEmpty()) {
+                // insert into t (a, b)
+                break;
+            } else {
+                index++;
+            }
+        }
+        return tables;
+    }
+
+    private static int endOfQuote(String sql, int begin) {
+        char quote = sql.charAt(begin);
+        int length = sql.length();
+        for (int i = begin + 1; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i++;
+            } else if (c == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i++;
+                } else {
+                    return i + 1;
+                }
+            }
+        }
+        return length;
+    }
+
+    public static boolean isCacheable(String sql) {
+        String lower = sql.toLowerCase();
+        for (String keyword : NOT_CACHE_KEYWORDS) {
+            if (lower.contains(keyword)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param key key
+     * @return the retained duplicate of the response. (the caller write it) null if not exist or expired.
+     */
+    public ByteBuf get(String key) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry == null || entry.expireTime < System.currentTimeMillis()) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            hitCount.incrementAndGet();
+            return entry.data.retainedDuplicate();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key        key
+     * @param data       the response. the cache own it.
+     * @param tables     the tables of the select
+     * @param generation the {@link #getGeneration()} before the query
+     */
+    public void put(String key, ByteBuf data, Set<String> tables, long generation) {
+        int length = data.readableBytes();
+        lock.writeLock().lock();
+        try {
+            if (generation != this.generation.get()) {
+                // a write after the query, the result maybe stale
+                data.release();
+                return;
+            }
+            remove(key);
+            long now = System.currentTimeMillis();
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                if (eldest.expireTime >= now && usedBytes.get() + length <= maxBytes) {
+                    break;
+                }
+                iterator.remove();
+                release(eldest);
+            }
+            if (usedBytes.get() + length > maxBytes) {
+                data.release();
+                return;
+            }
+            entries.put(key, new Entry(key, data, tables, now + ttlMs));
+            usedBytes.addAndGet(length);
+            for (String table : tables) {
+                tableIndex.computeIfAbsent(table, k -> new HashSet<>()).add(key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidate(Set<String> tables) {
+        lock.writeLock().lock();
+        try {
+            generation.incrementAndGet();
+            for (String table : tables) {
+                Set<String> keys = tableIndex.remove(table);
+                if (keys != null) {
+                    for (String key : keys) {
+                        remove(key);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.writeLock().lock();
+        try {
+            generation.incrementAndGet();
+            for (Entry entry : entries.values()) {
+                entry.data.release();
+            }
+            entries.clear();
+            tableIndex.clear();
+            usedBytes.set(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    private void release(Entry entry) {
+        usedBytes.addAndGet(-entry.data.readableBytes());
+        for (String table : entry.tables) {
+            Set<String> keys = tableIndex.get(table);
+            if (keys != null && keys.remove(entry.key) && keys.isEmpty()) {
+                tableIndex.remove(table);
+            }
+        }
+        entry.data.release();
+    }
+
+    /**
+     * @param session the session of the frontendChannel
+     * @return the cache of the session. add to the last of the frontendChannel pipeline (capture the forwarded response),
+     * and call {@link SessionCache#onCommand(ClientCommandPacket)} by the frontend business handler.
+     */
+    public SessionCache newSessionCache(Session session) {
+        return new SessionCache(session);
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public void setMaxEntryBytes(int maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    public long getTtlMs() {
+        return ttlMs;
+    }
+
+    public void setTtlMs(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    private static class Entry {
+        private final String key;
+        private final ByteBuf data;
+        private final Set<String> tables;
+        private final long expireTime;
+
+        private Entry(String key, ByteBuf data, Set<String> tables, long expireTime) {
+            this.key = key;
+            this.data = data;
+            this.tables = tables;
+            this.expireTime = expireTime;
+        }
+    }
+
+    /**
+     * The cache of a session. only access by the event loop of the frontendChannel.
+     */
+    public class SessionCache extends ChannelOutboundHandlerAdapter {
+        private final Session session;
+        /**
+         * SET and USE statements of the session. the part of the key.
+         */
+        private final StringBuilder sessionStatements = new StringBuilder();
+        /**
+         * the tables written in the transaction. invalidate again at the end of the transaction.
+         */
+        private final Set<String> transactionTables = new HashSet<>();
+        private Capture capture;
+        private boolean disabled;
+
+        SessionCache(Session session) {
+            this.session = session;
+        }
+
+        /**
+         * call by the frontend business handler, before the packet is forward to the backend.
+         *
+         * @param packet the command of the client
+         * @return true if the response is write from the cache. (the backend not send)
+         */
+        public boolean onCommand(ClientCommandPacket packet) {
+            abortCapture();
+            if (!transactionTables.isEmpty() && !session.isInTransaction()) {
+                invalidate(transactionTables);
+                transactionTables.clear();
+            }
+            switch (packet.getCommand()) {
+                case COM_QUERY:
+                    return onQuery(((ClientQueryPacket) packet).getQuery());
+                case COM_INIT_DB:
+                    addSessionStatement(packet instanceof ClientQueryPacket ? "USE " + ((ClientQueryPacket) packet).getQuery() : null);
+                    return false;
+                case COM_RESET_CONNECTION:
+                    sessionStatements.setLength(0);
+                    disabled = false;
+                    return false;
+                case COM_CHANGE_USER:
+                    disabled = true;
+                    return false;
+                default:
+                    return false;
+            }
+        }
+
+        protected boolean onQuery(String sql) {
+            StatementType type = StatementType.of(sql);
+            switch (type) {
+                case SELECT: {
+                    if (disabled || session.isInTransaction() || !isCacheable(sql)) {
+                        return false;
+                    }
+                    Channel backendChannel = session.getBackendChannel();
+                    ByteBuf readyWritePacket = backendChannel == null ? null : MysqlProxyHandler.getReadyWritePacket(backendChannel);
+                    if (readyWritePacket == null || !MysqlProxyHandler.isWholePacket(readyWritePacket)) {
+                        return false;
+                    }
+                    String key = newKey(sql, backendChannel);
+                    ByteBuf cached = get(key);
+                    if (cached != null) {
+                        MysqlProxyHandler.setReadyWritePacket(backendChannel, null);
+                        readyWritePacket.release();
+                        session.getFrontendChannel().writeAndFlush(cached);
+                        return true;
+                    }
+                    capture = new Capture(key, tables(sql, false), generation.get(),
+                            session.getFrontendCapabilities().contains(CapabilityFlags.CLIENT_DEPRECATE_EOF));
+                    return false;
+                }
+                case SET:
+                case USE:
+                    addSessionStatement(sql);
+                    return false;
+                case LOCK:
+                    // LOCK TABLES, CREATE TEMPORARY TABLE (the temporary table hide the table of the other session)
+                    disabled = true;
+                    return false;
+                case WRITE: {
+                    Set<String> tables = tables(sql, true);
+                    if (tables.isEmpty()) {
+                        invalidateAll();
+                        return false;
+                    }
+                    invalidate(tables);
+                    if (session.isInTransaction()) {
+                        transactionTables.addAll(tables);
+                    }
+                    return false;
+                }
+                case TRANSACTION:
+                    if (!transactionTables.isEmpty()) {
+                        invalidate(transactionTables);
+                    }
+                    return false;
+                case OTHER: {
+                    int start = StatementType.skipComment(sql, 0);
+                    int end = start;
+                    while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+                        end++;
+                    }
+                    if (!READ_ONLY_OTHER.contains(sql.substring(start, end).toLowerCase())) {
+                        // CALL, multi statements... the written tables is unknown
+                        invalidateAll();
+                    }
+                    return false;
+                }
+                default:
+                    return false;
+            }
+        }
+
+        private String newKey(String sql, Channel backendChannel) {
+            EnumSet<CapabilityFlags> capabilities = session.getFrontendCapabilities();
+            StringBuilder key = new StringBuilder(sql.length() + sessionStatements.length() + 64);
+            // the result depend on the grants of the user, and the server of the backend
+            key.append(session.getUsername()).append('\0')
+                    .append(backendChannel.remoteAddress()).append('\0')
+                    .append(session.getDatabase()).append('\0')
+                    .append(session.getClientCharset().getId()).append('\0')
+                    .append(capabilities.contains(CapabilityFlags.CLIENT_DEPRECATE_EOF) ? 'E' : '-')
+                    .append(capabilities.contains(CapabilityFlags.CLIENT_SESSION_TRACK) ? 'T' : '-').append('\0')
+                    .append(sessionStatements).append('\0')
+                    .append(normalize(sql));
+            return key.toString();
+        }
+
+        private void addSessionStatement(String sql) {
+            if (sql == null || sessionStatements.length() + sql.length() > 4096) {
+                disabled = true;
+            } else {
+                sessionStatements.append(normalize(sql)).append('\n');
+            }
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            Capture capture = this.capture;
+            if (capture != null && msg instanceof ByteBuf) {
+                try {
+                    if (capture.append((ByteBuf) msg)) {
+                        this.capture = null;
+                        if (capture.buffer != null) {
+                            put(capture.key, capture.buffer, capture.tables, capture.generation);
+                            capture.buffer = null;
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.warn("capture the response fail. {}, {}", session, e.toString());
+                    abortCapture();
+                }
+            }
+            ctx.write(msg, promise);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            abortCapture();
+        }
+
+        @Override
+        public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+            abortCapture();
+            super.close(ctx, promise);
+        }
+
+        private void abortCapture() {
+            Capture capture = this.capture;
+            if (capture != null) {
+                this.capture = null;
+                ReferenceCountUtil.safeRelease(capture.buffer);
+                capture.buffer = null;
+            }
+        }
+    }
+
+    /**
+     * copy the forwarded response, and follow the packets until the end of the result set.
+     */
+    private class Capture {
+        private final String key;
+        private final Set<String> tables;
+        private final long generation;
+        private final boolean deprecateEof;
+        private ByteBuf buffer;
+        /**
+         * the index of the next packet in the buffer
+         */
+        private int packetIndex;
+        private int packetCount;
+        private long columnCount = -1;
+
+        private Capture(String key, Set<String> tables, long generation, boolean deprecateEof) {
+            this.key = key;
+            this.tables = tables;
+            this.generation = generation;
+            this.deprecateEof = deprecateEof;
+        }
+
+        /**
+         * @param data the forwarded data
+         * @return true if the capture is end. (buffer is null if not cacheable)
+         */
+        boolean append(ByteBuf data) {
+            int length = data.readableBytes();
+            if (buffer == null) {
+                buffer = allocator.directBuffer(Math.min(Math.max(length, 256), maxEntryBytes));
+            }
+            if (buffer.readableBytes() + length > maxEntryBytes) {
+                return end(false);
+            }
+            buffer.writeBytes(data, data.readerIndex(), length);
+            while (buffer.writerIndex() - packetIndex >= HEADER_LENGTH) {
+                int packetLength = buffer.getUnsignedMediumLE(packetIndex);
+                if (buffer.writerIndex() - packetIndex < HEADER_LENGTH + packetLength) {
+                    break;
+                }
+                int payload = packetIndex + HEADER_LENGTH;
+                packetIndex = payload + packetLength;
+                if (packetLength == 0 || packetLength == Constants.MAX_PACKET_LENGTH) {
+                    return end(false);
+                }
+                int header = buffer.getUnsignedByte(payload);
+                packetCount++;
+                if (header == Constants.RESPONSE_ERROR) {
+                    return end(false);
+                }
+                if (columnCount == -1) {
+                    if (header == Constants.RESPONSE_OK || header == Constants.RESPONSE_LOCAL_INFILE) {
+                        return end(false);
+                    }
+                    columnCount = header < 0xFB ? header
+                            : header == 0xFC && packetLength >= 3 ? buffer.getUnsignedShortLE(payload + 1)
+                            : header == 0xFD && packetLength >= 4 ? buffer.getUnsignedMediumLE(payload + 1) : -1;
+                    if (columnCount == -1) {
+                        return end(false);
+                    }
+                    continue;
+                }
+                // column count, column definitions, (EOF)
+                long rowStart = 1 + columnCount + (deprecateEof ? 0 : 1);
+                if (packetCount > rowStart && header == Constants.RESPONSE_EOF) {
+                    int status = statusOf(payload, packetLength);
+                    return end((status & SERVER_MORE_RESULTS_EXISTS) == 0 && packetIndex == buffer.writerIndex());
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the status flags of the EOF, or the OK with 0xFE header (CLIENT_DEPRECATE_EOF)
+         */
+        private int statusOf(int payload, int packetLength) {
+            if (!deprecateEof) {
+                return packetLength >= 5 ? buffer.getUnsignedShortLE(payload + 3) : 0;
+            }
+            int index = payload + 1;
+            index += lengthOfLengthEncoded(buffer.getUnsignedByte(index));
+            index += lengthOfLengthEncoded(buffer.getUnsignedByte(index));
+            return buffer.getUnsignedShortLE(index);
+        }
+
+        private int lengthOfLengthEncoded(int first) {
+            switch (first) {
+                case 0xFC:
+                    return 3;
+                case 0xFD:
+                    return 4;
+                case 0xFE:
+                    return 9;
+                default:
+                    return 1;
+            }
+        }
+
+        private boolean end(boolean cacheable) {
+            if (!cacheable) {
+                ReferenceCountUtil.safeRelease(buffer);
+                buffer = null;
+            }
+            return true;
+        }
+    }
+}
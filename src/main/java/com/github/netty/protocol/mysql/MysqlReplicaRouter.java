@@ -0,0 +1,578 @@
+package com.github.netty.protocol.mysql;
+
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import com.github.netty.core.util.ThreadFactoryX;
+import com.github.netty.protocol.mysql.client.ClientCommandPacket;
+import com.github.netty.protocol.mysql.client.ClientQueryPacket;
+import com.github.netty.protocol.mysql.client.StatementType;
+import com.github.netty.protocol.mysql.exception.ProxyException;
+import com.github.netty.protocol.mysql.server.ServerColumnDefinitionPacket;
+import com.github.netty.protocol.mysql.server.ServerPacket;
+import com.github.netty.protocol.mysql.server.ServerResultsetRowPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.EventLoop;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Read/write splitting. the read only select is execute on the replica, the others on the primary (the backendChannel of the session).
+ * <p>
+ * 1. the replica connection is take from the {@link MysqlBackendPool} of the replica (login by the pool account),
+ * and use the event loop of the frontendChannel. the replica is choose by the weight, only the healthy replica.
+ * only the session login by the same user of the pool is routed, else the grants of the client user is bypass.
+ * the session of the other user is pinned to the primary.
+ * 2. the select is execute on the primary, if in the transaction (the status of the primary, include autocommit=0),
+ * or the session is pinned. (LOCK TABLES, CREATE TEMPORARY TABLE, COM_CHANGE_USER)
+ * 3. the session state that can replay (the database of the login, SET NAMES, SET variables, USE database) is replay on the replica connection before the first read.
+ * if the state changed, the replica connection is return, the next read take a new one.
+ * 4. the prepared statements (COM_STMT_*) is always on the primary. (the statement id is of the connection)
+ * 5. the health check query the lag of the replica (SHOW SLAVE STATUS). the replica that the lag more than maxLagSeconds, or stop the replication, or check fail, is not choose.
+ * <p>
+ * Note: the data is forwarded without decode, only the read that is one whole packet in a read is routed.
+ * the client that use CLIENT_DEPRECATE_EOF, CLIENT_SESSION_TRACK or CLIENT_COMPRESS is not routed. (the pool connection not negotiate them)
+ */
+public class MysqlReplicaRouter implements Closeable {
+    private static final LoggerX logger = LoggerFactoryX.getLogger(MysqlReplicaRouter.class);
+    /**
+     * the capabilities that change the result format. the replica connection not negotiate them.
+     */
+    private static final Set<CapabilityFlags> INCOMPATIBLE_CAPABILITIES = Collections.unmodifiableSet(EnumSet.of(
+            CapabilityFlags.CLIENT_DEPRECATE_EOF,
+            CapabilityFlags.CLIENT_SESSION_TRACK,
+            CapabilityFlags.CLIENT_COMPRESS,
+            CapabilityFlags.CLIENT_SSL));
+    private static final List<String> LAG_COLUMNS = Arrays.asList("Seconds_Behind_Master", "Seconds_Behind_Source");
+    private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+    /**
+     * the replica that the lag more than it is not choose. less than 0 is not check the lag.
+     */
+    private long maxLagSeconds = 10;
+    private long healthCheckIntervalMs = 2000;
+    private long healthCheckTimeoutMs = 2000;
+    private String healthCheckSql = "SHOW SLAVE STATUS";
+    /**
+     * the session state statements replay at most. if more, the session is pinned to the primary.
+     */
+    private int maxSessionStatements = 64;
+    private NioEventLoopGroup healthCheckGroup;
+    private ScheduledFuture<?> healthCheckFuture;
+    private volatile boolean closed;
+
+    public Replica addReplica(MysqlBackendPool pool, int weight) {
+        Replica replica = new Replica(pool, weight);
+        replicas.add(replica);
+        return replica;
+    }
+
+    /**
+     * start the health check in the background
+     */
+    public synchronized void start() {
+        if (healthCheckGroup != null || closed || healthCheckIntervalMs <= 0) {
+            return;
+        }
+        healthCheckGroup = new NioEventLoopGroup(1, new ThreadFactoryX("NIO", "Mysql-ReplicaCheck", true));
+        healthCheckFuture = healthCheckGroup.next().scheduleWithFixedDelay(
+                this::checkHealth, 0, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the replica by the weight. null if no available replica.
+     */
+    public Replica choose() {
+        return choose(null);
+    }
+
+    /**
+     * @param username the user of the session. null is any user
+     * @return the replica by the weight, the pool of the replica login by the user. null if no available replica.
+     */
+    public Replica choose(String username) {
+        int totalWeight = 0;
+        for (Replica replica : replicas) {
+            if (replica.isAvailable(username)) {
+                totalWeight += replica.weight;
+            }
+        }
+        if (totalWeight <= 0) {
+            return null;
+        }
+        int random = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Replica replica : replicas) {
+            if (replica.isAvailable(username)) {
+                random -= replica.weight;
+                if (random < 0) {
+                    return replica;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param session         the session of the frontendChannel
+     * @param replicaHandlers the handlers of the replica connection after acquire. (forward to the frontendChannel)
+     * @return the route of the session
+     */
+    public Route newRoute(Session session, Supplier<ChannelHandler[]> replicaHandlers) {
+        return new Route(session, replicaHandlers);
+    }
+
+    protected void checkHealth() {
+        EventLoop eventLoop = healthCheckGroup.next();
+        for (Replica replica : replicas) {
+            replica.pool.acquire(eventLoop, NioSocketChannel.class).addListener(acquire -> {
+                if (!acquire.isSuccess()) {
+                    replica.setUnhealthy(acquire.cause().toString());
+                    return;
+                }
+                Channel channel = (Channel) acquire.getNow();
+                Future<List<ServerPacket>> query = replica.pool.query(channel, healthCheckSql);
+                ScheduledFuture<?> timeout = eventLoop.schedule(() -> {
+                    if (query.isDone()) {
+                        return;
+                    }
+                    replica.setUnhealthy("health check timeout " + healthCheckTimeoutMs + "ms");
+                    channel.close();
+                }, healthCheckTimeoutMs, TimeUnit.MILLISECONDS);
+                query.addListener(future -> {
+                    timeout.cancel(false);
+                    replica.pool.release(channel, true);
+                    if (future.isSuccess()) {
+                        onHealthCheck(replica, query.getNow());
+                    } else {
+                        replica.setUnhealthy(future.cause().toString());
+                    }
+                });
+            });
+        }
+    }
+
+    /**
+     * @param replica replica
+     * @param packets the result of {@link #healthCheckSql}. no row is not a replica, the lag is 0.
+     */
+    protected void onHealthCheck(Replica replica, List<ServerPacket> packets) {
+        int lagIndex = -1;
+        int columnIndex = 0;
+        ServerResultsetRowPacket row = null;
+        for (ServerPacket packet : packets) {
+            if (packet instanceof ServerColumnDefinitionPacket) {
+                if (LAG_COLUMNS.contains(((ServerColumnDefinitionPacket) packet).getName())) {
+                    lagIndex = columnIndex;
+                }
+                columnIndex++;
+            } else if (packet instanceof ServerResultsetRowPacket) {
+                row = (ServerResultsetRowPacket) packet;
+            }
+        }
+        if (row == null) {
+            replica.setHealthy(0);
+            return;
+        }
+        String lag = lagIndex == -1 ? null : row.getValues().get(lagIndex);
+        if (lag == null) {
+            replica.setUnhealthy("the replication is stopped");
+            return;
+        }
+        long lagSeconds;
+        try {
+            lagSeconds = Long.parseLong(lag.trim());
+        } catch (NumberFormatException e) {
+            replica.setUnhealthy("the lag is not number. " + lag);
+            return;
+        }
+        if (maxLagSeconds >= 0 && lagSeconds > maxLagSeconds) {
+            replica.setUnhealthy("the lag " + lagSeconds + "s is more than " + maxLagSeconds + "s");
+            replica.lagSeconds = lagSeconds;
+        } else {
+            replica.setHealthy(lagSeconds);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (healthCheckFuture != null) {
+            healthCheckFuture.cancel(false);
+        }
+        if (healthCheckGroup != null) {
+            healthCheckGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public long getMaxLagSeconds() {
+        return maxLagSeconds;
+    }
+
+    public void setMaxLagSeconds(long maxLagSeconds) {
+        this.maxLagSeconds = maxLagSeconds;
+    }
+
+    public long getHealthCheckIntervalMs() {
+        return healthCheckIntervalMs;
+    }
+
+    public void setHealthCheckIntervalMs(long healthCheckIntervalMs) {
+        this.healthCheckIntervalMs = healthCheckIntervalMs;
+    }
+
+    public long getHealthCheckTimeoutMs() {
+        return healthCheckTimeoutMs;
+    }
+
+    public void setHealthCheckTimeoutMs(long healthCheckTimeoutMs) {
+        this.healthCheckTimeoutMs = healthCheckTimeoutMs;
+    }
+
+    public String getHealthCheckSql() {
+        return healthCheckSql;
+    }
+
+    /**
+     * @param healthCheckSql e.g. SHOW REPLICA STATUS (mysql 8.0.22+)
+     */
+    public void setHealthCheckSql(String healthCheckSql) {
+        this.healthCheckSql = healthCheckSql;
+    }
+
+    public int getMaxSessionStatements() {
+        return maxSessionStatements;
+    }
+
+    public void setMaxSessionStatements(int maxSessionStatements) {
+        this.maxSessionStatements = maxSessionStatements;
+    }
+
+    public static class Replica {
+        private final MysqlBackendPool pool;
+        private final int weight;
+        private volatile boolean healthy = true;
+        /**
+         * the lag of the last health check. -1 is unknown
+         */
+        private volatile long lagSeconds = -1;
+
+        Replica(MysqlBackendPool pool, int weight) {
+            this.pool = Objects.requireNonNull(pool, "pool");
+            this.weight = weight;
+        }
+
+        public boolean isAvailable() {
+            return healthy && weight > 0;
+        }
+
+        boolean isAvailable(String username) {
+            return isAvailable() && (username == null || isUser(username));
+        }
+
+        /**
+         * @param username the user of the session
+         * @return true if the pool login by the user. (the grants is same)
+         */
+        public boolean isUser(String username) {
+            return pool.getUsername().equals(username);
+        }
+
+        void setHealthy(long lagSeconds) {
+            if (!healthy) {
+                logger.info("mysql replica is healthy. {}, lag {}s", pool.getMysqlAddress(), lagSeconds);
+            }
+            this.lagSeconds = lagSeconds;
+            this.healthy = true;
+        }
+
+        void setUnhealthy(String reason) {
+            if (healthy) {
+                logger.warn("mysql replica is unhealthy. {}, {}", pool.getMysqlAddress(), reason);
+            }
+            this.healthy = false;
+        }
+
+        public MysqlBackendPool getPool() {
+            return pool;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public long getLagSeconds() {
+            return lagSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return "Replica[" + pool.getMysqlAddress() + ", weight=" + weight + ", healthy=" + healthy + ", lag=" + lagSeconds + "]";
+        }
+    }
+
+    /**
+     * The route of a session. only access by the event loop of the frontendChannel.
+     */
+    public class Route {
+        private final Session session;
+        private final Supplier<ChannelHandler[]> replicaHandlers;
+        /**
+         * SET NAMES, SET variables, USE database. replay on the replica connection.
+         */
+        private final List<String> sessionStatements = new ArrayList<>();
+        private final GenericFutureListener<ChannelFuture> replicaCloseListener = this::onReplicaClose;
+        private Replica replica;
+        private Channel replicaChannel;
+        private Boolean compatible;
+        /**
+         * the state of the session can not replay, all statements is on the primary.
+         */
+        private boolean pinned;
+        /**
+         * the replica is sending the response. (the client not send the next command yet)
+         */
+        private boolean replicaBusy;
+        private boolean quit;
+
+        Route(Session session, Supplier<ChannelHandler[]> replicaHandlers) {
+            this.session = session;
+            this.replicaHandlers = replicaHandlers;
+            session.getFrontendChannel().closeFuture().addListener(future -> releaseReplica(quit));
+        }
+
+        /**
+         * call by the frontend business handler, before the packet is forward to the primary.
+         *
+         * @param packet the command of the client
+         * @return true if the packet is send to the replica. (the primary not send)
+         */
+        public boolean route(ClientCommandPacket packet) {
+            replicaBusy = false;
+            switch (packet.getCommand()) {
+                case COM_QUERY:
+                    return routeQuery(((ClientQueryPacket) packet).getQuery());
+                case COM_INIT_DB:
+                    if (packet instanceof ClientQueryPacket) {
+                        addSessionStatement("USE `" + ((ClientQueryPacket) packet).getQuery().replace("`", "``") + "`");
+                    } else {
+                        pinned = true;
+                    }
+                    return false;
+                case COM_QUIT:
+                    quit = true;
+                    return false;
+                case COM_RESET_CONNECTION:
+                    sessionStatements.clear();
+                    pinned = false;
+                    releaseReplica(true);
+                    return false;
+                case COM_CHANGE_USER:
+                    pinned = true;
+                    releaseReplica(true);
+                    return false;
+                default:
+                    // the prepared statements and the others, the state is on the primary
+                    return false;
+            }
+        }
+
+        protected boolean routeQuery(String sql) {
+            switch (StatementType.of(sql)) {
+                case SELECT:
+                    if (pinned || session.isInTransaction() || !isCompatible() || !isReplicaUser()) {
+                        return false;
+                    }
+                    return sendToReplica();
+                case SET:
+                case USE:
+                    addSessionStatement(sql);
+                    return false;
+                case LOCK:
+                    pinned = true;
+                    releaseReplica(true);
+                    return false;
+                default:
+                    return false;
+            }
+        }
+
+        private boolean isCompatible() {
+            if (compatible == null) {
+                EnumSet<CapabilityFlags> capabilities = EnumSet.copyOf(session.getFrontendCapabilities());
+                capabilities.retainAll(INCOMPATIBLE_CAPABILITIES);
+                compatible = capabilities.isEmpty();
+            }
+            return compatible;
+        }
+
+        /**
+         * the replica pool login by the pool account. if the user of the session is not the account,
+         * the select on the replica is not checked by the grants of the session user. pin the session to the primary.
+         */
+        private boolean isReplicaUser() {
+            String username = session.getUsername();
+            if (username != null) {
+                for (Replica replica : replicas) {
+                    if (replica.isUser(username)) {
+                        return true;
+                    }
+                }
+            }
+            pinned = true;
+            return false;
+        }
+
+        private void addSessionStatement(String sql) {
+            if (sessionStatements.size() >= maxSessionStatements) {
+                pinned = true;
+            } else {
+                sessionStatements.add(sql);
+            }
+            // the replica connection state is stale, take a new one at the next read
+            releaseReplica(true);
+        }
+
+        private boolean sendToReplica() {
+            Channel primary = session.getBackendChannel();
+            ByteBuf packet = primary == null ? null : MysqlProxyHandler.getReadyWritePacket(primary);
+            if (packet == null || !MysqlProxyHandler.isWholePacket(packet)) {
+                // the query is split into many reads, the head is already forwarded to the primary
+                return false;
+            }
+            if (replicaChannel != null && replicaChannel.isActive()) {
+                MysqlProxyHandler.setReadyWritePacket(primary, null);
+                write(packet);
+                return true;
+            }
+            Replica replica = choose(session.getUsername());
+            if (replica == null) {
+                return false;
+            }
+            MysqlProxyHandler.setReadyWritePacket(primary, null);
+            replicaBusy = true;
+            acquire(replica).addListener(future -> {
+                if (future.isSuccess()) {
+                    write(packet);
+                } else {
+                    logger.debug("route to replica fail, use the primary. {}, {}", replica, future.cause().toString());
+                    replicaBusy = false;
+                    primary.writeAndFlush(packet);
+                }
+            });
+            return true;
+        }
+
+        private void write(ByteBuf packet) {
+            replicaBusy = true;
+            replicaChannel.writeAndFlush(packet);
+        }
+
+        private Future<Channel> acquire(Replica replica) {
+            Channel frontendChannel = session.getFrontendChannel();
+            Promise<Channel> promise = frontendChannel.eventLoop().newPromise();
+            List<String> statements = new ArrayList<>(sessionStatements.size() + 2);
+            // the pool login by the database of the pool, the session start from the database of the client login
+            String database = session.getDatabase();
+            if (database != null && !database.isEmpty()) {
+                statements.add("USE `" + database.replace("`", "``") + "`");
+            }
+            MysqlCharacterSet charset = session.getClientCharset();
+            statements.add("SET NAMES " + charset.getMysqlCharsetName() + " COLLATE " + charset.name());
+            statements.addAll(sessionStatements);
+            replica.pool.acquire(frontendChannel).addListener(future -> {
+                if (!future.isSuccess()) {
+                    promise.setFailure(future.cause());
+                    return;
+                }
+                replay(replica, (Channel) future.getNow(), statements, 0, promise);
+            });
+            return promise;
+        }
+
+        private void replay(Replica replica, Channel channel, List<String> statements, int index, Promise<Channel> promise) {
+            if (index == statements.size()) {
+                if (!session.getFrontendChannel().isActive()) {
+                    replica.pool.release(channel, true);
+                    promise.setFailure(new ProxyException(ProxyException.ERROR_BACKEND_NO_CONNECTION, "client channel closed"));
+                    return;
+                }
+                replica.pool.bind(channel, replicaHandlers.get());
+                this.replica = replica;
+                this.replicaChannel = channel;
+                channel.closeFuture().addListener(replicaCloseListener);
+                promise.setSuccess(channel);
+                return;
+            }
+            replica.pool.command(channel, new ClientQueryPacket(0, statements.get(index))).addListener(future -> {
+                if (future.isSuccess()) {
+                    replay(replica, channel, statements, index + 1, promise);
+                } else {
+                    // e.g. the variable not exist on the replica
+                    pinned = true;
+                    replica.pool.release(channel, true);
+                    promise.setFailure(future.cause());
+                }
+            });
+        }
+
+        private void releaseReplica(boolean reusable) {
+            Channel channel = this.replicaChannel;
+            if (channel == null) {
+                return;
+            }
+            this.replicaChannel = null;
+            channel.closeFuture().removeListener(replicaCloseListener);
+            replica.pool.release(channel, reusable && !replicaBusy);
+            replica = null;
+        }
+
+        private void onReplicaClose(ChannelFuture future) {
+            if (future.channel() != replicaChannel) {
+                return;
+            }
+            replicaChannel = null;
+            replica = null;
+            if (replicaBusy) {
+                // the response is not complete, the client can not continue
+                session.getFrontendChannel().close();
+            }
+        }
+
+        public boolean isPinned() {
+            return pinned;
+        }
+
+        public Channel getReplicaChannel() {
+            return replicaChannel;
+        }
+    }
+}
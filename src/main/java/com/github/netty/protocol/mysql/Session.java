@@ -10,6 +10,7 @@ import io.netty.util.concurrent.GenericFutureListener;
 
 import java.util.EnumSet;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public class Session {
     private static final AttributeKey<Session> SESSION_KEY = AttributeKey.valueOf(Session.class.getName() + "#Session");
@@ -21,10 +22,28 @@ public class Session {
     private static final LoggerX logger = LoggerFactoryX.getLogger(Session.class);
     private volatile Channel frontendChannel;
     private volatile Channel backendChannel;
+    private volatile Consumer<Channel> backendChannelRelease;
+    private ConnectionCloseFutureListener backendCloseListener;
     private String id;
     private Integer connectionId;
+    /**
+     * the user of the client login
+     */
+    private String username;
+    /**
+     * the database of the client login
+     */
+    private String database;
     private MysqlCharacterSet clientCharacterSet;
     private MysqlCharacterSet serverCharacterSet;
+    /**
+     * false = the rows of the result set is forwarded without decode. (passthrough mode)
+     */
+    private boolean decodeResultsetRow = true;
+    /**
+     * the status of the last OK or EOF packet of the backendChannel
+     */
+    private volatile Set<ServerStatusFlag> serverStatus = EnumSet.of(ServerStatusFlag.AUTO_COMMIT);
 
     public Session() {
     }
@@ -60,6 +79,9 @@ public class Session {
     }
 
     private EnumSet<CapabilityFlags> getCapabilities(Channel frontendChannel) {
+        if (frontendChannel == null) {
+            return CapabilityFlags.getImplicitCapabilities();
+        }
         Attribute<EnumSet<CapabilityFlags>> attr = frontendChannel.attr(CAPABILITIES_ATTR);
         EnumSet<CapabilityFlags> capabilityFlags = attr.get();
         if (capabilityFlags == null) {
@@ -107,14 +129,64 @@ public class Session {
         backendChannel.attr(CONNECTION_ID_KEY).set(connectionId);
     }
 
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public void setDatabase(String database) {
+        this.database = database;
+    }
+
+    public boolean isDecodeResultsetRow() {
+        return decodeResultsetRow;
+    }
+
+    public void setDecodeResultsetRow(boolean decodeResultsetRow) {
+        this.decodeResultsetRow = decodeResultsetRow;
+    }
+
+    public Set<ServerStatusFlag> getServerStatus() {
+        return serverStatus;
+    }
+
+    public void setServerStatus(Set<ServerStatusFlag> serverStatus) {
+        this.serverStatus = serverStatus;
+    }
+
+    /**
+     * @return true if in the transaction, or the autocommit is off (the next statement begin a transaction)
+     */
+    public boolean isInTransaction() {
+        Set<ServerStatusFlag> serverStatus = this.serverStatus;
+        return serverStatus.contains(ServerStatusFlag.IN_TRANSACTION) || !serverStatus.contains(ServerStatusFlag.AUTO_COMMIT);
+    }
+
     public Channel getBackendChannel() {
         return this.backendChannel;
     }
 
     public void setBackendChannel(Channel backendChannel) {
+        setBackendChannel(backendChannel, null);
+    }
+
+    /**
+     * @param backendChannel        backendChannel
+     * @param backendChannelRelease if not null, when the frontendChannel closed, the backendChannel is give to it instead of close. (e.g. return to the pool)
+     */
+    public void setBackendChannel(Channel backendChannel, Consumer<Channel> backendChannelRelease) {
         this.backendChannel = backendChannel;
+        this.backendChannelRelease = backendChannelRelease;
+        this.backendCloseListener = new ConnectionCloseFutureListener(this);
         backendChannel.attr(SESSION_KEY).set(this);
-        backendChannel.closeFuture().addListener(new ConnectionCloseFutureListener(this));
+        backendChannel.closeFuture().addListener(backendCloseListener);
     }
 
     public Channel getFrontendChannel() {
@@ -147,7 +219,14 @@ public class Session {
             if (ch == frontendChannel) {
                 logger.info("client channel closed ! [{}]", frontendChannel);
                 // frontendChannel connection close but it's mysqlChannel connection is still active or open, close it!
-                if (backendChannel != null) {
+                Consumer<Channel> backendChannelRelease = session.backendChannelRelease;
+                if (backendChannel != null && backendChannelRelease != null) {
+                    // the backendChannel is reused by other session, unbind it
+                    backendChannel.closeFuture().removeListener(session.backendCloseListener);
+                    backendChannel.attr(SESSION_KEY).set(null);
+                    session.backendChannelRelease = null;
+                    backendChannelRelease.accept(backendChannel);
+                } else if (backendChannel != null) {
                     if (backendChannel.isActive() || backendChannel.isOpen()) {
                         backendChannel.close();
                     }
@@ -31,6 +31,9 @@ public class ClientCommandDecoder extends AbstractPacketDecoder implements Clien
             case COM_QUERY:
                 out.add(new ClientQueryPacket(sequenceId, CodecUtils.readFixedLengthString(packet, packet.readableBytes(), clientCharset.getCharset())));
                 break;
+            case COM_INIT_DB:
+                out.add(new ClientQueryPacket(sequenceId, command, CodecUtils.readFixedLengthString(packet, packet.readableBytes(), clientCharset.getCharset())));
+                break;
             default:
                 out.add(new ClientCommandPacket(sequenceId, command));
         }
@@ -25,7 +25,16 @@ public class ClientQueryPacket extends ClientCommandPacket {
     private final String query;
 
     public ClientQueryPacket(int sequenceId, String query) {
-        super(sequenceId, Command.COM_QUERY);
+        this(sequenceId, Command.COM_QUERY, query);
+    }
+
+    /**
+     * @param sequenceId sequenceId
+     * @param command    the command with a string argument. (e.g. COM_QUERY, COM_INIT_DB)
+     * @param query      the string argument
+     */
+    public ClientQueryPacket(int sequenceId, Command command, String query) {
+        super(sequenceId, command);
         this.query = query;
     }
 
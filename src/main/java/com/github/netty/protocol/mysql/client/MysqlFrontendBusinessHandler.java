@@ -35,6 +35,14 @@ public class MysqlFrontendBusinessHandler extends AbstractChannelHandler<ClientP
     private int maxPacketSize;
     private Session session;
     private Collection<MysqlPacketListener> mysqlPacketListeners;
+    /**
+     * read/write splitting. null is all on the backendChannel
+     */
+    private MysqlReplicaRouter.Route replicaRoute;
+    /**
+     * the result set cache. null is not cache
+     */
+    private MysqlQueryCache.SessionCache queryCache;
 
     public MysqlFrontendBusinessHandler() {
         super(false);
@@ -44,6 +52,14 @@ public class MysqlFrontendBusinessHandler extends AbstractChannelHandler<ClientP
     protected void onMessageReceived(ChannelHandlerContext ctx, ClientPacket msg) throws Exception {
         if (msg instanceof ClientHandshakePacket) {
             onHandshake(ctx, (ClientHandshakePacket) msg);
+        } else if (msg instanceof ClientCommandPacket) {
+            // the cache hit take the packet of the backend, the route see nothing to send
+            if (queryCache != null) {
+                queryCache.onCommand((ClientCommandPacket) msg);
+            }
+            if (replicaRoute != null) {
+                replicaRoute.route((ClientCommandPacket) msg);
+            }
         }
         if (mysqlPacketListeners != null && !mysqlPacketListeners.isEmpty()) {
             for (MysqlPacketListener mysqlPacketListener : mysqlPacketListeners) {
@@ -72,6 +88,8 @@ public class MysqlFrontendBusinessHandler extends AbstractChannelHandler<ClientP
     protected void onHandshake(ChannelHandlerContext ctx, ClientHandshakePacket packet) {
         session.setClientCharsetAttr(packet.getCharacterSet());
         session.setFrontendCapabilities(packet.getCapabilities());
+        session.setUsername(packet.getUsername());
+        session.setDatabase(packet.getDatabase());
     }
 
     protected void onHandshakeSuccessful(ChannelHandlerContext ctx, EventHandshakeSuccessful event) {
@@ -219,6 +237,22 @@ public class MysqlFrontendBusinessHandler extends AbstractChannelHandler<ClientP
         this.session = session;
     }
 
+    public MysqlReplicaRouter.Route getReplicaRoute() {
+        return replicaRoute;
+    }
+
+    public void setReplicaRoute(MysqlReplicaRouter.Route replicaRoute) {
+        this.replicaRoute = replicaRoute;
+    }
+
+    public MysqlQueryCache.SessionCache getQueryCache() {
+        return queryCache;
+    }
+
+    public void setQueryCache(MysqlQueryCache.SessionCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
     public Collection<MysqlPacketListener> getMysqlPacketListeners() {
         return mysqlPacketListeners;
     }
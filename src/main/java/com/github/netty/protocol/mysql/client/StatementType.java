@@ -0,0 +1,168 @@
+package com.github.netty.protocol.mysql.client;
+
+/**
+ * The type of the COM_QUERY statement. (by the first keyword, not parse the full sql)
+ * <p>
+ * the classify is conservative. if not sure, it is {@link #OTHER} or {@link #LOCKING_SELECT}, the statement is execute on the primary.
+ */
+public enum StatementType {
+    /**
+     * the read only select. can execute on the replica.
+     */
+    SELECT,
+    /**
+     * select ... for update, lock in share mode, into, or call the function that depend on the connection. (e.g. last_insert_id())
+     * or change the state of the connection. (sql_calc_found_rows for the next found_rows(), assign the user variable by :=)
+     */
+    LOCKING_SELECT,
+    /**
+     * SET the session variables. (not the autocommit and transaction)
+     */
+    SET,
+    /**
+     * USE database
+     */
+    USE,
+    /**
+     * BEGIN, START TRANSACTION, COMMIT, ROLLBACK, SAVEPOINT, SET autocommit, SET TRANSACTION, XA...
+     */
+    TRANSACTION,
+    /**
+     * LOCK TABLES, UNLOCK TABLES, CREATE TEMPORARY TABLE. the session state can not replay.
+     */
+    LOCK,
+    /**
+     * INSERT, UPDATE, DELETE, REPLACE, DDL...
+     */
+    WRITE,
+    /**
+     * SHOW, EXPLAIN, CALL, multi statements...
+     */
+    OTHER;
+
+    private static final String[] LOCKING_SELECT_KEYWORDS = {
+            " for update", " for share", " lock in share mode", " into ",
+            "get_lock(", "release_lock(", "is_used_lock(", "last_insert_id(", "found_rows(", "row_count(", "nextval(",
+            "sql_calc_found_rows", ":="};
+    private static final String[] WRITE_KEYWORDS = {
+            "insert", "update", "delete", "replace", "alter", "drop", "truncate", "create", "rename", "load"};
+
+    public static StatementType of(String sql) {
+        if (sql == null) {
+            return OTHER;
+        }
+        int start = skipComment(sql, 0);
+        int end = sql.length();
+        while (end > start && (Character.isWhitespace(sql.charAt(end - 1)) || sql.charAt(end - 1) == ';')) {
+            end--;
+        }
+        int semicolon = sql.indexOf(';', start);
+        if (semicolon != -1 && semicolon < end) {
+            // multi statements
+            return OTHER;
+        }
+        // the keywords match with a single space. (select ...\nfor update, select ...\tfor share)
+        String lower = collapseWhitespace(sql.substring(start, end).toLowerCase());
+        String keyword = firstKeyword(lower);
+        switch (keyword) {
+            case "select":
+                for (String locking : LOCKING_SELECT_KEYWORDS) {
+                    if (lower.contains(locking)) {
+                        return LOCKING_SELECT;
+                    }
+                }
+                return SELECT;
+            case "set":
+                String next = firstKeyword(lower.substring(3).trim());
+                if (lower.contains("autocommit") || "transaction".equals(next)
+                        || (("session".equals(next) || "local".equals(next)) && lower.contains(" transaction "))) {
+                    return TRANSACTION;
+                }
+                return SET;
+            case "use":
+                return USE;
+            case "begin":
+            case "start":
+            case "commit":
+            case "rollback":
+            case "savepoint":
+            case "release":
+            case "xa":
+                return TRANSACTION;
+            case "lock":
+            case "unlock":
+                return LOCK;
+            case "create":
+                if (lower.startsWith("create temporary")) {
+                    return LOCK;
+                }
+                return WRITE;
+            default:
+                for (String write : WRITE_KEYWORDS) {
+                    if (write.equals(keyword)) {
+                        return WRITE;
+                    }
+                }
+                return OTHER;
+        }
+    }
+
+    /**
+     * @param sql   sql
+     * @param index the begin index
+     * @return the index of the first char that not the whitespace, comment, or open parenthesis. ((select ...) union ...)
+     */
+    public static int skipComment(String sql, int index) {
+        int length = sql.length();
+        while (index < length) {
+            char c = sql.charAt(index);
+            if (Character.isWhitespace(c) || c == '(') {
+                index++;
+            } else if (c == '/' && sql.startsWith("/*", index)) {
+                int end = sql.indexOf("*/", index + 2);
+                index = end == -1 ? length : end + 2;
+            } else if (c == '#' || (c == '-' && sql.startsWith("--", index))) {
+                int end = sql.indexOf('\n', index);
+                index = end == -1 ? length : end + 1;
+            } else {
+                break;
+            }
+        }
+        return index;
+    }
+
+    private static String collapseWhitespace(String sql) {
+        StringBuilder builder = null;
+        int length = sql.length();
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                if (builder != null) {
+                    builder.append(c);
+                }
+                continue;
+            }
+            int end = i + 1;
+            while (end < length && Character.isWhitespace(sql.charAt(end))) {
+                end++;
+            }
+            if (builder == null) {
+                if (c == ' ' && end == i + 1) {
+                    continue;
+                }
+                builder = new StringBuilder(length).append(sql, 0, i);
+            }
+            builder.append(' ');
+            i = end - 1;
+        }
+        return builder == null ? sql : builder.toString();
+    }
+
+    private static String firstKeyword(String lower) {
+        int end = 0;
+        while (end < lower.length() && Character.isLetter(lower.charAt(end))) {
+            end++;
+        }
+        return lower.substring(0, end);
+    }
+}
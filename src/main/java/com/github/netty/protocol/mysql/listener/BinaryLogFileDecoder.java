@@ -0,0 +1,304 @@
+package com.github.netty.protocol.mysql.listener;
+
+import com.github.netty.protocol.mysql.CapabilityFlags;
+import com.github.netty.protocol.mysql.CodecUtils;
+import com.github.netty.protocol.mysql.Command;
+import com.github.netty.protocol.mysql.ServerStatusFlag;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static com.github.netty.protocol.mysql.listener.BinaryLogFilePacketListener.*;
+
+/**
+ * Offline decoder of the {@link BinaryLogFilePacketListener} segments. one json object per line, oldest first.
+ * <pre>
+ * java -cp spring-boot-protocol.jar com.github.netty.protocol.mysql.listener.BinaryLogFileDecoder {dir or segment file}... [&gt; out.json]
+ * </pre>
+ *
+ * @author wangzihao
+ */
+public class BinaryLogFileDecoder {
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    private final StringBuilder sb = new StringBuilder();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: BinaryLogFileDecoder {dir or segment file}...");
+            System.exit(1);
+            return;
+        }
+        List<File> files = new ArrayList<>();
+        for (String arg : args) {
+            File file = new File(arg);
+            File[] children = file.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+            if (children != null) {
+                files.addAll(Arrays.asList(children));
+            } else {
+                files.add(file);
+            }
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 65536);
+        new BinaryLogFileDecoder().decode(files, out);
+        out.flush();
+    }
+
+    /**
+     * @param file segment file
+     * @return the sequence of the segment. 0 = not exist or not a segment
+     * @throws IOException IOException
+     */
+    public static long readSequence(File file) throws IOException {
+        if (!file.isFile() || file.length() < SEGMENT_HEADER_LENGTH) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_LENGTH);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                // read the header
+            }
+            header.flip();
+            if (header.remaining() < SEGMENT_HEADER_LENGTH || header.getInt() != MAGIC) {
+                return 0;
+            }
+            header.getShort();
+            header.getShort();
+            return header.getLong();
+        }
+    }
+
+    /**
+     * decode the segments in the order of the sequence
+     *
+     * @param files segment files
+     * @param out   json lines
+     * @throws IOException IOException
+     */
+    public void decode(Collection<File> files, Appendable out) throws IOException {
+        TreeMap<Long, File> segments = new TreeMap<>();
+        for (File file : files) {
+            long sequence = readSequence(file);
+            if (sequence > 0) {
+                segments.put(sequence, file);
+            }
+        }
+        for (Map.Entry<Long, File> entry : segments.entrySet()) {
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(entry.getValue().toPath(), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            decode(entry.getKey(), buffer, out);
+        }
+    }
+
+    /**
+     * @param sequence the sequence of the segment
+     * @param segment  the segment bytes, start at the segment header
+     * @param out      json lines
+     * @throws IOException IOException
+     */
+    public void decode(long sequence, ByteBuffer segment, Appendable out) throws IOException {
+        segment.position(segment.getShort(6));
+        while (segment.remaining() >= RECORD_HEADER_LENGTH) {
+            int start = segment.position();
+            int recordLength = segment.getInt(start);
+            if (recordLength < RECORD_HEADER_LENGTH || recordLength > segment.remaining()) {
+                break;
+            }
+            ByteBuffer record = segment.duplicate();
+            record.limit(start + recordLength).position(start + 4);
+            sb.setLength(0);
+            appendRecord(sequence, record);
+            out.append(sb).append('\n');
+            segment.position(start + recordLength);
+        }
+    }
+
+    private void appendRecord(long sequence, ByteBuffer record) {
+        byte type = record.get();
+        byte handlerType = record.get();
+        int sequenceId = record.get() & 0xFF;
+        byte flags = record.get();
+        long timestamp = record.getLong();
+        int connectionId = record.getInt();
+        int code = record.getInt();
+        long value1 = record.getLong();
+        long value2 = record.getLong();
+        List<String> strings = new ArrayList<>();
+        while (record.remaining() >= 4) {
+            int length = record.getInt();
+            if (length < 0) {
+                strings.add(null);
+                continue;
+            }
+            length = Math.min(length, record.remaining());
+            byte[] bytes = new byte[length];
+            record.get(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        sb.append("{\"segment\":").append(sequence);
+        sb.append(",\"timestamp\":\"").append(dateFormat.format(new Date(timestamp))).append('"');
+        sb.append(",\"type\":\"").append(typeName(type)).append('"');
+        if (handlerType != 0) {
+            sb.append(",\"handlerType\":\"").append(handlerType == HANDLER_TYPE_BACKEND ? "backend" : "frontend").append('"');
+            sb.append(",\"connectionId\":").append(connectionId);
+            sb.append(",\"sequenceId\":").append(sequenceId);
+        }
+        switch (type) {
+            case TYPE_COMMAND: {
+                Command command = Command.findByCommandCode(code);
+                appendString("command", command != null ? command.name() : String.valueOf(code));
+                if (!strings.isEmpty()) {
+                    appendString("query", strings.get(0));
+                }
+                break;
+            }
+            case TYPE_LOGIN: {
+                sb.append(",\"charset\":").append(code);
+                appendString("capabilities", String.valueOf(CodecUtils.toEnumSet(CapabilityFlags.class, value1)));
+                appendStrings(strings, "sessionId", "username", "database");
+                break;
+            }
+            case TYPE_HANDSHAKE: {
+                sb.append(",\"serverConnectionId\":").append(code);
+                appendString("capabilities", String.valueOf(CodecUtils.toEnumSet(CapabilityFlags.class, value1)));
+                appendStrings(strings, "serverVersion");
+                break;
+            }
+            case TYPE_OK: {
+                sb.append(",\"affectedRows\":").append(value1);
+                sb.append(",\"lastInsertId\":").append(value2);
+                appendStatus(code);
+                appendStrings(strings, "info");
+                break;
+            }
+            case TYPE_EOF: {
+                appendStatus(code);
+                break;
+            }
+            case TYPE_ERROR: {
+                sb.append(",\"errorNumber\":").append(code);
+                appendStrings(strings, "sqlState", "message");
+                break;
+            }
+            case TYPE_COLUMN_COUNT: {
+                sb.append(",\"fieldCount\":").append(code);
+                break;
+            }
+            case TYPE_COLUMN_DEFINITION: {
+                sb.append(",\"columnType\":").append(code);
+                sb.append(",\"columnLength\":").append(value1);
+                appendStrings(strings, "schema", "table", "name");
+                break;
+            }
+            case TYPE_ROW: {
+                sb.append(",\"values\":[");
+                for (int i = 0; i < strings.size(); i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    appendJson(strings.get(i));
+                }
+                sb.append(']');
+                break;
+            }
+            case TYPE_DROPPED: {
+                sb.append(",\"dropped\":").append(value1);
+                break;
+            }
+            default: {
+                appendStrings(strings, "packet");
+                break;
+            }
+        }
+        if ((flags & FLAG_TRUNCATED) != 0) {
+            sb.append(",\"truncated\":true");
+        }
+        sb.append('}');
+    }
+
+    private void appendStatus(int code) {
+        sb.append(",\"warnings\":").append(code >>> 16);
+        appendString("statusFlags", String.valueOf(CodecUtils.toEnumSet(ServerStatusFlag.class, code & 0xFFFF)));
+    }
+
+    private void appendStrings(List<String> strings, String... names) {
+        for (int i = 0; i < names.length && i < strings.size(); i++) {
+            appendString(names[i], strings.get(i));
+        }
+    }
+
+    private void appendString(String name, String value) {
+        sb.append(",\"").append(name).append("\":");
+        appendJson(value);
+    }
+
+    private void appendJson(String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        sb.append('"');
+    }
+
+    private static String typeName(byte type) {
+        switch (type) {
+            case TYPE_COMMAND:
+                return "COMMAND";
+            case TYPE_LOGIN:
+                return "LOGIN";
+            case TYPE_HANDSHAKE:
+                return "HANDSHAKE";
+            case TYPE_OK:
+                return "OK";
+            case TYPE_ERROR:
+                return "ERROR";
+            case TYPE_EOF:
+                return "EOF";
+            case TYPE_COLUMN_COUNT:
+                return "COLUMN_COUNT";
+            case TYPE_COLUMN_DEFINITION:
+                return "COLUMN_DEFINITION";
+            case TYPE_ROW:
+                return "ROW";
+            case TYPE_DROPPED:
+                return "DROPPED";
+            default:
+                return "OTHER";
+        }
+    }
+}
@@ -0,0 +1,570 @@
+package com.github.netty.protocol.mysql.listener;
+
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import com.github.netty.core.util.ThreadFactoryX;
+import com.github.netty.protocol.mysql.CodecUtils;
+import com.github.netty.protocol.mysql.Constants;
+import com.github.netty.protocol.mysql.MysqlPacket;
+import com.github.netty.protocol.mysql.ServerStatusFlag;
+import com.github.netty.protocol.mysql.Session;
+import com.github.netty.protocol.mysql.client.ClientCommandPacket;
+import com.github.netty.protocol.mysql.client.ClientHandshakePacket;
+import com.github.netty.protocol.mysql.client.ClientQueryPacket;
+import com.github.netty.protocol.mysql.server.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Binary packet log. low overhead, can keep open in the production.
+ * <p>
+ * 1. the event loop only offer the packet to a bounded lock-free MPSC queue. if the queue is full, the packet is dropped and counted.
+ * 2. one writer thread encode the packets to fixed layout records, and write to a ring of memory-mapped segment files
+ * ({@link #SEGMENT_PREFIX}{index}{@link #SEGMENT_SUFFIX}). when all segments are full, the oldest segment is overwritten.
+ * 3. sampling by the session, a sampled session logs all packets. (the request and response are always together)
+ * 4. read the log by {@link BinaryLogFileDecoder}, it renders the records as json.
+ * <p>
+ * Segment format: [segment header][record]...[int 0]
+ * segment header: [int magic][short version][short headerLength][long sequence][long createTime][int segmentBytes][int reserved]
+ * <p>
+ * Record format: [int recordLength][byte type][byte handlerType][byte sequenceId][byte flags][long timestamp]
+ * [int connectionId][int code][long value1][long value2][payload]
+ * payload: the strings of the type, [int utf8Length (-1 = null)][utf8]...
+ * <p>
+ * the recordLength is written after the record, and a 0 is kept after the last record.
+ * so the decoder stop at the broken tail (crash while writing) or the old records of the overwritten segment.
+ *
+ * @author wangzihao
+ */
+public class BinaryLogFilePacketListener implements MysqlPacketListener, Closeable {
+    public static final int MAGIC = 0x4D594C47;
+    public static final short VERSION = 1;
+    public static final int SEGMENT_HEADER_LENGTH = 32;
+    public static final int RECORD_HEADER_LENGTH = 40;
+    public static final String SEGMENT_PREFIX = "mysql-packet-";
+    public static final String SEGMENT_SUFFIX = ".binlog";
+
+    /**
+     * client command. code = command code, payload = [query] (COM_QUERY, COM_INIT_DB...)
+     */
+    public static final byte TYPE_COMMAND = 1;
+    /**
+     * client handshake. code = charset, value1 = capabilities, payload = [sessionId, username, database]
+     */
+    public static final byte TYPE_LOGIN = 2;
+    /**
+     * server handshake. code = connectionId, value1 = capabilities, payload = [serverVersion]
+     */
+    public static final byte TYPE_HANDSHAKE = 3;
+    /**
+     * code = statusFlags | warnings &lt;&lt; 16, value1 = affectedRows, value2 = lastInsertId, payload = [info]
+     */
+    public static final byte TYPE_OK = 4;
+    /**
+     * code = errorNumber, payload = [sqlState, message]
+     */
+    public static final byte TYPE_ERROR = 5;
+    /**
+     * code = statusFlags | warnings &lt;&lt; 16
+     */
+    public static final byte TYPE_EOF = 6;
+    /**
+     * code = fieldCount
+     */
+    public static final byte TYPE_COLUMN_COUNT = 7;
+    /**
+     * code = column type, value1 = columnLength, payload = [schema, table, name]
+     */
+    public static final byte TYPE_COLUMN_DEFINITION = 8;
+    /**
+     * payload = the values of the row
+     */
+    public static final byte TYPE_ROW = 9;
+    /**
+     * the writer is slower than the proxy. value1 = the dropped packet count
+     */
+    public static final byte TYPE_DROPPED = 10;
+    /**
+     * other packet. payload = [packet.toString()]
+     */
+    public static final byte TYPE_OTHER = 11;
+
+    public static final byte HANDLER_TYPE_FRONTEND = 1;
+    public static final byte HANDLER_TYPE_BACKEND = 2;
+    /**
+     * the payload is larger than maxPayloadBytes. the string over the budget is cut, the strings after it is dropped
+     */
+    public static final byte FLAG_TRUNCATED = 1;
+
+    private static final LoggerX logger = LoggerFactoryX.getLogger(BinaryLogFilePacketListener.class);
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final File dir;
+    private final int segmentBytes;
+    private final int segmentCount;
+    private boolean enable = true;
+    private int queueCapacity = 65536;
+    private int maxPayloadBytes = 4096;
+    private int sampleThreshold = 65536;
+    private boolean logResultsetRow = false;
+    private long forceIntervalMs = 1000;
+    private volatile Queue<Entry> queue;
+    private volatile Writer writer;
+
+    public BinaryLogFilePacketListener(String path) {
+        this(path, 64 * 1024 * 1024, 8);
+    }
+
+    /**
+     * @param path         the dir of the segment files
+     * @param segmentBytes the size of one segment file
+     * @param segmentCount the count of the segment files. the log keeps at most segmentBytes * segmentCount bytes
+     */
+    public BinaryLogFilePacketListener(String path, int segmentBytes, int segmentCount) {
+        if (segmentBytes < SEGMENT_HEADER_LENGTH + RECORD_HEADER_LENGTH + 4 || segmentCount < 2) {
+            throw new IllegalArgumentException("segmentBytes=" + segmentBytes + ", segmentCount=" + segmentCount);
+        }
+        this.dir = new File(path);
+        this.segmentBytes = segmentBytes;
+        this.segmentCount = segmentCount;
+        setMaxPayloadBytes(maxPayloadBytes);
+    }
+
+    /**
+     * open the next segment and start the writer thread.
+     */
+    public synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IllegalStateException("mysql binary log mkdirs fail. dir=" + dir);
+        }
+        queue = PlatformDependent.newFixedMpscQueue(queueCapacity);
+        Writer writer = new Writer();
+        try {
+            writer.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("mysql binary log open fail. dir=" + dir + ", error=" + e, e);
+        }
+        new ThreadFactoryX("Mysql-binlog", getClass(), Thread.NORM_PRIORITY, true).newThread(writer).start();
+        this.writer = writer;
+    }
+
+    /**
+     * write the queued packets, flush the segment and stop the writer thread.
+     */
+    @Override
+    public synchronized void close() {
+        Writer writer = this.writer;
+        if (writer == null) {
+            return;
+        }
+        this.writer = null;
+        writer.closed = true;
+        LockSupport.unpark(writer.thread);
+        try {
+            writer.stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isSubscribeResultsetRow() {
+        return enable && logResultsetRow;
+    }
+
+    @Override
+    public void onMysqlPacket(MysqlPacket packet, ChannelHandlerContext currentContext, Session session, String handlerType) {
+        if (!enable || writer == null) {
+            return;
+        }
+        if (!logResultsetRow && (packet instanceof ServerResultsetRowPacket || packet instanceof ServerColumnDefinitionPacket)) {
+            return;
+        }
+        if (sampleThreshold < 65536 && ((System.identityHashCode(session) * 0x9E3779B9) >>> 16) >= sampleThreshold) {
+            return;
+        }
+        Integer connectionId = session.getConnectionId();
+        Entry entry = new Entry(packet, session.getId(), connectionId != null ? connectionId : -1,
+                Constants.HANDLER_TYPE_BACKEND.equals(handlerType) ? HANDLER_TYPE_BACKEND : HANDLER_TYPE_FRONTEND);
+        if (!queue.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public boolean isEnable() {
+        return enable;
+    }
+
+    public void setEnable(boolean enable) {
+        this.enable = enable;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @param queueCapacity the max packets that wait for the writer. set before {@link #start()}
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getMaxPayloadBytes() {
+        return maxPayloadBytes;
+    }
+
+    /**
+     * @param maxPayloadBytes the strings of one record (sql, row values) is cut if larger than this
+     */
+    public void setMaxPayloadBytes(int maxPayloadBytes) {
+        this.maxPayloadBytes = Math.min(maxPayloadBytes, segmentBytes - SEGMENT_HEADER_LENGTH - RECORD_HEADER_LENGTH - 4);
+    }
+
+    public double getSampleRate() {
+        return sampleThreshold / 65536D;
+    }
+
+    /**
+     * @param sampleRate 0-1. the ratio of the sessions that is logged. 1 = all sessions
+     */
+    public void setSampleRate(double sampleRate) {
+        this.sampleThreshold = (int) Math.round(Math.max(0D, Math.min(1D, sampleRate)) * 65536);
+    }
+
+    public boolean isLogResultsetRow() {
+        return logResultsetRow;
+    }
+
+    /**
+     * @param logResultsetRow true = log the column definitions and the rows of the result set. (the passthrough mode will decode the rows)
+     */
+    public void setLogResultsetRow(boolean logResultsetRow) {
+        this.logResultsetRow = logResultsetRow;
+    }
+
+    public long getForceIntervalMs() {
+        return forceIntervalMs;
+    }
+
+    /**
+     * @param forceIntervalMs force the segment to the disk if not forced in this interval. 0 = never,
+     *                        the operating system writes the page cache (not lost on the process crash)
+     */
+    public void setForceIntervalMs(long forceIntervalMs) {
+        this.forceIntervalMs = forceIntervalMs;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public static File segmentFile(File dir, int index) {
+        return new File(dir, SEGMENT_PREFIX + index + SEGMENT_SUFFIX);
+    }
+
+    private static int statusAndWarnings(Set<ServerStatusFlag> statusFlags, int warnings) {
+        return (int) (CodecUtils.toLong(statusFlags) & 0xFFFF) | (warnings << 16);
+    }
+
+    private static class Entry {
+        private final MysqlPacket packet;
+        private final String sessionId;
+        private final int connectionId;
+        private final byte handlerType;
+
+        Entry(MysqlPacket packet, String sessionId, int connectionId, byte handlerType) {
+            this.packet = packet;
+            this.sessionId = sessionId;
+            this.connectionId = connectionId;
+            this.handlerType = handlerType;
+        }
+    }
+
+    private class Writer implements Runnable {
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        private volatile boolean closed;
+        private volatile Thread thread;
+        private MappedByteBuffer mapped;
+        private ByteBuf buf;
+        private int index = -1;
+        private long sequence;
+        private long forceTime;
+        private boolean dirty;
+
+        /**
+         * continue after the newest segment of the last run
+         */
+        void open() throws IOException {
+            long maxSequence = 0;
+            for (int i = 0; i < segmentCount; i++) {
+                long sequence = BinaryLogFileDecoder.readSequence(segmentFile(dir, i));
+                if (sequence > maxSequence) {
+                    maxSequence = sequence;
+                    index = i;
+                }
+            }
+            sequence = maxSequence;
+            roll();
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                while (true) {
+                    Entry entry = queue.poll();
+                    if (entry == null) {
+                        if (closed) {
+                            break;
+                        }
+                        writeDropped();
+                        force(false);
+                        LockSupport.parkNanos(1_000_000L);
+                        continue;
+                    }
+                    try {
+                        write(entry);
+                    } catch (Exception e) {
+                        logger.warn("mysql binary log write fail. packet={}, error={}", entry.packet, e.toString(), e);
+                    }
+                }
+                writeDropped();
+                force(true);
+            } catch (Throwable e) {
+                logger.error("mysql binary log writer stop. dir={}, error={}", dir, e.toString(), e);
+            } finally {
+                unmap();
+                stopped.countDown();
+            }
+        }
+
+        private void writeDropped() throws IOException {
+            if (dropped.get() == 0) {
+                return;
+            }
+            long count = dropped.getAndSet(0);
+            writeRecord(TYPE_DROPPED, (byte) 0, 0, System.currentTimeMillis(), -1, 0, count, 0, Collections.emptyList());
+        }
+
+        private void write(Entry entry) throws IOException {
+            MysqlPacket packet = entry.packet;
+            byte type;
+            int code = 0;
+            long value1 = 0;
+            long value2 = 0;
+            List<? extends CharSequence> strings;
+            if (packet instanceof ServerResultsetRowPacket) {
+                type = TYPE_ROW;
+                strings = ((ServerResultsetRowPacket) packet).getValues();
+            } else if (packet instanceof ClientQueryPacket) {
+                type = TYPE_COMMAND;
+                code = ((ClientQueryPacket) packet).getCommand().getCommandCode();
+                strings = Collections.singletonList(((ClientQueryPacket) packet).getQuery());
+            } else if (packet instanceof ClientCommandPacket) {
+                type = TYPE_COMMAND;
+                code = ((ClientCommandPacket) packet).getCommand().getCommandCode();
+                strings = Collections.emptyList();
+            } else if (packet instanceof ServerOkPacket) {
+                ServerOkPacket ok = (ServerOkPacket) packet;
+                type = TYPE_OK;
+                code = statusAndWarnings(ok.getStatusFlags(), ok.getWarnings());
+                value1 = ok.getAffectedRows();
+                value2 = ok.getLastInsertId();
+                strings = Collections.singletonList(ok.getInfo());
+            } else if (packet instanceof ServerEofPacket) {
+                ServerEofPacket eof = (ServerEofPacket) packet;
+                type = TYPE_EOF;
+                code = statusAndWarnings(eof.getStatusFlags(), eof.getWarnings());
+                strings = Collections.emptyList();
+            } else if (packet instanceof ServerErrorPacket) {
+                ServerErrorPacket error = (ServerErrorPacket) packet;
+                type = TYPE_ERROR;
+                code = error.getErrorNumber();
+                strings = Arrays.asList(new String(error.getSqlState(), StandardCharsets.US_ASCII), error.getMessage());
+            } else if (packet instanceof ServerColumnCountPacket) {
+                type = TYPE_COLUMN_COUNT;
+                code = ((ServerColumnCountPacket) packet).getFieldCount();
+                strings = Collections.emptyList();
+            } else if (packet instanceof ServerColumnDefinitionPacket) {
+                ServerColumnDefinitionPacket column = (ServerColumnDefinitionPacket) packet;
+                type = TYPE_COLUMN_DEFINITION;
+                code = column.getType().getValue();
+                value1 = column.getColumnLength();
+                strings = Arrays.asList(column.getSchema(), column.getTable(), column.getName());
+            } else if (packet instanceof ClientHandshakePacket) {
+                ClientHandshakePacket login = (ClientHandshakePacket) packet;
+                type = TYPE_LOGIN;
+                code = login.getCharacterSet().getId();
+                value1 = CodecUtils.toLong(login.getCapabilities());
+                strings = Arrays.asList(entry.sessionId, login.getUsername(), login.getDatabase());
+            } else if (packet instanceof ServerHandshakePacket) {
+                ServerHandshakePacket handshake = (ServerHandshakePacket) packet;
+                type = TYPE_HANDSHAKE;
+                code = handshake.getConnectionId();
+                value1 = CodecUtils.toLong(handshake.getCapabilities());
+                strings = Collections.singletonList(handshake.getServerVersion());
+            } else {
+                type = TYPE_OTHER;
+                strings = Collections.singletonList(String.valueOf(packet));
+            }
+            writeRecord(type, entry.handlerType, packet.getSequenceId(), packet.getTimestamp(), entry.connectionId, code, value1, value2, strings);
+            written.incrementAndGet();
+        }
+
+        private void writeRecord(byte type, byte handlerType, int sequenceId, long timestamp, int connectionId,
+                                 int code, long value1, long value2, List<? extends CharSequence> strings) throws IOException {
+            // the max payload length. cut the string that exceeds maxPayloadBytes, drop the strings after it
+            int payloadBytes = 0;
+            int count = 0;
+            int truncatedIndex = -1;
+            int truncatedLength = 0;
+            byte flags = 0;
+            for (CharSequence string : strings) {
+                if (payloadBytes + 4 > maxPayloadBytes) {
+                    // no space for the length of this string. the written strings is whole
+                    flags = FLAG_TRUNCATED;
+                    break;
+                }
+                int length = string == null ? 0 : ByteBufUtil.utf8Bytes(string);
+                if (payloadBytes + 4 + length > maxPayloadBytes) {
+                    flags = FLAG_TRUNCATED;
+                    truncatedIndex = count++;
+                    truncatedLength = maxPayloadBytes - payloadBytes - 4;
+                    payloadBytes = maxPayloadBytes;
+                    break;
+                }
+                count++;
+                payloadBytes += 4 + length;
+            }
+            int recordLength = RECORD_HEADER_LENGTH + payloadBytes;
+            if (buf.writerIndex() + recordLength + 4 > segmentBytes) {
+                roll();
+            }
+            int start = buf.writerIndex();
+            buf.writerIndex(start + 4);
+            buf.writeByte(type);
+            buf.writeByte(handlerType);
+            buf.writeByte(sequenceId);
+            buf.writeByte(flags);
+            buf.writeLong(timestamp);
+            buf.writeInt(connectionId);
+            buf.writeInt(code);
+            buf.writeLong(value1);
+            buf.writeLong(value2);
+            int i = 0;
+            for (CharSequence string : strings) {
+                if (i == count) {
+                    break;
+                }
+                if (string == null) {
+                    buf.writeInt(-1);
+                } else if (i == truncatedIndex) {
+                    writeTruncated(string, truncatedLength);
+                } else {
+                    int lengthIndex = buf.writerIndex();
+                    buf.writerIndex(lengthIndex + 4);
+                    // the space of the record is checked. not reserve the max utf8 bytes (length * 3)
+                    buf.setInt(lengthIndex, ByteBufUtil.reserveAndWriteUtf8(buf, string, buf.writableBytes()));
+                }
+                i++;
+            }
+            // keep a 0 after the last record, then publish the record
+            buf.setInt(buf.writerIndex(), 0);
+            buf.setInt(start, buf.writerIndex() - start);
+            dirty = true;
+        }
+
+        private void writeTruncated(CharSequence string, int maxBytes) {
+            int end = Math.min(string.length(), maxBytes);
+            int bytes;
+            while ((bytes = ByteBufUtil.utf8Bytes(string, 0, end)) > maxBytes) {
+                end -= Math.max(1, (bytes - maxBytes) / 3);
+            }
+            if (end > 0 && Character.isHighSurrogate(string.charAt(end - 1))) {
+                end--;
+            }
+            int lengthIndex = buf.writerIndex();
+            buf.writerIndex(lengthIndex + 4);
+            buf.setInt(lengthIndex, ByteBufUtil.reserveAndWriteUtf8(buf, string, 0, end, bytes));
+        }
+
+        /**
+         * overwrite the next segment of the ring
+         */
+        private void roll() throws IOException {
+            if (mapped != null) {
+                force(true);
+                unmap();
+            }
+            index = (index + 1) % segmentCount;
+            sequence++;
+            File file = segmentFile(dir, index);
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() > segmentBytes) {
+                    channel.truncate(segmentBytes);
+                }
+                mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            }
+            buf = Unpooled.wrappedBuffer(mapped);
+            buf.clear();
+            buf.writeInt(MAGIC);
+            buf.writeShort(VERSION);
+            buf.writeShort(SEGMENT_HEADER_LENGTH);
+            buf.writeLong(sequence);
+            buf.writeLong(System.currentTimeMillis());
+            buf.writeInt(segmentBytes);
+            buf.writeInt(0);
+            buf.setInt(buf.writerIndex(), 0);
+            dirty = true;
+            logger.info("mysql binary log roll. segment={}, sequence={}", file, sequence);
+        }
+
+        private void force(boolean now) {
+            if (!dirty || forceIntervalMs <= 0) {
+                return;
+            }
+            long currentTime = System.currentTimeMillis();
+            if (now || currentTime - forceTime >= forceIntervalMs) {
+                mapped.force();
+                forceTime = currentTime;
+                dirty = false;
+            }
+        }
+
+        private void unmap() {
+            if (mapped != null) {
+                buf = null;
+                PlatformDependent.freeDirectBuffer(mapped);
+                mapped = null;
+            }
+        }
+    }
+}
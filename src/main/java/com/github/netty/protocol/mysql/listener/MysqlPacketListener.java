@@ -11,4 +11,14 @@ public interface MysqlPacketListener {
                        ChannelHandlerContext currentContext,
                        Session session,
                        String handlerType);
+
+    /**
+     * In the passthrough mode, the rows of the result set is forwarded without decode.
+     * return true if the listener need the {@link com.github.netty.protocol.mysql.server.ServerResultsetRowPacket}.
+     *
+     * @return true = decode the result set row
+     */
+    default boolean isSubscribeResultsetRow() {
+        return false;
+    }
 }
@@ -42,6 +42,11 @@ public class WriterLogFilePacketListener implements MysqlPacketListener {
         System.setProperty(KEY_LOG_PATH, path);
     }
 
+    @Override
+    public boolean isSubscribeResultsetRow() {
+        return enable;
+    }
+
     @Override
     public void onMysqlPacket(MysqlPacket packet, ChannelHandlerContext currentContext, Session session, String handlerType) {
         if (!enable) {
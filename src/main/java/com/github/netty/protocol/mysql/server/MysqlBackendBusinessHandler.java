@@ -49,6 +49,11 @@ public class MysqlBackendBusinessHandler extends AbstractChannelHandler<ServerPa
             session.getFrontendChannel().pipeline().fireUserEventTriggered(eventHandshakeSuccessful);
             this.lastHandshakePacket = null;
         }
+        if (msg instanceof ServerOkPacket && ctx.channel() == session.getBackendChannel()) {
+            session.setServerStatus(((ServerOkPacket) msg).getStatusFlags());
+        } else if (msg instanceof ServerEofPacket && ctx.channel() == session.getBackendChannel()) {
+            session.setServerStatus(((ServerEofPacket) msg).getStatusFlags());
+        }
         if (mysqlPacketListeners != null && !mysqlPacketListeners.isEmpty()) {
             for (MysqlPacketListener mysqlPacketListener : mysqlPacketListeners) {
                 try {
@@ -23,6 +23,23 @@ public class ServerResultsetDecoder extends AbstractPacketDecoder implements Ser
         this.session = session;
     }
 
+    @Override
+    public boolean isDecodeAll() {
+        return session.isDecodeResultsetRow();
+    }
+
+    /**
+     * the rows is skip if the session not need. (the end of the rows is always decode)
+     */
+    @Override
+    public boolean isDecodeRequired(int header, int packetLength) {
+        if (state != State.ROW || session.isDecodeResultsetRow()) {
+            return true;
+        }
+        // ERR, EOF, or OK with 0xFE header (CLIENT_DEPRECATE_EOF). the row start with 0xFE is more than 16MB
+        return header == RESPONSE_ERROR || (header == RESPONSE_EOF && packetLength < MAX_PACKET_LENGTH);
+    }
+
     @Override
     protected void decodePacket(ChannelHandlerContext ctx, int sequenceId, ByteBuf packet, List<Object> out) {
         EnumSet<CapabilityFlags> capabilities = session.getFrontendCapabilities();
@@ -116,11 +133,8 @@ public class ServerResultsetDecoder extends AbstractPacketDecoder implements Ser
                 state = State.COMPLETE;
                 out.add(decodeEofResponse(sequenceId, packet, capabilities));
                 break;
-            case RESPONSE_OK:
-                state = State.COMPLETE;
-                decodeOkResponse(sequenceId, packet, capabilities, serverCharset);
-                break;
             default:
+                // 0x00 is the row start with the empty string. (the OK packet of the end is 0xFE, CLIENT_DEPRECATE_EOF)
                 decodeRow(sequenceId, packet, header, out);
         }
     }
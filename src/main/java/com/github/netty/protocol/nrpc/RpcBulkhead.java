@@ -0,0 +1,138 @@
+package com.github.netty.protocol.nrpc;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.github.netty.protocol.nrpc.RpcPacket.ResponsePacket.SERVICE_UNAVAILABLE;
+
+/**
+ * Bulkhead of a service or a method on the server. (share by all connections)
+ * <p>
+ * the requests still run in the rpc thread pool, the bulkhead only limit how many of them running at the same time.
+ * so a slow service can not take all the threads of the pool, the other services not starve.
+ * <p>
+ * 1. running &lt; maxConcurrent, execute now.
+ * 2. else wait in the queue (FIFO), execute when a running request finish.
+ * 3. queue full, reject. (status 503)
+ *
+ * @author wangzihao
+ * @see com.github.netty.annotation.NRpcService#maxConcurrent()
+ * @see com.github.netty.annotation.NRpcMethod#maxConcurrent()
+ */
+public class RpcBulkhead {
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final Queue<RpcServerChannelHandler.RpcRunnable> queue = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejectCount = new LongAdder();
+
+    public RpcBulkhead(String name, int maxConcurrent, int maxQueue) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueue = Math.max(0, maxQueue);
+    }
+
+    /**
+     * @param runnable the request
+     * @return false if reject (the queue is full)
+     */
+    boolean execute(RpcServerChannelHandler.RpcRunnable runnable) {
+        runnable.bulkhead = this;
+        if (tryAcquire()) {
+            dispatch(runnable);
+            return true;
+        }
+        if (queueSize.incrementAndGet() > maxQueue) {
+            queueSize.decrementAndGet();
+            rejectCount.increment();
+            runnable.bulkhead = null;
+            return false;
+        }
+        queue.offer(runnable);
+        // the running request may finish between tryAcquire and offer
+        drain();
+        return true;
+    }
+
+    /**
+     * the request finish, execute the next waiting request.
+     */
+    void release() {
+        running.decrementAndGet();
+        drain();
+    }
+
+    private void drain() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            RpcServerChannelHandler.RpcRunnable next = queue.poll();
+            if (next == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            queueSize.decrementAndGet();
+            dispatch(next);
+        }
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = running.get();
+            if (current >= maxConcurrent) {
+                return false;
+            }
+            if (running.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void dispatch(RpcServerChannelHandler.RpcRunnable runnable) {
+        try {
+            runnable.executor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            running.decrementAndGet();
+            rejectCount.increment();
+            runnable.bulkhead = null;
+            runnable.reject(SERVICE_UNAVAILABLE, "rpc thread pool reject. bulkhead = " + name + ", " + e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    public long getRejectCount() {
+        return rejectCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RpcBulkhead{" +
+                "name='" + name + '\'' +
+                ", running=" + running.get() + "/" + maxConcurrent +
+                ", queue=" + queueSize.get() + "/" + maxQueue +
+                ", reject=" + rejectCount.sum() +
+                '}';
+    }
+}
@@ -6,6 +6,7 @@ import com.github.netty.annotation.NRpcService;
 import com.github.netty.core.AbstractChannelHandler;
 import com.github.netty.core.AbstractNettyClient;
 import com.github.netty.core.util.*;
+import com.github.netty.protocol.nrpc.codec.BinaryDataCodec;
 import com.github.netty.protocol.nrpc.codec.DataCodec;
 import com.github.netty.protocol.nrpc.codec.DataCodecUtil;
 import com.github.netty.protocol.nrpc.codec.RpcDecoder;
@@ -16,10 +17,15 @@ import com.github.netty.protocol.nrpc.exception.RpcTimeoutException;
 import com.github.netty.protocol.nrpc.exception.RpcWriteException;
 import com.github.netty.protocol.nrpc.service.RpcCommandAsyncService;
 import com.github.netty.protocol.nrpc.service.RpcCommandService;
+import com.github.netty.protocol.nrpc.service.RpcDBAsyncService;
 import com.github.netty.protocol.nrpc.service.RpcDBService;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.*;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.Promise;
 import io.netty.util.internal.PlatformDependent;
 import org.reactivestreams.Subscriber;
@@ -52,6 +58,18 @@ import static com.github.netty.protocol.nrpc.codec.DataCodec.Encode.BINARY;
  * 2018/8/18/018
  */
 public class RpcClient extends AbstractNettyClient {
+    /**
+     * the number of the requests that wait response on the channel
+     */
+    private static final AttributeKey<AtomicInteger> OUTSTANDING_KEY = AttributeKey.valueOf(RpcClient.class + "#outstanding");
+    /**
+     * the callers of the channel wait on the lock, until the channel writable or closed
+     */
+    private static final AttributeKey<Object> WRITABLE_LOCK_KEY = AttributeKey.valueOf(RpcClient.class + "#writableLock");
+    /**
+     * the channel is the pool channel, not the {@link #channel()}
+     */
+    private static final AttributeKey<Boolean> POOL_CHANNEL_KEY = AttributeKey.valueOf(RpcClient.class + "#poolChannel");
     private static final Subscriber<byte[]> pingSubscriber = new Subscriber<byte[]>() {
         @Override
         public void onSubscribe(Subscription s) {
@@ -74,17 +92,22 @@ public class RpcClient extends AbstractNettyClient {
         }
     };
     protected final DataCodec dataCodec;
-    protected final ExpiryLRUMap<Integer, RpcDone> rpcDoneMap = new ExpiryLRUMap<>(512, Long.MAX_VALUE, Long.MAX_VALUE, null);
+    protected final RpcDoneTable rpcDoneTable = new RpcDoneTable(SystemPropertyUtil.getInt("netty-rpc.client.doneTableCapacity", 1024));
     private final Map<String, Sender> rpcInstanceMap = new LinkedHashMap<>(6);
     private final AtomicInteger requestIdIncr = new AtomicInteger();
     private final AtomicBoolean scheduleReconnectTaskIngFlag = new AtomicBoolean(false);
     private final RpcCommandAsyncService rpcCommandAsyncService;
     private final List<RpcClientAop> nettyRpcClientAopList = new CopyOnWriteArrayList<>();
+    /**
+     * the other connections of the remote address, (channelCount - 1). the first one is {@link #channel()}
+     */
+    private volatile PoolSlot[] poolSlots = new PoolSlot[0];
     private int idleTimeMs = 5000;
     private int reconnectScheduledIntervalMs = 5000;
     private long connectTimeout = 1000;
     private int messageMaxLength = 10 * 1024 * 1024;
     private RpcDBService rpcDBService;
+    private RpcDBAsyncService rpcDBAsyncService;
     private RpcCommandService rpcCommandService;
     /**
      * Connecting timeout timestamp
@@ -104,6 +127,14 @@ public class RpcClient extends AbstractNettyClient {
     private BiConsumer<Long, RpcClient> reconnectTaskSuccessConsumer;
     private boolean enableRpcHeartLog = true;
     private boolean enableReconnectScheduledTask = false;
+    /**
+     * the blocking method wait {@link RpcClientCompletion}, not {@link RpcClientFuture}
+     */
+    private boolean completionSyncCall = SystemPropertyUtil.getBoolean("netty-rpc.client.completionSyncCall", false);
+    /**
+     * the server support {@link BinaryDataCodec}. (negotiated on connect)
+     */
+    private volatile boolean binaryDataCodecEnable;
     private long reconnectCount = 0;
 
     public RpcClient(String remoteHost, int remotePort) {
@@ -127,13 +158,6 @@ public class RpcClient extends AbstractNettyClient {
                 aop.onEncodeRequestBefore(rpcContext, params);
             }
         });
-        rpcDoneMap.setOnExpiryConsumer(node -> {
-            try {
-                node.getData().doneTimeout(node.getKey(), node.getCreateTimestamp(), node.getExpiryTimestamp());
-            } catch (Exception e) {
-                logger.warn("doneTimeout exception. client = {}, message = {}.", this, e.toString(), e);
-            }
-        });
         this.rpcCommandAsyncService = newInstance(RpcCommandAsyncService.class);
     }
 
@@ -153,6 +177,23 @@ public class RpcClient extends AbstractNettyClient {
         return dataCodec;
     }
 
+    /**
+     * @return the data codec to encode the request data (and the chunk ack data).
+     * if the binary codec not negotiated with the server, use the fallback codec
+     * @see BinaryDataCodec
+     */
+    public DataCodec getRequestDataCodec() {
+        DataCodec dataCodec = this.dataCodec;
+        if (dataCodec instanceof BinaryDataCodec && !binaryDataCodecEnable) {
+            return ((BinaryDataCodec) dataCodec).getFallback();
+        }
+        return dataCodec;
+    }
+
+    public boolean isBinaryDataCodecEnable() {
+        return binaryDataCodecEnable;
+    }
+
     public List<RpcClientAop> getAopList() {
         return nettyRpcClientAopList;
     }
@@ -312,6 +353,9 @@ public class RpcClient extends AbstractNettyClient {
         return new ChannelInitializer<Channel>() {
             @Override
             protected void initChannel(Channel channel) throws Exception {
+                channel.attr(OUTSTANDING_KEY).set(new AtomicInteger());
+                channel.attr(WRITABLE_LOCK_KEY).set(new Object());
+                RpcWriteBatcher.bind(channel);
                 ChannelPipeline pipeline = channel.pipeline();
                 pipeline.addLast(new IdleStateHandler(idleTimeMs, 0, 0, TimeUnit.MILLISECONDS));
                 pipeline.addLast(new RpcEncoder());
@@ -354,8 +398,8 @@ public class RpcClient extends AbstractNettyClient {
         return scheduleReconnectTaskIngFlag.get();
     }
 
-    public ExpiryLRUMap<Integer, RpcDone> getRpcDoneMap() {
-        return rpcDoneMap;
+    public RpcDoneTable getRpcDoneTable() {
+        return rpcDoneTable;
     }
 
     public SocketChannel channel() {
@@ -364,6 +408,17 @@ public class RpcClient extends AbstractNettyClient {
 
     @Override
     public SocketChannel getChannel() throws RpcConnectException {
+        return getChannel(0);
+    }
+
+    /**
+     * @param deadlineTimestamp the call deadline. 0 is never timeout
+     * @return writable channel
+     * @throws RpcConnectException connect fail
+     * @throws RpcTimeoutException the channel not writable before the deadline
+     * @throws RpcWriteException interrupted while waiting writable
+     */
+    public SocketChannel getChannel(long deadlineTimestamp) throws RpcConnectException, RpcTimeoutException, RpcWriteException {
         SocketChannel socketChannel = super.getChannel();
         if (socketChannel == null || !socketChannel.isActive()) {
             long timestamp = System.currentTimeMillis();
@@ -376,21 +431,177 @@ public class RpcClient extends AbstractNettyClient {
             }
         }
 
-        int yieldCount = 0;
+        PoolSlot[] poolSlots = this.poolSlots;
+        if (poolSlots.length > 0) {
+            socketChannel = chooseChannel(socketChannel, poolSlots);
+        }
         if (!socketChannel.isWritable()) {
-            socketChannel.flush();
+            waitWritable(socketChannel, deadlineTimestamp);
         }
-        while (!socketChannel.isWritable()) {
-            ChannelUtils.forceFlush(socketChannel);
-            if (!socketChannel.eventLoop().inEventLoop()) {
-                Thread.yield();
-                yieldCount++;
+        return socketChannel;
+    }
+
+    /**
+     * least outstanding requests, and prefer the writable channel.
+     * the closed pool channel reconnect by itself, not affect other channels.
+     */
+    private SocketChannel chooseChannel(SocketChannel channel, PoolSlot[] poolSlots) {
+        SocketChannel best = channel;
+        boolean bestWritable = channel.isWritable();
+        int bestOutstanding = getOutstanding(channel);
+        for (PoolSlot slot : poolSlots) {
+            SocketChannel poolChannel = slot.channel;
+            if (poolChannel == null || !poolChannel.isActive()) {
+                connectPoolChannel(slot);
+                continue;
+            }
+            boolean writable = poolChannel.isWritable();
+            int outstanding = getOutstanding(poolChannel);
+            if ((writable && !bestWritable) || (writable == bestWritable && outstanding < bestOutstanding)) {
+                best = poolChannel;
+                bestWritable = writable;
+                bestOutstanding = outstanding;
+            }
+        }
+        return best;
+    }
+
+    private void connectPoolChannel(PoolSlot slot) {
+        Bootstrap bootstrap = getBootstrap();
+        if (bootstrap == null || System.currentTimeMillis() < slot.nextConnectTimestamp
+                || !slot.connectIngFlag.compareAndSet(false, true)) {
+            return;
+        }
+        bootstrap.clone()
+                .attr(POOL_CHANNEL_KEY, Boolean.TRUE)
+                .connect(getRemoteAddress())
+                .addListener((ChannelFutureListener) future -> {
+                    try {
+                        if (future.isSuccess()) {
+                            SocketChannel poolChannel = (SocketChannel) future.channel();
+                            slot.channel = poolChannel;
+                            poolChannel.closeFuture().addListener(f -> {
+                                if (slot.channel == poolChannel) {
+                                    slot.channel = null;
+                                    slot.nextConnectTimestamp = System.currentTimeMillis() + reconnectScheduledIntervalMs;
+                                }
+                            });
+                        } else {
+                            slot.nextConnectTimestamp = System.currentTimeMillis() + reconnectScheduledIntervalMs;
+                            if (enableRpcHeartLog && logger.isDebugEnabled()) {
+                                logger.debug("RpcClient pool channel connect fail... {}", future.cause().toString());
+                            }
+                        }
+                    } finally {
+                        slot.connectIngFlag.set(false);
+                    }
+                });
+    }
+
+    /**
+     * park the caller until the channel writable, closed or the call deadline. (not spin)
+     * wake up by {@link ReceiverChannelHandler#channelWritabilityChanged(ChannelHandlerContext)}
+     * or {@link ReceiverChannelHandler#channelInactive(ChannelHandlerContext)}
+     */
+    private void waitWritable(SocketChannel socketChannel, long deadlineTimestamp) throws RpcTimeoutException, RpcWriteException {
+        socketChannel.flush();
+        Object writableLock = socketChannel.attr(WRITABLE_LOCK_KEY).get();
+        if (writableLock == null || socketChannel.eventLoop().inEventLoop()) {
+            return;
+        }
+        long beginTimestamp = System.currentTimeMillis();
+        int waitCount = 0;
+        synchronized (writableLock) {
+            while (!socketChannel.isWritable() && socketChannel.isActive()) {
+                long waitTime = deadlineTimestamp == 0 ? 0 : deadlineTimestamp - System.currentTimeMillis();
+                if (deadlineTimestamp != 0 && waitTime <= 0) {
+                    long expiryTimestamp = System.currentTimeMillis();
+                    throw new RpcTimeoutException("RpcWaitWritableTimeout : timeout = [" + (expiryTimestamp - beginTimestamp) +
+                            "], waitCount = [" + waitCount + "], [" + socketChannel + "]", false,
+                            beginTimestamp, expiryTimestamp);
+                }
+                waitCount++;
+                try {
+                    writableLock.wait(waitTime);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RpcWriteException("interrupted while waiting writable. " + socketChannel, e);
+                }
             }
         }
-        if (yieldCount != 0 && enableRpcHeartLog && logger.isDebugEnabled()) {
-            logger.debug("RpcClient waitWritable... yieldCount={}", yieldCount);
+        if (enableRpcHeartLog && logger.isDebugEnabled()) {
+            logger.debug("RpcClient waitWritable... waitCount={}", waitCount);
+        }
+    }
+
+    /**
+     * @param rpcContext rpcContext
+     * @param timeout    call timeout. -1 is never timeout
+     * @return the deadline for {@link #getChannel(long)}. 0 is never timeout
+     */
+    static long getDeadlineTimestamp(RpcContext<RpcClient> rpcContext, int timeout) {
+        return timeout > 0 ? rpcContext.getRpcBeginTimestamp() + timeout : 0;
+    }
+
+    private static int getOutstanding(Channel channel) {
+        AtomicInteger outstanding = channel.attr(OUTSTANDING_KEY).get();
+        return outstanding == null ? 0 : outstanding.get();
+    }
+
+    /**
+     * @param channel channel
+     * @return the counter for {@link RpcDoneTable#put(int, RpcDone, long, AtomicInteger)}. null if not the client channel
+     */
+    static AtomicInteger getOutstandingCounter(Channel channel) {
+        return channel.attr(OUTSTANDING_KEY).get();
+    }
+
+    private static void notifyWritableWaiters(Channel channel) {
+        Object writableLock = channel.attr(WRITABLE_LOCK_KEY).get();
+        if (writableLock != null) {
+            synchronized (writableLock) {
+                writableLock.notifyAll();
+            }
         }
-        return socketChannel;
+    }
+
+    @Override
+    public int getActiveSocketChannelCount() {
+        int count = super.getActiveSocketChannelCount();
+        for (PoolSlot slot : poolSlots) {
+            SocketChannel poolChannel = slot.channel;
+            if (poolChannel != null && poolChannel.isActive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getChannelCount() {
+        return poolSlots.length + 1;
+    }
+
+    /**
+     * @param channelCount the number of connections to the remote address. default 1
+     */
+    public void setChannelCount(int channelCount) {
+        PoolSlot[] poolSlots = new PoolSlot[Math.max(channelCount - 1, 0)];
+        for (int i = 0; i < poolSlots.length; i++) {
+            poolSlots[i] = new PoolSlot();
+        }
+        this.poolSlots = poolSlots;
+    }
+
+    public boolean isCompletionSyncCall() {
+        return completionSyncCall;
+    }
+
+    /**
+     * @param completionSyncCall true: the blocking method park on a {@link RpcClientCompletion} (cheap on virtual threads).
+     *                           false: wait on the lock of {@link RpcClientFuture}
+     */
+    public void setCompletionSyncCall(boolean completionSyncCall) {
+        this.completionSyncCall = completionSyncCall;
     }
 
     @Override
@@ -399,6 +610,46 @@ public class RpcClient extends AbstractNettyClient {
         state = State.UP;
         //The first initiative to send a package to ensure proper binding agreement
         getRpcCommandAsyncService().ping().subscribe(pingSubscriber);
+        if (dataCodec instanceof BinaryDataCodec) {
+            negotiateDataCodec();
+        }
+    }
+
+    /**
+     * ask the server whether support the binary codec with the same fallback. (e.g. binary/jdk)
+     * the old server response 'not found method', then use the fallback codec.
+     * the request before the answer use the fallback codec too.
+     */
+    protected void negotiateDataCodec() {
+        binaryDataCodecEnable = false;
+        getRpcCommandAsyncService().dataCodecs().subscribe(new Subscriber<byte[]>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(byte[] bytes) {
+                // the fallback must be same. the object argument is encoded by the fallback
+                String name = dataCodec.getName();
+                for (String codec : new String(bytes, DataCodec.CHARSET_UTF8).split(",")) {
+                    if (name.equals(codec.trim())) {
+                        binaryDataCodecEnable = true;
+                        break;
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                logger.debug("negotiate data codec fail, use fallback codec. {}", t.toString());
+            }
+
+            @Override
+            public void onComplete() {
+
+            }
+        });
     }
 
     protected SocketChannel waitGetConnect(Optional<ChannelFuture> optional, long connectTimeout) {
@@ -488,6 +739,12 @@ public class RpcClient extends AbstractNettyClient {
 
     @Override
     protected void stopAfter(ChannelFuture future) {
+        for (PoolSlot slot : poolSlots) {
+            SocketChannel poolChannel = slot.channel;
+            if (poolChannel != null) {
+                poolChannel.close();
+            }
+        }
         rpcInstanceMap.clear();
         rpcCommandService = null;
         rpcDBService = null;
@@ -517,6 +774,22 @@ public class RpcClient extends AbstractNettyClient {
         return rpcDBService;
     }
 
+    /**
+     * Access to data service (async, server push)
+     *
+     * @return RpcDBAsyncService
+     */
+    public RpcDBAsyncService getRpcDBAsyncService() {
+        if (rpcDBAsyncService == null) {
+            synchronized (this) {
+                if (rpcDBAsyncService == null) {
+                    rpcDBAsyncService = newInstance(RpcDBAsyncService.class);
+                }
+            }
+        }
+        return rpcDBAsyncService;
+    }
+
     /**
      * Get command service
      *
@@ -581,6 +854,25 @@ public class RpcClient extends AbstractNettyClient {
     public interface Proxy {
     }
 
+    /**
+     * Request data - encoding. write to the pooled buffer, the encoder send it without copy
+     *
+     * @param dataCodec  dataCodec
+     * @param rpcContext rpcContext
+     * @param allocator  allocator
+     * @return data buffer
+     */
+    static ByteBuf encodeRequestData(DataCodec dataCodec, RpcContext<RpcClient> rpcContext, ByteBufAllocator allocator) {
+        ByteBuf dataBuf = allocator.ioBuffer();
+        try {
+            dataCodec.encodeRequestData(rpcContext.getArgs(), rpcContext.getRpcMethod(), dataBuf);
+            return dataBuf;
+        } catch (Throwable e) {
+            dataBuf.release();
+            throw e;
+        }
+    }
+
     public static class Sender implements InvocationHandler {
         private static final LoggerX logger = LoggerFactoryX.getLogger(Sender.class);
         private final String requestMappingName;
@@ -675,6 +967,14 @@ public class RpcClient extends AbstractNettyClient {
                     // rpcMethod.isReturnFutureFlag() || rpcMethod.isReturnCompletionStageFlag()
                     result = new RpcClientCompletableFuture(publisher);
                 }
+            } else if (RpcClientCompletion.beginAsyncCall()) {
+                // inside RpcClientCompletion.async(). the return value is ignored by the caller
+                RpcClientCompletion<Object> completion = newCompletion(rpcMethod, args, timeout);
+                RpcClientCompletion.endAsyncCall(completion);
+                result = TypeUtil.cast(null, method.getReturnType());
+            } else if (rpcClient.completionSyncCall) {
+                RpcClientCompletion<Object> completion = newCompletion(rpcMethod, args, timeout);
+                result = rpcMethod.isReturnVoid() ? null : completion.await();
             } else {
                 RpcContext<RpcClient> rpcContext = CONTEXT_LOCAL.get();
                 if (rpcContext == null) {
@@ -695,6 +995,15 @@ public class RpcClient extends AbstractNettyClient {
             return result;
         }
 
+        private RpcClientCompletion<Object> newCompletion(RpcMethod<RpcClient> rpcMethod, Object[] args, int timeout) {
+            RpcContext<RpcClient> rpcContext = new RpcContext<>();
+            rpcContext.setArgs(args);
+            rpcContext.setRpcMethod(rpcMethod);
+            RpcClientCompletion<Object> completion = new RpcClientCompletion<>(rpcContext);
+            completion.request(requestMappingName, version, timeout);
+            return completion;
+        }
+
         /**
          * timeout is -1 then never timeout
          * timeout is 0 then use client timeout
@@ -747,21 +1056,21 @@ public class RpcClient extends AbstractNettyClient {
             rpcContext.setTimeout(timeout);
             rpcClient.onStateUpdate(rpcContext, INIT);
 
-            rpcRequest.setData(rpcClient.dataCodec.encodeRequestData(rpcContext.getArgs(), rpcContext.getRpcMethod()));
+            rpcRequest.setDataBuf(encodeRequestData(rpcClient.getRequestDataCodec(), rpcContext, ByteBufAllocator.DEFAULT));
             rpcClient.onStateUpdate(rpcContext, WRITE_ING);
 
             RpcClientFuture future = null;
             try {
                 rpcContext.setRemoteAddress(rpcClient.getRemoteAddress());
-                SocketChannel channel = rpcClient.getChannel();
+                SocketChannel channel = rpcClient.getChannel(getDeadlineTimestamp(rpcContext, timeout));
                 rpcContext.setRemoteAddress(channel.remoteAddress());
                 rpcContext.setLocalAddress(channel.localAddress());
                 if (ackFlag == ACK_YES) {
                     future = RpcClientFuture.newInstance(rpcContext);
-                    rpcClient.rpcDoneMap.put(requestId, future);
+                    rpcClient.rpcDoneTable.put(requestId, future, -1, getOutstandingCounter(channel));
                 }
                 rpcRequest.setTimeout(timeout);
-                channel.writeAndFlush(rpcRequest).addListener((ChannelFutureListener) channelFuture -> {
+                RpcWriteBatcher.writeAndFlush(channel, rpcRequest).addListener((ChannelFutureListener) channelFuture -> {
                     if (rpcContext.getState() == INIT) {
                         logger.warn("on timeout after. write event. isSuccess={},channel={}",
                                 channelFuture.isSuccess(), channelFuture.channel());
@@ -780,6 +1089,7 @@ public class RpcClient extends AbstractNettyClient {
                     }
                 });
             } catch (RpcException rpcException) {
+                rpcRequest.release();
                 rpcContext.setThrowable(rpcException);
             }
 
@@ -818,7 +1128,7 @@ public class RpcClient extends AbstractNettyClient {
                 throw e;
             } finally {
                 if (future != null) {
-                    rpcClient.rpcDoneMap.remove(requestId);
+                    rpcClient.rpcDoneTable.take(requestId);
                 }
                 try {
                     boolean isTimeout = rpcContext.getState() == TIMEOUT;
@@ -943,11 +1253,11 @@ public class RpcClient extends AbstractNettyClient {
         protected void onMessageReceived(ChannelHandlerContext ctx, RpcPacket packet) throws Exception {
             if (packet instanceof ResponseChunkPacket) {
                 ResponseChunkPacket chunk = (ResponseChunkPacket) packet;
-                RpcDone rpcDone = rpcDoneMap.get(chunk.getRequestId());
+                RpcDone rpcDone = rpcDoneTable.get(chunk.getRequestId());
                 if (rpcDone != null) {
                     ChunkAck ack;
                     if (chunk.getAck() == RpcPacket.ACK_YES) {
-                        ack = new ChunkAckSender(chunk.getRequestId(), chunk.getChunkId(), ctx, dataCodec);
+                        ack = new ChunkAckSender(chunk.getRequestId(), chunk.getChunkId(), ctx, getRequestDataCodec());
                     } else {
                         ack = ChunkAck.DONT_NEED_ACK;
                     }
@@ -955,7 +1265,7 @@ public class RpcClient extends AbstractNettyClient {
                 }
             } else if (packet instanceof ResponseLastPacket) {
                 ResponseLastPacket last = (ResponseLastPacket) packet;
-                RpcDone rpcDone = rpcDoneMap.remove(last.getRequestId());
+                RpcDone rpcDone = rpcDoneTable.take(last.getRequestId());
                 if (rpcDone != null) {
                     rpcDone.done(last);
                 }
@@ -969,12 +1279,30 @@ public class RpcClient extends AbstractNettyClient {
 
         @Override
         protected void onReaderIdle(ChannelHandlerContext ctx) {
+            if (isPoolChannel(ctx)) {
+                return;
+            }
             //heart beat
             getRpcCommandAsyncService().ping().subscribe(readerIdlePingHandler);
         }
 
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            if (ctx.channel().isWritable()) {
+                notifyWritableWaiters(ctx.channel());
+            }
+            super.channelWritabilityChanged(ctx);
+        }
+
+        private boolean isPoolChannel(ChannelHandlerContext ctx) {
+            return ctx.channel().hasAttr(POOL_CHANNEL_KEY);
+        }
+
         @Override
         public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            if (isPoolChannel(ctx)) {
+                return;
+            }
             state = State.UP;
             for (RpcClientAop aop : nettyRpcClientAopList) {
                 aop.onConnectAfter(RpcClient.this);
@@ -983,6 +1311,16 @@ public class RpcClient extends AbstractNettyClient {
 
         @Override
         public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // the requests of the closed channel never response, the reconnect channel start from 0
+            AtomicInteger outstanding = getOutstandingCounter(ctx.channel());
+            if (outstanding != null) {
+                rpcDoneTable.failOutstanding(outstanding, "channel inactive. " + ctx.channel());
+                outstanding.set(0);
+            }
+            notifyWritableWaiters(ctx.channel());
+            if (isPoolChannel(ctx)) {
+                return;
+            }
             state = State.DOWN;
             if (enableReconnectScheduledTask) {
                 scheduleReconnectTask(reconnectScheduledIntervalMs, TimeUnit.MILLISECONDS);
@@ -992,4 +1330,10 @@ public class RpcClient extends AbstractNettyClient {
             }
         }
     }
+
+    static class PoolSlot {
+        final AtomicBoolean connectIngFlag = new AtomicBoolean(false);
+        volatile SocketChannel channel;
+        volatile long nextConnectTimestamp;
+    }
 }
@@ -0,0 +1,277 @@
+package com.github.netty.protocol.nrpc;
+
+import com.github.netty.core.util.RecyclableUtil;
+import com.github.netty.protocol.nrpc.exception.RpcException;
+import com.github.netty.protocol.nrpc.exception.RpcTimeoutException;
+import com.github.netty.protocol.nrpc.exception.RpcWriteException;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static com.github.netty.protocol.nrpc.RpcClientAop.CONTEXT_LOCAL;
+import static com.github.netty.protocol.nrpc.RpcContext.RpcState.*;
+import static com.github.netty.protocol.nrpc.RpcPacket.ACK_NO;
+import static com.github.netty.protocol.nrpc.RpcPacket.ACK_YES;
+import static com.github.netty.protocol.nrpc.codec.DataCodec.Encode.BINARY;
+
+/**
+ * Completion of a blocking interface method. one object is the RpcDone and the CompletionStage.
+ * (the CompletableFuture return type use {@link RpcClientReactivePublisher} + subscriber + future)
+ * <p>
+ * 1. {@link #async(Supplier)} call a blocking method of the proxy, return the CompletionStage of the call.
+ * <pre>
+ *     CompletionStage&lt;String&gt; stage = RpcClientCompletion.async(() -&gt; echoService.echo("hi"));
+ * </pre>
+ * 2. {@link RpcClient#setCompletionSyncCall(boolean)} the blocking method wait the completion
+ * ({@link java.util.concurrent.locks.LockSupport#park()}), not the lock condition of {@link RpcClientFuture}.
+ * on virtual threads, park is cheap.
+ *
+ * @author wangzihao
+ */
+public class RpcClientCompletion<RESULT> extends CompletableFuture<RESULT> implements RpcDone {
+    private static final FastThreadLocal<AsyncCall> ASYNC_CALL_LOCAL = new FastThreadLocal<AsyncCall>() {
+        @Override
+        protected AsyncCall initialValue() throws Exception {
+            return new AsyncCall();
+        }
+    };
+    private final RpcContext<RpcClient> rpcContext;
+    private final RpcClient rpcClient;
+    private int requestId;
+
+    RpcClientCompletion(RpcContext<RpcClient> rpcContext) {
+        this.rpcContext = rpcContext;
+        this.rpcClient = rpcContext.getRpcMethod().getInstance();
+    }
+
+    /**
+     * async call the first rpc method in the supplier.
+     *
+     * @param call     e.g. () -&gt; echoService.echo("hi")
+     * @param <RESULT> the return type of the rpc method
+     * @return the completion of the rpc call
+     */
+    public static <RESULT> RpcClientCompletion<RESULT> async(Supplier<RESULT> call) {
+        AsyncCall asyncCall = ASYNC_CALL_LOCAL.get();
+        asyncCall.enable = true;
+        RpcClientCompletion<?> completion;
+        try {
+            call.get();
+        } finally {
+            completion = asyncCall.completion;
+            asyncCall.enable = false;
+            asyncCall.completion = null;
+        }
+        if (completion == null) {
+            throw new IllegalStateException("not found rpc call in the async supplier");
+        }
+        return (RpcClientCompletion<RESULT>) completion;
+    }
+
+    /**
+     * async call the first rpc method in the runnable. (e.g. return void)
+     *
+     * @param call e.g. () -&gt; echoService.send("hi")
+     * @return the completion of the rpc call
+     */
+    public static RpcClientCompletion<Void> asyncRun(Runnable call) {
+        return async(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return true if the current call is inside {@link #async(Supplier)}. the flag only use once.
+     */
+    static boolean beginAsyncCall() {
+        AsyncCall asyncCall = ASYNC_CALL_LOCAL.getIfExists();
+        if (asyncCall != null && asyncCall.enable) {
+            asyncCall.enable = false;
+            return true;
+        }
+        return false;
+    }
+
+    static void endAsyncCall(RpcClientCompletion<?> completion) {
+        ASYNC_CALL_LOCAL.get().completion = completion;
+    }
+
+    /**
+     * wait the result. (park the caller thread)
+     *
+     * @return result
+     * @throws Throwable the exception of the rpc call
+     */
+    RESULT await() throws Throwable {
+        try {
+            return get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    void request(String requestMappingName, String version, int timeout) {
+        RpcMethod<RpcClient> rpcMethod = rpcContext.getRpcMethod();
+        rpcContext.setRpcBeginTimestamp(System.currentTimeMillis());
+        CONTEXT_LOCAL.set(rpcContext);
+        int requestId = rpcClient.newRequestId();
+        this.requestId = requestId;
+        byte ackFlag = rpcMethod.isReturnVoid() ? ACK_NO : ACK_YES;
+        try {
+            rpcContext.setRemoteAddress(rpcClient.getRemoteAddress());
+            SocketChannel channel = rpcClient.getChannel(RpcClient.getDeadlineTimestamp(rpcContext, timeout));
+            rpcContext.setRemoteAddress(channel.remoteAddress());
+            rpcContext.setLocalAddress(channel.localAddress());
+
+            RpcPacket.RequestPacket rpcRequest = RpcPacket.RequestPacket.newInstance();
+            rpcRequest.setRequestId(requestId);
+            rpcRequest.setRequestMappingName(requestMappingName);
+            rpcRequest.setVersion(version);
+            rpcRequest.setMethodName(rpcMethod.getMethodName());
+            rpcRequest.setAck(ackFlag);
+            rpcRequest.setTimeout(timeout);
+            rpcContext.setRequest(rpcRequest);
+            rpcContext.setTimeout(timeout);
+            rpcClient.onStateUpdate(rpcContext, INIT);
+
+            rpcRequest.setDataBuf(RpcClient.encodeRequestData(rpcClient.getRequestDataCodec(), rpcContext, channel.alloc()));
+            rpcClient.onStateUpdate(rpcContext, WRITE_ING);
+
+            if (ackFlag == ACK_YES) {
+                // put before write. the response may arrive before writeAndFlush return
+                rpcClient.rpcDoneTable.put(requestId, this, timeout, RpcClient.getOutstandingCounter(channel));
+            }
+            RpcWriteBatcher.writeAndFlush(channel, rpcRequest).addListener((ChannelFutureListener) future -> {
+                CONTEXT_LOCAL.set(rpcContext);
+                try {
+                    if (future.isSuccess()) {
+                        rpcClient.onStateUpdate(rpcContext, WRITE_FINISH);
+                        if (ackFlag == ACK_NO) {
+                            rpcClient.onStateUpdate(rpcContext, END);
+                            complete(null);
+                        }
+                    } else {
+                        Throwable throwable = future.cause();
+                        future.channel().close().addListener(f -> rpcClient.connect());
+                        handlerRpcWriterException(new RpcWriteException("rpc write exception. " + throwable, throwable), ackFlag);
+                    }
+                } finally {
+                    CONTEXT_LOCAL.set(null);
+                }
+            });
+        } catch (RpcException rpcException) {
+            handlerRpcWriterException(rpcException, ackFlag);
+        } finally {
+            CONTEXT_LOCAL.set(null);
+        }
+    }
+
+    private void handlerRpcWriterException(RpcException rpcException, byte ackFlag) {
+        // only the owner of the done table slot can complete
+        if (ackFlag == ACK_NO || rpcClient.rpcDoneTable.take(requestId) != null) {
+            rpcContext.setRpcEndTimestamp(System.currentTimeMillis());
+            rpcContext.setThrowable(rpcException);
+            completeExceptionally(rpcException);
+        }
+    }
+
+    @Override
+    public void chunk(RpcPacket.ResponseChunkPacket rpcResponse, ChunkAck ack) {
+        // the blocking method not have chunk
+        RecyclableUtil.release(rpcResponse);
+        ack.ack();
+    }
+
+    @Override
+    public void done(RpcPacket.ResponseLastPacket rpcResponse) {
+        rpcContext.setRpcEndTimestamp(System.currentTimeMillis());
+        CONTEXT_LOCAL.set(rpcContext);
+        Object result = null;
+        Throwable throwable = null;
+        try {
+            rpcContext.setResponse(rpcResponse);
+            rpcClient.onStateUpdate(rpcContext, READ_ING);
+
+            handlerResponseIfNeedThrow(rpcResponse);
+
+            //If the server is not encoded, return directly
+            if (rpcResponse.getEncode() == BINARY) {
+                result = rpcResponse.getData();
+            } else {
+                result = rpcClient.getDataCodec().decodeResponseData(rpcResponse.getData(), rpcContext.getRpcMethod());
+            }
+            rpcContext.setResult(result);
+            rpcClient.onStateUpdate(rpcContext, READ_FINISH);
+        } catch (Throwable t) {
+            rpcContext.setThrowable(t);
+            throwable = t;
+        } finally {
+            rpcClient.onStateUpdate(rpcContext, END);
+            try {
+                for (RpcClientAop aop : rpcClient.getAopList()) {
+                    aop.onResponseAfter(rpcContext);
+                }
+            } finally {
+                RecyclableUtil.release(rpcResponse);
+                CONTEXT_LOCAL.set(null);
+            }
+        }
+        if (throwable != null) {
+            completeExceptionally(throwable);
+        } else {
+            complete((RESULT) result);
+        }
+    }
+
+    @Override
+    public void doneTimeout(int requestId, long createTimestamp, long expiryTimestamp) {
+        rpcContext.setRpcEndTimestamp(expiryTimestamp);
+        RpcTimeoutException timeoutException = new RpcTimeoutException("RpcRequestTimeout : maxTimeout = [" + (expiryTimestamp - createTimestamp) +
+                "], timeout = [" + (System.currentTimeMillis() - createTimestamp) + "], [" + toString() + "]", true,
+                createTimestamp, expiryTimestamp);
+        // not run the dependent stages in the timer thread
+        rpcClient.getWorker().execute(() -> {
+            CONTEXT_LOCAL.set(rpcContext);
+            try {
+                rpcClient.onStateUpdate(rpcContext, TIMEOUT);
+                rpcContext.setThrowable(timeoutException);
+                for (RpcClientAop aop : rpcClient.getAopList()) {
+                    aop.onTimeout(rpcContext);
+                }
+            } finally {
+                CONTEXT_LOCAL.set(null);
+                completeExceptionally(timeoutException);
+            }
+        });
+    }
+
+    /**
+     * cancel. the late response will be discard.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        rpcClient.rpcDoneTable.take(requestId);
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    public RpcContext<RpcClient> getRpcContext() {
+        return rpcContext;
+    }
+
+    @Override
+    public String toString() {
+        RpcPacket.RequestPacket request = rpcContext.getRequest();
+        return "RpcClientCompletion@" + super.hashCode() + "{state=" + rpcContext.getState() + ","
+                + (request == null ? "null" : request.getRequestMappingName() + "/" + request.getMethodName()) + "}";
+    }
+
+    private static class AsyncCall {
+        private boolean enable;
+        private RpcClientCompletion<?> completion;
+    }
+}
@@ -158,7 +158,7 @@ public class RpcClientReactivePublisher implements Publisher<Object>, Subscripti
             RpcMethod<RpcClient> rpcMethod = rpcContext.getRpcMethod();
 
             rpcContext.setRemoteAddress(rpcClient.getRemoteAddress());
-            SocketChannel channel = rpcClient.getChannel();
+            SocketChannel channel = rpcClient.getChannel(RpcClient.getDeadlineTimestamp(rpcContext, timeout));
             rpcContext.setRemoteAddress(channel.remoteAddress());
             rpcContext.setLocalAddress(channel.localAddress());
 
@@ -173,12 +173,14 @@ public class RpcClientReactivePublisher implements Publisher<Object>, Subscripti
             rpcContext.setTimeout(timeout);
             rpcClient.onStateUpdate(rpcContext, INIT);
 
-            rpcRequest.setData(dataCodec.encodeRequestData(rpcContext.getArgs(), rpcContext.getRpcMethod()));
+            rpcRequest.setDataBuf(RpcClient.encodeRequestData(rpcClient.getRequestDataCodec(), rpcContext, channel.alloc()));
             rpcClient.onStateUpdate(rpcContext, WRITE_ING);
 
             rpcRequest.setTimeout(timeout);
-            ChannelFuture writeAndFlushFuture = channel.writeAndFlush(rpcRequest);
-            rpcClient.rpcDoneMap.put(requestId, this, timeout);
+            // put before write. the response may arrive before writeAndFlush return
+            rpcClient.rpcDoneTable.put(requestId, this, timeout,
+                    rpcRequest.getAck() == ACK_YES ? RpcClient.getOutstandingCounter(channel) : null);
+            ChannelFuture writeAndFlushFuture = RpcWriteBatcher.writeAndFlush(channel, rpcRequest);
             writeAndFlushFuture.addListener((ChannelFutureListener) future -> {
                 CONTEXT_LOCAL.set(rpcContext);
                 try {
@@ -202,7 +204,7 @@ public class RpcClientReactivePublisher implements Publisher<Object>, Subscripti
 
     private void handlerRpcWriterException(RpcException rpcException, int requestId) {
         rpcContext.setRpcEndTimestamp(System.currentTimeMillis());
-        rpcClient.rpcDoneMap.remove(requestId);
+        rpcClient.rpcDoneTable.take(requestId);
         rpcContext.setThrowable(rpcException);
         subscriber.onError(rpcException);
     }
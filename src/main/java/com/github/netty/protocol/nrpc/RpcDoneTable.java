@@ -0,0 +1,309 @@
+package com.github.netty.protocol.nrpc;
+
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import com.github.netty.protocol.nrpc.RpcPacket.ResponseLastPacket;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * In-flight rpc calls of the client. key is the int requestId.
+ * <p>
+ * 1. a ring of slots indexed by (requestId &amp; mask). requestId is increase, so the slot is almost always free.
+ * 2. put/take is a CAS on the slot, no boxing Integer, no map node, no lock.
+ * 3. if the slot is used by a long running call (e.g. a chunk subscription), put to the overflow map.
+ * 4. only the call with timeout register a {@link Timeout} in the shared {@link HashedWheelTimer}.
+ * the sync call ({@link RpcClientFuture}) wait the timeout by itself.
+ * 5. the outstanding counter of the put is decrement when the call leave the table. (response, timeout, take by the caller)
+ * 6. the counter is one per channel. when the channel closed, {@link #failOutstanding(AtomicInteger, String)}
+ * fail the calls of the channel, include the never timeout calls (e.g. a chunk subscription).
+ *
+ * @author wangzihao
+ */
+public class RpcDoneTable {
+    private static final LoggerX LOGGER = LoggerFactoryX.getLogger(RpcDoneTable.class);
+    private static final int FREE = -1;
+    private static final int TAKING = -2;
+    private static volatile Timer timer;
+    private final Slot[] slots;
+    private final int mask;
+    private final ConcurrentHashMap<Integer, Slot> overflowMap = new ConcurrentHashMap<>(16);
+
+    public RpcDoneTable() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity will round up to power of 2
+     */
+    public RpcDoneTable(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+    }
+
+    private static Timer getTimer() {
+        Timer timer = RpcDoneTable.timer;
+        if (timer == null) {
+            synchronized (RpcDoneTable.class) {
+                timer = RpcDoneTable.timer;
+                if (timer == null) {
+                    timer = new HashedWheelTimer(runnable -> {
+                        Thread thread = new Thread(runnable, "RpcDoneTable-Timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }, 10, TimeUnit.MILLISECONDS, 512);
+                    RpcDoneTable.timer = timer;
+                }
+            }
+        }
+        return timer;
+    }
+
+    public void put(int requestId, RpcDone rpcDone) {
+        put(requestId, rpcDone, -1);
+    }
+
+    /**
+     * @param requestId requestId (&gt;= 0)
+     * @param rpcDone   rpcDone
+     * @param timeout   timeout millisecond. &lt;= 0 is never timeout
+     */
+    public void put(int requestId, RpcDone rpcDone, long timeout) {
+        put(requestId, rpcDone, timeout, null);
+    }
+
+    /**
+     * @param requestId   requestId (&gt;= 0)
+     * @param rpcDone     rpcDone
+     * @param timeout     timeout millisecond. &lt;= 0 is never timeout
+     * @param outstanding nullable. increment now, decrement when the rpcDone leave the table
+     */
+    public void put(int requestId, RpcDone rpcDone, long timeout, AtomicInteger outstanding) {
+        Slot slot = slots[requestId & mask];
+        if (!Slot.REQUEST_ID_UPDATER.compareAndSet(slot, FREE, requestId)) {
+            slot = new Slot();
+            slot.requestId = requestId;
+            overflowMap.put(requestId, slot);
+        }
+        slot.createTimestamp = System.currentTimeMillis();
+        if (outstanding != null) {
+            outstanding.incrementAndGet();
+            slot.outstanding = outstanding;
+        }
+        if (timeout > 0) {
+            slot.timeout = getTimer().newTimeout(new TimeoutTask(requestId, slot), timeout, TimeUnit.MILLISECONDS);
+        }
+        // publish
+        slot.done = rpcDone;
+    }
+
+    /**
+     * get without remove. (e.g. the chunk response)
+     *
+     * @param requestId requestId
+     * @return null if not exist
+     */
+    public RpcDone get(int requestId) {
+        Slot slot = slots[requestId & mask];
+        if (slot.requestId == requestId) {
+            RpcDone done = slot.done;
+            // the slot not be reuse when read done
+            if (slot.requestId == requestId) {
+                return done;
+            }
+            return null;
+        }
+        if (overflowMap.isEmpty()) {
+            return null;
+        }
+        Slot overflow = overflowMap.get(requestId);
+        return overflow != null ? overflow.done : null;
+    }
+
+    /**
+     * get and remove. only one of the caller can take the rpcDone
+     *
+     * @param requestId requestId
+     * @return null if not exist or already take by other thread
+     */
+    public RpcDone take(int requestId) {
+        Slot slot = slots[requestId & mask];
+        if (slot.requestId == requestId) {
+            if (Slot.REQUEST_ID_UPDATER.compareAndSet(slot, requestId, TAKING)) {
+                return slot.release();
+            }
+            return null;
+        }
+        if (overflowMap.isEmpty()) {
+            return null;
+        }
+        Slot overflow = overflowMap.remove(requestId);
+        return overflow != null ? overflow.release() : null;
+    }
+
+    /**
+     * Fail the calls put with the outstanding counter. (the channel of the counter is closed, the calls never response)
+     * the rpcDone receive a {@link ResponseLastPacket} of {@link RpcPacket.ResponsePacket#SERVICE_UNAVAILABLE}
+     *
+     * @param outstanding the outstanding counter of the closed channel
+     * @param message     the fail message
+     * @return the count of the fail calls
+     */
+    public int failOutstanding(AtomicInteger outstanding, String message) {
+        if (outstanding == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Slot slot : slots) {
+            int requestId = slot.requestId;
+            if (requestId < 0 || slot.done == null || slot.outstanding != outstanding) {
+                continue;
+            }
+            if (Slot.REQUEST_ID_UPDATER.compareAndSet(slot, requestId, TAKING)) {
+                fail(requestId, slot.release(), message);
+                count++;
+            }
+        }
+        if (!overflowMap.isEmpty()) {
+            for (Map.Entry<Integer, Slot> entry : overflowMap.entrySet()) {
+                Slot slot = entry.getValue();
+                if (slot.done != null && slot.outstanding == outstanding && overflowMap.remove(entry.getKey(), slot)) {
+                    fail(entry.getKey(), slot.release(), message);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void fail(int requestId, RpcDone done, String message) {
+        if (done == null) {
+            return;
+        }
+        ResponseLastPacket response = RpcPacket.ResponsePacket.newLastPacket();
+        response.setRequestId(requestId);
+        response.setStatus(RpcPacket.ResponsePacket.SERVICE_UNAVAILABLE);
+        response.setMessage(message);
+        try {
+            done.done(response);
+        } catch (Exception e) {
+            LOGGER.warn("fail rpcDone exception. requestId = {}, message = {}.", requestId, e.toString(), e);
+        }
+    }
+
+    public int size() {
+        int size = overflowMap.size();
+        for (Slot slot : slots) {
+            if (slot.requestId >= 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    @Override
+    public String toString() {
+        return "RpcDoneTable{" +
+                "size=" + size() +
+                ", capacity=" + slots.length +
+                ", overflow=" + overflowMap.size() +
+                '}';
+    }
+
+    private static class Slot {
+        private static final AtomicIntegerFieldUpdater<Slot> REQUEST_ID_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Slot.class, "requestId");
+        private volatile int requestId = FREE;
+        private volatile RpcDone done;
+        private long createTimestamp;
+        private Timeout timeout;
+        private AtomicInteger outstanding;
+
+        /**
+         * only call by the owner. (the CAS winner)
+         */
+        RpcDone release() {
+            RpcDone done = this.done;
+            Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+                this.timeout = null;
+            }
+            AtomicInteger outstanding = this.outstanding;
+            if (outstanding != null) {
+                decrement(outstanding);
+                this.outstanding = null;
+            }
+            this.done = null;
+            this.requestId = FREE;
+            return done;
+        }
+
+        /**
+         * the counter may be reset when the channel closed
+         */
+        private static void decrement(AtomicInteger outstanding) {
+            int count;
+            do {
+                count = outstanding.get();
+                if (count <= 0) {
+                    return;
+                }
+            } while (!outstanding.compareAndSet(count, count - 1));
+        }
+    }
+
+    private class TimeoutTask implements TimerTask {
+        private final int requestId;
+        private final Slot slot;
+
+        TimeoutTask(int requestId, Slot slot) {
+            this.requestId = requestId;
+            this.slot = slot;
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            Slot slot = this.slot;
+            if (slot.done == null && slot.requestId == requestId) {
+                // the put not publish yet
+                timeout.timer().newTimeout(this, 10, TimeUnit.MILLISECONDS);
+                return;
+            }
+            long createTimestamp = slot.createTimestamp;
+            boolean own;
+            if (slot == slots[requestId & mask]) {
+                own = Slot.REQUEST_ID_UPDATER.compareAndSet(slot, requestId, TAKING);
+            } else {
+                own = overflowMap.remove(requestId, slot);
+            }
+            if (!own) {
+                return;
+            }
+            slot.timeout = null;
+            RpcDone done = slot.release();
+            if (done != null) {
+                try {
+                    done.doneTimeout(requestId, createTimestamp, System.currentTimeMillis());
+                } catch (Exception e) {
+                    LOGGER.warn("doneTimeout exception. requestId = {}, message = {}.", requestId, e.toString(), e);
+                }
+            }
+        }
+    }
+}
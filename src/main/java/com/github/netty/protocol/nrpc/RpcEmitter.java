@@ -1,5 +1,7 @@
 package com.github.netty.protocol.nrpc;
 
+import io.netty.channel.ChannelHandlerContext;
+
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
@@ -96,6 +98,20 @@ public class RpcEmitter<RESULT, CHUNK> implements Emitter<RESULT, CHUNK> {
         return completeFlag.get();
     }
 
+    /**
+     * @return false if completed or the connection is closed
+     */
+    public boolean isActive() {
+        if (isComplete()) {
+            return false;
+        }
+        if (!usable) {
+            return true;
+        }
+        ChannelHandlerContext context = channelHandler.getContext();
+        return context == null || context.channel().isActive();
+    }
+
     @Override
     public int getSendCount() {
         return sendCount.get();
@@ -59,8 +59,13 @@ public class RpcMethod<INSTANCE> {
     private final String methodDescriptorName;
     private final String parameterTypeDescriptorName;
     private final MethodHandle methodHandle;
+    private final RpcMethodInvoker invoker;
     private final int parameterCount;
     private String loggerName;
+    /**
+     * server only. null is use the bulkhead of the service
+     */
+    private RpcBulkhead bulkhead;
 
     private RpcMethod(INSTANCE instance, Method method, String[] parameterNames, String methodName,
                       NRpcMethod methodAnnotation,
@@ -105,6 +110,7 @@ public class RpcMethod<INSTANCE> {
             methodHandle = null;
         }
         this.methodHandle = methodHandle;
+        this.invoker = RpcMethodInvoker.newInstance(method, methodHandle);
     }
 
     public static String getMethodDescriptorName(Method method) {
@@ -221,6 +227,18 @@ public class RpcMethod<INSTANCE> {
         return methodAnnotation != null && methodAnnotation.timeoutInterrupt();
     }
 
+    public boolean isDropExpired() {
+        return methodAnnotation == null || methodAnnotation.dropExpired();
+    }
+
+    public RpcBulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    void setBulkhead(RpcBulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
     public boolean isInnerMethodFlag() {
         return innerMethodFlag;
     }
@@ -309,14 +327,11 @@ public class RpcMethod<INSTANCE> {
     }
 
     public Object invoke(Object instance, Object[] args) throws Throwable {
-        if (methodHandle != null) {
-            Object[] methodHandleArgs = new Object[parameterCount + 1];
-            methodHandleArgs[0] = instance;
-            System.arraycopy(args, 0, methodHandleArgs, 1, args.length);
-            return methodHandle.invokeWithArguments(methodHandleArgs);
-        } else {
-            return method.invoke(instance, args);
-        }
+        return invoker.invoke(instance, args);
+    }
+
+    public RpcMethodInvoker getInvoker() {
+        return invoker;
     }
 
     public String getParameterTypeDescriptorName() {
@@ -0,0 +1,356 @@
+package com.github.netty.protocol.nrpc;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invoke the rpc method. created once when the method registered.
+ * <p>
+ * 1. parameterCount &lt;= 4. a class generated by {@link LambdaMetafactory} (a direct call, the JIT can inline it)
+ * 2. parameterCount &lt;= 8. {@link MethodHandle#invokeExact(Object...)} with the generic method type
+ * 3. others. a spread {@link MethodHandle} with invokeExact
+ * 4. the methodHandle is null (not public). {@link Method#invoke(Object, Object...)}
+ * <p>
+ * all of them is no longer call {@link MethodHandle#invokeWithArguments(Object...)}. (box, copy args array, generic adapter in every call)
+ *
+ * @author wangzihao
+ */
+public abstract class RpcMethodInvoker {
+    private static final int LAMBDA_MAX_PARAMETER_COUNT = 4;
+    private static final int EXACT_MAX_PARAMETER_COUNT = 8;
+
+    public abstract Object invoke(Object instance, Object[] args) throws Throwable;
+
+    public static RpcMethodInvoker newInstance(Method method, MethodHandle methodHandle) {
+        if (methodHandle == null) {
+            return new ReflectInvoker(method);
+        }
+        int parameterCount = method.getParameterCount();
+        if (parameterCount <= LAMBDA_MAX_PARAMETER_COUNT && isLambdaAccessible(method)) {
+            try {
+                return newLambdaInvoker(method, methodHandle);
+            } catch (Throwable ignored) {
+                // fallback to invokeExact
+            }
+        }
+        MethodHandle genericHandle = methodHandle.asType(MethodType.genericMethodType(parameterCount + 1));
+        if (parameterCount <= EXACT_MAX_PARAMETER_COUNT) {
+            return new ExactInvoker(genericHandle, parameterCount);
+        } else {
+            return new SpreadInvoker(genericHandle.asSpreader(Object[].class, parameterCount));
+        }
+    }
+
+    /**
+     * The generated class is defined in the classloader of RpcMethodInvoker, so all of the types must be visible from here.
+     * (e.g. spring-boot-devtools load the application classes in a child classloader)
+     */
+    private static boolean isLambdaAccessible(Method method) {
+        if (!isAccessible(method.getDeclaringClass()) || !isAccessible(method.getReturnType())) {
+            return false;
+        }
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (!isAccessible(parameterType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAccessible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(type.getName(), false, RpcMethodInvoker.class.getClassLoader()) == type;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static RpcMethodInvoker newLambdaInvoker(Method method, MethodHandle methodHandle) throws Throwable {
+        int parameterCount = method.getParameterCount();
+        boolean returnVoid = method.getReturnType() == void.class;
+        Class<?> functionClass = returnVoid ? VOID_FUNCTION_CLASSES[parameterCount] : FUNCTION_CLASSES[parameterCount];
+
+        MethodType samMethodType = MethodType.genericMethodType(parameterCount + 1);
+        if (returnVoid) {
+            samMethodType = samMethodType.changeReturnType(void.class);
+        }
+        MethodType instantiatedMethodType = methodHandle.type().wrap();
+        if (returnVoid) {
+            instantiatedMethodType = instantiatedMethodType.changeReturnType(void.class);
+        }
+        CallSite callSite = LambdaMetafactory.metafactory(MethodHandles.lookup(),
+                "apply", MethodType.methodType(functionClass),
+                samMethodType, methodHandle, instantiatedMethodType);
+        Object function = callSite.getTarget().invoke();
+        switch (parameterCount) {
+            case 0:
+                return returnVoid ? new VoidInvoker0((VoidFunction0) function) : new Invoker0((Function0) function);
+            case 1:
+                return returnVoid ? new VoidInvoker1((VoidFunction1) function) : new Invoker1((Function1) function);
+            case 2:
+                return returnVoid ? new VoidInvoker2((VoidFunction2) function) : new Invoker2((Function2) function);
+            case 3:
+                return returnVoid ? new VoidInvoker3((VoidFunction3) function) : new Invoker3((Function3) function);
+            case 4:
+                return returnVoid ? new VoidInvoker4((VoidFunction4) function) : new Invoker4((Function4) function);
+            default:
+                throw new IllegalStateException("parameterCount=" + parameterCount);
+        }
+    }
+
+    private static final Class<?>[] FUNCTION_CLASSES = {
+            Function0.class, Function1.class, Function2.class, Function3.class, Function4.class};
+    private static final Class<?>[] VOID_FUNCTION_CLASSES = {
+            VoidFunction0.class, VoidFunction1.class, VoidFunction2.class, VoidFunction3.class, VoidFunction4.class};
+
+    public interface Function0 {
+        Object apply(Object instance);
+    }
+
+    public interface Function1 {
+        Object apply(Object instance, Object arg0);
+    }
+
+    public interface Function2 {
+        Object apply(Object instance, Object arg0, Object arg1);
+    }
+
+    public interface Function3 {
+        Object apply(Object instance, Object arg0, Object arg1, Object arg2);
+    }
+
+    public interface Function4 {
+        Object apply(Object instance, Object arg0, Object arg1, Object arg2, Object arg3);
+    }
+
+    public interface VoidFunction0 {
+        void apply(Object instance);
+    }
+
+    public interface VoidFunction1 {
+        void apply(Object instance, Object arg0);
+    }
+
+    public interface VoidFunction2 {
+        void apply(Object instance, Object arg0, Object arg1);
+    }
+
+    public interface VoidFunction3 {
+        void apply(Object instance, Object arg0, Object arg1, Object arg2);
+    }
+
+    public interface VoidFunction4 {
+        void apply(Object instance, Object arg0, Object arg1, Object arg2, Object arg3);
+    }
+
+    private static class Invoker0 extends RpcMethodInvoker {
+        private final Function0 function;
+
+        Invoker0(Function0 function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) {
+            return function.apply(instance);
+        }
+    }
+
+    private static class Invoker1 extends RpcMethodInvoker {
+        private final Function1 function;
+
+        Invoker1(Function1 function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) {
+            return function.apply(instance, args[0]);
+        }
+    }
+
+    private static class Invoker2 extends RpcMethodInvoker {
+        private final Function2 function;
+
+        Invoker2(Function2 function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) {
+            return function.apply(instance, args[0], args[1]);
+        }
+    }
+
+    private static class Invoker3 extends RpcMethodInvoker {
+        private final Function3 function;
+
+        Invoker3(Function3 function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) {
+            return function.apply(instance, args[0], args[1], args[2]);
+        }
+    }
+
+    private static class Invoker4 extends RpcMethodInvoker {
+        private final Function4 function;
+
+        Invoker4(Function4 function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) {
+            return function.apply(instance, args[0], args[1], args[2], args[3]);
+        }
+    }
+
+    private static class VoidInvoker0 extends RpcMethodInvoker {
+        private final VoidFunction0 function;
+
+        VoidInvoker0(VoidFunction0 function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) {
+            function.apply(instance);
+            return null;
+        }
+    }
+
+    private static class VoidInvoker1 extends RpcMethodInvoker {
+        private final VoidFunction1 function;
+
+        VoidInvoker1(VoidFunction1 function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) {
+            function.apply(instance, args[0]);
+            return null;
+        }
+    }
+
+    private static class VoidInvoker2 extends RpcMethodInvoker {
+        private final VoidFunction2 function;
+
+        VoidInvoker2(VoidFunction2 function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) {
+            function.apply(instance, args[0], args[1]);
+            return null;
+        }
+    }
+
+    private static class VoidInvoker3 extends RpcMethodInvoker {
+        private final VoidFunction3 function;
+
+        VoidInvoker3(VoidFunction3 function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) {
+            function.apply(instance, args[0], args[1], args[2]);
+            return null;
+        }
+    }
+
+    private static class VoidInvoker4 extends RpcMethodInvoker {
+        private final VoidFunction4 function;
+
+        VoidInvoker4(VoidFunction4 function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) {
+            function.apply(instance, args[0], args[1], args[2], args[3]);
+            return null;
+        }
+    }
+
+    private static class ExactInvoker extends RpcMethodInvoker {
+        private final MethodHandle methodHandle;
+        private final int parameterCount;
+
+        ExactInvoker(MethodHandle genericMethodHandle, int parameterCount) {
+            this.methodHandle = genericMethodHandle;
+            this.parameterCount = parameterCount;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) throws Throwable {
+            switch (parameterCount) {
+                case 0:
+                    return (Object) methodHandle.invokeExact(instance);
+                case 1:
+                    return (Object) methodHandle.invokeExact(instance, args[0]);
+                case 2:
+                    return (Object) methodHandle.invokeExact(instance, args[0], args[1]);
+                case 3:
+                    return (Object) methodHandle.invokeExact(instance, args[0], args[1], args[2]);
+                case 4:
+                    return (Object) methodHandle.invokeExact(instance, args[0], args[1], args[2], args[3]);
+                case 5:
+                    return (Object) methodHandle.invokeExact(instance, args[0], args[1], args[2], args[3], args[4]);
+                case 6:
+                    return (Object) methodHandle.invokeExact(instance, args[0], args[1], args[2], args[3], args[4], args[5]);
+                case 7:
+                    return (Object) methodHandle.invokeExact(instance, args[0], args[1], args[2], args[3], args[4], args[5], args[6]);
+                case 8:
+                    return (Object) methodHandle.invokeExact(instance, args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7]);
+                default:
+                    throw new IllegalStateException("parameterCount=" + parameterCount);
+            }
+        }
+    }
+
+    private static class SpreadInvoker extends RpcMethodInvoker {
+        private final MethodHandle methodHandle;
+
+        SpreadInvoker(MethodHandle spreadMethodHandle) {
+            this.methodHandle = spreadMethodHandle;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) throws Throwable {
+            return (Object) methodHandle.invokeExact(instance, args);
+        }
+    }
+
+    private static class ReflectInvoker extends RpcMethodInvoker {
+        private final Method method;
+
+        ReflectInvoker(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Object invoke(Object instance, Object[] args) throws Throwable {
+            return method.invoke(instance, args);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.github.netty.protocol.nrpc;
 import com.github.netty.core.util.Recyclable;
 import com.github.netty.core.util.Recycler;
 import com.github.netty.protocol.nrpc.codec.DataCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 import java.util.StringJoiner;
 import java.util.function.Consumer;
@@ -52,6 +54,11 @@ public class RpcPacket implements Recyclable {
      */
     private byte ack = ACK_NO;
     private byte[] data;
+    /**
+     * data in the pooled buffer. (a retained slice of the inbound frame, or the outbound buffer written by the codec)
+     * the packet own it, until {@link #release()} or the encoder write it.
+     */
+    private ByteBuf dataBuf;
     private long packetLength;
 
     public RpcPacket(int packetType) {
@@ -78,7 +85,17 @@ public class RpcPacket implements Recyclable {
         return packetType;
     }
 
+    /**
+     * if the data is in the buffer, copy to byte[] and release the buffer.
+     *
+     * @return data
+     */
     public byte[] getData() {
+        ByteBuf dataBuf = this.dataBuf;
+        if (data == null && dataBuf != null) {
+            this.data = ByteBufUtil.getBytes(dataBuf);
+            release();
+        }
         return data;
     }
 
@@ -86,6 +103,38 @@ public class RpcPacket implements Recyclable {
         this.data = data;
     }
 
+    /**
+     * @return null if the data not in the buffer. use {@link #getData()}
+     */
+    public ByteBuf getDataBuf() {
+        return dataBuf;
+    }
+
+    public void setDataBuf(ByteBuf dataBuf) {
+        this.dataBuf = dataBuf;
+    }
+
+    public int getDataLength() {
+        ByteBuf dataBuf = this.dataBuf;
+        if (dataBuf != null) {
+            return dataBuf.readableBytes();
+        }
+        return data == null ? 0 : data.length;
+    }
+
+    /**
+     * Release the data buffer. can call many times
+     */
+    public void release() {
+        ByteBuf dataBuf = this.dataBuf;
+        if (dataBuf != null) {
+            this.dataBuf = null;
+            if (dataBuf.refCnt() > 0) {
+                dataBuf.release();
+            }
+        }
+    }
+
     @Override
     public String toString() {
         StringJoiner joiner = new StringJoiner(",", "{", "}")
@@ -102,7 +151,7 @@ public class RpcPacket implements Recyclable {
 
     @Override
     public void recycle() {
-
+        release();
     }
 
     /**
@@ -166,6 +215,7 @@ public class RpcPacket implements Recyclable {
 
         @Override
         public void recycle() {
+            release();
 //            RECYCLER.recycleInstance(this);
         }
 
@@ -175,7 +225,7 @@ public class RpcPacket implements Recyclable {
             joiner.add("\"requestMappingName\":\"" + requestMappingName + "\"");
             joiner.add("\"version\":\"" + version + "\"");
             joiner.add("\"methodName\":\"" + methodName + "\"");
-            joiner.add("\"dataLength\":" + (getData() == null ? "null" : getData().length));
+            joiner.add("\"dataLength\":" + getDataLength());
         }
     }
 
@@ -193,6 +243,8 @@ public class RpcPacket implements Recyclable {
         public static final int NO_SUCH_SERVICE = 406;
         //服务器错误
         public static final int SERVER_ERROR = 500;
+        //服务繁忙(舱壁已满)
+        public static final int SERVICE_UNAVAILABLE = 503;
         private int requestId;
         private int status;
         private String message;
@@ -281,6 +333,7 @@ public class RpcPacket implements Recyclable {
 
         @Override
         public void recycle() {
+            release();
 //            this.message = null;
 //            this.encode = null;
 //            this.setData(null);
@@ -297,7 +350,7 @@ public class RpcPacket implements Recyclable {
                 joiner.add("\"message\":\"" + message.replace("\"", "\\\\\"") + "\"");
             }
             joiner.add("\"encode\":\"" + encode + "\"");
-            joiner.add("\"dataLength\":" + (getData() == null ? "null" : getData().length));
+            joiner.add("\"dataLength\":" + getDataLength());
         }
     }
 
@@ -4,10 +4,13 @@ import com.github.netty.annotation.NRpcMethod;
 import com.github.netty.annotation.NRpcService;
 import com.github.netty.core.AbstractChannelHandler;
 import com.github.netty.core.util.*;
+import com.github.netty.protocol.nrpc.codec.BinaryDataCodec;
 import com.github.netty.protocol.nrpc.codec.DataCodec;
 import com.github.netty.protocol.nrpc.codec.DataCodecUtil;
 import com.github.netty.protocol.nrpc.exception.RpcResponseException;
 import com.github.netty.protocol.nrpc.exception.RpcTimeoutException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 
@@ -21,6 +24,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
@@ -49,6 +53,11 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
      * Data encoder decoder. (Serialization or Deserialization)
      */
     private DataCodec dataCodec;
+    /**
+     * the client of the connection send the binary request. (negotiated, see {@link BinaryDataCodec})
+     */
+    private BinaryDataCodec binaryDataCodec;
+    private volatile boolean binaryDataCodecEnable;
     private ChannelHandlerContext context;
     private Supplier<Executor> executorSupplier;
     private Executor executor;
@@ -58,7 +67,9 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
     }
 
     public RpcServerChannelHandler(DataCodec dataCodec) {
-        super(true);
+        // not auto release. the request holds a retained slice of the frame (dataBuf),
+        // onMessageReceived recycle the sync request, the async request (rpc thread pool) is recycled by RpcRunnable
+        super(false);
         this.dataCodec = dataCodec;
         dataCodec.getEncodeRequestConsumerList().add(params -> {
             RpcContext<RpcServerInstance> rpcContext = CONTEXT_LOCAL.get();
@@ -146,7 +157,7 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
             response.setEncode(DataCodec.Encode.BINARY);
             response.setData(null);
             response.setStatus(SERVER_ERROR);
-            response.setMessage(channelHandler.dataCodec.buildThrowableRpcMessage(throwable));
+            response.setMessage(channelHandler.getResponseDataCodec().buildThrowableRpcMessage(throwable));
             logger.warn("invoke error = {}", throwable.toString(), throwable);
         } else if (result instanceof RpcEmitter) {
             RpcEmitter<?, ?> emitter = (RpcEmitter) result;
@@ -183,11 +194,19 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
                 response.setData((byte[]) result);
             } else {
                 response.setEncode(DataCodec.Encode.APP);
-                if (state == RpcContext.RpcState.WRITE_CHUNK) {
-                    response.setData(channelHandler.dataCodec.encodeChunkResponseData(result));
-                } else {
-                    response.setData(channelHandler.dataCodec.encodeResponseData(result, rpcMethod));
+                // write to the pooled buffer, the encoder send it without copy
+                ByteBuf dataBuf = channelHandler.alloc().ioBuffer();
+                try {
+                    if (state == RpcContext.RpcState.WRITE_CHUNK) {
+                        channelHandler.getResponseDataCodec().encodeChunkResponseData(result, dataBuf);
+                    } else {
+                        channelHandler.getResponseDataCodec().encodeResponseData(result, rpcMethod, dataBuf);
+                    }
+                } catch (Throwable e) {
+                    dataBuf.release();
+                    throw e;
                 }
+                response.setDataBuf(dataBuf);
             }
             response.setStatus(OK);
             response.setMessage("ok");
@@ -204,10 +223,53 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
         return dataCodec;
     }
 
+    /**
+     * @param defaultDataCodec the data codec of the service instance
+     * @param binary           the request data start with the magic byte of {@link BinaryDataCodec}
+     * @return the data codec to decode the request data
+     */
+    DataCodec getRequestDataCodec(DataCodec defaultDataCodec, boolean binary) {
+        if (!binary) {
+            return defaultDataCodec;
+        }
+        // the client support, response by the binary codec too
+        binaryDataCodecEnable = true;
+        return getBinaryDataCodec();
+    }
+
+    /**
+     * @return the data codec to encode the response data of the connection
+     */
+    DataCodec getResponseDataCodec() {
+        return binaryDataCodecEnable ? getBinaryDataCodec() : dataCodec;
+    }
+
+    BinaryDataCodec getBinaryDataCodec() {
+        BinaryDataCodec binaryDataCodec = this.binaryDataCodec;
+        if (binaryDataCodec == null) {
+            if (dataCodec instanceof BinaryDataCodec) {
+                binaryDataCodec = (BinaryDataCodec) dataCodec;
+            } else {
+                binaryDataCodec = new BinaryDataCodec(dataCodec);
+            }
+            this.binaryDataCodec = binaryDataCodec;
+        }
+        return binaryDataCodec;
+    }
+
+    public boolean isBinaryDataCodecEnable() {
+        return binaryDataCodecEnable;
+    }
+
     public ChannelHandlerContext getContext() {
         return context;
     }
 
+    ByteBufAllocator alloc() {
+        ChannelHandlerContext context = this.context;
+        return context != null ? context.alloc() : ByteBufAllocator.DEFAULT;
+    }
+
     public Supplier<Executor> getExecutorSupplier() {
         return executorSupplier;
     }
@@ -219,6 +281,7 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         this.context = ctx;
+        RpcWriteBatcher.bind(ctx.channel());
 
         RpcContext<RpcServerInstance> rpcContext = newRpcContext();
         rpcContext.setRemoteAddress((InetSocketAddress) ctx.channel().remoteAddress());
@@ -302,7 +365,7 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
                         response.setEncode(BINARY);
                         response.setStatus(ResponsePacket.NO_SUCH_SERVICE);
                         response.setMessage("not found service " + serverInstanceKey);
-                        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+                        RpcWriteBatcher.writeAndFlush(ctx.channel(), response).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
                         release = false;
                     } finally {
                         if (release) {
@@ -328,12 +391,22 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
                     int timeout = choseTimeout(rpcInstance.getTimeout(), rpcMethod.getTimeout(), request.getTimeout());
                     rpcContext.setTimeout(timeout);
                     RpcRunnable runnable = new RpcRunnable(threadPool, rpcMethod, timeout, response, request, dataCodec, this, rpcContext);
+                    runnable.dropExpired = rpcInstance.isDropExpired() && rpcMethod.isDropExpired();
                     if (timeout > 0) {
                         rpcServerMethodDoneMap.put(runnable, runnable, timeout);
                     }
-                    // execute by rpc thread pool
-                    threadPool.execute(runnable);
                     async = true;
+                    RpcBulkhead bulkhead = rpcInstance.getBulkhead(rpcMethod);
+                    if (bulkhead == null) {
+                        // execute by rpc thread pool
+                        try {
+                            threadPool.execute(runnable);
+                        } catch (RejectedExecutionException e) {
+                            runnable.reject(SERVICE_UNAVAILABLE, "rpc thread pool rejected. " + e);
+                        }
+                    } else if (!bulkhead.execute(runnable)) {
+                        runnable.reject(SERVICE_UNAVAILABLE, "bulkhead is full. " + bulkhead);
+                    }
                 } else {
                     // invoke method by sync
                     CONTEXT_LOCAL.set(rpcContext);
@@ -408,7 +481,7 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
         boolean release = true;
         try {
             if (ack == ACK_YES) {
-                context.writeAndFlush(response)
+                RpcWriteBatcher.writeAndFlush(context.channel(), response)
                         .addListener((ChannelFutureListener) future -> {
                             if (future.isSuccess()) {
                                 onStateUpdate(rpcContext, rpcState);
@@ -559,7 +632,9 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
                 completeExceptionally(new RpcResponseException(status, "Failure rpc response. status=" + status + ",message=" + packet.getMessage() + ",response=" + packet, true));
             } else {
                 RpcServerInstance instance = (RpcServerInstance) emitter.rpcMethod.getInstance();
-                Object data = instance.getDataCodec().decodeChunkResponseData(packet.getData(), emitter.rpcMethod);
+                byte[] ackData = packet.getData();
+                DataCodec dataCodec = emitter.channelHandler.getRequestDataCodec(instance.getDataCodec(), BinaryDataCodec.isBinary(ackData));
+                Object data = dataCodec.decodeChunkResponseData(ackData, emitter.rpcMethod);
                 complete(cast(data));
             }
         }
@@ -581,8 +656,10 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
         Thread taskThread;
         boolean done = false;
         boolean timeoutInterrupt;
+        boolean dropExpired;
         int timeout;
         Executor executor;
+        RpcBulkhead bulkhead;
 
         RpcRunnable(Executor executor, RpcMethod<RpcServerInstance> rpcMethod,
                     int timeout,
@@ -620,8 +697,83 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
             return super.equals(obj);
         }
 
+        /**
+         * the client timeout already expired. (wait too long in the queue of the thread pool or the bulkhead)
+         * the client not wait the response, invoke is waste.
+         */
+        boolean isClientExpired() {
+            int clientTimeout = request.getTimeout();
+            return dropExpired && request.getAck() == ACK_YES && clientTimeout > 0
+                    && System.currentTimeMillis() - rpcContext.getRpcBeginTimestamp() >= clientTimeout;
+        }
+
+        /**
+         * not invoke, response the status. (e.g. the bulkhead is full)
+         *
+         * @param status  status
+         * @param message message
+         */
+        void reject(int status, String message) {
+            done = true;
+            if (timeout > 0) {
+                channelHandler.rpcServerMethodDoneMap.remove(this);
+            }
+            CONTEXT_LOCAL.set(rpcContext);
+            try {
+                response.setEncode(DataCodec.Encode.BINARY);
+                response.setStatus(status);
+                response.setMessage(message);
+                response.setData(null);
+                channelHandler.writeAndFlush(request.getAck(), response, rpcContext, RpcContext.RpcState.WRITE_FINISH);
+                rpcContext.setRpcEndTimestamp(System.currentTimeMillis());
+                channelHandler.onResponseAfter(rpcContext);
+            } finally {
+                request.recycle();
+                CONTEXT_LOCAL.remove();
+            }
+        }
+
+        /**
+         * not invoke and not response. the client already timeout.
+         */
+        private void drop() {
+            done = true;
+            if (timeout > 0) {
+                channelHandler.rpcServerMethodDoneMap.remove(this);
+            }
+            CONTEXT_LOCAL.set(rpcContext);
+            try {
+                rpcContext.setRpcEndTimestamp(System.currentTimeMillis());
+                if (timeoutNotifyFlag.compareAndSet(false, true)) {
+                    channelHandler.onStateUpdate(rpcContext, RpcContext.RpcState.TIMEOUT);
+                    for (RpcServerAop aop : channelHandler.nettyRpcServerAopList) {
+                        aop.onTimeout(rpcContext);
+                    }
+                }
+            } finally {
+                RecyclableUtil.release(response);
+                request.recycle();
+                CONTEXT_LOCAL.remove();
+            }
+        }
+
         @Override
         public void run() {
+            RpcBulkhead bulkhead = this.bulkhead;
+            try {
+                if (isClientExpired()) {
+                    drop();
+                } else {
+                    invoke();
+                }
+            } finally {
+                if (bulkhead != null) {
+                    bulkhead.release();
+                }
+            }
+        }
+
+        private void invoke() {
             taskThread = Thread.currentThread();
             CONTEXT_LOCAL.set(rpcContext);
             Object result = null;
@@ -632,6 +784,10 @@ public class RpcServerChannelHandler extends AbstractChannelHandler<RpcPacket, O
                 throwable = t;
             }
             done = true;
+            if (timeout > 0) {
+                // cancel the timeout, not wait expiry
+                channelHandler.rpcServerMethodDoneMap.remove(this);
+            }
             buildAndWriteAndFlush(request, response, rpcContext, channelHandler, rpcMethod, result, throwable, RpcContext.RpcState.WRITE_FINISH, null, this, -1, null);
             rpcContext.setRpcEndTimestamp(System.currentTimeMillis());
             try {
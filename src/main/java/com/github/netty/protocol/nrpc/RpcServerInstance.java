@@ -1,8 +1,11 @@
 package com.github.netty.protocol.nrpc;
 
+import com.github.netty.annotation.NRpcMethod;
 import com.github.netty.annotation.NRpcService;
 import com.github.netty.core.util.ReflectUtil;
+import com.github.netty.protocol.nrpc.codec.BinaryDataCodec;
 import com.github.netty.protocol.nrpc.codec.DataCodec;
+import io.netty.buffer.ByteBuf;
 
 import java.lang.reflect.Method;
 import java.util.Map;
@@ -23,6 +26,11 @@ public class RpcServerInstance {
     private Function<Method, String[]> methodToParameterNamesFunction;
     private String version;
     private Integer timeout;
+    /**
+     * null is no limit
+     */
+    private RpcBulkhead bulkhead;
+    private boolean dropExpired = true;
 
     /**
      * A constructor
@@ -46,6 +54,19 @@ public class RpcServerInstance {
         if (rpcMethodMap.isEmpty()) {
             throw new IllegalStateException("An RPC service must have at least one method, class=[" + instance.getClass().getSimpleName() + "]");
         }
+        NRpcService rpcInterfaceAnn = ReflectUtil.findAnnotation(instance.getClass(), NRpcService.class);
+        if (rpcInterfaceAnn != null) {
+            this.dropExpired = rpcInterfaceAnn.dropExpired();
+            if (rpcInterfaceAnn.maxConcurrent() > 0) {
+                this.bulkhead = new RpcBulkhead(instance.getClass().getSimpleName(), rpcInterfaceAnn.maxConcurrent(), rpcInterfaceAnn.maxQueue());
+            }
+        }
+        for (RpcMethod<RpcServerInstance> rpcMethod : rpcMethodMap.values()) {
+            NRpcMethod methodAnnotation = rpcMethod.getMethodAnnotation();
+            if (methodAnnotation != null && methodAnnotation.maxConcurrent() > 0 && rpcMethod.getBulkhead() == null) {
+                rpcMethod.setBulkhead(new RpcBulkhead(instance.getClass().getSimpleName() + "#" + rpcMethod.getMethodName(), methodAnnotation.maxConcurrent(), methodAnnotation.maxQueue()));
+            }
+        }
     }
 
     public static boolean isRpcInnerClass(Class clazz) {
@@ -90,6 +111,33 @@ public class RpcServerInstance {
         this.timeout = timeout;
     }
 
+    /**
+     * the bulkhead of the method, if not exist then the service.
+     *
+     * @param rpcMethod rpcMethod
+     * @return null is no limit
+     */
+    public RpcBulkhead getBulkhead(RpcMethod<RpcServerInstance> rpcMethod) {
+        RpcBulkhead methodBulkhead = rpcMethod.getBulkhead();
+        return methodBulkhead != null ? methodBulkhead : bulkhead;
+    }
+
+    public RpcBulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public void setBulkhead(RpcBulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    public boolean isDropExpired() {
+        return dropExpired;
+    }
+
+    public void setDropExpired(boolean dropExpired) {
+        this.dropExpired = dropExpired;
+    }
+
     public String getVersion() {
         return version;
     }
@@ -110,7 +158,18 @@ public class RpcServerInstance {
                          RpcContext<RpcServerInstance> rpcContext, RpcServerChannelHandler server) throws Throwable {
         server.onStateUpdate(rpcContext, INIT);
         try {
-            Object[] args = dataCodec.decodeRequestData(rpcRequest.getData(), rpcMethod);
+            Object[] args;
+            ByteBuf dataBuf = rpcRequest.getDataBuf();
+            if (dataBuf != null) {
+                try {
+                    args = server.getRequestDataCodec(dataCodec, BinaryDataCodec.isBinary(dataBuf)).decodeRequestData(dataBuf, rpcMethod);
+                } finally {
+                    rpcRequest.release();
+                }
+            } else {
+                byte[] data = rpcRequest.getData();
+                args = server.getRequestDataCodec(dataCodec, BinaryDataCodec.isBinary(data)).decodeRequestData(data, rpcMethod);
+            }
             rpcContext.setArgs(args);
             server.onStateUpdate(rpcContext, READ_ING);
 
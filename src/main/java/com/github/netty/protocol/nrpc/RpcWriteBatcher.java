@@ -0,0 +1,173 @@
+package com.github.netty.protocol.nrpc;
+
+import com.github.netty.core.util.RecyclableUtil;
+import com.github.netty.core.util.SystemPropertyUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.util.AttributeKey;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Write coalescing of a channel. (the client request, the server response)
+ * <p>
+ * {@link Channel#writeAndFlush(Object)} from the business thread submit a task and flush (a syscall) for every packet.
+ * the batcher put the packets into a mpsc queue, and only one drain task in the event loop at the same time.
+ * the drain task write all of the packets, then flush once.
+ * <p>
+ * 1. flush at the end of the drain (the current event loop tick). no additional latency.
+ * 2. flush if write maxCount packets or the pending bytes &gt;= maxBytes, so the big batch not wait.
+ * 3. flushDelayMicros &gt; 0. wait more packets before flush. (more throughput, more latency)
+ * the delay not use more than 1/{@link #LATENCY_BUDGET_RATIO} of the smallest {@link RpcPacket.RequestPacket#getTimeout()} in the batch,
+ * else flush at once.
+ * <p>
+ * default disable.
+ * -Dnetty-rpc.writeBatch.enable=false
+ * -Dnetty-rpc.writeBatch.maxCount=64
+ * -Dnetty-rpc.writeBatch.maxBytes=65536
+ * -Dnetty-rpc.writeBatch.flushDelayMicros=0
+ *
+ * @author wangzihao
+ */
+public class RpcWriteBatcher implements Runnable {
+    public static final boolean ENABLE = SystemPropertyUtil.getBoolean("netty-rpc.writeBatch.enable", false);
+    private static final int MAX_COUNT = SystemPropertyUtil.getInt("netty-rpc.writeBatch.maxCount", 64);
+    private static final long MAX_BYTES = SystemPropertyUtil.getLong("netty-rpc.writeBatch.maxBytes", 65536);
+    private static final long FLUSH_DELAY_MICROS = SystemPropertyUtil.getLong("netty-rpc.writeBatch.flushDelayMicros", 0);
+    private static final int LATENCY_BUDGET_RATIO = 10;
+    private static final AttributeKey<RpcWriteBatcher> BATCHER_KEY = AttributeKey.valueOf(RpcWriteBatcher.class + "#batcher");
+    private static final AtomicIntegerFieldUpdater<RpcWriteBatcher> DRAIN_SCHEDULED_UPDATER = AtomicIntegerFieldUpdater.newUpdater(RpcWriteBatcher.class, "drainScheduled");
+    private final Channel channel;
+    private final Queue<BatchPromise> queue = PlatformDependent.newMpscQueue();
+    private final int maxCount;
+    private final long maxBytes;
+    private final long flushDelayMicros;
+    private final Runnable flushTask = this::delayFlush;
+    private volatile int drainScheduled;
+    /**
+     * only access by the event loop
+     */
+    private boolean flushScheduled;
+
+    public RpcWriteBatcher(Channel channel) {
+        this(channel, MAX_COUNT, MAX_BYTES, FLUSH_DELAY_MICROS);
+    }
+
+    public RpcWriteBatcher(Channel channel, int maxCount, long maxBytes, long flushDelayMicros) {
+        this.channel = channel;
+        this.maxCount = Math.max(1, maxCount);
+        this.maxBytes = maxBytes;
+        this.flushDelayMicros = flushDelayMicros;
+    }
+
+    /**
+     * bind a batcher to the channel. if disable, not bind.
+     *
+     * @param channel channel
+     */
+    public static void bind(Channel channel) {
+        if (ENABLE) {
+            channel.attr(BATCHER_KEY).set(new RpcWriteBatcher(channel));
+        }
+    }
+
+    /**
+     * writeAndFlush by the batcher of the channel, if the channel not bind, use {@link Channel#writeAndFlush(Object)}
+     *
+     * @param channel channel
+     * @param msg     msg
+     * @return future
+     */
+    public static ChannelFuture writeAndFlush(Channel channel, Object msg) {
+        RpcWriteBatcher batcher = channel.attr(BATCHER_KEY).get();
+        if (batcher == null) {
+            return channel.writeAndFlush(msg);
+        } else {
+            return batcher.writeAndFlush(msg);
+        }
+    }
+
+    public ChannelFuture writeAndFlush(Object msg) {
+        BatchPromise promise = new BatchPromise(channel, msg);
+        queue.offer(promise);
+        if (DRAIN_SCHEDULED_UPDATER.compareAndSet(this, 0, 1)) {
+            try {
+                channel.eventLoop().execute(this);
+            } catch (RejectedExecutionException e) {
+                drainScheduled = 0;
+                failAll(e);
+            }
+        }
+        return promise;
+    }
+
+    @Override
+    public void run() {
+        // reset before poll, the packet offer after poll will schedule a new drain
+        drainScheduled = 0;
+        int count = 0;
+        long minTimeoutMicros = Long.MAX_VALUE;
+        BatchPromise promise;
+        while ((promise = queue.poll()) != null) {
+            Object msg = promise.msg;
+            promise.msg = null;
+            if (msg instanceof RpcPacket.RequestPacket) {
+                int timeout = ((RpcPacket.RequestPacket) msg).getTimeout();
+                if (timeout > 0) {
+                    minTimeoutMicros = Math.min(minTimeoutMicros, TimeUnit.MILLISECONDS.toMicros(timeout));
+                }
+            }
+            channel.write(msg, promise);
+            if (++count >= maxCount || getPendingBytes() >= maxBytes) {
+                channel.flush();
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            if (flushDelayMicros <= 0 || flushDelayMicros > minTimeoutMicros / LATENCY_BUDGET_RATIO) {
+                channel.flush();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                channel.eventLoop().schedule(flushTask, flushDelayMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+    }
+
+    private void delayFlush() {
+        flushScheduled = false;
+        channel.flush();
+    }
+
+    private long getPendingBytes() {
+        ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+        return outboundBuffer == null ? 0 : outboundBuffer.totalPendingWriteBytes();
+    }
+
+    private void failAll(Throwable cause) {
+        BatchPromise promise;
+        while ((promise = queue.poll()) != null) {
+            Object msg = promise.msg;
+            promise.msg = null;
+            RecyclableUtil.release(msg);
+            promise.tryFailure(cause);
+        }
+    }
+
+    /**
+     * the promise hold the msg until written, save a queue node.
+     */
+    private static class BatchPromise extends DefaultChannelPromise {
+        private Object msg;
+
+        BatchPromise(Channel channel, Object msg) {
+            super(channel);
+            this.msg = msg;
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package com.github.netty.protocol.nrpc.codec;
+
+import com.github.netty.core.util.TypeUtil;
+import com.github.netty.protocol.nrpc.RpcClient;
+import com.github.netty.protocol.nrpc.RpcMethod;
+import com.github.netty.protocol.nrpc.RpcServerInstance;
+import com.github.netty.protocol.nrpc.exception.RpcDecodeException;
+import com.github.netty.protocol.nrpc.exception.RpcEncodeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Positional binary codec. no parameter name map, no json text.
+ * <p>
+ * Request data
+ * -+---1B---+-----4B------+-----------+-----------+-----+
+ * | magic  | schema hash | argument0 | argument1 | ... |
+ * -+--------+-------------+-----------+-----------+-----+
+ * the arguments write by the order of the method parameters. the schema (type descriptor of each parameter) is
+ * precomputed once per method. primitive write without tag (int/long is zigzag varint),
+ * the other write a 1 byte tag + value. (null, boxed, String, byte[] is native.
+ * the other object is encoded by the fallback codec, and decoded with the declared generic type)
+ * <p>
+ * Response data / chunk data
+ * -+---1B---+--------------------+
+ * | magic  | tag + value        |
+ * -+--------+--------------------+
+ * <p>
+ * Negotiation. the client use it only if the server support it with the same fallback
+ * (ask on connect by {@link com.github.netty.protocol.nrpc.service.RpcCommandService#dataCodecs()}, match {@link #getName()}),
+ * else use the fallback codec. the server find the magic byte of the request, and response by this codec on the connection.
+ * the decoder of this codec read the data without the magic byte by the fallback codec, so the old clients keep working.
+ * <p>
+ * -Dnetty-nrpc.codec=binary
+ *
+ * @author wangzihao
+ */
+public class BinaryDataCodec implements DataCodec {
+    public static final String NAME = "binary";
+    /**
+     * not the first byte of java serialization (0xAC) or json text.
+     */
+    public static final byte MAGIC = (byte) 0xB7;
+    private static final byte[] EMPTY = {};
+    private static final Map<Method, Schema> SCHEMA_CACHE = new ConcurrentHashMap<>(64);
+    private static final FastThreadLocal<Map<String, Object>> PARAMETER_MAP_LOCAL = new FastThreadLocal<Map<String, Object>>() {
+        @Override
+        protected Map<String, Object> initialValue() throws Exception {
+            return new LinkedHashMap<>(32);
+        }
+    };
+
+    private static final byte KIND_VALUE = 0;
+    private static final byte KIND_BOOLEAN = 1;
+    private static final byte KIND_BYTE = 2;
+    private static final byte KIND_SHORT = 3;
+    private static final byte KIND_CHAR = 4;
+    private static final byte KIND_INT = 5;
+    private static final byte KIND_LONG = 6;
+    private static final byte KIND_FLOAT = 7;
+    private static final byte KIND_DOUBLE = 8;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_TRUE = 1;
+    private static final byte TAG_FALSE = 2;
+    private static final byte TAG_BYTE = 3;
+    private static final byte TAG_SHORT = 4;
+    private static final byte TAG_CHAR = 5;
+    private static final byte TAG_INT = 6;
+    private static final byte TAG_LONG = 7;
+    private static final byte TAG_FLOAT = 8;
+    private static final byte TAG_DOUBLE = 9;
+    private static final byte TAG_STRING = 10;
+    private static final byte TAG_BYTES = 11;
+    private static final byte TAG_OBJECT = 12;
+
+    private final DataCodec fallback;
+
+    public BinaryDataCodec() {
+        this(new JdkDataCodec());
+    }
+
+    /**
+     * @param fallback encode the object that is not the primitive/String/byte[], and used when the remote not support this codec.
+     */
+    public BinaryDataCodec(DataCodec fallback) {
+        this.fallback = fallback;
+    }
+
+    public static boolean isBinary(ByteBuf data) {
+        return data != null && data.isReadable() && data.getByte(data.readerIndex()) == MAGIC;
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    public DataCodec getFallback() {
+        return fallback;
+    }
+
+    /**
+     * the object argument is encoded by the fallback, so the both side must use the same fallback
+     *
+     * @return binary/{fallback name}. e.g. binary/jdk
+     */
+    @Override
+    public String getName() {
+        return NAME + "/" + fallback.getName();
+    }
+
+    @Override
+    public List<Consumer<Map<String, Object>>> getEncodeRequestConsumerList() {
+        return fallback.getEncodeRequestConsumerList();
+    }
+
+    @Override
+    public List<Consumer<Map<String, Object>>> getDecodeRequestConsumerList() {
+        return fallback.getDecodeRequestConsumerList();
+    }
+
+    @Override
+    public String buildThrowableRpcMessage(Throwable throwable) {
+        return fallback.buildThrowableRpcMessage(throwable);
+    }
+
+    @Override
+    public byte[] encodeRequestData(Object[] data, RpcMethod<RpcClient> rpcMethod) {
+        ByteBuf out = Unpooled.buffer();
+        encodeRequestData(data, rpcMethod, out);
+        return out.isReadable() ? ByteBufUtil.getBytes(out) : EMPTY;
+    }
+
+    @Override
+    public void encodeRequestData(Object[] data, RpcMethod<RpcClient> rpcMethod, ByteBuf out) {
+        Schema schema = getSchema(rpcMethod.getMethod());
+        if (schema.kinds.length == 0) {
+            return;
+        }
+        List<Consumer<Map<String, Object>>> consumerList = getEncodeRequestConsumerList();
+        if (!consumerList.isEmpty()) {
+            data = acceptParameterMap(data, rpcMethod, consumerList);
+        }
+        try {
+            out.writeByte(MAGIC);
+            out.writeInt(schema.hash);
+            for (int i = 0; i < schema.kinds.length; i++) {
+                writeArgument(out, schema.kinds[i], data == null ? null : data[i]);
+            }
+        } catch (RpcEncodeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RpcEncodeException("encodeRequestData " + rpcMethod + " binary error " + e, e);
+        }
+    }
+
+    @Override
+    public Object[] decodeRequestData(byte[] data, RpcMethod<RpcServerInstance> rpcMethod) {
+        if (!isBinary(data)) {
+            return fallback.decodeRequestData(data, rpcMethod);
+        }
+        return decodeRequestData(Unpooled.wrappedBuffer(data), rpcMethod);
+    }
+
+    @Override
+    public Object[] decodeRequestData(ByteBuf data, RpcMethod<RpcServerInstance> rpcMethod) {
+        if (!isBinary(data)) {
+            return fallback.decodeRequestData(data, rpcMethod);
+        }
+        Schema schema = getSchema(rpcMethod.getMethod());
+        ByteBuf in = data.duplicate();
+        in.skipBytes(1);
+        int hash = in.readInt();
+        if (hash != schema.hash) {
+            throw new RpcDecodeException("decodeRequestData " + rpcMethod + " binary error. the parameter types of the client and the server are different");
+        }
+        Object[] args = new Object[schema.kinds.length];
+        try {
+            for (int i = 0; i < args.length; i++) {
+                args[i] = readArgument(in, schema.kinds[i], schema.types[i]);
+            }
+        } catch (Exception e) {
+            throw new RpcDecodeException("decodeRequestData " + rpcMethod + " binary error " + e, e);
+        }
+        List<Consumer<Map<String, Object>>> consumerList = getDecodeRequestConsumerList();
+        if (!consumerList.isEmpty()) {
+            args = acceptParameterMap(args, rpcMethod, consumerList);
+        }
+        return args;
+    }
+
+    @Override
+    public byte[] encodeResponseData(Object data, RpcMethod<RpcServerInstance> rpcMethod) {
+        return encodeValue(data);
+    }
+
+    @Override
+    public void encodeResponseData(Object data, RpcMethod<RpcServerInstance> rpcMethod, ByteBuf out) {
+        out.writeByte(MAGIC);
+        writeValue(out, data);
+    }
+
+    @Override
+    public Object decodeResponseData(byte[] data, RpcMethod<RpcClient> rpcMethod) {
+        if (!isBinary(data)) {
+            return fallback.decodeResponseData(data, rpcMethod);
+        }
+        return decodeValue(Unpooled.wrappedBuffer(data), rpcMethod.getGenericReturnType());
+    }
+
+    @Override
+    public Object decodeResponseData(ByteBuf data, RpcMethod<RpcClient> rpcMethod) {
+        if (!isBinary(data)) {
+            return fallback.decodeResponseData(data, rpcMethod);
+        }
+        return decodeValue(data.duplicate(), rpcMethod.getGenericReturnType());
+    }
+
+    @Override
+    public Object decodeChunkResponseData(byte[] data, Type type) {
+        if (!isBinary(data)) {
+            return fallback.decodeChunkResponseData(data, type);
+        }
+        return decodeValue(Unpooled.wrappedBuffer(data), type);
+    }
+
+    @Override
+    public byte[] encodeChunkResponseData(Object data) {
+        return encodeValue(data);
+    }
+
+    @Override
+    public void encodeChunkResponseData(Object data, ByteBuf out) {
+        out.writeByte(MAGIC);
+        writeValue(out, data);
+    }
+
+    private byte[] encodeValue(Object data) {
+        ByteBuf out = Unpooled.buffer();
+        out.writeByte(MAGIC);
+        writeValue(out, data);
+        return ByteBufUtil.getBytes(out);
+    }
+
+    private Object decodeValue(ByteBuf in, Type type) {
+        in.skipBytes(1);
+        try {
+            return readValue(in, type);
+        } catch (Exception e) {
+            throw new RpcDecodeException("decodeResponseData " + type + " binary error " + e, e);
+        }
+    }
+
+    /**
+     * the parameter map consumers (e.g. aop) need the name map. put the arguments by name, and take back by name.
+     */
+    private Object[] acceptParameterMap(Object[] data, RpcMethod<?> rpcMethod, List<Consumer<Map<String, Object>>> consumerList) {
+        String[] parameterNames = rpcMethod.getParameterNames();
+        Map<String, Object> parameterMap = PARAMETER_MAP_LOCAL.get();
+        try {
+            for (int i = 0; i < parameterNames.length; i++) {
+                if (parameterNames[i] != null) {
+                    parameterMap.put(parameterNames[i], data == null ? null : data[i]);
+                }
+            }
+            for (Consumer<Map<String, Object>> consumer : consumerList) {
+                consumer.accept(parameterMap);
+            }
+            Object[] result = new Object[parameterNames.length];
+            for (int i = 0; i < parameterNames.length; i++) {
+                if (parameterNames[i] != null) {
+                    result[i] = parameterMap.get(parameterNames[i]);
+                } else if (data != null) {
+                    result[i] = data[i];
+                }
+            }
+            return result;
+        } finally {
+            parameterMap.clear();
+        }
+    }
+
+    private void writeArgument(ByteBuf out, byte kind, Object value) {
+        switch (kind) {
+            case KIND_BOOLEAN:
+                out.writeBoolean(value != null && (Boolean) value);
+                break;
+            case KIND_BYTE:
+                out.writeByte(value == null ? 0 : (Byte) value);
+                break;
+            case KIND_SHORT:
+                out.writeShort(value == null ? 0 : (Short) value);
+                break;
+            case KIND_CHAR:
+                out.writeChar(value == null ? 0 : (Character) value);
+                break;
+            case KIND_INT:
+                writeVarLong(out, zigzag(value == null ? 0 : (Integer) value));
+                break;
+            case KIND_LONG:
+                writeVarLong(out, zigzag(value == null ? 0L : (Long) value));
+                break;
+            case KIND_FLOAT:
+                out.writeFloat(value == null ? 0F : (Float) value);
+                break;
+            case KIND_DOUBLE:
+                out.writeDouble(value == null ? 0D : (Double) value);
+                break;
+            case KIND_VALUE:
+            default:
+                writeValue(out, value);
+                break;
+        }
+    }
+
+    private Object readArgument(ByteBuf in, byte kind, Type type) throws Exception {
+        switch (kind) {
+            case KIND_BOOLEAN:
+                return in.readBoolean();
+            case KIND_BYTE:
+                return in.readByte();
+            case KIND_SHORT:
+                return in.readShort();
+            case KIND_CHAR:
+                return in.readChar();
+            case KIND_INT:
+                return (int) unzigzag(readVarLong(in));
+            case KIND_LONG:
+                return unzigzag(readVarLong(in));
+            case KIND_FLOAT:
+                return in.readFloat();
+            case KIND_DOUBLE:
+                return in.readDouble();
+            case KIND_VALUE:
+            default:
+                return readValue(in, type);
+        }
+    }
+
+    private void writeValue(ByteBuf out, Object value) {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            String string = (String) value;
+            int length = ByteBufUtil.utf8Bytes(string);
+            out.writeByte(TAG_STRING);
+            writeVarLong(out, length);
+            ByteBufUtil.reserveAndWriteUtf8(out, string, length);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INT);
+            writeVarLong(out, zigzag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, zigzag((Long) value));
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(TAG_BYTES);
+            writeVarLong(out, bytes.length);
+            out.writeBytes(bytes);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TAG_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(TAG_CHAR);
+            out.writeChar((Character) value);
+        } else {
+            // length | fallback data
+            out.writeByte(TAG_OBJECT);
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            fallback.encodeChunkResponseData(value, out);
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+    }
+
+    private Object readValue(ByteBuf in, Type type) {
+        byte tag = in.readByte();
+        Object value;
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_TRUE:
+                value = Boolean.TRUE;
+                break;
+            case TAG_FALSE:
+                value = Boolean.FALSE;
+                break;
+            case TAG_BYTE:
+                value = in.readByte();
+                break;
+            case TAG_SHORT:
+                value = in.readShort();
+                break;
+            case TAG_CHAR:
+                value = in.readChar();
+                break;
+            case TAG_INT:
+                value = (int) unzigzag(readVarLong(in));
+                break;
+            case TAG_LONG:
+                value = unzigzag(readVarLong(in));
+                break;
+            case TAG_FLOAT:
+                value = in.readFloat();
+                break;
+            case TAG_DOUBLE:
+                value = in.readDouble();
+                break;
+            case TAG_STRING: {
+                int length = (int) readVarLong(in);
+                value = in.readCharSequence(length, CHARSET_UTF8).toString();
+                break;
+            }
+            case TAG_BYTES: {
+                byte[] bytes = new byte[(int) readVarLong(in)];
+                in.readBytes(bytes);
+                value = bytes;
+                break;
+            }
+            case TAG_OBJECT: {
+                byte[] bytes = new byte[in.readInt()];
+                in.readBytes(bytes);
+                return fallback.decodeChunkResponseData(bytes, type);
+            }
+            default:
+                throw new IllegalStateException("unknown binary tag " + tag);
+        }
+        Class<?> rawType = getRawType(type);
+        if (rawType != null && rawType != Object.class && !rawType.isInstance(value)) {
+            // e.g. the client int, the server long
+            value = TypeUtil.cast(value, rawType);
+        }
+        return value;
+    }
+
+    private static Class<?> getRawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            Type rawType = ((ParameterizedType) type).getRawType();
+            return rawType instanceof Class ? (Class<?>) rawType : null;
+        } else {
+            return null;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuf in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("malformed varint");
+    }
+
+    private static Schema getSchema(Method method) {
+        Schema schema = SCHEMA_CACHE.get(method);
+        if (schema == null) {
+            schema = SCHEMA_CACHE.computeIfAbsent(method, Schema::new);
+        }
+        return schema;
+    }
+
+    /**
+     * type descriptor of the method parameters. precomputed once per method.
+     */
+    private static class Schema {
+        private final byte[] kinds;
+        private final Type[] types;
+        private final int hash;
+
+        Schema(Method method) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            this.types = method.getGenericParameterTypes();
+            this.kinds = new byte[parameterTypes.length];
+            int hash = 1;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                kinds[i] = kindOf(parameterTypes[i]);
+                hash = 31 * hash + kinds[i];
+            }
+            this.hash = hash;
+        }
+
+        private static byte kindOf(Class<?> type) {
+            if (type == int.class) {
+                return KIND_INT;
+            } else if (type == long.class) {
+                return KIND_LONG;
+            } else if (type == boolean.class) {
+                return KIND_BOOLEAN;
+            } else if (type == double.class) {
+                return KIND_DOUBLE;
+            } else if (type == float.class) {
+                return KIND_FLOAT;
+            } else if (type == short.class) {
+                return KIND_SHORT;
+            } else if (type == byte.class) {
+                return KIND_BYTE;
+            } else if (type == char.class) {
+                return KIND_CHAR;
+            } else {
+                return KIND_VALUE;
+            }
+        }
+    }
+}
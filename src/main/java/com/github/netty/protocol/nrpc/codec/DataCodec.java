@@ -3,6 +3,8 @@ package com.github.netty.protocol.nrpc.codec;
 import com.github.netty.protocol.nrpc.RpcClient;
 import com.github.netty.protocol.nrpc.RpcMethod;
 import com.github.netty.protocol.nrpc.RpcServerInstance;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
@@ -12,6 +14,9 @@ import java.util.function.Consumer;
 
 /**
  * Data encoder decoder. (Serialization or Deserialization)
+ * <p>
+ * The ByteBuf methods is used by the rpc client and server. (write to the pooled outbound buffer, read from the inbound frame without copy)
+ * the default implementation fallback to the byte[] methods.
  *
  * @author wangzihao
  */
@@ -79,6 +84,78 @@ public interface DataCodec {
      */
     Object[] decodeRequestData(byte[] data, RpcMethod<RpcServerInstance> rpcMethod);
 
+    /**
+     * Request data - encoding
+     *
+     * @param data      data
+     * @param rpcMethod rpcMethod
+     * @param out       pooled outbound buffer
+     */
+    default void encodeRequestData(Object[] data, RpcMethod<RpcClient> rpcMethod, ByteBuf out) {
+        byte[] bytes = encodeRequestData(data, rpcMethod);
+        if (bytes != null) {
+            out.writeBytes(bytes);
+        }
+    }
+
+    /**
+     * Request data - decoding
+     *
+     * @param data      inbound buffer. nullable. (only read, not release)
+     * @param rpcMethod rpcMethod
+     * @return Object[]
+     */
+    default Object[] decodeRequestData(ByteBuf data, RpcMethod<RpcServerInstance> rpcMethod) {
+        return decodeRequestData(data == null ? null : ByteBufUtil.getBytes(data), rpcMethod);
+    }
+
+    /**
+     * Response data - encoding
+     *
+     * @param data      data
+     * @param rpcMethod rpcMethod
+     * @param out       pooled outbound buffer
+     */
+    default void encodeResponseData(Object data, RpcMethod<RpcServerInstance> rpcMethod, ByteBuf out) {
+        byte[] bytes = encodeResponseData(data, rpcMethod);
+        if (bytes != null) {
+            out.writeBytes(bytes);
+        }
+    }
+
+    /**
+     * Response last data - decoding
+     *
+     * @param data      inbound buffer. nullable. (only read, not release)
+     * @param rpcMethod rpcMethod
+     * @return Object
+     */
+    default Object decodeResponseData(ByteBuf data, RpcMethod<RpcClient> rpcMethod) {
+        return decodeResponseData(data == null ? null : ByteBufUtil.getBytes(data), rpcMethod);
+    }
+
+    /**
+     * Response chunk data - encoding
+     *
+     * @param data data
+     * @param out  pooled outbound buffer
+     */
+    default void encodeChunkResponseData(Object data, ByteBuf out) {
+        byte[] bytes = encodeChunkResponseData(data);
+        if (bytes != null) {
+            out.writeBytes(bytes);
+        }
+    }
+
+    /**
+     * the name of the codec. the both side must use the same codec
+     *
+     * @return [jdk,fastjson,jackson,binary/{fallback name}]. default is the class name
+     */
+    default String getName() {
+        return getClass().getName();
+    }
+
     /**
      * The client parses
      *
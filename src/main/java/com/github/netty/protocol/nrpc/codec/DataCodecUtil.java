@@ -65,7 +65,7 @@ public class DataCodecUtil {
     /**
      * set codec
      *
-     * @param codec [fastjson,jackson,jdk,auto]
+     * @param codec [fastjson,jackson,jdk,auto,binary]
      */
     public static void setDataCodec(String codec) {
         System.setProperty(SYSTEM_PROPERTY_CODEC_KEY, codec);
@@ -90,13 +90,13 @@ public class DataCodecUtil {
                     break;
                 }
                 case "auto": {
-                    if (EXIST_FASTJSON) {
-                        dataCodec = new FastJsonDataCodec();
-                    } else if (EXIST_JACKSON) {
-                        dataCodec = new JacksonDataCodec();
-                    } else {
-                        dataCodec = new JdkDataCodec();
-                    }
+                    dataCodec = newAutoDataCodec();
+                    break;
+                }
+                case BinaryDataCodec.NAME: {
+                    // the fallback for the pojo argument and the old remote
+                    String fallback = SystemPropertyUtil.get(SYSTEM_PROPERTY_CODEC_KEY + ".binary.fallback", "jdk");
+                    dataCodec = new BinaryDataCodec("auto".equals(fallback) ? newAutoDataCodec() : new JdkDataCodec());
                     break;
                 }
             }
@@ -105,4 +105,14 @@ public class DataCodecUtil {
         }
         return dataCodec;
     }
+
+    private static DataCodec newAutoDataCodec() {
+        if (EXIST_FASTJSON) {
+            return new FastJsonDataCodec();
+        } else if (EXIST_JACKSON) {
+            return new JacksonDataCodec();
+        } else {
+            return new JdkDataCodec();
+        }
+    }
 }
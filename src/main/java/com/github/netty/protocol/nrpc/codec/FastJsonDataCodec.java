@@ -109,6 +109,11 @@ public class FastJsonDataCodec implements DataCodec {
         FastJsonDataCodec.globalParserConfig = globalParserConfig;
     }
 
+    @Override
+    public String getName() {
+        return "fastjson";
+    }
+
     @Override
     public List<Consumer<Map<String, Object>>> getEncodeRequestConsumerList() {
         return encodeRequestConsumerList;
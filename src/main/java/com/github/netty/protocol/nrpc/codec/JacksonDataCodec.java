@@ -8,8 +8,13 @@ import com.github.netty.protocol.nrpc.RpcMethod;
 import com.github.netty.protocol.nrpc.RpcServerInstance;
 import com.github.netty.protocol.nrpc.exception.RpcDecodeException;
 import com.github.netty.protocol.nrpc.exception.RpcEncodeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.util.concurrent.FastThreadLocal;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -51,6 +56,11 @@ public class JacksonDataCodec implements DataCodec {
         JacksonDataCodec.globalObjectMapper = globalObjectMapper;
     }
 
+    @Override
+    public String getName() {
+        return "jackson";
+    }
+
     @Override
     public List<Consumer<Map<String, Object>>> getEncodeRequestConsumerList() {
         return encodeRequestConsumerList;
@@ -63,23 +73,8 @@ public class JacksonDataCodec implements DataCodec {
 
     @Override
     public byte[] encodeRequestData(Object[] data, RpcMethod<RpcClient> rpcMethod) {
-        String[] parameterNames = rpcMethod.getParameterNames();
-        Map<String, Object> parameterMap = PARAMETER_MAP_LOCAL.get();
-        if (data != null && data.length != 0) {
-            for (int i = 0; i < parameterNames.length; i++) {
-                String name = parameterNames[i];
-                if (name == null) {
-                    continue;
-                }
-                Object value = data[i];
-                parameterMap.put(name, value);
-            }
-        }
-
+        Map<String, Object> parameterMap = newRequestParameterMap(data, rpcMethod);
         try {
-            for (Consumer<Map<String, Object>> consumer : encodeRequestConsumerList) {
-                consumer.accept(parameterMap);
-            }
             if (parameterMap.isEmpty()) {
                 return EMPTY;
             } else {
@@ -94,6 +89,22 @@ public class JacksonDataCodec implements DataCodec {
         }
     }
 
+    @Override
+    public void encodeRequestData(Object[] data, RpcMethod<RpcClient> rpcMethod, ByteBuf out) {
+        Map<String, Object> parameterMap = newRequestParameterMap(data, rpcMethod);
+        try {
+            if (!parameterMap.isEmpty()) {
+                try {
+                    objectMapper.writeValue((OutputStream) new ByteBufOutputStream(out), parameterMap);
+                } catch (Exception e) {
+                    throw new RpcEncodeException("encodeRequestData " + rpcMethod + " jackson error " + e, e);
+                }
+            }
+        } finally {
+            parameterMap.clear();
+        }
+    }
+
     @Override
     public Object[] decodeRequestData(byte[] data, RpcMethod<RpcServerInstance> rpcMethod) {
         Map parameterMap;
@@ -106,6 +117,49 @@ public class JacksonDataCodec implements DataCodec {
         } else {
             parameterMap = PARAMETER_MAP_LOCAL.get();
         }
+        return toParameterValues(parameterMap, rpcMethod);
+    }
+
+    @Override
+    public Object[] decodeRequestData(ByteBuf data, RpcMethod<RpcServerInstance> rpcMethod) {
+        Map parameterMap;
+        if (data != null && data.isReadable()) {
+            try {
+                parameterMap = (Map) readValue(data, LinkedHashMap.class);
+            } catch (Exception e) {
+                throw new RpcDecodeException("decodeRequestData " + rpcMethod + " jackson error " + e, e);
+            }
+        } else {
+            parameterMap = PARAMETER_MAP_LOCAL.get();
+        }
+        return toParameterValues(parameterMap, rpcMethod);
+    }
+
+    protected Map<String, Object> newRequestParameterMap(Object[] data, RpcMethod<RpcClient> rpcMethod) {
+        String[] parameterNames = rpcMethod.getParameterNames();
+        Map<String, Object> parameterMap = PARAMETER_MAP_LOCAL.get();
+        if (data != null && data.length != 0) {
+            for (int i = 0; i < parameterNames.length; i++) {
+                String name = parameterNames[i];
+                if (name == null) {
+                    continue;
+                }
+                Object value = data[i];
+                parameterMap.put(name, value);
+            }
+        }
+        try {
+            for (Consumer<Map<String, Object>> consumer : encodeRequestConsumerList) {
+                consumer.accept(parameterMap);
+            }
+        } catch (RuntimeException e) {
+            parameterMap.clear();
+            throw e;
+        }
+        return parameterMap;
+    }
+
+    protected Object[] toParameterValues(Map parameterMap, RpcMethod<RpcServerInstance> rpcMethod) {
         try {
             for (Consumer<Map<String, Object>> consumer : decodeRequestConsumerList) {
                 consumer.accept(parameterMap);
@@ -136,6 +190,19 @@ public class JacksonDataCodec implements DataCodec {
         }
     }
 
+    /**
+     * heap buffer read the array in place, direct buffer read by stream
+     */
+    protected Object readValue(ByteBuf data, Type type) throws Exception {
+        if (data.hasArray()) {
+            return objectMapper.readValue(data.array(), data.arrayOffset() + data.readerIndex(), data.readableBytes(),
+                    TypeFactory.defaultInstance().constructType(type));
+        } else {
+            return objectMapper.readValue((InputStream) new ByteBufInputStream(data.duplicate()),
+                    TypeFactory.defaultInstance().constructType(type));
+        }
+    }
+
     @Override
     public byte[] encodeResponseData(Object data, RpcMethod<RpcServerInstance> rpcMethod) {
         if (data == null) {
@@ -148,6 +215,32 @@ public class JacksonDataCodec implements DataCodec {
         }
     }
 
+    @Override
+    public void encodeResponseData(Object data, RpcMethod<RpcServerInstance> rpcMethod, ByteBuf out) {
+        if (data == null) {
+            return;
+        }
+        try {
+            objectMapper.writeValue((OutputStream) new ByteBufOutputStream(out), data);
+        } catch (Exception e) {
+            throw new RpcEncodeException("encodeResponseData " + rpcMethod + " jackson error " + e, e);
+        }
+    }
+
+    @Override
+    public Object decodeResponseData(ByteBuf data, RpcMethod<RpcClient> rpcMethod) {
+        if (data == null || !data.isReadable()) {
+            return null;
+        }
+
+        Type returnType = rpcMethod.getGenericReturnType();
+        try {
+            return readValue(data, returnType);
+        } catch (Exception e) {
+            throw new RpcDecodeException("decodeResponseData " + rpcMethod + " jackson error " + e, e);
+        }
+    }
+
     @Override
     public Object decodeResponseData(byte[] data, RpcMethod<RpcClient> rpcMethod) {
         if (data == null || data.length == 0) {
@@ -187,6 +280,18 @@ public class JacksonDataCodec implements DataCodec {
         }
     }
 
+    @Override
+    public void encodeChunkResponseData(Object data, ByteBuf out) {
+        if (data == null) {
+            return;
+        }
+        try {
+            objectMapper.writeValue((OutputStream) new ByteBufOutputStream(out), data);
+        } catch (Exception e) {
+            throw new RpcEncodeException("encodeChunkResponseData " + data.getClass() + " jackson error " + e, e);
+        }
+    }
+
     protected boolean isNeedCast(Object value, Class<?> type) {
         if (value == null) {
             return false;
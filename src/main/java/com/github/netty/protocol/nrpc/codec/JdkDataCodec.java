@@ -6,6 +6,9 @@ import com.github.netty.protocol.nrpc.RpcMethod;
 import com.github.netty.protocol.nrpc.RpcServerInstance;
 import com.github.netty.protocol.nrpc.exception.RpcDecodeException;
 import com.github.netty.protocol.nrpc.exception.RpcEncodeException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.util.concurrent.FastThreadLocal;
 
 import java.io.*;
@@ -46,6 +49,11 @@ public class JdkDataCodec implements DataCodec {
     private List<Consumer<Map<String, Object>>> encodeRequestConsumerList = new CopyOnWriteArrayList<>();
     private List<Consumer<Map<String, Object>>> decodeRequestConsumerList = new CopyOnWriteArrayList<>();
 
+    @Override
+    public String getName() {
+        return "jdk";
+    }
+
     @Override
     public List<Consumer<Map<String, Object>>> getEncodeRequestConsumerList() {
         return encodeRequestConsumerList;
@@ -58,23 +66,8 @@ public class JdkDataCodec implements DataCodec {
 
     @Override
     public byte[] encodeRequestData(Object[] data, RpcMethod<RpcClient> rpcMethod) {
-        String[] parameterNames = rpcMethod.getParameterNames();
-        Map<String, Object> parameterMap = PARAMETER_MAP_LOCAL.get();
-        if (data != null && data.length != 0) {
-            for (int i = 0; i < parameterNames.length; i++) {
-                String name = parameterNames[i];
-                if (name == null) {
-                    continue;
-                }
-                Object value = data[i];
-                parameterMap.put(name, value);
-            }
-        }
-
+        Map<String, Object> parameterMap = newRequestParameterMap(data, rpcMethod);
         try {
-            for (Consumer<Map<String, Object>> consumer : encodeRequestConsumerList) {
-                consumer.accept(parameterMap);
-            }
             if (parameterMap.isEmpty()) {
                 return EMPTY;
             } else {
@@ -89,6 +82,22 @@ public class JdkDataCodec implements DataCodec {
         }
     }
 
+    @Override
+    public void encodeRequestData(Object[] data, RpcMethod<RpcClient> rpcMethod, ByteBuf out) {
+        Map<String, Object> parameterMap = newRequestParameterMap(data, rpcMethod);
+        try {
+            if (!parameterMap.isEmpty()) {
+                try {
+                    encode(parameterMap, new ByteBufOutputStream(out));
+                } catch (Exception e) {
+                    throw new RpcEncodeException("encodeRequestData " + rpcMethod + " jdk error " + e, e);
+                }
+            }
+        } finally {
+            parameterMap.clear();
+        }
+    }
+
     @Override
     public Object[] decodeRequestData(byte[] data, RpcMethod<RpcServerInstance> rpcMethod) {
         Map parameterMap;
@@ -101,6 +110,49 @@ public class JdkDataCodec implements DataCodec {
         } else {
             parameterMap = PARAMETER_MAP_LOCAL.get();
         }
+        return toParameterValues(parameterMap, rpcMethod);
+    }
+
+    @Override
+    public Object[] decodeRequestData(ByteBuf data, RpcMethod<RpcServerInstance> rpcMethod) {
+        Map parameterMap;
+        if (data != null && data.isReadable()) {
+            try {
+                parameterMap = (Map) decode(new ByteBufInputStream(data.duplicate()), LinkedHashMap.class);
+            } catch (Exception e) {
+                throw new RpcDecodeException("decodeRequestData " + rpcMethod + " jdk error " + e, e);
+            }
+        } else {
+            parameterMap = PARAMETER_MAP_LOCAL.get();
+        }
+        return toParameterValues(parameterMap, rpcMethod);
+    }
+
+    protected Map<String, Object> newRequestParameterMap(Object[] data, RpcMethod<RpcClient> rpcMethod) {
+        String[] parameterNames = rpcMethod.getParameterNames();
+        Map<String, Object> parameterMap = PARAMETER_MAP_LOCAL.get();
+        if (data != null && data.length != 0) {
+            for (int i = 0; i < parameterNames.length; i++) {
+                String name = parameterNames[i];
+                if (name == null) {
+                    continue;
+                }
+                Object value = data[i];
+                parameterMap.put(name, value);
+            }
+        }
+        try {
+            for (Consumer<Map<String, Object>> consumer : encodeRequestConsumerList) {
+                consumer.accept(parameterMap);
+            }
+        } catch (RuntimeException e) {
+            parameterMap.clear();
+            throw e;
+        }
+        return parameterMap;
+    }
+
+    protected Object[] toParameterValues(Map parameterMap, RpcMethod<RpcServerInstance> rpcMethod) {
         try {
             for (Consumer<Map<String, Object>> consumer : decodeRequestConsumerList) {
                 consumer.accept(parameterMap);
@@ -143,6 +195,32 @@ public class JdkDataCodec implements DataCodec {
         }
     }
 
+    @Override
+    public void encodeResponseData(Object data, RpcMethod<RpcServerInstance> rpcMethod, ByteBuf out) {
+        if (data == null) {
+            return;
+        }
+        try {
+            encode(data, new ByteBufOutputStream(out));
+        } catch (Exception e) {
+            throw new RpcEncodeException("encodeResponseData " + rpcMethod + " jdk error " + e, e);
+        }
+    }
+
+    @Override
+    public Object decodeResponseData(ByteBuf data, RpcMethod<RpcClient> rpcMethod) {
+        if (data == null || !data.isReadable()) {
+            return null;
+        }
+
+        Type returnType = rpcMethod.getGenericReturnType();
+        try {
+            return decode(new ByteBufInputStream(data.duplicate()), returnType);
+        } catch (Exception e) {
+            throw new RpcDecodeException("decodeResponseData " + rpcMethod + " jdk error " + e, e);
+        }
+    }
+
     @Override
     public Object decodeResponseData(byte[] data, RpcMethod<RpcClient> rpcMethod) {
         if (data == null || data.length == 0) {
@@ -182,16 +260,35 @@ public class JdkDataCodec implements DataCodec {
         }
     }
 
+    @Override
+    public void encodeChunkResponseData(Object data, ByteBuf out) {
+        if (data == null) {
+            return;
+        }
+        try {
+            encode(data, new ByteBufOutputStream(out));
+        } catch (Exception e) {
+            throw new RpcEncodeException("encodeChunkResponseData " + data.getClass() + " jdk error " + e, e);
+        }
+    }
+
     public byte[] encode(Object object) throws Exception {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream(4096);
+        encode(object, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    public void encode(Object object, OutputStream outputStream) throws Exception {
         ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
         objectOutputStream.writeObject(object);
         objectOutputStream.flush();
-        return outputStream.toByteArray();
     }
 
     public Object decode(byte[] bytes, Type returnType) throws Exception {
-        InputStream inputStream = new ByteArrayInputStream(bytes);
+        return decode(new ByteArrayInputStream(bytes), returnType);
+    }
+
+    public Object decode(InputStream inputStream, Type returnType) throws Exception {
         ObjectInputStream objectInputStream;
         if (SPRING_OBJECT_INPUT_STREAM_CONSTRUCTOR != null) {
             objectInputStream = SPRING_OBJECT_INPUT_STREAM_CONSTRUCTOR.newInstance(inputStream, getClass().getClassLoader());
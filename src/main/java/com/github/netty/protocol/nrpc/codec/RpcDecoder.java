@@ -105,11 +105,10 @@ public class RpcDecoder extends LengthFieldBasedFrameDecoder {
                 //Request method
                 packet.setMethodName(msg.readCharSequence(msg.readUnsignedByte(), RPC_CHARSET).toString());
 
-                //Request data
+                //Request data. (retained slice, release after decode by the DataCodec)
                 long dataLength = msg.readUnsignedInt();
                 if (dataLength > 0) {
-                    packet.setData(new byte[(int) dataLength]);
-                    msg.readBytes(packet.getData());
+                    packet.setDataBuf(msg.readRetainedSlice((int) dataLength));
                 } else {
                     packet.setData(EMPTY);
                 }
@@ -3,9 +3,13 @@ package com.github.netty.protocol.nrpc.codec;
 import com.github.netty.protocol.nrpc.RpcPacket;
 import com.github.netty.protocol.nrpc.RpcVersion;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.util.ReferenceCountUtil;
 
 import java.nio.charset.Charset;
 
@@ -50,51 +54,124 @@ public class RpcEncoder extends MessageToByteEncoder<RpcPacket> {
      */
     private static final int FIXED_RESPONSE_LENGTH = INT_LENGTH + SHORT_LENGTH + BYTE_LENGTH + BYTE_LENGTH + INT_LENGTH;
 
+    /**
+     * The data buffer bigger than this, is write by {@link CompositeByteBuf} (zero copy). otherwise copy into the header buffer
+     */
+    private static final int COMPOSITE_DATA_THRESHOLD = 1024;
+
     public RpcEncoder() {
     }
 
+    /**
+     * if the packet data is in the pooled buffer, write the header buffer and the data buffer without copy
+     *
+     * @param ctx     ctx
+     * @param msg     msg
+     * @param promise promise
+     * @throws Exception Exception
+     */
     @Override
-    public void encode(ChannelHandlerContext ctx, RpcPacket packet, ByteBuf out) throws Exception {
-        int packetType = packet.getPacketType();
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof RpcPacket) || ((RpcPacket) msg).getDataBuf() == null) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+        RpcPacket packet = (RpcPacket) msg;
+        ByteBuf data = packet.getDataBuf();
+        packet.setDataBuf(null);
+        ByteBuf header = null;
+        ByteBuf trailer = null;
         try {
-            switch (packetType) {
-                case TYPE_CLIENT_REQUEST: {
-                    encodePacket((RequestPacket) packet, out);
-                    break;
-                }
-                case TYPE_RESPONSE_CHUNK_ACK:
-                case TYPE_RESPONSE_CHUNK:
-                case TYPE_RESPONSE_LAST: {
-                    encodePacket((ResponsePacket) packet, out);
-                    break;
+            int dataLength = data.readableBytes();
+            if (dataLength < COMPOSITE_DATA_THRESHOLD) {
+                header = ctx.alloc().ioBuffer(64 + dataLength);
+                encodeHeader(packet, header, dataLength);
+                header.writeBytes(data);
+                data.release();
+                data = null;
+                encodeTrailer(packet, header);
+                ByteBuf out = header;
+                header = null;
+                ctx.write(out, promise);
+            } else {
+                header = ctx.alloc().ioBuffer(64);
+                encodeHeader(packet, header, dataLength);
+                CompositeByteBuf out = ctx.alloc().compositeDirectBuffer(3);
+                if (getTrailerLength(packet) > 0) {
+                    trailer = ctx.alloc().ioBuffer(getTrailerLength(packet));
+                    encodeTrailer(packet, trailer);
+                    out.addComponents(true, header, data, trailer);
+                } else {
+                    out.addComponents(true, header, data);
                 }
-                default: {
-                    //(8 byte) protocol head
-                    out.writeBytes(PROTOCOL_HEADER);
+                header = null;
+                data = null;
+                trailer = null;
+                ctx.write(out, promise);
+            }
+        } catch (EncoderException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new EncoderException(e);
+        } finally {
+            ReferenceCountUtil.safeRelease(header);
+            ReferenceCountUtil.safeRelease(data);
+            ReferenceCountUtil.safeRelease(trailer);
+            packet.recycle();
+        }
+    }
+
+    @Override
+    public void encode(ChannelHandlerContext ctx, RpcPacket packet, ByteBuf out) throws Exception {
+        try {
+            byte[] data = packet.getData();
+            int dataLength = data == null ? 0 : data.length;
+            encodeHeader(packet, out, dataLength);
+            if (dataLength > 0) {
+                out.writeBytes(data);
+            }
+            encodeTrailer(packet, out);
+        } finally {
+            packet.recycle();
+        }
+    }
 
-                    //(1 byte Unsigned) RPC packet type
-                    out.writeByte(packet.getPacketType());
+    /**
+     * Write the header (before data). the total length include the data and the trailer
+     *
+     * @param packet     packet
+     * @param out        out
+     * @param dataLength data length
+     */
+    protected void encodeHeader(RpcPacket packet, ByteBuf out, int dataLength) {
+        switch (packet.getPacketType()) {
+            case TYPE_CLIENT_REQUEST: {
+                encodeHeader((RequestPacket) packet, out, dataLength);
+                break;
+            }
+            case TYPE_RESPONSE_CHUNK_ACK:
+            case TYPE_RESPONSE_CHUNK:
+            case TYPE_RESPONSE_LAST: {
+                encodeHeader((ResponsePacket) packet, out, dataLength);
+                break;
+            }
+            default: {
+                //(8 byte) protocol head
+                out.writeBytes(PROTOCOL_HEADER);
 
-                    //(1 byte Unsigned) RPC packet ack
-                    out.writeByte(packet.getAck());
+                //(1 byte Unsigned) RPC packet type
+                out.writeByte(packet.getPacketType());
 
-                    //(4 byte Unsigned) data length
-                    byte[] data = packet.getData();
-                    int writeTotalLength = data == null ? 0 : data.length;
+                //(1 byte Unsigned) RPC packet ack
+                out.writeByte(packet.getAck());
 
-                    //(4 byte Unsigned) total length
-                    out.writeInt(writeTotalLength);
-                    if (writeTotalLength > 0) {
-                        out.writeBytes(data);
-                    }
-                }
+                //(4 byte Unsigned) total length
+                out.writeInt(dataLength);
             }
-        } finally {
-            packet.recycle();
         }
     }
 
-    protected void encodePacket(RequestPacket packet, ByteBuf out) {
+    protected void encodeHeader(RequestPacket packet, ByteBuf out, int dataLength) {
         int writeCurrentLength;
         int writeTotalLength = FIXED_REQUEST_LENGTH;
 
@@ -142,19 +219,14 @@ public class RpcEncoder extends MessageToByteEncoder<RpcPacket> {
         writeTotalLength += writeCurrentLength;
 
         //(4 byte Unsigned) data length
-        byte[] data = packet.getData();
-        out.writeInt(data.length);
-        if (data.length > 0) {
-            //(length byte)  data
-            out.writeBytes(data);
-            writeTotalLength += data.length;
-        }
+        out.writeInt(dataLength);
+        writeTotalLength += dataLength;
 
         //set total length Unsigned
         out.setInt(writerTotalLengthIndex, writeTotalLength);
     }
 
-    protected void encodePacket(ResponsePacket packet, ByteBuf out) {
+    protected void encodeHeader(ResponsePacket packet, ByteBuf out, int dataLength) {
         int writeCurrentLength;
         int writeTotalLength = FIXED_RESPONSE_LENGTH;
 
@@ -189,27 +261,36 @@ public class RpcEncoder extends MessageToByteEncoder<RpcPacket> {
         writeTotalLength += writeCurrentLength;
 
         //(4 byte Unsigned) data length
-        byte[] data = packet.getData();
-        writeCurrentLength = data == null ? 0 : data.length;
-        out.writeInt(writeCurrentLength);
-        if (writeCurrentLength > 0) {
-            out.writeBytes(data);
-            //(length byte)  data
-            writeTotalLength += writeCurrentLength;
+        out.writeInt(dataLength);
+        writeTotalLength += dataLength;
+
+        writeTotalLength += getTrailerLength(packet);
+
+        //set total length
+        out.setInt(writerTotalLengthIndex, writeTotalLength);
+    }
+
+    protected int getTrailerLength(RpcPacket packet) {
+        if (packet instanceof ResponseChunkPacket || packet instanceof ResponseChunkAckPacket) {
+            return SHORT_LENGTH;
         }
+        return 0;
+    }
 
+    /**
+     * Write the trailer (after data)
+     *
+     * @param packet packet
+     * @param out    out
+     */
+    protected void encodeTrailer(RpcPacket packet, ByteBuf out) {
         if (packet instanceof ResponseChunkPacket) {
             // (2 byte Unsigned)  chunk id
-            writeTotalLength += SHORT_LENGTH;
             out.writeShort(((ResponseChunkPacket) packet).getChunkId());
         } else if (packet instanceof ResponseChunkAckPacket) {
             // (2 byte Unsigned)  ack chunk id
-            writeTotalLength += SHORT_LENGTH;
             out.writeShort(((ResponseChunkAckPacket) packet).getAckChunkId());
         }
-
-        //set total length
-        out.setInt(writerTotalLengthIndex, writeTotalLength);
     }
 
 }
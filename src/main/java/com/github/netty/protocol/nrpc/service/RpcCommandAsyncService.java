@@ -13,4 +13,6 @@ import org.reactivestreams.Publisher;
 public interface RpcCommandAsyncService {
 
     Publisher<byte[]> ping();
+
+    Publisher<byte[]> dataCodecs();
 }
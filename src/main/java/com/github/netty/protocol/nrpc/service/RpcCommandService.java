@@ -18,4 +18,11 @@ public interface RpcCommandService {
      */
     byte[] ping();
 
+    /**
+     * the data codecs supported by the server. (split by ',', e.g. binary/jdk)
+     *
+     * @return byte[]
+     */
+    byte[] dataCodecs();
+
 }
@@ -1,5 +1,9 @@
 package com.github.netty.protocol.nrpc.service;
 
+import com.github.netty.protocol.nrpc.codec.BinaryDataCodec;
+import com.github.netty.protocol.nrpc.codec.DataCodec;
+import com.github.netty.protocol.nrpc.codec.DataCodecUtil;
+
 /**
  * RpcCommandServiceImpl
  *
@@ -7,10 +11,29 @@ package com.github.netty.protocol.nrpc.service;
  * 2018/8/20/020
  */
 public class RpcCommandServiceImpl implements RpcCommandService {
+    private final byte[] dataCodecs;
+
+    public RpcCommandServiceImpl() {
+        this(DataCodecUtil.newDataCodec());
+    }
+
+    /**
+     * @param dataCodec the codec of the server. the binary request is decode by it, or by the binary codec wrap it
+     */
+    public RpcCommandServiceImpl(DataCodec dataCodec) {
+        BinaryDataCodec binaryDataCodec = dataCodec instanceof BinaryDataCodec ?
+                (BinaryDataCodec) dataCodec : new BinaryDataCodec(dataCodec);
+        this.dataCodecs = binaryDataCodec.getName().getBytes(DataCodec.CHARSET_UTF8);
+    }
 
     @Override
     public byte[] ping() {
         return "ok".getBytes();
     }
 
+    @Override
+    public byte[] dataCodecs() {
+        return dataCodecs;
+    }
+
 }
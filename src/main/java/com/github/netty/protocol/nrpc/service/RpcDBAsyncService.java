@@ -0,0 +1,28 @@
+package com.github.netty.protocol.nrpc.service;
+
+import com.github.netty.annotation.NRpcMethod;
+import com.github.netty.annotation.NRpcParam;
+import com.github.netty.annotation.NRpcService;
+import com.github.netty.protocol.nrpc.RpcClientChunkCompletableFuture;
+
+/**
+ * RpcDBAsyncService. the server push part of {@link RpcDBService}
+ *
+ * @author wangzihao
+ */
+@NRpcService(value = "/_nrpc/db", timeout = 1500)
+public interface RpcDBAsyncService {
+
+    /**
+     * Subscribe the changes of the group. each chunk is one changed key,
+     * chunk = [long version][key utf8]. the first chunk has an empty key, means the subscription is ready.
+     * <p>
+     * the subscription never timeout, it is complete when the connection is closed.
+     *
+     * @param group group
+     * @return chunk future
+     */
+    @NRpcMethod(timeout = -1)
+    RpcClientChunkCompletableFuture<Boolean, byte[]> subscribe2(@NRpcParam("group") String group);
+
+}
@@ -4,6 +4,7 @@ import com.github.netty.annotation.NRpcParam;
 import com.github.netty.annotation.NRpcService;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * RpcDBService
@@ -33,11 +34,30 @@ public interface RpcDBService {
      * @param expireSecond expireSecond
      * @param group        group
      */
-    void put4(@NRpcParam("group") String key, @NRpcParam("data") byte[] data, @NRpcParam("expireSecond") int expireSecond, @NRpcParam("group") String group);
+    void put4(@NRpcParam("key") String key, @NRpcParam("data") byte[] data, @NRpcParam("expireSecond") int expireSecond, @NRpcParam("group") String group);
 
-    void put3(@NRpcParam("group") String key, @NRpcParam("data") byte[] data, @NRpcParam("expireSecond") int expireSecond);
+    /**
+     * put and return the new version of the key
+     *
+     * @param key          key
+     * @param data         data
+     * @param expireSecond expireSecond
+     * @param group        group
+     * @return version. increase on every change
+     */
+    long putVersion4(@NRpcParam("key") String key, @NRpcParam("data") byte[] data, @NRpcParam("expireSecond") int expireSecond, @NRpcParam("group") String group);
+
+    void put3(@NRpcParam("key") String key, @NRpcParam("data") byte[] data, @NRpcParam("expireSecond") int expireSecond);
+
+    void put(@NRpcParam("key") String key, @NRpcParam("data") byte[] data);
 
-    void put(@NRpcParam("group") String key, @NRpcParam("data") byte[] data);
+    /**
+     * Refresh the expiry of the keys (batch). the data and the version are not changed
+     *
+     * @param keyExpireSecondMap key = key, value = expireSecond
+     * @param group              group
+     */
+    void touchBatch2(@NRpcParam("keyExpireSecondMap") Map<String, Integer> keyExpireSecondMap, @NRpcParam("group") String group);
 
     /**
      * Gets the number of groups
@@ -58,6 +78,15 @@ public interface RpcDBService {
 
     byte[] get(@NRpcParam("key") String key);
 
+    /**
+     * To get the data with version
+     *
+     * @param key   key
+     * @param group group
+     * @return [long version][data]. null if not exist
+     */
+    byte[] getVersion2(@NRpcParam("key") String key, @NRpcParam("group") String group);
+
     /**
      * changeKey
      *
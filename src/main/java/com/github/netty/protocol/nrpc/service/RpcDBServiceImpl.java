@@ -1,20 +1,35 @@
 package com.github.netty.protocol.nrpc.service;
 
 import com.github.netty.core.util.ExpiryLRUMap;
+import com.github.netty.protocol.nrpc.RpcEmitter;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.RandomAccess;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * RpcDBServiceImpl
+ * <p>
+ * every change increase the version of the key, and push the (key, version) to the subscribers of the group.
+ * see {@link RpcDBAsyncService#subscribe2(String)}
  *
  * @author wangzihao
  */
 public class RpcDBServiceImpl implements RpcDBService {
     private static final String SHARING_GROUP = "/sharing";
-    private final Map<String, RpcDBExpiryLRUMap<String, byte[]>> memExpiryGroupMap = new ConcurrentHashMap<>(64);
+    private final Map<String, RpcDBExpiryLRUMap<String, VersionData>> memExpiryGroupMap = new ConcurrentHashMap<>(64);
+    private final Map<String, Set<RpcEmitter<Boolean, byte[]>>> subscriberGroupMap = new ConcurrentHashMap<>(8);
+    /**
+     * start from the current time, so that the version is still increase after restart
+     */
+    private final AtomicLong versionIncr = new AtomicLong(System.currentTimeMillis() << 12);
 
     @Override
     public boolean exist2(String key, String group) {
@@ -33,7 +48,31 @@ public class RpcDBServiceImpl implements RpcDBService {
 
     @Override
     public void put4(String key, byte[] data, int expireSecond, String group) {
-        getMemExpiryMap(group).put(key, data, expireSecond);
+        putVersion4(key, data, expireSecond, group);
+    }
+
+    @Override
+    public long putVersion4(String key, byte[] data, int expireSecond, String group) {
+        long version = versionIncr.incrementAndGet();
+        getMemExpiryMap(group).put(key, new VersionData(version, data), toExpiryTime(expireSecond));
+        publishChange(group, key, version);
+        return version;
+    }
+
+    @Override
+    public void touchBatch2(Map<String, Integer> keyExpireSecondMap, String group) {
+        if (keyExpireSecondMap == null || keyExpireSecondMap.isEmpty()) {
+            return;
+        }
+        RpcDBExpiryLRUMap<String, VersionData> map = getMemExpiryMap(group);
+        for (Map.Entry<String, Integer> entry : keyExpireSecondMap.entrySet()) {
+            Integer expireSecond = entry.getValue();
+            map.touch(entry.getKey(), toExpiryTime(expireSecond == null ? -1 : expireSecond));
+        }
+    }
+
+    private long toExpiryTime(int expireSecond) {
+        return expireSecond < 0 ? -1 : TimeUnit.SECONDS.toMillis(expireSecond);
     }
 
     @Override
@@ -57,7 +96,19 @@ public class RpcDBServiceImpl implements RpcDBService {
 
     @Override
     public byte[] get2(String key, String group) {
-        return getMemExpiryMap(group).get(key);
+        VersionData versionData = getMemExpiryMap(group).get(key);
+        return versionData == null ? null : versionData.data;
+    }
+
+    @Override
+    public byte[] getVersion2(String key, String group) {
+        VersionData versionData = getMemExpiryMap(group).get(key);
+        if (versionData == null || versionData.data == null) {
+            return null;
+        }
+        byte[] bytes = new byte[8 + versionData.data.length];
+        ByteBuffer.wrap(bytes).putLong(versionData.version).put(versionData.data);
+        return bytes;
     }
 
     @Override
@@ -67,8 +118,10 @@ public class RpcDBServiceImpl implements RpcDBService {
 
     @Override
     public void changeKey3(String oldKey, String newKey, String group) {
-        RpcDBExpiryLRUMap<String, byte[]> memExpiryMap = getMemExpiryMap(group);
+        RpcDBExpiryLRUMap<String, VersionData> memExpiryMap = getMemExpiryMap(group);
         memExpiryMap.put(newKey, memExpiryMap.remove(oldKey));
+        publishChange(group, oldKey, versionIncr.incrementAndGet());
+        publishChange(group, newKey, versionIncr.incrementAndGet());
     }
 
     @Override
@@ -79,6 +132,7 @@ public class RpcDBServiceImpl implements RpcDBService {
     @Override
     public void remove2(String key, String group) {
         getMemExpiryMap(group).remove(key);
+        publishChange(group, key, versionIncr.incrementAndGet());
     }
 
     @Override
@@ -102,27 +156,83 @@ public class RpcDBServiceImpl implements RpcDBService {
             return;
         }
 
-        RpcDBExpiryLRUMap<String, byte[]> map = getMemExpiryMap(group);
+        RpcDBExpiryLRUMap<String, VersionData> map = getMemExpiryMap(group);
         if (keys instanceof RandomAccess) {
             int size = keys.size();
             for (int i = 0; i < size; i++) {
                 String key = keys.get(i);
                 map.remove(key);
+                publishChange(group, key, versionIncr.incrementAndGet());
             }
         } else {
             for (String key : keys) {
                 map.remove(key);
+                publishChange(group, key, versionIncr.incrementAndGet());
             }
         }
     }
 
-    private RpcDBExpiryLRUMap<String, byte[]> getMemExpiryMap(String group) {
-        RpcDBExpiryLRUMap<String, byte[]> memExpiryMap = memExpiryGroupMap.get(group);
+    /**
+     * Subscribe the changes of the group. (server push by chunk)
+     *
+     * @param group group
+     * @return emitter. never complete by server
+     */
+    public RpcEmitter<Boolean, byte[]> subscribe2(String group) {
+        RpcEmitter<Boolean, byte[]> emitter = new RpcEmitter<>();
+        Set<RpcEmitter<Boolean, byte[]>> subscribers = subscriberGroupMap.get(group);
+        if (subscribers == null) {
+            subscribers = new CopyOnWriteArraySet<>();
+            Set<RpcEmitter<Boolean, byte[]>> old = subscriberGroupMap.putIfAbsent(group, subscribers);
+            if (old != null) {
+                subscribers = old;
+            }
+        }
+        subscribers.add(emitter);
+        // the first chunk (empty key) tell the client the subscription is ready
+        emitter.send(encodeChangeChunk("", versionIncr.get()));
+        return emitter;
+    }
+
+    protected void publishChange(String group, String key, long version) {
+        Set<RpcEmitter<Boolean, byte[]>> subscribers = subscriberGroupMap.get(group);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        byte[] chunk = encodeChangeChunk(key, version);
+        for (RpcEmitter<Boolean, byte[]> emitter : subscribers) {
+            if (emitter.isActive()) {
+                emitter.send(chunk);
+            } else {
+                subscribers.remove(emitter);
+            }
+        }
+    }
+
+    /**
+     * @param key     key
+     * @param version version
+     * @return [long version][key utf8]
+     */
+    private byte[] encodeChangeChunk(String key, long version) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] chunk = new byte[8 + keyBytes.length];
+        ByteBuffer.wrap(chunk).putLong(version).put(keyBytes);
+        return chunk;
+    }
+
+    private RpcDBExpiryLRUMap<String, VersionData> getMemExpiryMap(String group) {
+        RpcDBExpiryLRUMap<String, VersionData> memExpiryMap = memExpiryGroupMap.get(group);
         if (memExpiryMap == null) {
             synchronized (memExpiryGroupMap) {
                 memExpiryMap = memExpiryGroupMap.get(group);
                 if (memExpiryMap == null) {
                     memExpiryMap = new RpcDBExpiryLRUMap<>(-1);
+                    memExpiryMap.setOnExpiryConsumer(node -> {
+                        if (!node.isCovered()) {
+                            publishChange(group, node.getKey(), versionIncr.incrementAndGet());
+                        }
+                    });
                     memExpiryGroupMap.put(group, memExpiryMap);
                 }
             }
@@ -130,6 +240,16 @@ public class RpcDBServiceImpl implements RpcDBService {
         return memExpiryMap;
     }
 
+    private static class VersionData {
+        private final long version;
+        private final byte[] data;
+
+        VersionData(long version, byte[] data) {
+            this.version = version;
+            this.data = data;
+        }
+    }
+
     private static class RpcDBExpiryLRUMap<K, V> extends ExpiryLRUMap<K, V> {
         RpcDBExpiryLRUMap(long defaultExpiryTime) {
             super(defaultExpiryTime);
@@ -0,0 +1,377 @@
+package com.github.netty.protocol.servlet;
+
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.Snappy;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary session codec.
+ * <pre>
+ * header  | 'N' 'S' | version(1 byte) | flags(1 byte. bit0 = compressed) |
+ * body    | id | creationTime | lastAccessedTime | maxInactiveInterval | accessCount | attributeSize | attribute... |
+ * attribute | key | tag(1 byte) | value |
+ * </pre>
+ * 1. primitives, String, byte[] have a type tag fast path. (no jdk serialization)
+ * 2. {@link #registerSerializer(Class, Serializer)} for custom class. value = className + length + bytes
+ * 3. other {@link Serializable} value use jdk serialization. value = length + bytes
+ * 4. if body length &gt;= compressThreshold, the body compress by snappy block. (compressThreshold &lt; 0 = disable)
+ * 5. decode the old {@link JavaSessionCodec} format automatically.
+ *
+ * @author wangzihao
+ */
+public class BinarySessionCodec implements SessionCodec {
+    public static final byte VERSION = 1;
+    private static final LoggerX LOGGER = LoggerFactoryX.getLogger(BinarySessionCodec.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] EMPTY = {};
+    private static final byte MAGIC_0 = 'N';
+    private static final byte MAGIC_1 = 'S';
+    private static final int HEADER_LENGTH = 4;
+    private static final byte FLAG_COMPRESSED = 1;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_TRUE = 4;
+    private static final byte TAG_FALSE = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_FLOAT = 7;
+    private static final byte TAG_SHORT = 8;
+    private static final byte TAG_BYTE = 9;
+    private static final byte TAG_CHAR = 10;
+    private static final byte TAG_BYTES = 11;
+    private static final byte TAG_CUSTOM = 12;
+    private static final byte TAG_JAVA = 13;
+
+    private final Map<Class<?>, Serializer<?>> serializerMap = new ConcurrentHashMap<>();
+    private final Map<String, Serializer<?>> serializerNameMap = new ConcurrentHashMap<>();
+    private int compressThreshold = -1;
+
+    /**
+     * Custom serializer of the attribute value
+     *
+     * @param type       value type (exact class)
+     * @param serializer serializer
+     * @param <T>        type
+     */
+    public <T> void registerSerializer(Class<T> type, Serializer<T> serializer) {
+        serializerMap.put(type, serializer);
+        serializerNameMap.put(type.getName(), serializer);
+    }
+
+    @Override
+    public byte[] encode(Session session) {
+        if (session == null) {
+            return EMPTY;
+        }
+        ByteBuf body = ByteBufAllocator.DEFAULT.heapBuffer(128);
+        ByteBuf compressed = null;
+        try {
+            writeString(body, session.getId());
+            body.writeLong(session.getCreationTime());
+            body.writeLong(session.getLastAccessedTime());
+            writeVarInt(body, session.getMaxInactiveInterval());
+            writeVarInt(body, session.getAccessCount());
+            writeAttributes(body, session.getAttributeMap());
+
+            byte flags = 0;
+            ByteBuf out = body;
+            int compressThreshold = this.compressThreshold;
+            if (compressThreshold >= 0 && body.readableBytes() >= compressThreshold) {
+                compressed = ByteBufAllocator.DEFAULT.heapBuffer(body.readableBytes());
+                new Snappy().encode(body.duplicate(), compressed, body.readableBytes());
+                if (compressed.readableBytes() < body.readableBytes()) {
+                    flags |= FLAG_COMPRESSED;
+                    out = compressed;
+                }
+            }
+
+            byte[] bytes = new byte[HEADER_LENGTH + out.readableBytes()];
+            bytes[0] = MAGIC_0;
+            bytes[1] = MAGIC_1;
+            bytes[2] = VERSION;
+            bytes[3] = flags;
+            out.getBytes(out.readerIndex(), bytes, HEADER_LENGTH, out.readableBytes());
+            return bytes;
+        } catch (IOException e) {
+            throw new IllegalStateException("encode http session error=" + e, e);
+        } finally {
+            body.release();
+            if (compressed != null) {
+                compressed.release();
+            }
+        }
+    }
+
+    @Override
+    public Session decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (JavaSessionCodec.isJavaSerialization(bytes)) {
+            return JavaSessionCodec.INSTANCE.decode(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC_0 || bytes[1] != MAGIC_1) {
+            throw new IllegalStateException("decode http session error. unknown format");
+        }
+        if (bytes[2] > VERSION) {
+            throw new IllegalStateException("decode http session error. unsupported version=" + bytes[2]);
+        }
+        ByteBuf in = Unpooled.wrappedBuffer(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        ByteBuf uncompressed = null;
+        try {
+            if ((bytes[3] & FLAG_COMPRESSED) != 0) {
+                uncompressed = ByteBufAllocator.DEFAULT.heapBuffer(bytes.length * 2);
+                new Snappy().decode(in, uncompressed);
+                in = uncompressed;
+            }
+            Session session = new Session();
+            session.setId(readString(in));
+            session.setCreationTime(in.readLong());
+            session.setLastAccessedTime(in.readLong());
+            session.setMaxInactiveInterval(readVarInt(in));
+            session.setAccessCount(readVarInt(in));
+            int attributeSize = readVarInt(in);
+            if (attributeSize > 0) {
+                Map<String, Object> attributeMap = new ConcurrentHashMap<>(Math.max(6, attributeSize * 2));
+                for (int i = 0; i < attributeSize; i++) {
+                    String key = readString(in);
+                    Object value = readValue(in, session);
+                    if (value != null) {
+                        attributeMap.put(key, value);
+                    }
+                }
+                session.setAttributeMap(attributeMap);
+            }
+            return session;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("decode http session error=" + e, e);
+        } finally {
+            if (uncompressed != null) {
+                uncompressed.release();
+            }
+        }
+    }
+
+    protected void writeAttributes(ByteBuf out, Map<String, Object> attributeMap) throws IOException {
+        if (attributeMap == null || attributeMap.isEmpty()) {
+            writeVarInt(out, 0);
+            return;
+        }
+        int sizeIndex = out.writerIndex();
+        // fixed 5 bytes placeholder. the size is known after skip not serializable value
+        out.writeZero(5);
+        int attributeSize = 0;
+        for (Map.Entry<String, Object> entry : attributeMap.entrySet()) {
+            int entryIndex = out.writerIndex();
+            writeString(out, entry.getKey());
+            if (writeValue(out, entry.getValue())) {
+                attributeSize++;
+            } else {
+                out.writerIndex(entryIndex);
+                LOGGER.warn("The value of key={} in the http session property is not serialized and has been skipped automatically", entry.getKey());
+            }
+        }
+        setFixedVarInt(out, sizeIndex, attributeSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected boolean writeValue(ByteBuf out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TAG_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(TAG_CHAR);
+            out.writeChar((Character) value);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(TAG_BYTES);
+            writeVarInt(out, bytes.length);
+            out.writeBytes(bytes);
+        } else {
+            Serializer<Object> serializer = (Serializer<Object>) serializerMap.get(value.getClass());
+            if (serializer != null) {
+                out.writeByte(TAG_CUSTOM);
+                writeString(out, value.getClass().getName());
+                int lengthIndex = out.writerIndex();
+                out.writeInt(0);
+                serializer.write(value, out);
+                out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+            } else if (value instanceof Serializable) {
+                ByteArrayOutputStream bout = new ByteArrayOutputStream(64);
+                try (ObjectOutputStream oout = new ObjectOutputStream(bout)) {
+                    oout.writeObject(value);
+                }
+                out.writeByte(TAG_JAVA);
+                writeVarInt(out, bout.size());
+                out.writeBytes(bout.toByteArray());
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected Object readValue(ByteBuf in, Session session) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INT:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_BYTE:
+                return in.readByte();
+            case TAG_CHAR:
+                return in.readChar();
+            case TAG_BYTES: {
+                byte[] bytes = new byte[readVarInt(in)];
+                in.readBytes(bytes);
+                return bytes;
+            }
+            case TAG_CUSTOM: {
+                String className = readString(in);
+                int length = in.readInt();
+                Serializer<?> serializer = serializerNameMap.get(className);
+                if (serializer == null) {
+                    LOGGER.warn("decode http session skip value {}. no serializer for class {}", session, className);
+                    in.skipBytes(length);
+                    return null;
+                }
+                ByteBuf slice = in.readSlice(length);
+                return serializer.read(slice);
+            }
+            case TAG_JAVA: {
+                int length = readVarInt(in);
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteBufInputStream(in.readSlice(length)))) {
+                    return ois.readObject();
+                } catch (ClassNotFoundException e) {
+                    LOGGER.warn("decode http session readObject error {}. case:{}", session, e.toString());
+                    return null;
+                }
+            }
+            default: {
+                throw new IOException("unknown value tag " + tag);
+            }
+        }
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        writeVarInt(out, ByteBufUtil.utf8Bytes(value));
+        ByteBufUtil.writeUtf8(out, value);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = readVarInt(in);
+        String value = in.toString(in.readerIndex(), length, UTF8);
+        in.skipBytes(length);
+        return value;
+    }
+
+    private static void writeVarInt(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static void setFixedVarInt(ByteBuf out, int index, int value) {
+        for (int i = 0; i < 4; i++) {
+            out.setByte(index + i, (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.setByte(index + 4, value & 0x0F);
+    }
+
+    private static int readVarInt(ByteBuf in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("malformed varint");
+    }
+
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    /**
+     * Compress the body if body length &gt;= compressThreshold.
+     *
+     * @param compressThreshold bytes. less than 0 = disable
+     */
+    public void setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public String toString() {
+        return "BinarySessionCodec{" +
+                "version=" + VERSION +
+                ", compressThreshold=" + compressThreshold +
+                ", serializers=" + serializerMap.keySet() +
+                '}';
+    }
+
+    /**
+     * Custom serializer of the session attribute value
+     *
+     * @param <T> value type
+     */
+    public interface Serializer<T> {
+        void write(T value, ByteBuf out) throws IOException;
+
+        T read(ByteBuf in) throws IOException;
+    }
+}
@@ -4,6 +4,8 @@ import com.github.netty.core.util.CaseInsensitiveKeyMap;
 import com.github.netty.core.util.RecyclableUtil;
 import com.github.netty.protocol.servlet.util.HttpHeaderUtil;
 import com.github.netty.protocol.servlet.util.MimeMappingsX;
+import com.github.netty.protocol.servlet.util.PrecompressedFileResolver;
+import com.github.netty.protocol.servlet.util.StaticResourceCache;
 import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.DateFormatter;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
@@ -20,6 +22,7 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.*;
 
@@ -67,6 +70,8 @@ public class DefaultServlet extends HttpServlet {
     private String characterEncoding = "utf-8";
     private final Map<String, String> mimeTypeMappings = new CaseInsensitiveKeyMap<>();
     private final HttpHeaders responseHeaders = new DefaultHttpHeaders(false);
+    private StaticResourceCache resourceCache;
+    private PrecompressedFileResolver precompressedFileResolver;
 
     public DefaultServlet() {
         DEFAULT_MIME_TYPE_MAPPINGS.forEach((k, v) -> mimeTypeMappings.put(k.toString(), v.toString()));
@@ -205,6 +210,40 @@ public class DefaultServlet extends HttpServlet {
         }
     }
 
+    @Override
+    public void destroy() {
+        StaticResourceCache resourceCache = this.resourceCache;
+        if (resourceCache != null) {
+            resourceCache.close();
+        }
+    }
+
+    public StaticResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    /**
+     * Cache the static resource. null = disable cache
+     *
+     * @param resourceCache resourceCache
+     */
+    public void setResourceCache(StaticResourceCache resourceCache) {
+        this.resourceCache = resourceCache;
+    }
+
+    public PrecompressedFileResolver getPrecompressedFileResolver() {
+        return precompressedFileResolver;
+    }
+
+    /**
+     * Send the precompressed variant (a.js.br, a.js.gz) by sendfile. null = disable
+     *
+     * @param precompressedFileResolver precompressedFileResolver
+     */
+    public void setPrecompressedFileResolver(PrecompressedFileResolver precompressedFileResolver) {
+        this.precompressedFileResolver = precompressedFileResolver;
+    }
+
     public Map<String, String> getMimeTypeMappings() {
         return mimeTypeMappings;
     }
@@ -255,7 +294,14 @@ public class DefaultServlet extends HttpServlet {
     }
 
     protected void sendRange(HttpServletRequest request, HttpServletResponse response, File file, String contentType) throws IOException {
-        WebResource resource = new WebResource(file);
+        StaticResourceCache resourceCache = this.resourceCache;
+        WebResource resource = null;
+        if (resourceCache != null) {
+            resource = resourceCache.get(file, contentType);
+        }
+        if (resource == null) {
+            resource = new WebResource(file);
+        }
 
         List<Range> ranges = parseRange(request, response, resource);
         if (ranges == null) {
@@ -279,7 +325,11 @@ public class DefaultServlet extends HttpServlet {
 
         NettyOutputStream ostream = (NettyOutputStream) r.getOutputStream();
         if (ranges.isEmpty()) {
-            ostream.write(file);
+            if (resource instanceof StaticResourceCache.Entry && ((StaticResourceCache.Entry) resource).getContent() != null) {
+                sendCache(request, response, ostream, (StaticResourceCache.Entry) resource);
+            } else if (!sendPrecompressed(request, response, ostream, file, contentType, eTag)) {
+                ostream.write(file);
+            }
         } else {
             response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
             if (ranges.size() == 1) {
@@ -295,6 +345,52 @@ public class DefaultServlet extends HttpServlet {
         }
     }
 
+    protected void sendCache(HttpServletRequest request, HttpServletResponse response,
+                             NettyOutputStream ostream, StaticResourceCache.Entry entry) throws IOException {
+        if (entry.isGzipVariant()) {
+            response.addHeader("Vary", "Accept-Encoding");
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            if (acceptEncoding != null && PrecompressedFileResolver.isAccept(acceptEncoding, "gzip")) {
+                ByteBuffer gzipContent = entry.getGzipContent();
+                response.setHeader("ETag", entry.getGzipETag());
+                response.setHeader("Content-Encoding", "gzip");
+                response.setContentLengthLong(gzipContent.remaining());
+                ostream.write(gzipContent);
+                return;
+            }
+        }
+        ByteBuffer content = entry.getContent();
+        if (content != null) {
+            response.setContentLengthLong(content.remaining());
+            ostream.write(content);
+        } else {
+            ostream.write(entry.getFile());
+        }
+    }
+
+    protected boolean sendPrecompressed(HttpServletRequest request, HttpServletResponse response,
+                                        NettyOutputStream ostream, File file, String contentType, String eTag) throws IOException {
+        PrecompressedFileResolver resolver = this.precompressedFileResolver;
+        if (resolver == null || !resolver.isCompressionMimeType(contentType)) {
+            return false;
+        }
+        response.addHeader("Vary", "Accept-Encoding");
+        ServletContext servletContext = (ServletContext) getServletContext();
+        PrecompressedFileResolver.Variant variant = resolver.resolve(file, contentType,
+                request.getHeader("Accept-Encoding"), servletContext.getResourceManager());
+        if (variant == null) {
+            return false;
+        }
+        File variantFile = variant.getFile();
+        if (eTag != null) {
+            response.setHeader("ETag", PrecompressedFileResolver.encodingETag(eTag, variant.getEncoding()));
+        }
+        response.setHeader("Content-Encoding", variant.getEncoding());
+        response.setContentLengthLong(variantFile.length());
+        ostream.write(variantFile);
+        return true;
+    }
+
     protected void sendMultipartByteRanges(File file, NettyOutputStream ostream, List<Range> ranges, String contentType) throws IOException {
         ByteBuf contentTypeByteBuf = null;
         if (contentType != null && contentType.length() > 0) {
@@ -379,6 +475,11 @@ public class DefaultServlet extends HttpServlet {
             this.lastModified = file.lastModified();
         }
 
+        public WebResource(long length, long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
         public long getLastModified() {
             return lastModified;
         }
@@ -2,10 +2,14 @@ package com.github.netty.protocol.servlet;
 
 import com.github.netty.core.AbstractChannelHandler;
 import com.github.netty.core.MessageToRunnable;
+import com.github.netty.core.util.AdaptiveThreadPoolExecutor;
 import com.github.netty.core.util.RecyclableUtil;
 import com.github.netty.protocol.servlet.util.Protocol;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
 import io.netty.util.AttributeKey;
 
 import java.io.IOException;
@@ -19,6 +23,15 @@ import java.util.concurrent.Executor;
  */
 public class DispatcherChannelHandler extends AbstractChannelHandler<Object, Object> {
     public static final AttributeKey<MessageToRunnable> CHANNEL_ATTR_KEY_MESSAGE_TO_RUNNABLE = AttributeKey.valueOf(MessageToRunnable.class + "#MessageToRunnable");
+    private static final FullHttpResponse SERVICE_UNAVAILABLE_CLOSE = new DefaultFullHttpResponse(
+            HttpVersion.HTTP_1_1, HttpResponseStatus.SERVICE_UNAVAILABLE, Unpooled.EMPTY_BUFFER);
+
+    static {
+        SERVICE_UNAVAILABLE_CLOSE.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+        SERVICE_UNAVAILABLE_CLOSE.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+        SERVICE_UNAVAILABLE_CLOSE.headers().set(HttpHeaderNames.RETRY_AFTER, 1);
+    }
+
     protected final ServletContext servletContext;
     protected final long maxContentLength;
     protected final Protocol protocol;
@@ -66,7 +79,7 @@ public class DispatcherChannelHandler extends AbstractChannelHandler<Object, Obj
             if (messageToRunnable != null) {
                 Runnable runnable = messageToRunnable.onMessage(context, msg);
                 if (runnable != null) {
-                    run(runnable);
+                    run(context, runnable);
                 }
             } else {
                 logger.warn("no handler message = {}", msg.getClass());
@@ -78,6 +91,42 @@ public class DispatcherChannelHandler extends AbstractChannelHandler<Object, Obj
         }
     }
 
+    protected void run(ChannelHandlerContext context, Runnable task) {
+        Executor executor;
+        if (protocol.isHttp2()
+                || !(task instanceof NettyMessageToServletRunnable.HttpRunnable)
+                || !((executor = servletContext.getAsyncExecutor()) instanceof AdaptiveThreadPoolExecutor)) {
+            run(task);
+        } else if (!((AdaptiveThreadPoolExecutor) executor).tryExecute(task)) {
+            // load shedding. cheap 503 on the event loop
+            onBusy(context, (NettyMessageToServletRunnable.HttpRunnable) task);
+        }
+    }
+
+    /**
+     * Executor concurrency limit reached. write 503 and close the connection.
+     * the exchange (the request body) is released after the 503 written, the task is recycled.
+     *
+     * @param context context
+     * @param task    shedding task
+     */
+    protected void onBusy(ChannelHandlerContext context, NettyMessageToServletRunnable.HttpRunnable task) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("http shedding. task={}, channel={}", task, context.channel());
+        }
+        ServletHttpExchange exchange = task.getExchange();
+        task.recycle();
+        context.writeAndFlush(SERVICE_UNAVAILABLE_CLOSE.retainedDuplicate())
+                .addListener(ChannelFutureListener.CLOSE)
+                .addListener(future -> {
+                    if (exchange != null && exchange.closeStatus() == ServletHttpExchange.CLOSE_NO) {
+                        // the servlet response is never written
+                        exchange.abort();
+                        exchange.close();
+                    }
+                });
+    }
+
     protected void run(Runnable task) {
         switch (protocol) {
             case h2c:
@@ -0,0 +1,114 @@
+package com.github.netty.protocol.servlet;
+
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+
+import java.io.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Session codec by jdk ObjectOutputStream. (the format before {@link BinarySessionCodec})
+ *
+ * @author wangzihao
+ */
+public class JavaSessionCodec implements SessionCodec {
+    public static final JavaSessionCodec INSTANCE = new JavaSessionCodec();
+    private static final LoggerX LOGGER = LoggerFactoryX.getLogger(JavaSessionCodec.class);
+    private static final byte[] EMPTY = {};
+
+    /**
+     * Is the bytes encode by ObjectOutputStream. (STREAM_MAGIC = 0xACED)
+     *
+     * @param bytes bytes
+     * @return true if java serialization stream
+     */
+    public static boolean isJavaSerialization(byte[] bytes) {
+        return bytes != null && bytes.length >= 2
+                && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED;
+    }
+
+    @Override
+    public byte[] encode(Session session) {
+        if (session == null) {
+            return EMPTY;
+        }
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(64);
+        try (ObjectOutputStream oout = new ObjectOutputStream(bout)) {
+            oout.writeUTF(session.getId());
+            oout.writeLong(session.getCreationTime());
+            oout.writeLong(session.getLastAccessedTime());
+            oout.writeInt(session.getMaxInactiveInterval());
+            oout.writeInt(session.getAccessCount());
+
+            Map<String, Object> attributeMap = session.getAttributeMap();
+            int attributeSize = 0;
+            if (attributeMap != null) {
+                for (Map.Entry<String, Object> entry : attributeMap.entrySet()) {
+                    if (entry.getValue() instanceof Serializable) {
+                        attributeSize++;
+                    } else {
+                        LOGGER.warn("The value of key={} in the http session property is not serialized and has been skipped automatically", entry.getKey());
+                    }
+                }
+            }
+
+            oout.writeInt(attributeSize);
+            if (attributeSize > 0) {
+                for (Map.Entry<String, Object> entry : attributeMap.entrySet()) {
+                    Object value = entry.getValue();
+                    if (value instanceof Serializable) {
+                        oout.writeUTF(entry.getKey());
+                        oout.writeObject(value);
+                    }
+                }
+            }
+            oout.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("encode http session error=" + e, e);
+        }
+        return bout.toByteArray();
+    }
+
+    @Override
+    public Session decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            Session session = new Session();
+            session.setId(ois.readUTF());
+            session.setCreationTime(ois.readLong());
+            session.setLastAccessedTime(ois.readLong());
+            session.setMaxInactiveInterval(ois.readInt());
+            session.setAccessCount(ois.readInt());
+
+            int attributeSize = ois.readInt();
+            if (attributeSize > 0) {
+                Map<String, Object> attributeMap = new ConcurrentHashMap<>(6);
+                for (int i = 0; i < attributeSize; i++) {
+                    String key = ois.readUTF();
+                    Object value;
+                    try {
+                        value = ois.readObject();
+                    } catch (ClassNotFoundException e) {
+                        LOGGER.warn("decode http session readObject error {}. case:{}", session, e.toString());
+                        continue;
+                    }
+                    if (value != null) {
+                        attributeMap.put(key, value);
+                    }
+                }
+                session.setAttributeMap(attributeMap);
+            }
+            return session;
+        } catch (IOException e) {
+            throw new IllegalStateException("decode http session error=" + e, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JavaSessionCodec";
+    }
+}
@@ -27,6 +27,14 @@ public class ServletHttpSession implements HttpSession, Wrapper<Session> {
     private int maxInactiveInterval;
     private int accessCount;
     private Session source;
+    /**
+     * Attributes set or removed since the last save. read only requests keep it empty, then save is only a touch.
+     */
+    private final Set<String> dirtyAttributeNames = Collections.newSetFromMap(new ConcurrentHashMap<>(4));
+    /**
+     * New session, or maxInactiveInterval changed since the last save
+     */
+    private volatile boolean dirty;
 
     ServletHttpSession(Session session, ServletContext servletContext) {
         this.servletContext = servletContext;
@@ -40,8 +48,45 @@ public class ServletHttpSession implements HttpSession, Wrapper<Session> {
         return attributeMap;
     }
 
+    /**
+     * Write the session to the store. if nothing changed since the last save, only touch the session.
+     * note: a mutable attribute value changed in place need call {@link #setAttribute(String, Object)} again
+     */
     public void save() {
-        getServletContext().getSessionService().saveSession(unwrap());
+        SessionService sessionService = getServletContext().getSessionService();
+        Session session = unwrap();
+        if (isDirty()) {
+            dirty = false;
+            Set<String> saveAttributeNames = new HashSet<>(dirtyAttributeNames);
+            dirtyAttributeNames.removeAll(saveAttributeNames);
+            try {
+                sessionService.saveSession(session);
+            } catch (RuntimeException e) {
+                dirty = true;
+                dirtyAttributeNames.addAll(saveAttributeNames);
+                throw e;
+            }
+        } else {
+            sessionService.touchSession(session);
+        }
+    }
+
+    /**
+     * @return true if the session need rewrite to the store
+     */
+    public boolean isDirty() {
+        return dirty || !dirtyAttributeNames.isEmpty();
+    }
+
+    /**
+     * @return the attribute names that set or removed since the last save
+     */
+    public Set<String> getDirtyAttributeNames() {
+        return Collections.unmodifiableSet(dirtyAttributeNames);
+    }
+
+    public void markDirty() {
+        this.dirty = true;
     }
 
     @Override
@@ -75,7 +120,10 @@ public class ServletHttpSession implements HttpSession, Wrapper<Session> {
 
     @Override
     public void setMaxInactiveInterval(int interval) {
-        maxInactiveInterval = interval;
+        if (maxInactiveInterval != interval) {
+            maxInactiveInterval = interval;
+            dirty = true;
+        }
     }
 
     @Override
@@ -114,6 +162,7 @@ public class ServletHttpSession implements HttpSession, Wrapper<Session> {
         }
 
         Object oldValue = getAttributeMap().put(name, value);
+        dirtyAttributeNames.add(name);
 
         if (value instanceof HttpSessionBindingListener) {
             httpSessionBindingListenerList.add((HttpSessionBindingListener) value);
@@ -156,6 +205,9 @@ public class ServletHttpSession implements HttpSession, Wrapper<Session> {
     @Override
     public void removeAttribute(String name) {
         Object oldValue = getAttributeMap().remove(name);
+        if (oldValue != null) {
+            dirtyAttributeNames.add(name);
+        }
 
         if (oldValue instanceof HttpSessionBindingListener) {
             httpSessionBindingListenerList.remove(oldValue);
@@ -206,6 +258,7 @@ public class ServletHttpSession implements HttpSession, Wrapper<Session> {
             attributeMap = null;
         }
         maxInactiveInterval = -1;
+        dirty = true;
     }
 
     public boolean hasListener() {
@@ -243,11 +296,13 @@ public class ServletHttpSession implements HttpSession, Wrapper<Session> {
             if (listenerManager.hasHttpSessionListener()) {
                 listenerManager.onHttpSessionCreated(new HttpSessionEvent(this));
             }
+            // save now, so that the new session can be found by other connections before the request end
+            dirty = true;
+            save();
         } else {
             lastAccessedTime = currAccessedTime;
             currAccessedTime = System.currentTimeMillis();
         }
-        save();
     }
 
     @Override
@@ -258,9 +313,12 @@ public class ServletHttpSession implements HttpSession, Wrapper<Session> {
         this.attributeMap = source.getAttributeMap();
         this.creationTime = source.getCreationTime();
         this.lastAccessedTime = source.getLastAccessedTime();
+        this.currAccessedTime = lastAccessedTime;
         //Unit seconds
         this.maxInactiveInterval = source.getMaxInactiveInterval();
         this.accessCount = source.getAccessCount();
+        this.dirty = false;
+        this.dirtyAttributeNames.clear();
 
         if (attributeMap != null) {
             httpSessionBindingListenerList.clear();
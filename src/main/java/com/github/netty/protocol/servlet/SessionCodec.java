@@ -0,0 +1,28 @@
+package com.github.netty.protocol.servlet;
+
+/**
+ * Session encoder decoder. (used by file and remote session storage)
+ *
+ * @author wangzihao
+ * @see BinarySessionCodec
+ * @see JavaSessionCodec
+ */
+public interface SessionCodec {
+
+    /**
+     * Session - encoding
+     *
+     * @param session session
+     * @return bytes
+     */
+    byte[] encode(Session session);
+
+    /**
+     * Session - decoding
+     *
+     * @param bytes bytes
+     * @return Session. null if bytes is empty
+     */
+    Session decode(byte[] bytes);
+
+}
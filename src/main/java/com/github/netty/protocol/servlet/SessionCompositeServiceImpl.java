@@ -47,6 +47,11 @@ public class SessionCompositeServiceImpl implements SessionService {
         this.sessionService = new SessionLocalFileServiceImpl(resourceManager, servletContext);
     }
 
+    public void enableLocalLogSession(ResourceManager resourceManager) {
+        removeSessionService();
+        this.sessionService = new SessionLocalLogServiceImpl(resourceManager, servletContext);
+    }
+
     public void removeSessionService() {
         if (sessionService == null) {
             return;
@@ -54,6 +59,8 @@ public class SessionCompositeServiceImpl implements SessionService {
         try {
             if (sessionService instanceof SessionLocalFileServiceImpl) {
                 ((SessionLocalFileServiceImpl) sessionService).getSessionInvalidThread().interrupt();
+            } else if (sessionService instanceof SessionLocalLogServiceImpl) {
+                ((SessionLocalLogServiceImpl) sessionService).close();
             }
         } catch (Exception e) {
             //
@@ -70,6 +77,15 @@ public class SessionCompositeServiceImpl implements SessionService {
         }
     }
 
+    @Override
+    public void touchSession(Session session) {
+        try {
+            getSessionServiceImpl().touchSession(session);
+        } catch (Throwable t) {
+            logger.warn("touchSession error={}", t.toString(), t);
+        }
+    }
+
     @Override
     public void removeSession(String sessionId) {
         getSessionServiceImpl().removeSession(sessionId);
@@ -101,6 +117,10 @@ public class SessionCompositeServiceImpl implements SessionService {
         return getSessionServiceImpl().count();
     }
 
+    public SessionService getSessionService() {
+        return sessionService;
+    }
+
     protected SessionService getSessionServiceImpl() {
         if (sessionService == null) {
             synchronized (this) {
@@ -1,13 +1,14 @@
 package com.github.netty.protocol.servlet;
 
+import com.github.netty.core.util.IOUtil;
 import com.github.netty.core.util.LoggerFactoryX;
 import com.github.netty.core.util.LoggerX;
 import com.github.netty.core.util.NamespaceUtil;
 import com.github.netty.core.util.ResourceManager;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Local file session service
@@ -16,12 +17,18 @@ import java.util.concurrent.ConcurrentHashMap;
  * 2018/8/19/019
  */
 public class SessionLocalFileServiceImpl implements SessionService {
+    private static final int ACCESS_RECORD_LENGTH = 12;
     private final String name = NamespaceUtil.newIdName(getClass());
     private final LoggerX logger = LoggerFactoryX.getLogger(getClass());
     private final String rootPath = "/session";
+    /**
+     * the access record of the touched session. [long lastAccessedTime][int accessCount]
+     */
+    private final String accessPath = "/session-access";
     private final ResourceManager resourceManager;
     private final SessionInvalidThread sessionInvalidThread;
     private final ServletContext servletContext;
+    private SessionCodec sessionCodec = JavaSessionCodec.INSTANCE;
 
     public SessionLocalFileServiceImpl(ResourceManager resourceManager, ServletContext servletContext) {
         this.servletContext = servletContext;
@@ -34,49 +41,37 @@ public class SessionLocalFileServiceImpl implements SessionService {
     @Override
     public void saveSession(Session session) {
         String fileName = getFileName(session.getId());
-
-        try (FileOutputStream fileOutputStream = resourceManager.newFileOutputStream(rootPath, fileName, false);
-             ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream)) {
-            objectOutputStream.writeUTF(session.getId());
-            objectOutputStream.writeLong(session.getCreationTime());
-            objectOutputStream.writeLong(session.getLastAccessedTime());
-            objectOutputStream.writeInt(session.getMaxInactiveInterval());
-            objectOutputStream.writeInt(session.getAccessCount());
-
-            Map<String, Object> attributeMap = session.getAttributeMap();
-            int attributeSize = 0;
-            if (attributeMap != null) {
-                for (Map.Entry<String, Object> entry : attributeMap.entrySet()) {
-                    if (entry.getValue() instanceof Serializable) {
-                        attributeSize++;
-                    } else {
-//                        logger.warn("The value of key={} in the session property is not serialized and has been skipped automatically",entry.getKey());
-                    }
-                }
-            }
-
-            objectOutputStream.writeInt(attributeSize);
-            if (attributeSize > 0) {
-                for (Map.Entry<String, Object> entry : attributeMap.entrySet()) {
-                    Object value = entry.getValue();
-                    if (value instanceof Serializable) {
-                        String key = entry.getKey();
-                        objectOutputStream.writeUTF(key);
-                        objectOutputStream.writeObject(value);
-                    }
-                }
-            }
-
+        try {
+            resourceManager.writeFile(sessionCodec.encode(session), rootPath, fileName);
         } catch (IOException e) {
             logger.warn("saveSession error {}. case:{}", session, e.toString());
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Not rewrite the session file, only write the small access record
+     *
+     * @param session session
+     */
+    @Override
+    public void touchSession(Session session) {
+        ByteBuffer access = ByteBuffer.allocate(ACCESS_RECORD_LENGTH);
+        access.putLong(session.getLastAccessedTime());
+        access.putInt(session.getAccessCount());
+        try {
+            resourceManager.writeFile(access.array(), accessPath, getFileName(session.getId()));
+        } catch (IOException e) {
+            logger.warn("touchSession error {}. case:{}", session, e.toString());
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public void removeSession(String sessionId) {
         String fileName = getFileName(sessionId);
         resourceManager.delete(rootPath + (File.separator) + (fileName));
+        resourceManager.delete(accessPath + (File.separator) + (fileName));
     }
 
     @Override
@@ -90,11 +85,13 @@ public class SessionLocalFileServiceImpl implements SessionService {
             for (int i = 0; i < size; i++) {
                 String fileName = getFileName(sessionIdList.get(i));
                 resourceManager.delete(path.concat(fileName));
+                resourceManager.delete(accessPath.concat(File.separator).concat(fileName));
             }
         } else {
             for (String sessionId : sessionIdList) {
                 String fileName = getFileName(sessionId);
                 resourceManager.delete(path.concat(fileName));
+                resourceManager.delete(accessPath.concat(File.separator).concat(fileName));
             }
         }
     }
@@ -106,31 +103,12 @@ public class SessionLocalFileServiceImpl implements SessionService {
     }
 
     protected Session getSessionByFileName(String fileName) {
-        try (FileInputStream fileInputStream = resourceManager.newFileInputStream(rootPath, fileName);
-             ObjectInputStream ois = new ObjectInputStream(fileInputStream)) {
-            Session session = new Session();
-            session.setId(ois.readUTF());
-            session.setCreationTime(ois.readLong());
-            session.setLastAccessedTime(ois.readLong());
-            session.setMaxInactiveInterval(ois.readInt());
-            session.setAccessCount(ois.readInt());
-
-            int attributeSize = ois.readInt();
-            if (attributeSize > 0) {
-                Map<String, Object> attributeMap = new ConcurrentHashMap<>(6);
-                for (int i = 0; i < attributeSize; i++) {
-                    String key = ois.readUTF();
-                    Object value = null;
-                    try {
-                        value = ois.readObject();
-                    } catch (ClassNotFoundException e) {
-                        logger.warn("getSession readObject error {}. case:{}", session, e.toString());
-                    }
-                    attributeMap.put(key, value);
-                }
-                session.setAttributeMap(attributeMap);
+        try {
+            byte[] bytes = IOUtil.readFileToBytes(resourceManager.getRealPath(rootPath), fileName);
+            Session session = sessionCodec.decode(bytes);
+            if (session != null) {
+                applyAccessRecord(session, fileName);
             }
-
             return session;
         } catch (FileNotFoundException e) {
             return null;
@@ -140,6 +118,32 @@ public class SessionLocalFileServiceImpl implements SessionService {
         }
     }
 
+    /**
+     * the access record is newer than the session file if touched after the last save
+     *
+     * @param session  session
+     * @param fileName fileName
+     */
+    private void applyAccessRecord(Session session, String fileName) {
+        byte[] bytes;
+        try {
+            bytes = IOUtil.readFileToBytes(resourceManager.getRealPath(accessPath), fileName);
+        } catch (IOException e) {
+            return;
+        }
+        if (bytes.length != ACCESS_RECORD_LENGTH) {
+            return;
+        }
+        ByteBuffer access = ByteBuffer.wrap(bytes);
+        long lastAccessedTime = access.getLong();
+        int accessCount = access.getInt();
+        if (lastAccessedTime > session.getLastAccessedTime()
+                || (lastAccessedTime == session.getLastAccessedTime() && accessCount > session.getAccessCount())) {
+            session.setLastAccessedTime(lastAccessedTime);
+            session.setAccessCount(accessCount);
+        }
+    }
+
     @Override
     public void changeSessionId(String oldSessionId, String newSessionId) {
         String oldFileName = getFileName(oldSessionId);
@@ -147,6 +151,11 @@ public class SessionLocalFileServiceImpl implements SessionService {
 
         try {
             resourceManager.copyFile(rootPath, oldFileName, rootPath, newFileName);
+            try {
+                resourceManager.copyFile(accessPath, oldFileName, accessPath, newFileName);
+            } catch (FileNotFoundException e) {
+                // not touched
+            }
             removeSession(oldSessionId);
         } catch (FileNotFoundException e) {
             //
@@ -160,6 +169,14 @@ public class SessionLocalFileServiceImpl implements SessionService {
         return resourceManager.countFile(rootPath);
     }
 
+    public SessionCodec getSessionCodec() {
+        return sessionCodec;
+    }
+
+    public void setSessionCodec(SessionCodec sessionCodec) {
+        this.sessionCodec = Objects.requireNonNull(sessionCodec);
+    }
+
     /**
      * Get file name
      *
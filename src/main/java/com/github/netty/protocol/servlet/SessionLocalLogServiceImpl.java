@@ -0,0 +1,805 @@
+package com.github.netty.protocol.servlet;
+
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import com.github.netty.core.util.NamespaceUtil;
+import com.github.netty.core.util.ResourceManager;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Local log structured session service. For a large number of sessions.
+ * <p>
+ * 1. all changes append to the active segment file (session-{id}.log), roll to a new segment when the segment is full.
+ * 2. in-memory hash index, sessionId to the record location. get = one positional read, put = one append.
+ * 3. expiry by a timing wheel (one slot per second). touch only update the expiry and the access fields in the index and append a tiny touch record,
+ * the wheel re-schedules the session lazily when the slot is reached.
+ * 4. compaction copies the live records of the oldest segment to the active segment, then delete the oldest segment.
+ * only the oldest segment is compacted, so a remove record is never dropped before the put it hides.
+ * 5. on start, replay all segments in order. a broken tail (crash while writing) is truncated.
+ * 6. fsync policy. see {@link FsyncPolicy}
+ * <p>
+ * Record format: [int bodyLength][int crc32(body)][body]
+ * body: [byte type][int keyLength][key utf8][type fields]
+ * PUT = [long expireAt][int dataLength][data], TOUCH = [long expireAt][long lastAccessedTime][int accessCount], REMOVE = [], CHANGE_ID = [int newKeyLength][newKey utf8]
+ *
+ * @author wangzihao
+ */
+public class SessionLocalLogServiceImpl implements SessionService, Closeable {
+    public static final String ROOT_PATH = "/session-log";
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_TOUCH = 2;
+    private static final byte TYPE_REMOVE = 3;
+    private static final byte TYPE_CHANGE_ID = 4;
+    private static final int HEADER_LENGTH = 8;
+    private static final String SEGMENT_PREFIX = "session-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final LoggerX logger = LoggerFactoryX.getLogger(SessionLocalLogServiceImpl.class);
+
+    private final String name = NamespaceUtil.newIdName(getClass());
+    private final ServletContext servletContext;
+    private final File dir;
+    private final Map<String, Location> index = new ConcurrentHashMap<>(1024);
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Object writeLock = new Object();
+    private final TimingWheel timingWheel = new TimingWheel(512);
+    private final SessionLogTickThread tickThread;
+    private final FsyncPolicy fsyncPolicy;
+    private final long segmentBytes;
+    private SessionCodec sessionCodec = new BinarySessionCodec();
+    private double compactRatio = 0.5D;
+    private volatile Segment activeSegment;
+    private volatile boolean unsynced;
+    private volatile boolean closed;
+
+    public SessionLocalLogServiceImpl(ResourceManager resourceManager, ServletContext servletContext) {
+        this(resourceManager, servletContext, 64 * 1024 * 1024, FsyncPolicy.EVERY_SECOND);
+    }
+
+    /**
+     * @param resourceManager the segment files are under {@link #ROOT_PATH}
+     * @param servletContext  nullable. for the session destroy listeners
+     * @param segmentBytes    roll to a new segment if the active segment is larger than this
+     * @param fsyncPolicy     fsyncPolicy
+     */
+    public SessionLocalLogServiceImpl(ResourceManager resourceManager, ServletContext servletContext,
+                                      long segmentBytes, FsyncPolicy fsyncPolicy) {
+        this.servletContext = servletContext;
+        this.dir = resourceManager.mkdirs(ROOT_PATH).toFile();
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = Objects.requireNonNull(fsyncPolicy);
+        try {
+            replay();
+        } catch (IOException e) {
+            throw new IllegalStateException("session log replay fail. dir=" + dir + ", error=" + e, e);
+        }
+        this.tickThread = new SessionLogTickThread();
+        this.tickThread.start();
+    }
+
+    @Override
+    public Session getSession(String sessionId) {
+        for (int retry = 0; retry < 3; retry++) {
+            Location location = index.get(sessionId);
+            if (location == null) {
+                return null;
+            }
+            if (location.expireAt <= System.currentTimeMillis()) {
+                expire(sessionId, location);
+                return null;
+            }
+            byte[] data;
+            try {
+                data = location.segment.read(location.dataOffset, location.dataLength);
+            } catch (ClosedChannelException e) {
+                // the segment is compacted, the location is moved
+                continue;
+            } catch (IOException e) {
+                logger.warn("getSession error id={}. case:{}", sessionId, e.toString());
+                throw new IllegalStateException(e);
+            }
+            Session session = sessionCodec.decode(data);
+            if (session != null) {
+                session.setId(sessionId);
+                location.applyAccess(session);
+            }
+            return session;
+        }
+        return null;
+    }
+
+    @Override
+    public void saveSession(Session session) {
+        if (session == null) {
+            return;
+        }
+        String id = session.getId();
+        if (session.getMaxInactiveInterval() <= 0) {
+            removeSession(id);
+            return;
+        }
+        long expireAt = System.currentTimeMillis() + session.getMaxInactiveInterval() * 1000L;
+        byte[] data = sessionCodec.encode(session);
+        synchronized (writeLock) {
+            Location location = appendPut(id, expireAt, data);
+            Location old = index.put(id, location);
+            if (old != null) {
+                old.segment.deadBytes(old.recordLength);
+            } else {
+                timingWheel.schedule(id, expireAt);
+            }
+        }
+    }
+
+    @Override
+    public void touchSession(Session session) {
+        if (session == null || session.getMaxInactiveInterval() <= 0) {
+            return;
+        }
+        String id = session.getId();
+        long expireAt = System.currentTimeMillis() + session.getMaxInactiveInterval() * 1000L;
+        synchronized (writeLock) {
+            Location location = index.get(id);
+            if (location == null) {
+                return;
+            }
+            location.expireAt = expireAt;
+            location.touch(session.getLastAccessedTime(), session.getAccessCount());
+            appendTouch(id, location);
+        }
+    }
+
+    @Override
+    public void removeSession(String sessionId) {
+        synchronized (writeLock) {
+            Location old = index.remove(sessionId);
+            if (old == null) {
+                return;
+            }
+            old.segment.deadBytes(old.recordLength);
+            ByteBuffer body = newBody(TYPE_REMOVE, sessionId, 0);
+            append(body).deadBytes(HEADER_LENGTH + body.limit());
+        }
+    }
+
+    @Override
+    public void removeSessionBatch(List<String> sessionIdList) {
+        if (sessionIdList == null || sessionIdList.isEmpty()) {
+            return;
+        }
+        for (String sessionId : sessionIdList) {
+            removeSession(sessionId);
+        }
+    }
+
+    @Override
+    public void changeSessionId(String oldSessionId, String newSessionId) {
+        synchronized (writeLock) {
+            Location location = index.remove(oldSessionId);
+            if (location == null) {
+                return;
+            }
+            byte[] newKey = newSessionId.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer body = newBody(TYPE_CHANGE_ID, oldSessionId, 4 + newKey.length);
+            body.putInt(newKey.length);
+            body.put(newKey);
+            append(body).deadBytes(HEADER_LENGTH + body.limit());
+            Location old = index.put(newSessionId, location);
+            if (old != null) {
+                old.segment.deadBytes(old.recordLength);
+            }
+            timingWheel.schedule(newSessionId, location.expireAt);
+        }
+    }
+
+    @Override
+    public int count() {
+        return index.size();
+    }
+
+    /**
+     * Check the sessions in the timing wheel slots that reached
+     *
+     * @param now currentTimeMillis
+     */
+    protected void expireTick(long now) {
+        timingWheel.advance(now, id -> {
+            Location location = index.get(id);
+            if (location == null) {
+                return;
+            }
+            if (location.expireAt <= now) {
+                expire(id, location);
+            } else {
+                // touched after schedule. schedule again
+                timingWheel.schedule(id, location.expireAt);
+            }
+        });
+    }
+
+    private void expire(String id, Location location) {
+        Session session = null;
+        if (servletContext != null) {
+            try {
+                session = sessionCodec.decode(location.segment.read(location.dataOffset, location.dataLength));
+                if (session != null) {
+                    location.applyAccess(session);
+                }
+            } catch (Exception e) {
+                //skip
+            }
+        }
+        synchronized (writeLock) {
+            if (!index.remove(id, location)) {
+                return;
+            }
+            location.segment.deadBytes(location.recordLength);
+        }
+        if (session != null) {
+            session.setId(id);
+            ServletHttpSession httpSession = new ServletHttpSession(session, servletContext);
+            if (httpSession.hasListener()) {
+                servletContext.getDefaultExecutorSupplier().get().execute(httpSession::invalidate0);
+            } else {
+                httpSession.invalidate0();
+            }
+        }
+    }
+
+    /**
+     * Compact the oldest segment if the garbage is more than compactRatio
+     *
+     * @return true if compacted one segment
+     */
+    public boolean compact() {
+        Map.Entry<Long, Segment> first = segments.firstEntry();
+        Segment oldest = first == null ? null : first.getValue();
+        if (oldest == null || oldest == activeSegment) {
+            return false;
+        }
+        long totalBytes = 0;
+        long deadBytes = 0;
+        for (Segment segment : segments.values()) {
+            totalBytes += segment.size;
+            deadBytes += segment.deadBytes.get();
+        }
+        boolean needCompact = oldest.deadBytes.get() >= oldest.size * compactRatio
+                || (totalBytes > 0 && deadBytes >= totalBytes * compactRatio);
+        if (!needCompact) {
+            return false;
+        }
+        int moved = 0;
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.segment != oldest) {
+                continue;
+            }
+            byte[] data;
+            try {
+                data = oldest.read(location.dataOffset, location.dataLength);
+            } catch (IOException e) {
+                logger.warn("session log compact read fail. segment={}, error={}", oldest, e.toString());
+                return false;
+            }
+            synchronized (writeLock) {
+                if (index.get(entry.getKey()) != location) {
+                    continue;
+                }
+                move(entry.getKey(), location, data);
+                moved++;
+            }
+        }
+        synchronized (writeLock) {
+            // the iteration above is weakly consistent, a location can be missed. (e.g. changeSessionId put it to a visited key)
+            // all the index changes hold the lock, so the scan here is complete.
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                if (location.segment != oldest) {
+                    continue;
+                }
+                try {
+                    move(entry.getKey(), location, oldest.read(location.dataOffset, location.dataLength));
+                } catch (IOException e) {
+                    logger.warn("session log compact read fail. segment={}, error={}", oldest, e.toString());
+                    return false;
+                }
+                moved++;
+            }
+            force();
+            segments.remove(oldest.id);
+            oldest.delete();
+        }
+        logger.info("session log compacted. segment={}, moved={}", oldest, moved);
+        return true;
+    }
+
+    /**
+     * copy the record to the active segment. hold the writeLock
+     */
+    private void move(String id, Location location, byte[] data) {
+        Location movedLocation = appendPut(id, location.expireAt, data);
+        if (location.access != null) {
+            // the touch records of the oldest segment are deleted with it
+            movedLocation.access = location.access;
+            appendTouch(id, movedLocation);
+        }
+        index.put(id, movedLocation);
+    }
+
+    /**
+     * Flush the appended records to the disk
+     */
+    public void force() {
+        Segment segment = activeSegment;
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.channel.force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            logger.warn("session log force fail. segment={}, error={}", segment, e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        tickThread.interrupt();
+        synchronized (writeLock) {
+            force();
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        }
+    }
+
+    private Location appendPut(String id, long expireAt, byte[] data) {
+        ByteBuffer body = newBody(TYPE_PUT, id, 8 + 4 + data.length);
+        body.putLong(expireAt);
+        body.putInt(data.length);
+        int dataPosition = body.position();
+        body.put(data);
+        long offset = activeSegmentForWrite(HEADER_LENGTH + body.capacity()).size;
+        Segment segment = append(body);
+        return new Location(segment, offset + HEADER_LENGTH + dataPosition, data.length, HEADER_LENGTH + body.limit(), expireAt);
+    }
+
+    private void appendTouch(String id, Location location) {
+        ByteBuffer body = newBody(TYPE_TOUCH, id, 8 + 8 + 4);
+        Access access = location.access;
+        body.putLong(location.expireAt);
+        body.putLong(access.lastAccessedTime);
+        body.putInt(access.accessCount);
+        append(body).deadBytes(HEADER_LENGTH + body.limit());
+    }
+
+    private static ByteBuffer newBody(byte type, String key, int fieldsLength) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(1 + 4 + keyBytes.length + fieldsLength);
+        body.put(type);
+        body.putInt(keyBytes.length);
+        body.put(keyBytes);
+        return body;
+    }
+
+    /**
+     * Append a record. must hold writeLock
+     *
+     * @param body the record body. position = end of body
+     * @return the segment that the record write to
+     */
+    private Segment append(ByteBuffer body) {
+        body.flip();
+        CRC32 crc32 = new CRC32();
+        crc32.update(body.array(), 0, body.limit());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(body.limit());
+        header.putInt((int) crc32.getValue());
+        header.flip();
+
+        Segment segment = activeSegmentForWrite(HEADER_LENGTH + body.limit());
+        try {
+            segment.write(new ByteBuffer[]{header, body});
+        } catch (IOException e) {
+            throw new IllegalStateException("session log append fail. segment=" + segment + ", error=" + e, e);
+        }
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            force();
+        } else {
+            unsynced = true;
+        }
+        return segment;
+    }
+
+    private Segment activeSegmentForWrite(int recordLength) {
+        Segment segment = activeSegment;
+        if (segment == null || (segment.size > 0 && segment.size + recordLength > segmentBytes)) {
+            if (segment != null) {
+                force();
+            }
+            long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+            try {
+                segment = new Segment(id, new File(dir, String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)));
+            } catch (IOException e) {
+                throw new IllegalStateException("session log create segment fail. dir=" + dir + ", error=" + e, e);
+            }
+            segments.put(id, segment);
+            activeSegment = segment;
+        }
+        return segment;
+    }
+
+    private void replay() throws IOException {
+        File[] files = dir.listFiles((d, fileName) -> fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String fileName = file.getName();
+            try {
+                long id = Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+                segments.put(id, new Segment(id, file));
+            } catch (NumberFormatException e) {
+                logger.warn("session log skip unknown file {}", file);
+            }
+        }
+        for (Segment segment : segments.values()) {
+            replay(segment);
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.expireAt <= now) {
+                index.remove(entry.getKey());
+                location.segment.deadBytes(location.recordLength);
+            } else {
+                timingWheel.schedule(entry.getKey(), location.expireAt);
+            }
+        }
+        Map.Entry<Long, Segment> last = segments.lastEntry();
+        activeSegment = last == null ? null : last.getValue();
+        if (!segments.isEmpty()) {
+            logger.info("session log replay finish. dir={}, segments={}, sessions={}", dir, segments.size(), index.size());
+        }
+    }
+
+    private void replay(Segment segment) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        long position = 0;
+        long fileSize = segment.channel.size();
+        CRC32 crc32 = new CRC32();
+        while (position + HEADER_LENGTH <= fileSize) {
+            header.clear();
+            segment.readFully(header, position);
+            header.flip();
+            int bodyLength = header.getInt();
+            int crc = header.getInt();
+            if (bodyLength <= 0 || position + HEADER_LENGTH + bodyLength > fileSize) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+            segment.readFully(body, position + HEADER_LENGTH);
+            crc32.reset();
+            crc32.update(body.array(), 0, bodyLength);
+            if ((int) crc32.getValue() != crc) {
+                break;
+            }
+            body.flip();
+            replayRecord(segment, position, body);
+            position += HEADER_LENGTH + bodyLength;
+        }
+        if (position != fileSize) {
+            logger.warn("session log truncate broken tail. segment={}, validBytes={}, fileBytes={}", segment, position, fileSize);
+            segment.channel.truncate(position);
+        }
+        segment.size = position;
+    }
+
+    private void replayRecord(Segment segment, long position, ByteBuffer body) {
+        int recordLength = HEADER_LENGTH + body.limit();
+        byte type = body.get();
+        String key = readString(body);
+        Location old;
+        switch (type) {
+            case TYPE_PUT: {
+                long expireAt = body.getLong();
+                int dataLength = body.getInt();
+                long dataOffset = position + HEADER_LENGTH + body.position();
+                old = index.put(key, new Location(segment, dataOffset, dataLength, recordLength, expireAt));
+                break;
+            }
+            case TYPE_TOUCH: {
+                long expireAt = body.getLong();
+                Location location = index.get(key);
+                if (location != null) {
+                    location.expireAt = expireAt;
+                    if (body.remaining() >= 8 + 4) {
+                        location.touch(body.getLong(), body.getInt());
+                    }
+                }
+                old = null;
+                segment.deadBytes(recordLength);
+                break;
+            }
+            case TYPE_REMOVE: {
+                old = index.remove(key);
+                segment.deadBytes(recordLength);
+                break;
+            }
+            case TYPE_CHANGE_ID: {
+                String newKey = readString(body);
+                Location location = index.remove(key);
+                old = location != null ? index.put(newKey, location) : null;
+                segment.deadBytes(recordLength);
+                break;
+            }
+            default: {
+                logger.warn("session log skip unknown record type={}, segment={}, position={}", type, segment, position);
+                old = null;
+                segment.deadBytes(recordLength);
+                break;
+            }
+        }
+        if (old != null) {
+            old.segment.deadBytes(old.recordLength);
+        }
+    }
+
+    private static String readString(ByteBuffer body) {
+        int length = body.getInt();
+        String value = new String(body.array(), body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+        body.position(body.position() + length);
+        return value;
+    }
+
+    public SessionCodec getSessionCodec() {
+        return sessionCodec;
+    }
+
+    public void setSessionCodec(SessionCodec sessionCodec) {
+        this.sessionCodec = Objects.requireNonNull(sessionCodec);
+    }
+
+    public double getCompactRatio() {
+        return compactRatio;
+    }
+
+    /**
+     * @param compactRatio compact the oldest segment if garbage bytes / total bytes &gt;= compactRatio
+     */
+    public void setCompactRatio(double compactRatio) {
+        this.compactRatio = compactRatio;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public enum FsyncPolicy {
+        /**
+         * fsync after every write. no session lost on power failure, slowest
+         */
+        ALWAYS,
+        /**
+         * fsync once a second. lost at most one second on power failure
+         */
+        EVERY_SECOND,
+        /**
+         * never fsync, the operating system flush the page cache
+         */
+        NEVER
+    }
+
+    private static class Location {
+        private final Segment segment;
+        private final long dataOffset;
+        private final int dataLength;
+        private final int recordLength;
+        private volatile long expireAt;
+        /**
+         * the access fields of the last touch. null = not touched after the put
+         */
+        private volatile Access access;
+
+        Location(Segment segment, long dataOffset, int dataLength, int recordLength, long expireAt) {
+            this.segment = segment;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.recordLength = recordLength;
+            this.expireAt = expireAt;
+        }
+
+        void touch(long lastAccessedTime, int accessCount) {
+            this.access = new Access(lastAccessedTime, accessCount);
+        }
+
+        void applyAccess(Session session) {
+            Access access = this.access;
+            if (access != null) {
+                session.setLastAccessedTime(access.lastAccessedTime);
+                session.setAccessCount(access.accessCount);
+            }
+        }
+    }
+
+    private static class Access {
+        private final long lastAccessedTime;
+        private final int accessCount;
+
+        Access(long lastAccessedTime, int accessCount) {
+            this.lastAccessedTime = lastAccessedTime;
+            this.accessCount = accessCount;
+        }
+    }
+
+    private static class Segment {
+        private final long id;
+        private final File file;
+        private final FileChannel channel;
+        private final AtomicLong deadBytes = new AtomicLong();
+        private volatile long size;
+
+        Segment(long id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+        void write(ByteBuffer[] buffers) throws IOException {
+            long position = size;
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+            size = position;
+        }
+
+        byte[] read(long position, int length) throws IOException {
+            byte[] bytes = new byte[length];
+            readFully(ByteBuffer.wrap(bytes), position);
+            return bytes;
+        }
+
+        void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read == -1) {
+                    throw new IOException("unexpected end of segment. segment=" + file + ", position=" + position);
+                }
+                position += read;
+            }
+        }
+
+        void deadBytes(int bytes) {
+            deadBytes.addAndGet(bytes);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //skip
+            }
+        }
+
+        void delete() {
+            close();
+            if (!file.delete()) {
+                logger.warn("session log delete segment fail. segment={}", file);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return file.getName() + "{size=" + size + ", deadBytes=" + deadBytes + "}";
+        }
+    }
+
+    /**
+     * Hashed timing wheel. one slot per second, the session is re-scheduled if it is not expired when the slot is reached
+     * (touched, or the expiry is more than one round)
+     */
+    private static class TimingWheel {
+        private final Queue<String>[] slots;
+        private volatile long currentSecond = System.currentTimeMillis() / 1000;
+
+        @SuppressWarnings("unchecked")
+        TimingWheel(int slotCount) {
+            this.slots = new Queue[slotCount];
+            for (int i = 0; i < slotCount; i++) {
+                slots[i] = new ConcurrentLinkedQueue<>();
+            }
+        }
+
+        void schedule(String id, long expireAt) {
+            // the passed slot is checked in the next tick
+            long second = Math.max(expireAt / 1000, currentSecond);
+            slots[(int) (second % slots.length)].add(id);
+        }
+
+        void advance(long now, Consumer<String> consumer) {
+            long nowSecond = now / 1000;
+            // at most one round per tick
+            long fromSecond = Math.max(currentSecond, nowSecond - slots.length + 1);
+            for (long second = fromSecond; second <= nowSecond; second++) {
+                Queue<String> slot = slots[(int) (second % slots.length)];
+                for (int i = slot.size(); i > 0; i--) {
+                    String id = slot.poll();
+                    if (id == null) {
+                        break;
+                    }
+                    consumer.accept(id);
+                }
+            }
+            currentSecond = nowSecond + 1;
+        }
+    }
+
+    /**
+     * Expiry, fsync and compaction
+     */
+    class SessionLogTickThread extends Thread {
+        private SessionLogTickThread() {
+            super("NettyX-" + NamespaceUtil.newIdName(SessionLogTickThread.class));
+            setDaemon(true);
+            setPriority(MIN_PRIORITY);
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    expireTick(System.currentTimeMillis());
+                    if (fsyncPolicy == FsyncPolicy.EVERY_SECOND && unsynced) {
+                        synchronized (writeLock) {
+                            force();
+                        }
+                    }
+                    while (!closed && compact()) {
+                        // compact until the oldest segment is mostly live
+                    }
+                } catch (Exception e) {
+                    logger.warn("session log tick error case:{}", e.toString(), e);
+                }
+            }
+        }
+    }
+}
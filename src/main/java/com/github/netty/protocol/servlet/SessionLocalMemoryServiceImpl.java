@@ -43,6 +43,12 @@ public class SessionLocalMemoryServiceImpl implements SessionService {
         sessionMap.put(session.getId(), session, session.getMaxInactiveInterval() * 1000L);
     }
 
+    @Override
+    public void touchSession(Session session) {
+        // the same session object, only extend the expiry
+        saveSession(session);
+    }
+
     @Override
     public void removeSession(String sessionId) {
         sessionMap.remove(sessionId);
@@ -1,22 +1,38 @@
 package com.github.netty.protocol.servlet;
 
+import com.github.netty.core.util.ExpiryLRUMap;
 import com.github.netty.core.util.LoggerFactoryX;
 import com.github.netty.core.util.LoggerX;
 import com.github.netty.core.util.NamespaceUtil;
+import com.github.netty.core.util.ThreadPoolX;
 import com.github.netty.protocol.nrpc.RpcClient;
 import com.github.netty.protocol.nrpc.exception.RpcDecodeException;
 import com.github.netty.protocol.nrpc.exception.RpcEncodeException;
 import com.github.netty.protocol.nrpc.service.RpcDBService;
 import io.netty.util.concurrent.FastThreadLocal;
 
-import java.io.*;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Remote session service
+ * <p>
+ * near cache (optional, {@link #enableNearCache(long, long)}).
+ * the session bytes and the version are cached in local, the remote server push the changed (key, version)
+ * by {@link com.github.netty.protocol.nrpc.service.RpcDBAsyncService#subscribe2(String)}.
+ * the near cache is bypass when the subscription is not ready.
+ * the subscription never timeout, when the connection closed it is fail by the client
+ * ({@link com.github.netty.protocol.nrpc.RpcDoneTable#failOutstanding}), then the near cache is clear and subscribe again.
  *
  * @author wangzihao
  * 2018/8/19/019
@@ -24,7 +40,6 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SessionRemoteRpcServiceImpl implements SessionService {
     private static final String SESSION_GROUP = "/session";
     private static final LoggerX logger = LoggerFactoryX.getLogger(SessionRemoteRpcServiceImpl.class);
-    private static final byte[] EMPTY = {};
     private final String name = NamespaceUtil.newIdName(getClass());
     private final InetSocketAddress address;
     private final int ioRatio;
@@ -32,17 +47,34 @@ public class SessionRemoteRpcServiceImpl implements SessionService {
     private final boolean enableRpcHeartLog;
     private final int rpcClientHeartIntervalMillSecond;
     private final int reconnectIntervalMillSeconds;
+    private SessionCodec sessionCodec = JavaSessionCodec.INSTANCE;
+    /**
+     * The touched sessions are merged, and refresh the expiry by {@link RpcDBService#touchBatch2(Map, String)}
+     * once per {@link #touchBatchIntervalMs}. a touch not write the session bytes and not change the version,
+     * so the near cache of the other clients is still valid.
+     * the access fields (lastAccessedTime, accessCount) in the remote are updated by the next save.
+     * key = sessionId, value = expireSecond
+     */
+    private final Map<String, Integer> touchBuffer = new ConcurrentHashMap<>(64);
+    private final AtomicBoolean touchFlushScheduled = new AtomicBoolean();
+    private int touchBatchIntervalMs = 100;
+    private int touchBatchSize = 256;
+    /**
+     * near cache. key = sessionId
+     */
+    private volatile ExpiryLRUMap<String, NearCacheEntry> nearCache;
+    /**
+     * the versions of recently invalidated. prevent the old value of a concurrent get from caching.
+     */
+    private volatile ExpiryLRUMap<String, Long> nearCacheInvalidVersionMap;
+    private volatile boolean nearCacheSubscribed;
+    private RpcClient nearCacheRpcClient;
+    private final LongAdder nearCacheHitCount = new LongAdder();
+    private final LongAdder nearCacheMissCount = new LongAdder();
     private final FastThreadLocal<RpcClient> rpcClientThreadLocal = new FastThreadLocal<RpcClient>() {
         @Override
         protected RpcClient initialValue() throws Exception {
-            RpcClient rpcClient = new RpcClient("Session", address);
-            rpcClient.setIoRatio(ioRatio);
-            rpcClient.setIoThreadCount(ioThreadCount);
-//            rpcClient.setSocketChannelCount(clientChannels);
-            rpcClient.setIdleTimeMs(rpcClientHeartIntervalMillSecond);
-            rpcClient.setReconnectScheduledIntervalMs(reconnectIntervalMillSeconds);
-            rpcClient.setEnableRpcHeartLog(enableRpcHeartLog);
-            return rpcClient;
+            return newRpcClient("Session");
         }
     };
 
@@ -64,35 +96,193 @@ public class SessionRemoteRpcServiceImpl implements SessionService {
     @Override
     public void saveSession(Session session) {
         byte[] bytes = encode(session);
-        long expireSecond = (session.getMaxInactiveInterval() * 1000L + session.getCreationTime() - System.currentTimeMillis()) / 1000;
+        int expireSecond = session.getMaxInactiveInterval();
+        touchBuffer.remove(session.getId());
         if (expireSecond > 0) {
-            getRpcDBService().put4(session.getId(), bytes, (int) expireSecond, SESSION_GROUP);
+            if (nearCache != null) {
+                long version = getRpcDBService().putVersion4(session.getId(), bytes, expireSecond, SESSION_GROUP);
+                putNearCache(session.getId(), version, bytes);
+            } else {
+                getRpcDBService().put4(session.getId(), bytes, expireSecond, SESSION_GROUP);
+            }
         } else {
+            removeNearCache(session.getId());
             getRpcDBService().remove2(session.getId(), SESSION_GROUP);
         }
     }
 
+    @Override
+    public void touchSession(Session session) {
+        if (session.getMaxInactiveInterval() <= 0) {
+            return;
+        }
+        touchBuffer.put(session.getId(), session.getMaxInactiveInterval());
+        if (touchBuffer.size() >= touchBatchSize) {
+            flushTouch();
+        } else if (touchFlushScheduled.compareAndSet(false, true)) {
+            ThreadPoolX.getDefaultInstance().schedule(() -> {
+                touchFlushScheduled.set(false);
+                flushTouch();
+            }, touchBatchIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Refresh the expiry of the buffered touched sessions
+     */
+    public void flushTouch() {
+        Map<String, Integer> keyExpireSecondMap = new HashMap<>(Math.max(16, touchBuffer.size() * 4 / 3 + 1));
+        for (String sessionId : touchBuffer.keySet()) {
+            Integer expireSecond = touchBuffer.remove(sessionId);
+            if (expireSecond != null) {
+                keyExpireSecondMap.put(sessionId, expireSecond);
+            }
+        }
+        if (keyExpireSecondMap.isEmpty()) {
+            return;
+        }
+        try {
+            getRpcDBService().touchBatch2(keyExpireSecondMap, SESSION_GROUP);
+        } catch (Exception e) {
+            logger.warn("touch session fail. count={}, error={}", keyExpireSecondMap.size(), e.toString());
+        }
+    }
+
     @Override
     public void removeSession(String sessionId) {
+        touchBuffer.remove(sessionId);
+        removeNearCache(sessionId);
         getRpcDBService().remove2(sessionId, SESSION_GROUP);
     }
 
     @Override
     public void removeSessionBatch(List<String> sessionIdList) {
+        if (sessionIdList != null) {
+            for (String sessionId : sessionIdList) {
+                removeNearCache(sessionId);
+            }
+        }
         getRpcDBService().removeBatch2(sessionIdList, SESSION_GROUP);
     }
 
     @Override
     public Session getSession(String sessionId) {
-        byte[] bytes = getRpcDBService().get2(sessionId, SESSION_GROUP);
+        ExpiryLRUMap<String, NearCacheEntry> nearCache = this.nearCache;
+        if (nearCache == null || !nearCacheSubscribed) {
+            byte[] bytes = getRpcDBService().get2(sessionId, SESSION_GROUP);
+            return decode(bytes);
+        }
+        NearCacheEntry entry = nearCache.get(sessionId);
+        if (entry != null) {
+            nearCacheHitCount.increment();
+            return decode(entry.data);
+        }
+        nearCacheMissCount.increment();
+        byte[] versionBytes = getRpcDBService().getVersion2(sessionId, SESSION_GROUP);
+        if (versionBytes == null) {
+            return null;
+        }
+        long version = ByteBuffer.wrap(versionBytes).getLong();
+        byte[] bytes = Arrays.copyOfRange(versionBytes, 8, versionBytes.length);
+        putNearCache(sessionId, version, bytes);
         return decode(bytes);
     }
 
     @Override
     public void changeSessionId(String oldSessionId, String newSessionId) {
+        removeNearCache(oldSessionId);
+        removeNearCache(newSessionId);
         getRpcDBService().changeKey3(oldSessionId, newSessionId, SESSION_GROUP);
     }
 
+    /**
+     * Enable the near cache. the remote server must support {@link com.github.netty.protocol.nrpc.service.RpcDBAsyncService}
+     *
+     * @param maxSize  max session count of the near cache
+     * @param expireMs the near cache time to live. (a fallback if the invalidation is lost)
+     */
+    public synchronized void enableNearCache(long maxSize, long expireMs) {
+        if (nearCache != null) {
+            return;
+        }
+        this.nearCacheInvalidVersionMap = new ExpiryLRUMap<>(256, Long.MAX_VALUE, Math.max(expireMs, 10000), null);
+        this.nearCache = new ExpiryLRUMap<>(256, maxSize, expireMs, null);
+        this.nearCacheRpcClient = newRpcClient("SessionNearCache");
+        subscribeNearCache();
+    }
+
+    protected void subscribeNearCache() {
+        nearCacheRpcClient.getRpcDBAsyncService().subscribe2(SESSION_GROUP)
+                .whenChunk(this::onNearCacheChange)
+                .whenComplete((result, throwable) -> {
+                    // the subscription is broken. drop all, and subscribe again
+                    nearCacheSubscribed = false;
+                    nearCache.clear();
+                    if (throwable != null) {
+                        logger.warn("session near cache subscribe fail. error={}", throwable.toString());
+                    }
+                    ThreadPoolX.getDefaultInstance().schedule(this::subscribeNearCache,
+                            Math.max(reconnectIntervalMillSeconds, 1000), TimeUnit.MILLISECONDS);
+                });
+    }
+
+    /**
+     * @param chunk [long version][key utf8]. empty key means the subscription is ready
+     */
+    protected void onNearCacheChange(byte[] chunk) {
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long version = buffer.getLong();
+        if (!buffer.hasRemaining()) {
+            // the changes before the subscription are lost
+            nearCache.clear();
+            nearCacheSubscribed = true;
+            return;
+        }
+        String sessionId = new String(chunk, 8, chunk.length - 8, StandardCharsets.UTF_8);
+        nearCacheInvalidVersionMap.merge(sessionId, version, Math::max);
+        NearCacheEntry entry = nearCache.get(sessionId);
+        if (entry != null && entry.version < version) {
+            nearCache.remove(sessionId, entry);
+        }
+    }
+
+    private void putNearCache(String sessionId, long version, byte[] bytes) {
+        ExpiryLRUMap<String, NearCacheEntry> nearCache = this.nearCache;
+        if (nearCache == null || !nearCacheSubscribed) {
+            return;
+        }
+        Long invalidVersion = nearCacheInvalidVersionMap.get(sessionId);
+        if (invalidVersion != null && invalidVersion > version) {
+            return;
+        }
+        NearCacheEntry entry = new NearCacheEntry(version, bytes);
+        nearCache.put(sessionId, entry);
+        // double check. the invalidation may arrive between the check and the put
+        invalidVersion = nearCacheInvalidVersionMap.get(sessionId);
+        if (invalidVersion != null && invalidVersion > version) {
+            nearCache.remove(sessionId, entry);
+        }
+    }
+
+    private void removeNearCache(String sessionId) {
+        ExpiryLRUMap<String, NearCacheEntry> nearCache = this.nearCache;
+        if (nearCache != null) {
+            nearCache.remove(sessionId);
+        }
+    }
+
+    public boolean isNearCacheSubscribed() {
+        return nearCacheSubscribed;
+    }
+
+    public long getNearCacheHitCount() {
+        return nearCacheHitCount.sum();
+    }
+
+    public long getNearCacheMissCount() {
+        return nearCacheMissCount.sum();
+    }
+
     @Override
     public int count() {
         return getRpcDBService().count(SESSION_GROUP);
@@ -105,55 +295,24 @@ public class SessionRemoteRpcServiceImpl implements SessionService {
      * @return
      */
     protected Session decode(byte[] bytes) {
-        if (bytes == null || bytes.length == 0) {
-            return null;
-        }
-
-        ObjectInputStream ois = null;
-        InputStream bfi = null;
         try {
-            bfi = new ByteArrayInputStream(bytes);
-            ois = new ObjectInputStream(bfi);
-
-            Session session = new Session();
-            session.setId(ois.readUTF());
-            session.setCreationTime(ois.readLong());
-            session.setLastAccessedTime(ois.readLong());
-            session.setMaxInactiveInterval(ois.readInt());
-            session.setAccessCount(ois.readInt());
-
-            int attributeSize = ois.readInt();
-            if (attributeSize > 0) {
-                Map<String, Object> attributeMap = new ConcurrentHashMap<>(6);
-                for (int i = 0; i < attributeSize; i++) {
-                    String key = ois.readUTF();
-                    Object value = ois.readObject();
-                    attributeMap.put(key, value);
-                }
-                session.setAttributeMap(attributeMap);
-            }
-
-            return session;
+            return sessionCodec.decode(bytes);
         } catch (Exception e) {
             throw new RpcDecodeException("decode http session error=" + e, e);
-        } finally {
-            try {
-                if (ois != null) {
-                    ois.close();
-                }
-            } catch (IOException e) {
-                //skip
-            }
-            try {
-                if (bfi != null) {
-                    bfi.close();
-                }
-            } catch (Exception e) {
-                //skip
-            }
         }
     }
 
+    protected RpcClient newRpcClient(String namePre) {
+        RpcClient rpcClient = new RpcClient(namePre, address);
+        rpcClient.setIoRatio(ioRatio);
+        rpcClient.setIoThreadCount(ioThreadCount);
+//            rpcClient.setSocketChannelCount(clientChannels);
+        rpcClient.setIdleTimeMs(rpcClientHeartIntervalMillSecond);
+        rpcClient.setReconnectScheduledIntervalMs(reconnectIntervalMillSeconds);
+        rpcClient.setEnableRpcHeartLog(enableRpcHeartLog);
+        return rpcClient;
+    }
+
     public RpcClient getRpcClient() {
         return rpcClientThreadLocal.get();
     }
@@ -169,64 +328,35 @@ public class SessionRemoteRpcServiceImpl implements SessionService {
      * @return
      */
     protected byte[] encode(Session session) {
-        if (session == null) {
-            return EMPTY;
+        try {
+            return sessionCodec.encode(session);
+        } catch (Exception e) {
+            throw new RpcEncodeException("encode http session error=" + e, e);
         }
+    }
 
-        ByteArrayOutputStream bout = new ByteArrayOutputStream(64);
-        ObjectOutputStream oout = null;
-        try {
-            oout = new ObjectOutputStream(bout);
-            oout.writeUTF(session.getId());
-            oout.writeLong(session.getCreationTime());
-            oout.writeLong(session.getLastAccessedTime());
-            oout.writeInt(session.getMaxInactiveInterval());
-            oout.writeInt(session.getAccessCount());
-
-            Map<String, Object> attributeMap = session.getAttributeMap();
-
-            int attributeSize = 0;
-            if (attributeMap != null) {
-                for (Map.Entry<String, Object> entry : attributeMap.entrySet()) {
-                    if (entry.getValue() instanceof Serializable) {
-                        attributeSize++;
-                    } else {
-                        logger.warn("The value of key={} in the http session property is not serialized and has been skipped automatically", entry.getKey());
-                    }
-                }
-            }
+    public SessionCodec getSessionCodec() {
+        return sessionCodec;
+    }
 
-            oout.writeInt(attributeSize);
-            if (attributeSize > 0) {
-                for (Map.Entry<String, Object> entry : attributeMap.entrySet()) {
-                    Object value = entry.getValue();
-                    if (value instanceof Serializable) {
-                        String key = entry.getKey();
-                        oout.writeUTF(key);
-                        oout.writeObject(value);
-                    }
-                }
-            }
+    public void setSessionCodec(SessionCodec sessionCodec) {
+        this.sessionCodec = Objects.requireNonNull(sessionCodec);
+    }
 
-            oout.flush();
-            return bout.toByteArray();
-        } catch (IOException e) {
-            throw new RpcEncodeException("encode http session error=" + e, e);
-        } finally {
-            if (oout != null) {
-                try {
-                    oout.close();
-                } catch (IOException e) {
-                    //skip
-                }
-            } else {
-                try {
-                    bout.close();
-                } catch (IOException e) {
-                    //skip
-                }
-            }
-        }
+    public int getTouchBatchIntervalMs() {
+        return touchBatchIntervalMs;
+    }
+
+    public void setTouchBatchIntervalMs(int touchBatchIntervalMs) {
+        this.touchBatchIntervalMs = touchBatchIntervalMs;
+    }
+
+    public int getTouchBatchSize() {
+        return touchBatchSize;
+    }
+
+    public void setTouchBatchSize(int touchBatchSize) {
+        this.touchBatchSize = touchBatchSize;
     }
 
     @Override
@@ -234,4 +364,14 @@ public class SessionRemoteRpcServiceImpl implements SessionService {
         return name;
     }
 
+    private static class NearCacheEntry {
+        private final long version;
+        private final byte[] data;
+
+        NearCacheEntry(long version, byte[] data) {
+            this.version = version;
+            this.data = data;
+        }
+    }
+
 }
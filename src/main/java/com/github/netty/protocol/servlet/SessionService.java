@@ -29,6 +29,17 @@ public interface SessionService {
      */
     void saveSession(@NRpcParam("session") Session session);
 
+    /**
+     * Refresh the session expiry and the access fields (lastAccessedTime, accessCount).
+     * The attributes are not changed since the last {@link #saveSession(Session)},
+     * so the implementation can persist less than a full save. Default is a full save.
+     *
+     * @param session session
+     */
+    default void touchSession(@NRpcParam("session") Session session) {
+        saveSession(session);
+    }
+
     /**
      * Delete session
      *
@@ -34,6 +34,10 @@ public class HttpHeaderConstants {
      * {@code "Content-Type"}
      */
     public static final CharSequence CONTENT_TYPE = "Content-Type";
+    /**
+     * {@code "Content-Encoding"}
+     */
+    public static final CharSequence CONTENT_ENCODING = "Content-Encoding";
     /**
      * {@code "Cookie"}
      */
@@ -0,0 +1,34 @@
+package com.github.netty.protocol.servlet.util;
+
+import com.github.netty.core.util.VirtualThreadExecutor;
+import com.github.netty.protocol.servlet.NettyMessageToServletRunnable;
+import com.github.netty.protocol.servlet.ServletHttpExchange;
+import io.netty.handler.codec.http.HttpRequest;
+
+/**
+ * Run each servlet request on a virtual thread (JDK 21+).
+ * If pinnedDiagnostics is enabled, the thread name is contains the request method and uri,
+ * so the -Djdk.tracePinnedThreads output can be find out which request pinned the carrier thread.
+ *
+ * @author wangzihao
+ * @see VirtualThreadExecutor
+ */
+public class HttpVirtualThreadExecutor extends VirtualThreadExecutor {
+
+    public HttpVirtualThreadExecutor(String poolName, boolean pinnedDiagnostics) {
+        super(poolName, pinnedDiagnostics);
+    }
+
+    @Override
+    protected String newThreadName(Runnable task, long threadId) {
+        String name = super.newThreadName(task, threadId);
+        if (isPinnedDiagnostics() && task instanceof NettyMessageToServletRunnable.HttpRunnable) {
+            ServletHttpExchange exchange = ((NettyMessageToServletRunnable.HttpRunnable) task).getExchange();
+            HttpRequest nettyRequest = exchange != null ? exchange.getRequest().getNettyRequest() : null;
+            if (nettyRequest != null) {
+                name = name + " " + nettyRequest.method() + " " + nettyRequest.uri();
+            }
+        }
+        return name;
+    }
+}
@@ -0,0 +1,253 @@
+package com.github.netty.protocol.servlet.util;
+
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import com.github.netty.core.util.ResourceManager;
+import com.github.netty.core.util.ThreadPoolX;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Find the precompressed variant of a static file, so that the compressed body can still send by sendfile (zero copy).
+ * <p>
+ * 1. sibling file. a.js.br, a.js.gz (must not older than a.js)
+ * 2. if generateGzip = true, generate a.js.gz once into {@link #CACHE_DIR} of the {@link ResourceManager} in background.
+ * before the generation finish, the identity file is used. the stale generated variants of the file are deleted after generation.
+ *
+ * @author wangzihao
+ */
+public class PrecompressedFileResolver {
+    public static final String CACHE_DIR = "/precompressed";
+    private static final LoggerX LOGGER = LoggerFactoryX.getLogger(PrecompressedFileResolver.class);
+    private final Map<String, Boolean> generatingMap = new ConcurrentHashMap<>();
+    private final Map<ResourceManager, File> cacheDirMap = new ConcurrentHashMap<>(2);
+    private boolean generateGzip = true;
+    private int compressionSizeThreshold = 8102;
+    private String[] compressionMimeTypes = {};
+
+    /**
+     * Resolve the best variant by Accept-Encoding.
+     *
+     * @param file            identity file
+     * @param contentType     contentType. nullable
+     * @param acceptEncoding  request header Accept-Encoding. nullable
+     * @param resourceManager for generate cache dir. nullable
+     * @return null if no variant
+     */
+    public Variant resolve(File file, String contentType, String acceptEncoding, ResourceManager resourceManager) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty() || !isCompressionMimeType(contentType)) {
+            return null;
+        }
+        long lastModified = file.lastModified();
+        if (isAccept(acceptEncoding, "br")) {
+            File br = new File(file.getPath() + ".br");
+            if (br.isFile() && br.lastModified() >= lastModified) {
+                return new Variant(br, "br");
+            }
+        }
+        if (isAccept(acceptEncoding, "gzip")) {
+            File gz = new File(file.getPath() + ".gz");
+            if (gz.isFile() && gz.lastModified() >= lastModified) {
+                return new Variant(gz, "gzip");
+            }
+            if (generateGzip && resourceManager != null) {
+                long length = file.length();
+                if (length >= compressionSizeThreshold) {
+                    File generated = getGenerateFile(file, length, lastModified, resourceManager);
+                    if (generated.isFile()) {
+                        return new Variant(generated, "gzip");
+                    }
+                    generateGzip(file, generated);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return {hash of path}-{length}-{lastModified}-{name}.gz
+     */
+    protected File getGenerateFile(File file, long length, long lastModified, ResourceManager resourceManager) {
+        String name = generatePrefix(file) + length + "-" + lastModified + "-" + file.getName() + ".gz";
+        // mkdirs once, not every request
+        File cacheDir = cacheDirMap.computeIfAbsent(resourceManager, e -> e.mkdirs(CACHE_DIR).toFile());
+        return new File(cacheDir, name);
+    }
+
+    private static String generatePrefix(File file) {
+        return Integer.toHexString(file.getAbsolutePath().hashCode()) + "-";
+    }
+
+    /**
+     * delete the variants that generated from the old version of the source
+     */
+    protected void deleteStale(File source, File target) {
+        String prefix = generatePrefix(source);
+        String suffix = "-" + source.getName() + ".gz";
+        String targetName = target.getName();
+        File[] staleFiles = target.getParentFile().listFiles((dir, name) ->
+                name.startsWith(prefix) && name.endsWith(suffix) && !name.equals(targetName));
+        if (staleFiles == null) {
+            return;
+        }
+        for (File staleFile : staleFiles) {
+            if (!staleFile.delete() && staleFile.exists()) {
+                LOGGER.warn("delete stale gzip fail. file={}", staleFile);
+            }
+        }
+    }
+
+    protected void generateGzip(File source, File target) {
+        String key = target.getPath();
+        if (generatingMap.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+        ThreadPoolX.getDefaultInstance().execute(() -> {
+            File temp = new File(target.getPath() + ".tmp");
+            try {
+                try (InputStream in = new FileInputStream(source);
+                     OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), 8192)) {
+                    byte[] buffer = new byte[8192];
+                    int len;
+                    while ((len = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, len);
+                    }
+                }
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                deleteStale(source, target);
+            } catch (IOException e) {
+                LOGGER.warn("generate gzip fail. source={}, error={}", source, e.toString());
+                temp.delete();
+            } finally {
+                generatingMap.remove(key);
+            }
+        });
+    }
+
+    public boolean isCompressionMimeType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        for (String mimeType : compressionMimeTypes) {
+            if (contentType.contains(mimeType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the encoded variant is a different representation, it must have a different ETag.
+     * W/"1-2" -&gt; W/"1-2-gz" (gzip), W/"1-2-br" (br)
+     *
+     * @param eTag     the ETag of the identity
+     * @param encoding the Content-Encoding of the variant
+     * @return the ETag of the variant. null if eTag is null
+     */
+    public static String encodingETag(String eTag, String encoding) {
+        if (eTag == null) {
+            return null;
+        }
+        String suffix = "gzip".equals(encoding) ? "-gz" : "-" + encoding;
+        int quote = eTag.lastIndexOf('"');
+        return quote > 0 ? eTag.substring(0, quote) + suffix + "\"" : eTag + suffix;
+    }
+
+    /**
+     * Accept-Encoding: gzip;q=1.0, br;q=0, *;q=0.5
+     *
+     * @param acceptEncoding acceptEncoding
+     * @param encoding       encoding
+     * @return true if accept the encoding and q &gt; 0
+     */
+    public static boolean isAccept(String acceptEncoding, String encoding) {
+        Boolean wildcard = null;
+        int index = 0;
+        int length = acceptEncoding.length();
+        while (index < length) {
+            int end = acceptEncoding.indexOf(',', index);
+            if (end == -1) {
+                end = length;
+            }
+            String item = acceptEncoding.substring(index, end).trim();
+            index = end + 1;
+
+            int paramIndex = item.indexOf(';');
+            String name = paramIndex == -1 ? item : item.substring(0, paramIndex).trim();
+            boolean isWildcard = "*".equals(name);
+            if (!isWildcard && !name.equalsIgnoreCase(encoding)) {
+                continue;
+            }
+            boolean accept = true;
+            if (paramIndex != -1) {
+                String param = item.substring(paramIndex + 1).trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        accept = Double.parseDouble(param.substring(2).trim()) > 0;
+                    } catch (NumberFormatException e) {
+                        accept = false;
+                    }
+                }
+            }
+            if (isWildcard) {
+                wildcard = accept;
+            } else {
+                // explicit encoding has higher priority than *
+                return accept;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    public boolean isGenerateGzip() {
+        return generateGzip;
+    }
+
+    public void setGenerateGzip(boolean generateGzip) {
+        this.generateGzip = generateGzip;
+    }
+
+    public int getCompressionSizeThreshold() {
+        return compressionSizeThreshold;
+    }
+
+    public void setCompressionSizeThreshold(int compressionSizeThreshold) {
+        this.compressionSizeThreshold = compressionSizeThreshold;
+    }
+
+    public String[] getCompressionMimeTypes() {
+        return compressionMimeTypes;
+    }
+
+    public void setCompressionMimeTypes(String[] compressionMimeTypes) {
+        this.compressionMimeTypes = compressionMimeTypes == null ? new String[0] : compressionMimeTypes;
+    }
+
+    public static class Variant {
+        private final File file;
+        private final String encoding;
+
+        public Variant(File file, String encoding) {
+            this.file = file;
+            this.encoding = encoding;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+        @Override
+        public String toString() {
+            return encoding + ":" + file;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.github.netty.protocol.servlet.util;
+
+import com.github.netty.core.util.ConcurrentLinkedHashMap;
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
+import com.github.netty.core.util.NettyThreadX;
+import com.github.netty.protocol.servlet.DefaultServlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Static resource cache for {@link DefaultServlet}.
+ * <p>
+ * 1. the response headers (ETag, Last-Modified) are encoded once, a cache hit does not stat the file.
+ * 2. small files (length &lt;= maxFileSize) are hold in direct memory, write to socket without read file.
+ * large files only cache the headers, the body still send by {@link io.netty.channel.FileRegion}.
+ * 3. if content-type in compressionMimeTypes, the gzip variant is encoded once. (no brotli encoder in classpath)
+ * 4. LRU eviction by total cached bytes. (the content, and the estimated size of the entry, so the large files are bounded too)
+ * 5. invalidate by {@link WatchService}. if the directory can not be watch, check lastModified every checkIntervalMs.
+ *
+ * @author wangzihao
+ */
+public class StaticResourceCache implements Closeable {
+    private static final LoggerX LOGGER = LoggerFactoryX.getLogger(StaticResourceCache.class);
+    private final ConcurrentLinkedHashMap<String, Entry> cache;
+    private final Map<Path, WatchKey> watchDirs = new ConcurrentHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder invalidateCount = new LongAdder();
+    private int maxFileSize = 512 * 1024;
+    private int compressionSizeThreshold = 8102;
+    private String[] compressionMimeTypes = {};
+    private long checkIntervalMs = 5000;
+    private volatile WatchService watchService;
+    private volatile Thread watchThread;
+
+    public StaticResourceCache(long maxCacheBytes) {
+        this.cache = new ConcurrentLinkedHashMap.Builder<String, Entry>()
+                .maximumWeightedCapacity(maxCacheBytes)
+                .weigher((ConcurrentLinkedHashMap.Weigher<Entry>) Entry::weight)
+                .build();
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            Thread thread = new NettyThreadX(this::watchLoop, "NettyX-StaticResourceWatch");
+            thread.setDaemon(true);
+            thread.start();
+            this.watchThread = thread;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.warn("StaticResourceCache watchService unsupported, use checkIntervalMs. error={}", e.toString());
+        }
+    }
+
+    /**
+     * Get cache or load the resource.
+     *
+     * @param file        file
+     * @param contentType contentType. nullable
+     * @return null if file not exist or not a file
+     */
+    public Entry get(File file, String contentType) {
+        String key = file.getAbsolutePath();
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            if (entry.watched || System.currentTimeMillis() - entry.checkTime < checkIntervalMs) {
+                hitCount.increment();
+                return entry;
+            }
+            if (file.lastModified() == entry.getLastModified() && file.length() == entry.getContentLength()) {
+                entry.checkTime = System.currentTimeMillis();
+                hitCount.increment();
+                return entry;
+            }
+            cache.remove(key, entry);
+        }
+        missCount.increment();
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            entry = load(file, contentType);
+        } catch (IOException e) {
+            LOGGER.warn("StaticResourceCache load fail. file={}, error={}", file, e.toString());
+            return null;
+        }
+        cache.put(key, entry);
+        return entry;
+    }
+
+    protected Entry load(File file, String contentType) throws IOException {
+        boolean watched = watch(file.getAbsoluteFile().getParentFile().toPath());
+        long length = file.length();
+        long lastModified = file.lastModified();
+        ByteBuffer content = null;
+        ByteBuffer gzipContent = null;
+        if (length <= maxFileSize) {
+            byte[] bytes = readAll(file, (int) length);
+            content = toDirect(bytes);
+            if (length >= compressionSizeThreshold && isCompressionMimeType(contentType)) {
+                byte[] gzip = gzip(bytes);
+                if (gzip.length < bytes.length) {
+                    gzipContent = toDirect(gzip);
+                }
+            }
+        }
+        return new Entry(file, length, lastModified, contentType, content, gzipContent, watched);
+    }
+
+    protected boolean isCompressionMimeType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        for (String mimeType : compressionMimeTypes) {
+            if (contentType.contains(mimeType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean watch(Path dir) {
+        WatchService watchService = this.watchService;
+        if (watchService == null) {
+            return false;
+        }
+        if (watchDirs.containsKey(dir)) {
+            return true;
+        }
+        try {
+            WatchKey watchKey = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            watchDirs.put(dir, watchKey);
+            return true;
+        } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+            return false;
+        }
+    }
+
+    private void watchLoop() {
+        WatchService watchService;
+        while ((watchService = this.watchService) != null) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    invalidateDir(dir);
+                } else {
+                    invalidate(dir.resolve((Path) event.context()).toFile());
+                }
+            }
+            if (!key.reset()) {
+                watchDirs.remove(dir);
+                invalidateDir(dir);
+            }
+        }
+    }
+
+    public void invalidate(File file) {
+        if (cache.remove(file.getAbsolutePath()) != null) {
+            invalidateCount.increment();
+        }
+    }
+
+    public void invalidateDir(Path dir) {
+        String prefix = dir.toAbsolutePath().toString();
+        cache.keySet().removeIf(key -> {
+            boolean remove = key.startsWith(prefix);
+            if (remove) {
+                invalidateCount.increment();
+            }
+            return remove;
+        });
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public void close() {
+        WatchService watchService = this.watchService;
+        this.watchService = null;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                //skip
+            }
+        }
+        Thread watchThread = this.watchThread;
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+        watchDirs.clear();
+        cache.clear();
+    }
+
+    private static byte[] readAll(File file, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    throw new IOException("file changed while reading. file=" + file);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static ByteBuffer toDirect(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getInvalidateCount() {
+        return invalidateCount.sum();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long weightedSize() {
+        return cache.weightedSize();
+    }
+
+    public int getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(int maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public int getCompressionSizeThreshold() {
+        return compressionSizeThreshold;
+    }
+
+    public void setCompressionSizeThreshold(int compressionSizeThreshold) {
+        this.compressionSizeThreshold = compressionSizeThreshold;
+    }
+
+    public String[] getCompressionMimeTypes() {
+        return compressionMimeTypes;
+    }
+
+    public void setCompressionMimeTypes(String[] compressionMimeTypes) {
+        this.compressionMimeTypes = compressionMimeTypes == null ? new String[0] : compressionMimeTypes;
+    }
+
+    public long getCheckIntervalMs() {
+        return checkIntervalMs;
+    }
+
+    public void setCheckIntervalMs(long checkIntervalMs) {
+        this.checkIntervalMs = checkIntervalMs;
+    }
+
+    @Override
+    public String toString() {
+        return "StaticResourceCache{" +
+                "size=" + cache.size() +
+                ", bytes=" + cache.weightedSize() +
+                ", hit=" + hitCount.sum() +
+                ", miss=" + missCount.sum() +
+                ", invalidate=" + invalidateCount.sum() +
+                '}';
+    }
+
+    /**
+     * Cached resource. the header values are encoded once
+     */
+    public static class Entry extends DefaultServlet.WebResource {
+        private final File file;
+        private final String contentType;
+        private final String eTag;
+        private final String gzipETag;
+        private final String lastModifiedHttp;
+        private final ByteBuffer content;
+        private final ByteBuffer gzipContent;
+        private final boolean watched;
+        private volatile long checkTime = System.currentTimeMillis();
+
+        Entry(File file, long length, long lastModified, String contentType,
+              ByteBuffer content, ByteBuffer gzipContent, boolean watched) {
+            super(length, lastModified);
+            this.file = file;
+            this.contentType = contentType;
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.watched = watched;
+            this.eTag = super.getETag();
+            this.gzipETag = gzipContent != null ? PrecompressedFileResolver.encodingETag(eTag, "gzip") : null;
+            this.lastModifiedHttp = super.getLastModifiedHttp();
+        }
+
+        /**
+         * @return the cached bytes, and the estimated size of the key, header values and the entry object
+         */
+        int weight() {
+            int weight = 128 + file.getPath().length() * 4;
+            if (content != null) {
+                weight += content.capacity();
+            }
+            if (gzipContent != null) {
+                weight += gzipContent.capacity();
+            }
+            return weight;
+        }
+
+        @Override
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return null if no gzip variant
+         */
+        public String getGzipETag() {
+            return gzipETag;
+        }
+
+        @Override
+        public String getLastModifiedHttp() {
+            return lastModifiedHttp;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return null if the file is too large to cache. a new read only view of the content
+         */
+        public ByteBuffer getContent() {
+            return content != null ? content.duplicate() : null;
+        }
+
+        /**
+         * @return null if no gzip variant. a new read only view of the gzip content
+         */
+        public ByteBuffer getGzipContent() {
+            return gzipContent != null ? gzipContent.duplicate() : null;
+        }
+
+        public boolean isGzipVariant() {
+            return gzipContent != null;
+        }
+    }
+}
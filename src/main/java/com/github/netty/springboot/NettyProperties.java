@@ -7,6 +7,9 @@ import com.github.netty.protocol.DynamicProtocolChannelHandler;
 import com.github.netty.protocol.mysql.client.MysqlFrontendBusinessHandler;
 import com.github.netty.protocol.mysql.server.MysqlBackendBusinessHandler;
 import com.github.netty.protocol.nrpc.codec.DataCodecUtil;
+import com.github.netty.protocol.servlet.JavaSessionCodec;
+import com.github.netty.protocol.servlet.SessionCodec;
+import com.github.netty.protocol.servlet.SessionLocalLogServiceImpl;
 import com.github.netty.protocol.servlet.util.HttpAbortPolicyWithReport;
 import com.github.netty.protocol.servlet.util.HttpConstants;
 import io.netty.handler.logging.LogLevel;
@@ -16,6 +19,8 @@ import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
 import java.io.File;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionHandler;
@@ -292,11 +297,44 @@ public class NettyProperties implements Serializable {
          * session存储 - 是否开启本地文件存储
          */
         private boolean enablesLocalFileSession = false;
+        /**
+         * session存储 - 是否开启本地日志文件存储(追加写的分段日志+内存索引, 适合大量session). 优先于enablesLocalFileSession
+         */
+        private boolean enableLocalLogSession = false;
+        /**
+         * session存储 - 本地日志文件存储的单个分段文件大小(字节)
+         */
+        private long localLogSessionSegmentBytes = 64 * 1024 * 1024;
+        /**
+         * session存储 - 本地日志文件存储的刷盘策略. ALWAYS=每次写入都刷盘, EVERY_SECOND=每秒刷盘, NEVER=由操作系统刷盘
+         */
+        private SessionLocalLogServiceImpl.FsyncPolicy localLogSessionFsyncPolicy = SessionLocalLogServiceImpl.FsyncPolicy.EVERY_SECOND;
 
         /**
          * session存储 - session远程存储的url地址, 注: 如果不设置就不会开启
          */
         private String sessionRemoteServerAddress;
+        /**
+         * session存储 - 远程存储是否开启本地近端缓存. 远程服务通过订阅推送失效通知(key+版本号), 订阅断开期间不使用缓存
+         */
+        private boolean sessionRemoteNearCache = false;
+        /**
+         * session存储 - 本地近端缓存的最大session数量
+         */
+        private long sessionRemoteNearCacheMaxSize = 10000;
+        /**
+         * session存储 - 本地近端缓存的过期时间(毫秒). 失效通知丢失时的兜底
+         */
+        private long sessionRemoteNearCacheExpireMs = 30000;
+
+        /**
+         * session存储 - 序列化方式(文件存储与远程存储). JavaSessionCodec=jdk序列化格式(默认, 与旧版本兼容), BinarySessionCodec=紧凑二进制格式(可读取旧格式, 需要所有节点与session服务都已升级后再开启)
+         */
+        private Class<? extends SessionCodec> sessionCodec = JavaSessionCodec.class;
+        /**
+         * session存储 - BinarySessionCodec超过多少字节进行压缩(snappy), 小于0则不压缩
+         */
+        private int sessionCodecCompressThreshold = -1;
 
         /**
          * servlet文件存储的根目录。(servlet文件上传下载) 如果未指定，则使用临时目录。
@@ -316,6 +354,54 @@ public class NettyProperties implements Serializable {
          * 启动失败是否停止程序.
          */
         private boolean startupFailExit = true;
+        /**
+         * 静态资源缓存 - 是否开启. 缓存DefaultServlet的响应头(ETag, Last-Modified), 小文件内容与gzip压缩结果, 通过WatchService感知文件变化
+         */
+        private boolean enableStaticResourceCache = false;
+        /**
+         * 静态资源缓存 - 最大占用内存(字节), 超过后按LRU淘汰
+         */
+        private long staticResourceCacheMaxBytes = 64 * 1024 * 1024;
+        /**
+         * 静态资源缓存 - 缓存文件内容的最大文件大小(字节), 超过的文件只缓存响应头, 内容依然使用sendfile零拷贝
+         */
+        private int staticResourceCacheMaxFileSize = 512 * 1024;
+        /**
+         * 静态资源预压缩 - 是否开启. 优先发送同目录下的a.js.br, a.js.gz文件(sendfile零拷贝), 不存在则后台生成一次gzip文件到/precompressed目录
+         */
+        private boolean enableStaticResourcePrecompressed = false;
+
+        public boolean isEnableStaticResourceCache() {
+            return enableStaticResourceCache;
+        }
+
+        public void setEnableStaticResourceCache(boolean enableStaticResourceCache) {
+            this.enableStaticResourceCache = enableStaticResourceCache;
+        }
+
+        public long getStaticResourceCacheMaxBytes() {
+            return staticResourceCacheMaxBytes;
+        }
+
+        public void setStaticResourceCacheMaxBytes(long staticResourceCacheMaxBytes) {
+            this.staticResourceCacheMaxBytes = staticResourceCacheMaxBytes;
+        }
+
+        public int getStaticResourceCacheMaxFileSize() {
+            return staticResourceCacheMaxFileSize;
+        }
+
+        public void setStaticResourceCacheMaxFileSize(int staticResourceCacheMaxFileSize) {
+            this.staticResourceCacheMaxFileSize = staticResourceCacheMaxFileSize;
+        }
+
+        public boolean isEnableStaticResourcePrecompressed() {
+            return enableStaticResourcePrecompressed;
+        }
+
+        public void setEnableStaticResourcePrecompressed(boolean enableStaticResourcePrecompressed) {
+            this.enableStaticResourcePrecompressed = enableStaticResourcePrecompressed;
+        }
 
         public Boolean getEnableH2() {
             return enableH2;
@@ -425,6 +511,30 @@ public class NettyProperties implements Serializable {
             this.requestMaxHeaderSize = requestMaxHeaderSize;
         }
 
+        public boolean isEnableLocalLogSession() {
+            return enableLocalLogSession;
+        }
+
+        public void setEnableLocalLogSession(boolean enableLocalLogSession) {
+            this.enableLocalLogSession = enableLocalLogSession;
+        }
+
+        public long getLocalLogSessionSegmentBytes() {
+            return localLogSessionSegmentBytes;
+        }
+
+        public void setLocalLogSessionSegmentBytes(long localLogSessionSegmentBytes) {
+            this.localLogSessionSegmentBytes = localLogSessionSegmentBytes;
+        }
+
+        public SessionLocalLogServiceImpl.FsyncPolicy getLocalLogSessionFsyncPolicy() {
+            return localLogSessionFsyncPolicy;
+        }
+
+        public void setLocalLogSessionFsyncPolicy(SessionLocalLogServiceImpl.FsyncPolicy localLogSessionFsyncPolicy) {
+            this.localLogSessionFsyncPolicy = localLogSessionFsyncPolicy;
+        }
+
         public boolean isEnablesLocalFileSession() {
             return enablesLocalFileSession;
         }
@@ -441,6 +551,46 @@ public class NettyProperties implements Serializable {
             this.sessionRemoteServerAddress = sessionRemoteServerAddress;
         }
 
+        public boolean isSessionRemoteNearCache() {
+            return sessionRemoteNearCache;
+        }
+
+        public void setSessionRemoteNearCache(boolean sessionRemoteNearCache) {
+            this.sessionRemoteNearCache = sessionRemoteNearCache;
+        }
+
+        public long getSessionRemoteNearCacheMaxSize() {
+            return sessionRemoteNearCacheMaxSize;
+        }
+
+        public void setSessionRemoteNearCacheMaxSize(long sessionRemoteNearCacheMaxSize) {
+            this.sessionRemoteNearCacheMaxSize = sessionRemoteNearCacheMaxSize;
+        }
+
+        public long getSessionRemoteNearCacheExpireMs() {
+            return sessionRemoteNearCacheExpireMs;
+        }
+
+        public void setSessionRemoteNearCacheExpireMs(long sessionRemoteNearCacheExpireMs) {
+            this.sessionRemoteNearCacheExpireMs = sessionRemoteNearCacheExpireMs;
+        }
+
+        public Class<? extends SessionCodec> getSessionCodec() {
+            return sessionCodec;
+        }
+
+        public void setSessionCodec(Class<? extends SessionCodec> sessionCodec) {
+            this.sessionCodec = sessionCodec;
+        }
+
+        public int getSessionCodecCompressThreshold() {
+            return sessionCodecCompressThreshold;
+        }
+
+        public void setSessionCodecCompressThreshold(int sessionCodecCompressThreshold) {
+            this.sessionCodecCompressThreshold = sessionCodecCompressThreshold;
+        }
+
         public File getBasedir() {
             return basedir;
         }
@@ -469,6 +619,90 @@ public class NettyProperties implements Serializable {
              * 如果出现繁忙拒绝执行, 则会自动dump线程信息. 值为空字符串则不进行dump.
              */
             private String dumpPath = System.getProperty("user.home");
+            /**
+             * 是否使用虚拟线程执行servlet请求(需要enable=true, JDK21+). 每个请求一个虚拟线程, 适合阻塞IO(如JDBC)较多的业务. 低版本JDK会自动回退到线程池
+             */
+            private boolean virtualThread = false;
+            /**
+             * 虚拟线程钉住(pinned)载体线程的诊断. 开启后会设置-Djdk.tracePinnedThreads=short, 并将请求的method与uri写入虚拟线程名称
+             */
+            private boolean virtualThreadPinnedDiagnostics = false;
+            /**
+             * 是否使用自适应线程池(需要enable=true). 有界队列(queues), 根据请求耗时自动调整并发上限(AIMD), 超过上限直接在IO线程返回503, 保护过载时的p99耗时
+             */
+            private boolean adaptive = false;
+            /**
+             * 自适应线程池 - 最小并发上限
+             */
+            private int adaptiveMinLimit = Runtime.getRuntime().availableProcessors();
+            /**
+             * 自适应线程池 - 初始并发上限
+             */
+            private int adaptiveInitLimit = 2 * Runtime.getRuntime().availableProcessors();
+            /**
+             * 自适应线程池 - 目标耗时(毫秒, 排队+执行), 超过后会按adaptiveBackoffRatio降低并发上限
+             */
+            private long adaptiveTargetLatencyMillis = 1000;
+            /**
+             * 自适应线程池 - 降低并发上限的比例
+             */
+            private double adaptiveBackoffRatio = 0.9D;
+
+            public boolean isVirtualThread() {
+                return virtualThread;
+            }
+
+            public void setVirtualThread(boolean virtualThread) {
+                this.virtualThread = virtualThread;
+            }
+
+            public boolean isVirtualThreadPinnedDiagnostics() {
+                return virtualThreadPinnedDiagnostics;
+            }
+
+            public void setVirtualThreadPinnedDiagnostics(boolean virtualThreadPinnedDiagnostics) {
+                this.virtualThreadPinnedDiagnostics = virtualThreadPinnedDiagnostics;
+            }
+
+            public boolean isAdaptive() {
+                return adaptive;
+            }
+
+            public void setAdaptive(boolean adaptive) {
+                this.adaptive = adaptive;
+            }
+
+            public int getAdaptiveMinLimit() {
+                return adaptiveMinLimit;
+            }
+
+            public void setAdaptiveMinLimit(int adaptiveMinLimit) {
+                this.adaptiveMinLimit = adaptiveMinLimit;
+            }
+
+            public int getAdaptiveInitLimit() {
+                return adaptiveInitLimit;
+            }
+
+            public void setAdaptiveInitLimit(int adaptiveInitLimit) {
+                this.adaptiveInitLimit = adaptiveInitLimit;
+            }
+
+            public long getAdaptiveTargetLatencyMillis() {
+                return adaptiveTargetLatencyMillis;
+            }
+
+            public void setAdaptiveTargetLatencyMillis(long adaptiveTargetLatencyMillis) {
+                this.adaptiveTargetLatencyMillis = adaptiveTargetLatencyMillis;
+            }
+
+            public double getAdaptiveBackoffRatio() {
+                return adaptiveBackoffRatio;
+            }
+
+            public void setAdaptiveBackoffRatio(double adaptiveBackoffRatio) {
+                this.adaptiveBackoffRatio = adaptiveBackoffRatio;
+            }
 
             public boolean isEnable() {
                 return enable;
@@ -668,6 +902,14 @@ public class NettyProperties implements Serializable {
          * RPC客户端-建立链接超时（毫秒）. 首次建立通道最大等待时间，建立后就是长连接
          */
         private int clientConnectTimeout = 3000;
+        /**
+         * RPC客户端-每个服务端地址的连接数. 大于1时按等待响应的请求数最少(优先可写)选择连接, 每个连接独立重连
+         */
+        private int clientChannelCount = 1;
+        /**
+         * RPC客户端-同步方法是否等待CompletionStage(LockSupport.park), 而不是锁. 虚拟线程下阻塞更轻量
+         */
+        private boolean clientCompletionSyncCall = false;
         /**
          * RPC客户端-服务端响应超时（毫秒）.一次业务请求的最大等待时间
          */
@@ -788,6 +1030,22 @@ public class NettyProperties implements Serializable {
             this.clientHeartIntervalTimeMs = clientHeartIntervalTimeMs;
         }
 
+        public int getClientChannelCount() {
+            return clientChannelCount;
+        }
+
+        public void setClientChannelCount(int clientChannelCount) {
+            this.clientChannelCount = clientChannelCount;
+        }
+
+        public boolean isClientCompletionSyncCall() {
+            return clientCompletionSyncCall;
+        }
+
+        public void setClientCompletionSyncCall(boolean clientCompletionSyncCall) {
+            this.clientCompletionSyncCall = clientCompletionSyncCall;
+        }
+
         public int getClientConnectTimeout() {
             return clientConnectTimeout;
         }
@@ -1007,6 +1265,26 @@ public class NettyProperties implements Serializable {
          */
         @NestedConfigurationProperty
         private final MysqlProxyLog proxyLog = new MysqlProxyLog();
+        /**
+         * 二进制包日志的配置 (内存映射的循环段文件, 可以在生产环境常开. 用BinaryLogFileDecoder转为json)
+         */
+        @NestedConfigurationProperty
+        private final MysqlBinaryLog binaryLog = new MysqlBinaryLog();
+        /**
+         * 后端连接池的配置 (预先登录的MYSQL连接, 客户端连接时直接分配)
+         */
+        @NestedConfigurationProperty
+        private final MysqlPool pool = new MysqlPool();
+        /**
+         * 读写分离的配置 (事务外的只读SELECT路由到从库)
+         */
+        @NestedConfigurationProperty
+        private final MysqlReplica replica = new MysqlReplica();
+        /**
+         * 查询结果缓存的配置 (事务外的只读SELECT, 按表失效)
+         */
+        @NestedConfigurationProperty
+        private final MysqlQueryCache queryCache = new MysqlQueryCache();
         /**
          * 是否开启MYSQL代理协议
          */
@@ -1015,6 +1293,10 @@ public class NettyProperties implements Serializable {
          * 包最大长度(字节)
          */
         private int packetMaxLength = 16777216;
+        /**
+         * 是否开启直通模式 (转发数据不复制, 只解码需要的包. 结果集的行只在监听器订阅时解码). 默认关闭
+         */
+        private boolean passthrough = false;
         private String mysqlHost = "localhost";
         private int mysqlPort = 3306;
         /**
@@ -1038,6 +1320,30 @@ public class NettyProperties implements Serializable {
             return proxyLog;
         }
 
+        public MysqlBinaryLog getBinaryLog() {
+            return binaryLog;
+        }
+
+        public MysqlPool getPool() {
+            return pool;
+        }
+
+        public MysqlReplica getReplica() {
+            return replica;
+        }
+
+        public MysqlQueryCache getQueryCache() {
+            return queryCache;
+        }
+
+        public boolean isPassthrough() {
+            return passthrough;
+        }
+
+        public void setPassthrough(boolean passthrough) {
+            this.passthrough = passthrough;
+        }
+
         public int getPacketMaxLength() {
             return packetMaxLength;
         }
@@ -1079,6 +1385,318 @@ public class NettyProperties implements Serializable {
         }
     }
 
+    /**
+     * mysql后端连接池的配置
+     */
+    public static class MysqlPool {
+        /**
+         * 是否开启后端连接池. 开启后客户端需要使用连接池的账号登录 (mysql_native_password)
+         */
+        private boolean enabled = false;
+        /**
+         * 连接池登录MYSQL的账号
+         */
+        private String username = "root";
+        /**
+         * 连接池登录MYSQL的密码
+         */
+        private String password = "";
+        /**
+         * 连接池的默认数据库
+         */
+        private String database = "";
+        /**
+         * 每个IO线程最少的空闲连接数 (后台预先连接)
+         */
+        private int minIdle = 0;
+        /**
+         * 每个IO线程最多的空闲连接数 (超过的连接归还时关闭)
+         */
+        private int maxIdle = 8;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public String getDatabase() {
+            return database;
+        }
+
+        public void setDatabase(String database) {
+            this.database = database;
+        }
+
+        public int getMinIdle() {
+            return minIdle;
+        }
+
+        public void setMinIdle(int minIdle) {
+            this.minIdle = minIdle;
+        }
+
+        public int getMaxIdle() {
+            return maxIdle;
+        }
+
+        public void setMaxIdle(int maxIdle) {
+            this.maxIdle = maxIdle;
+        }
+    }
+
+    /**
+     * mysql读写分离的配置
+     */
+    public static class MysqlReplica {
+        /**
+         * 是否开启读写分离. 从库使用连接池的账号登录 (pool.username, pool.password, pool.database)
+         */
+        private boolean enabled = false;
+        /**
+         * 从库地址, 格式 host:port:weight (weight可省略, 默认1)
+         */
+        private List<String> addresses = new ArrayList<>();
+        /**
+         * 从库最大延迟(秒), 超过的从库不参与路由. 小于0不检查延迟
+         */
+        private long maxLagSeconds = 10;
+        /**
+         * 健康检查间隔(毫秒)
+         */
+        private long healthCheckIntervalMs = 2000;
+        /**
+         * 健康检查的SQL (mysql 8.0.22+ 可以使用 SHOW REPLICA STATUS)
+         */
+        private String healthCheckSql = "SHOW SLAVE STATUS";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getAddresses() {
+            return addresses;
+        }
+
+        public void setAddresses(List<String> addresses) {
+            this.addresses = addresses;
+        }
+
+        public long getMaxLagSeconds() {
+            return maxLagSeconds;
+        }
+
+        public void setMaxLagSeconds(long maxLagSeconds) {
+            this.maxLagSeconds = maxLagSeconds;
+        }
+
+        public long getHealthCheckIntervalMs() {
+            return healthCheckIntervalMs;
+        }
+
+        public void setHealthCheckIntervalMs(long healthCheckIntervalMs) {
+            this.healthCheckIntervalMs = healthCheckIntervalMs;
+        }
+
+        public String getHealthCheckSql() {
+            return healthCheckSql;
+        }
+
+        public void setHealthCheckSql(String healthCheckSql) {
+            this.healthCheckSql = healthCheckSql;
+        }
+    }
+
+    /**
+     * mysql查询结果缓存的配置
+     */
+    public static class MysqlQueryCache {
+        /**
+         * 是否开启查询结果缓存. 只检测经过本代理的写操作, 其他途径的写最多延迟ttlMs可见
+         */
+        private boolean enabled = false;
+        /**
+         * 缓存最大占用内存(字节, 堆外), 超过时淘汰最早的缓存
+         */
+        private long maxBytes = 64L * 1024L * 1024L;
+        /**
+         * 单个结果集最大字节数, 超过的不缓存
+         */
+        private int maxEntryBytes = 1024 * 1024;
+        /**
+         * 缓存过期时间(毫秒)
+         */
+        private long ttlMs = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public int getMaxEntryBytes() {
+            return maxEntryBytes;
+        }
+
+        public void setMaxEntryBytes(int maxEntryBytes) {
+            this.maxEntryBytes = maxEntryBytes;
+        }
+
+        public long getTtlMs() {
+            return ttlMs;
+        }
+
+        public void setTtlMs(long ttlMs) {
+            this.ttlMs = ttlMs;
+        }
+    }
+
+    /**
+     * mysql二进制包日志的配置
+     */
+    public static class MysqlBinaryLog {
+        /**
+         * 是否开启二进制包日志
+         */
+        private boolean enable = false;
+        /**
+         * 日志文件夹
+         */
+        private String logPath = "${user.dir}/netty-mysql";
+        /**
+         * 单个段文件的大小(字节)
+         */
+        private int segmentBytes = 64 * 1024 * 1024;
+        /**
+         * 段文件的数量, 写满后覆盖最旧的段
+         */
+        private int segmentCount = 8;
+        /**
+         * 等待写入的最大包数量, 超过后丢弃并记录丢弃数量
+         */
+        private int queueCapacity = 65536;
+        /**
+         * 单条记录的字符串最大字节数(SQL, 行的值), 超过截断
+         */
+        private int maxPayloadBytes = 4096;
+        /**
+         * 采样率 (0-1, 按会话采样)
+         */
+        private double sampleRate = 1D;
+        /**
+         * 是否记录结果集的列定义和行 (直通模式会因此解码行)
+         */
+        private boolean logResultsetRow = false;
+        /**
+         * 刷盘间隔(毫秒), 0=不刷盘, 由操作系统写回 (进程崩溃不丢失)
+         */
+        private long forceIntervalMs = 1000;
+
+        public boolean isEnable() {
+            return enable;
+        }
+
+        public void setEnable(boolean enable) {
+            this.enable = enable;
+        }
+
+        public String getLogPath() {
+            return logPath;
+        }
+
+        public void setLogPath(String logPath) {
+            this.logPath = logPath;
+        }
+
+        public int getSegmentBytes() {
+            return segmentBytes;
+        }
+
+        public void setSegmentBytes(int segmentBytes) {
+            this.segmentBytes = segmentBytes;
+        }
+
+        public int getSegmentCount() {
+            return segmentCount;
+        }
+
+        public void setSegmentCount(int segmentCount) {
+            this.segmentCount = segmentCount;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getMaxPayloadBytes() {
+            return maxPayloadBytes;
+        }
+
+        public void setMaxPayloadBytes(int maxPayloadBytes) {
+            this.maxPayloadBytes = maxPayloadBytes;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public boolean isLogResultsetRow() {
+            return logResultsetRow;
+        }
+
+        public void setLogResultsetRow(boolean logResultsetRow) {
+            this.logResultsetRow = logResultsetRow;
+        }
+
+        public long getForceIntervalMs() {
+            return forceIntervalMs;
+        }
+
+        public void setForceIntervalMs(long forceIntervalMs) {
+            this.forceIntervalMs = forceIntervalMs;
+        }
+    }
+
     /**
      * mysql代理日志的配置
      */
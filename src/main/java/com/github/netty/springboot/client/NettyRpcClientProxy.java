@@ -211,6 +211,8 @@ public class NettyRpcClientProxy implements InvocationHandler {
                     rpcClient.setIoThreadCount(nrpc.getClientIoThreads());
                     rpcClient.setIoRatio(nrpc.getClientIoRatio());
                     rpcClient.setConnectTimeout(nrpc.getClientConnectTimeout());
+                    rpcClient.setChannelCount(nrpc.getClientChannelCount());
+                    rpcClient.setCompletionSyncCall(nrpc.isClientCompletionSyncCall());
                     rpcClient.setIdleTimeMs(nrpc.getClientHeartIntervalTimeMs());
                     rpcClient.setReconnectScheduledIntervalMs(nrpc.getClientReconnectScheduledIntervalMs());
                     rpcClient.setEnableRpcHeartLog(nrpc.isClientEnableHeartLog());
@@ -6,7 +6,9 @@ import com.github.netty.core.util.LoggerX;
 import com.github.netty.core.util.StringUtil;
 import com.github.netty.protocol.HttpServletProtocol;
 import com.github.netty.protocol.servlet.*;
+import com.github.netty.protocol.servlet.util.PrecompressedFileResolver;
 import com.github.netty.protocol.servlet.util.Protocol;
+import com.github.netty.protocol.servlet.util.StaticResourceCache;
 import com.github.netty.springboot.NettyProperties;
 import com.github.netty.springboot.SpringUtil;
 import io.netty.channel.ChannelHandlerContext;
@@ -110,6 +112,22 @@ public class HttpServletProtocolSpringAdapter extends HttpServletProtocol {
             super.setContentSizeThreshold((SpringUtil.getNumberBytes(compression, "getMinResponseSize")).intValue());
             super.setCompressionMimeTypes(compression.getMimeTypes().clone());
         }
+        if (httpServlet.isEnableStaticResourceCache() && servletContext.getDefaultServlet() instanceof DefaultServlet) {
+            StaticResourceCache resourceCache = new StaticResourceCache(httpServlet.getStaticResourceCacheMaxBytes());
+            resourceCache.setMaxFileSize(httpServlet.getStaticResourceCacheMaxFileSize());
+            if (super.isEnableContentCompression()) {
+                resourceCache.setCompressionMimeTypes(super.getCompressionMimeTypes());
+                resourceCache.setCompressionSizeThreshold(super.getContentSizeThreshold());
+            }
+            ((DefaultServlet) servletContext.getDefaultServlet()).setResourceCache(resourceCache);
+        }
+        if (httpServlet.isEnableStaticResourcePrecompressed() && super.isEnableContentCompression()
+                && servletContext.getDefaultServlet() instanceof DefaultServlet) {
+            PrecompressedFileResolver precompressedFileResolver = new PrecompressedFileResolver();
+            precompressedFileResolver.setCompressionMimeTypes(super.getCompressionMimeTypes());
+            precompressedFileResolver.setCompressionSizeThreshold(super.getContentSizeThreshold());
+            ((DefaultServlet) servletContext.getDefaultServlet()).setPrecompressedFileResolver(precompressedFileResolver);
+        }
         if (serverProperties != null) {
             super.setMaxHeaderSize((SpringUtil.getNumberBytes(serverProperties, "getMaxHttpHeaderSize")).intValue());
         }
@@ -182,14 +200,45 @@ public class HttpServletProtocolSpringAdapter extends HttpServletProtocol {
                     properties.getNrpc().isClientEnableHeartLog(),
                     properties.getNrpc().getClientHeartIntervalTimeMs(),
                     properties.getNrpc().getClientReconnectScheduledIntervalMs());
+            SessionRemoteRpcServiceImpl remoteSessionService = (SessionRemoteRpcServiceImpl) compositeSessionService.getSessionService();
+            remoteSessionService.setSessionCodec(newSessionCodec(httpServlet));
+            if (httpServlet.isSessionRemoteNearCache()) {
+                remoteSessionService.enableNearCache(httpServlet.getSessionRemoteNearCacheMaxSize(), httpServlet.getSessionRemoteNearCacheExpireMs());
+            }
             sessionService = compositeSessionService;
+        } else if (httpServlet.isEnableLocalLogSession()) {
+            //Enable session log file storage
+            SessionLocalLogServiceImpl logSessionService = new SessionLocalLogServiceImpl(servletContext.getResourceManager(), servletContext,
+                    httpServlet.getLocalLogSessionSegmentBytes(), httpServlet.getLocalLogSessionFsyncPolicy());
+            logSessionService.setSessionCodec(newSessionCodec(httpServlet));
+            sessionService = logSessionService;
         } else if (httpServlet.isEnablesLocalFileSession()) {
             //Enable session file storage
-            sessionService = new SessionLocalFileServiceImpl(servletContext.getResourceManager(), servletContext);
+            SessionLocalFileServiceImpl fileSessionService = new SessionLocalFileServiceImpl(servletContext.getResourceManager(), servletContext);
+            fileSessionService.setSessionCodec(newSessionCodec(httpServlet));
+            sessionService = fileSessionService;
         } else {
             sessionService = new SessionLocalMemoryServiceImpl(servletContext);
         }
         return sessionService;
     }
 
+    protected SessionCodec newSessionCodec(NettyProperties.HttpServlet httpServlet) {
+        Class<? extends SessionCodec> codecClass = httpServlet.getSessionCodec();
+        // the binary format is opt-in. the old nodes can not read it
+        if (codecClass == null || codecClass == JavaSessionCodec.class) {
+            return JavaSessionCodec.INSTANCE;
+        }
+        if (codecClass == BinarySessionCodec.class) {
+            BinarySessionCodec codec = new BinarySessionCodec();
+            codec.setCompressThreshold(httpServlet.getSessionCodecCompressThreshold());
+            return codec;
+        }
+        try {
+            return codecClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("new sessionCodec fail. class=" + codecClass, e);
+        }
+    }
+
 }
@@ -3,16 +3,25 @@ package com.github.netty.springboot.server;
 import com.github.netty.core.ProtocolHandler;
 import com.github.netty.core.ServerListener;
 import com.github.netty.core.util.AbortPolicyWithReport;
+import com.github.netty.core.util.AdaptiveThreadPoolExecutor;
+import com.github.netty.core.util.LoggerFactoryX;
+import com.github.netty.core.util.LoggerX;
 import com.github.netty.core.util.NettyThreadPoolExecutor;
+import com.github.netty.core.util.VirtualThreadExecutor;
 import com.github.netty.protocol.*;
 import com.github.netty.protocol.dubbo.Application;
 import com.github.netty.protocol.dubbo.ProxyFrontendHandler;
 import com.github.netty.protocol.mqtt.interception.InterceptHandler;
+import com.github.netty.protocol.mysql.MysqlBackendPool;
+import com.github.netty.protocol.mysql.MysqlQueryCache;
+import com.github.netty.protocol.mysql.MysqlReplicaRouter;
 import com.github.netty.protocol.mysql.client.MysqlFrontendBusinessHandler;
+import com.github.netty.protocol.mysql.listener.BinaryLogFilePacketListener;
 import com.github.netty.protocol.mysql.listener.MysqlPacketListener;
 import com.github.netty.protocol.mysql.listener.WriterLogFilePacketListener;
 import com.github.netty.protocol.mysql.server.MysqlBackendBusinessHandler;
 import com.github.netty.protocol.servlet.util.HttpAbortPolicyWithReport;
+import com.github.netty.protocol.servlet.util.HttpVirtualThreadExecutor;
 import com.github.netty.springboot.NettyProperties;
 import com.github.netty.springboot.SpringUtil;
 import org.springframework.beans.factory.BeanFactory;
@@ -47,6 +56,7 @@ import java.util.function.Supplier;
 @AutoConfigureAfter(NettyProperties.class)
 @EnableConfigurationProperties(NettyProperties.class)
 public class NettyEmbeddedAutoConfiguration {
+    private final LoggerX logger = LoggerFactoryX.getLogger(getClass());
     private final NettyProperties nettyProperties;
 
     public NettyEmbeddedAutoConfiguration(NettyProperties nettyProperties) {
@@ -189,6 +199,40 @@ public class NettyEmbeddedAutoConfiguration {
         NettyProperties.Mysql mysql = nettyProperties.getMysql();
         MysqlProtocol protocol = new MysqlProtocol(new InetSocketAddress(mysql.getMysqlHost(), mysql.getMysqlPort()));
         protocol.setMaxPacketSize(mysql.getPacketMaxLength());
+        protocol.setPassthrough(mysql.isPassthrough());
+        NettyProperties.MysqlPool pool = mysql.getPool();
+        if (pool.isEnabled()) {
+            MysqlBackendPool backendPool = new MysqlBackendPool(protocol.getMysqlAddress(),
+                    pool.getUsername(), pool.getPassword(), pool.getDatabase());
+            backendPool.setMaxPacketSize(mysql.getPacketMaxLength());
+            backendPool.setMinIdle(pool.getMinIdle());
+            backendPool.setMaxIdle(pool.getMaxIdle());
+            protocol.setBackendPool(backendPool);
+        }
+        NettyProperties.MysqlReplica replica = mysql.getReplica();
+        if (replica.isEnabled()) {
+            MysqlReplicaRouter replicaRouter = new MysqlReplicaRouter();
+            replicaRouter.setMaxLagSeconds(replica.getMaxLagSeconds());
+            replicaRouter.setHealthCheckIntervalMs(replica.getHealthCheckIntervalMs());
+            replicaRouter.setHealthCheckSql(replica.getHealthCheckSql());
+            for (String address : replica.getAddresses()) {
+                String[] split = address.trim().split(":");
+                MysqlBackendPool replicaPool = new MysqlBackendPool(new InetSocketAddress(split[0], Integer.parseInt(split[1])),
+                        pool.getUsername(), pool.getPassword(), pool.getDatabase());
+                replicaPool.setMaxPacketSize(mysql.getPacketMaxLength());
+                replicaPool.setMaxIdle(pool.getMaxIdle());
+                replicaRouter.addReplica(replicaPool, split.length > 2 ? Integer.parseInt(split[2]) : 1);
+            }
+            protocol.setReplicaRouter(replicaRouter);
+        }
+        NettyProperties.MysqlQueryCache queryCache = mysql.getQueryCache();
+        if (queryCache.isEnabled()) {
+            MysqlQueryCache cache = new MysqlQueryCache();
+            cache.setMaxBytes(queryCache.getMaxBytes());
+            cache.setMaxEntryBytes(queryCache.getMaxEntryBytes());
+            cache.setTtlMs(queryCache.getTtlMs());
+            protocol.setQueryCache(cache);
+        }
         if (mysqlPacketListeners != null) {
             protocol.getMysqlPacketListeners().addAll(mysqlPacketListeners);
         }
@@ -245,9 +289,37 @@ public class NettyEmbeddedAutoConfiguration {
         return listener;
     }
 
+    /**
+     * mysql proxy BinaryLogFilePacketListener
+     *
+     * @param environment Environment
+     * @return BinaryLogFilePacketListener
+     */
+    @Bean(value = "mysqlBinaryLogFilePacketListener", destroyMethod = "close")
+    @ConditionalOnMissingBean(BinaryLogFilePacketListener.class)
+    @ConditionalOnProperty(prefix = "server.netty.mysql.binary-log", name = {"enable"}, matchIfMissing = false)
+    public BinaryLogFilePacketListener mysqlBinaryLogFilePacketListener(Environment environment) {
+        NettyProperties.MysqlBinaryLog binaryLog = nettyProperties.getMysql().getBinaryLog();
+        BinaryLogFilePacketListener listener = new BinaryLogFilePacketListener(environment.resolvePlaceholders(binaryLog.getLogPath()),
+                binaryLog.getSegmentBytes(), binaryLog.getSegmentCount());
+        listener.setQueueCapacity(binaryLog.getQueueCapacity());
+        listener.setMaxPayloadBytes(binaryLog.getMaxPayloadBytes());
+        listener.setSampleRate(binaryLog.getSampleRate());
+        listener.setLogResultsetRow(binaryLog.isLogResultsetRow());
+        listener.setForceIntervalMs(binaryLog.getForceIntervalMs());
+        listener.start();
+        return listener;
+    }
+
     protected Supplier<Executor> newExecutorSupplier(NettyProperties.HttpServlet.ServerThreadPool pool, ConfigurableBeanFactory factory) {
         Supplier<Executor> executorSupplier;
-        if (pool.isEnable()) {
+        if (pool.isEnable() && pool.isVirtualThread() && VirtualThreadExecutor.isSupported()) {
+            HttpVirtualThreadExecutor executor = new HttpVirtualThreadExecutor(pool.getPoolName(), pool.isVirtualThreadPinnedDiagnostics());
+            executorSupplier = () -> executor;
+        } else if (pool.isEnable()) {
+            if (pool.isVirtualThread()) {
+                logger.warn("server.netty.http-servlet.thread-pool.virtual-thread=true, but unsupported in java.version={}. fallback to thread pool", System.getProperty("java.version"));
+            }
             if (pool.getExecutor() == NettyThreadPoolExecutor.class) {
                 RejectedExecutionHandler rejectedHandler;
                 if (pool.getRejected() == HttpAbortPolicyWithReport.class) {
@@ -262,7 +334,12 @@ public class NettyEmbeddedAutoConfiguration {
                 int queues = pool.getQueues();
                 int keepAliveSeconds = pool.getKeepAliveSeconds();
                 boolean allowCoreThreadTimeOut = pool.isAllowCoreThreadTimeOut();
-                NettyThreadPoolExecutor executor = newNettyThreadPoolExecutor(poolName, coreThreads, maxThreads, queues, keepAliveSeconds, allowCoreThreadTimeOut, rejectedHandler);
+                NettyThreadPoolExecutor executor;
+                if (pool.isAdaptive()) {
+                    executor = newAdaptiveThreadPoolExecutor(pool, rejectedHandler);
+                } else {
+                    executor = newNettyThreadPoolExecutor(poolName, coreThreads, maxThreads, queues, keepAliveSeconds, allowCoreThreadTimeOut, rejectedHandler);
+                }
                 executorSupplier = () -> executor;
             } else {
                 Executor executor = factory.getBean(pool.getExecutor());
@@ -332,6 +409,19 @@ public class NettyEmbeddedAutoConfiguration {
         return executor;
     }
 
+    protected AdaptiveThreadPoolExecutor newAdaptiveThreadPoolExecutor(NettyProperties.HttpServlet.ServerThreadPool pool, RejectedExecutionHandler handler) {
+        // adaptive need a bounded queue
+        int queues = pool.getQueues() > 0 ? pool.getQueues() : pool.getMaxThreads();
+        boolean daemon = true;
+        AdaptiveThreadPoolExecutor executor = new AdaptiveThreadPoolExecutor(
+                pool.getCoreThreads(), pool.getMaxThreads(), queues, pool.getKeepAliveSeconds(),
+                pool.getPoolName(), daemon,
+                pool.getAdaptiveMinLimit(), pool.getAdaptiveInitLimit(),
+                pool.getAdaptiveTargetLatencyMillis(), pool.getAdaptiveBackoffRatio(), handler);
+        executor.allowCoreThreadTimeOut(pool.isAllowCoreThreadTimeOut());
+        return executor;
+    }
+
     public static class LazyPool implements Supplier<Executor> {
         protected final NettyProperties.HttpServlet.ServerThreadPool pool;
         protected final RejectedExecutionHandler rejectedHandler;
@@ -0,0 +1,87 @@
+package com.github.netty.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * the timing wheel is drive by {@link ExpiryLRUMap.TimingWheel#runOnce(long)}, 1 tick = 1 ms.
+ */
+public class ExpiryLRUMapTests {
+    private final long start = System.currentTimeMillis();
+    private final ExpiryLRUMap.TimingWheel wheel = new ExpiryLRUMap.TimingWheel(-1, 1, start);
+    private final ExpiryLRUMap<String, String> map = new ExpiryLRUMap<>(16, Long.MAX_VALUE, Long.MAX_VALUE, null, null, wheel);
+
+    @Test
+    public void levelBoundary() {
+        // level0 256 slots, level1~3 64 slots each. the node beyond level3 wait in the farthest slot
+        long[] timeouts = {1, 255, 256, 257, 16383, 16384, 16385, (1L << 20) - 1, 1L << 20, (1L << 20) + 1,
+                (1L << 26) - 1, (1L << 26) + 100};
+        for (long timeout : timeouts) {
+            // a new wheel, the current tick of the wheel is now
+            long begin = System.currentTimeMillis();
+            ExpiryLRUMap.TimingWheel wheel = new ExpiryLRUMap.TimingWheel(-1, 1, begin);
+            ExpiryLRUMap<String, String> map = new ExpiryLRUMap<>(16, Long.MAX_VALUE, Long.MAX_VALUE, null, null, wheel);
+            String key = String.valueOf(timeout);
+            map.put(key, key, timeout);
+            long end = System.currentTimeMillis();
+            // place the node now, then it cascade down level by level
+            wheel.runOnce(begin);
+
+            wheel.runOnce(begin + timeout - 1);
+            assertTrue(map.containsKey(key), key);
+            assertNull(wheel.pollExpired(), key);
+
+            wheel.runOnce(end + timeout);
+            assertFalse(map.containsKey(key), key);
+            ExpiryLRUMap.Node<?, ?> node = wheel.pollExpired();
+            assertNotNull(node, key);
+            assertEquals(key, node.getKey());
+            assertEquals(0, wheel.getPendingCount(), key);
+        }
+    }
+
+    @Test
+    public void cancelBeforeFire() {
+        // cancel before the wheel place the node
+        map.put("a", "a", 1000);
+        map.put("b", "b", 100_000);
+        assertEquals("a", map.remove("a"));
+        wheel.runOnce(start);
+        assertEquals(1, wheel.getPendingCount());
+
+        // cancel the node in the slot
+        assertEquals("b", map.remove("b"));
+        wheel.runOnce(start);
+        assertEquals(0, wheel.getPendingCount());
+
+        wheel.runOnce(System.currentTimeMillis() + 200_000);
+        assertNull(wheel.pollExpired());
+    }
+
+    @Test
+    public void putOverwrite() {
+        long begin = System.currentTimeMillis();
+        map.put("a", "old", 300);
+        map.put("a", "new", 20_000);
+        long end = System.currentTimeMillis();
+        wheel.runOnce(begin);
+
+        // the old node fire, the new value is keep
+        wheel.runOnce(end + 300);
+        assertEquals("new", map.get("a"));
+        ExpiryLRUMap.Node<?, ?> node = wheel.pollExpired();
+        assertNotNull(node);
+        assertTrue(node.isCovered());
+        assertEquals("old", node.getData());
+
+        wheel.runOnce(begin + 20_000 - 1);
+        assertEquals("new", map.get("a"));
+        assertNull(wheel.pollExpired());
+
+        wheel.runOnce(end + 20_000);
+        assertFalse(map.containsKey("a"));
+        assertEquals("new", wheel.pollExpired().getData());
+        assertEquals(0, wheel.getPendingCount());
+    }
+}
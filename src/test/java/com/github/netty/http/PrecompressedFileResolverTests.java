@@ -0,0 +1,135 @@
+package com.github.netty.http;
+
+import com.github.netty.core.util.ResourceManager;
+import com.github.netty.protocol.servlet.DefaultServlet;
+import com.github.netty.protocol.servlet.NettyOutputStream;
+import com.github.netty.protocol.servlet.ServletContext;
+import com.github.netty.protocol.servlet.util.PrecompressedFileResolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrecompressedFileResolverTests {
+
+    @Test
+    public void isAccept() {
+        assertTrue(PrecompressedFileResolver.isAccept("gzip", "gzip"));
+        assertTrue(PrecompressedFileResolver.isAccept("deflate, GZIP", "gzip"));
+        assertTrue(PrecompressedFileResolver.isAccept("br;q=1.0, gzip;q=0.5", "gzip"));
+        assertTrue(PrecompressedFileResolver.isAccept("deflate, *", "gzip"));
+        assertTrue(PrecompressedFileResolver.isAccept("*;q=0, gzip", "gzip"));
+
+        assertFalse(PrecompressedFileResolver.isAccept("gzip;q=0", "gzip"));
+        assertFalse(PrecompressedFileResolver.isAccept("gzip;q=0.0, br", "gzip"));
+        assertFalse(PrecompressedFileResolver.isAccept("gzip;q=0, *", "gzip"));
+        assertFalse(PrecompressedFileResolver.isAccept("*;q=0", "gzip"));
+        assertFalse(PrecompressedFileResolver.isAccept("x-gzip, deflate", "gzip"));
+        assertFalse(PrecompressedFileResolver.isAccept("gzip;q=abc", "gzip"));
+        assertFalse(PrecompressedFileResolver.isAccept("", "gzip"));
+    }
+
+    @Test
+    public void encodingETag() {
+        assertEquals("W/\"10-20-gz\"", PrecompressedFileResolver.encodingETag("W/\"10-20\"", "gzip"));
+        assertEquals("W/\"10-20-br\"", PrecompressedFileResolver.encodingETag("W/\"10-20\"", "br"));
+        assertEquals("\"abc-br\"", PrecompressedFileResolver.encodingETag("\"abc\"", "br"));
+        assertEquals("abc-gz", PrecompressedFileResolver.encodingETag("abc", "gzip"));
+        assertNull(PrecompressedFileResolver.encodingETag(null, "gzip"));
+        // each representation has its own ETag
+        assertNotEquals(PrecompressedFileResolver.encodingETag("W/\"1-2\"", "gzip"),
+                PrecompressedFileResolver.encodingETag("W/\"1-2\"", "br"));
+    }
+
+    @Test
+    public void precompressedETag(@TempDir Path dir) throws Exception {
+        File file = dir.resolve("a.js").toFile();
+        Files.write(file.toPath(), new byte[1024]);
+        File br = dir.resolve("a.js.br").toFile();
+        Files.write(br.toPath(), new byte[10]);
+        assertTrue(br.setLastModified(file.lastModified()));
+        PrecompressedFileResolver resolver = new PrecompressedFileResolver();
+        resolver.setCompressionMimeTypes(new String[]{"javascript"});
+        PrecompressedServlet servlet = new PrecompressedServlet();
+        servlet.setPrecompressedFileResolver(resolver);
+        NettyOutputStream ostream = Mockito.mock(NettyOutputStream.class);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "br");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setHeader("ETag", "W/\"1024-1\"");
+        assertTrue(servlet.sendPrecompressed(request, response, ostream, file, "application/javascript", "W/\"1024-1\""));
+        assertEquals("br", response.getHeader("Content-Encoding"));
+        assertEquals("W/\"1024-1-br\"", response.getHeader("ETag"));
+        assertEquals(10, response.getContentLengthLong());
+        Mockito.verify(ostream).write(br);
+
+        // identity keeps the original ETag
+        request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "identity");
+        response = new MockHttpServletResponse();
+        response.setHeader("ETag", "W/\"1024-1\"");
+        assertFalse(servlet.sendPrecompressed(request, response, ostream, file, "application/javascript", "W/\"1024-1\""));
+        assertEquals("W/\"1024-1\"", response.getHeader("ETag"));
+    }
+
+    @Test
+    public void generateAndDeleteStale(@TempDir Path dir) throws Exception {
+        ResourceManager resourceManager = new ResourceManager(dir.resolve("cache").toString());
+        PrecompressedFileResolver resolver = new PrecompressedFileResolver();
+        resolver.setCompressionMimeTypes(new String[]{"javascript"});
+        File file = dir.resolve("a.js").toFile();
+        Files.write(file.toPath(), new byte[16 * 1024]);
+
+        PrecompressedFileResolver.Variant variant = awaitVariant(resolver, file, resourceManager);
+        assertEquals("gzip", variant.getEncoding());
+        File old = variant.getFile();
+
+        assertTrue(file.setLastModified(file.lastModified() - 60_000));
+        File current = awaitVariant(resolver, file, resourceManager).getFile();
+        assertNotEquals(old.getName(), current.getName());
+        for (int i = 0; i < 100 && old.exists(); i++) {
+            Thread.sleep(20);
+        }
+        assertFalse(old.exists());
+        assertEquals(Arrays.asList(current.getName()), Arrays.asList(current.getParentFile().list()));
+    }
+
+    private static PrecompressedFileResolver.Variant awaitVariant(PrecompressedFileResolver resolver, File file,
+                                                                  ResourceManager resourceManager) throws IOException, InterruptedException {
+        for (int i = 0; i < 250; i++) {
+            PrecompressedFileResolver.Variant variant = resolver.resolve(file, "application/javascript", "gzip", resourceManager);
+            if (variant != null) {
+                return variant;
+            }
+            Thread.sleep(20);
+        }
+        throw new IOException("gzip variant not generated. file=" + file);
+    }
+
+    private static class PrecompressedServlet extends DefaultServlet {
+        private final ServletContext servletContext = Mockito.mock(ServletContext.class);
+
+        @Override
+        public javax.servlet.ServletContext getServletContext() {
+            return servletContext;
+        }
+
+        @Override
+        protected boolean sendPrecompressed(HttpServletRequest request, HttpServletResponse response,
+                                            NettyOutputStream ostream, File file, String contentType, String eTag) throws IOException {
+            return super.sendPrecompressed(request, response, ostream, file, contentType, eTag);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.netty.mqtt;
+
+import com.github.netty.protocol.mqtt.IRetainedRepository;
+import com.github.netty.protocol.mqtt.MemoryRetainedRepository;
+import com.github.netty.protocol.mqtt.MqttRetainedMessage;
+import com.github.netty.protocol.mqtt.TrieRetainedRepository;
+import com.github.netty.protocol.mqtt.subscriptions.Topic;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.*;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retained store under mass reconnect. MemoryRetainedRepository (linear scan) vs TrieRetainedRepository
+ * <p>
+ * the topics are device/{group}/{device}/state. one op = one reconnected device subscribe its own state (exact)
+ * and its group (device/{group}/+/state). 8 threads like the event loops.
+ * <p>
+ * run main method.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Threads(8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RetainedRepositoryBenchmark {
+    private static final int GROUPS = 1000;
+    @Param({"100000"})
+    private int retained;
+    @Param({"memory", "trie"})
+    private String store;
+    private IRetainedRepository repository;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RetainedRepositoryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        repository = "trie".equals(store) ? new TrieRetainedRepository(-1) : new MemoryRetainedRepository();
+        byte[] state = new byte[64];
+        for (int i = 0; i < retained; i++) {
+            String topic = "device/" + (i % GROUPS) + "/" + i + "/state";
+            MqttPublishMessage msg = MqttMessageBuilders.publish().topicName(topic).qos(MqttQoS.AT_LEAST_ONCE)
+                    .retained(true).messageId(1).payload(Unpooled.wrappedBuffer(state)).build();
+            repository.retain(new Topic(topic), msg);
+        }
+    }
+
+    @Benchmark
+    public int reconnect() {
+        int device = ThreadLocalRandom.current().nextInt(retained);
+        int count = release(repository.retainedOnTopic("device/" + (device % GROUPS) + "/" + device + "/state"));
+        count += release(repository.retainedOnTopic("device/" + (device % GROUPS) + "/+/state"));
+        return count;
+    }
+
+    private static int release(List<MqttRetainedMessage> list) {
+        for (MqttRetainedMessage message : list) {
+            ReferenceCountUtil.release(message.getPayloadBuf());
+        }
+        return list.size();
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.netty.mysql;
+
+import com.github.netty.protocol.mysql.Session;
+import com.github.netty.protocol.mysql.client.ClientQueryPacket;
+import com.github.netty.protocol.mysql.listener.BinaryLogFileDecoder;
+import com.github.netty.protocol.mysql.listener.BinaryLogFilePacketListener;
+import com.github.netty.protocol.mysql.server.ServerResultsetRowPacket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.netty.protocol.mysql.listener.BinaryLogFilePacketListener.SEGMENT_HEADER_LENGTH;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryLogFilePacketListenerTests {
+
+    @Test
+    public void truncate(@TempDir Path dir) throws IOException {
+        BinaryLogFilePacketListener listener = new BinaryLogFilePacketListener(dir.toString(), 4096, 2);
+        listener.setLogResultsetRow(true);
+        listener.setMaxPayloadBytes(20);
+        listener.start();
+        Session session = new Session("1");
+        // 4 + 4, 4 + 24 is cut to 8 bytes, the last is dropped
+        listener.onMysqlPacket(new ServerResultsetRowPacket(1, "aaaa", "bbbbbbbbbbbbbbbbbbbbbbbb", "c"), null, session, null);
+        // the first fill the budget. keep it whole, only drop the second
+        listener.onMysqlPacket(new ServerResultsetRowPacket(2, "aaaaaaaaaaaaaaaa", "b"), null, session, null);
+        // not cut the utf8 char. (3 bytes each)
+        listener.onMysqlPacket(new ClientQueryPacket(0, "select '中文中文中文'"), null, session, null);
+        listener.onMysqlPacket(new ServerResultsetRowPacket(3, "a", null, "b"), null, session, null);
+        listener.close();
+
+        String[] lines = decode(segment(dir)).split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].contains("\"values\":[\"aaaa\",\"bbbbbbbb\"],\"truncated\":true"), lines[0]);
+        assertTrue(lines[1].contains("\"values\":[\"aaaaaaaaaaaaaaaa\"],\"truncated\":true"), lines[1]);
+        assertTrue(lines[2].contains("\"query\":\"select '中文\",\"truncated\":true"), lines[2]);
+        assertTrue(lines[3].contains("\"values\":[\"a\",null,\"b\"]}"), lines[3]);
+    }
+
+    @Test
+    public void tornTail(@TempDir Path dir) throws IOException {
+        BinaryLogFilePacketListener listener = new BinaryLogFilePacketListener(dir.toString(), 4096, 2);
+        listener.setLogResultsetRow(true);
+        listener.start();
+        Session session = new Session("1");
+        for (int i = 0; i < 3; i++) {
+            listener.onMysqlPacket(new ServerResultsetRowPacket(i, "row" + i), null, session, null);
+        }
+        listener.close();
+
+        ByteBuffer segment = segment(dir);
+        assertEquals(3, decode(segment).split("\n").length);
+        int last = SEGMENT_HEADER_LENGTH;
+        int end = last;
+        while (segment.getInt(end) != 0) {
+            last = end;
+            end += segment.getInt(end);
+        }
+        // the 0 after the last record
+        assertEquals(0, segment.getInt(end));
+
+        // the writer crashed before publish the length of the last record
+        segment.putInt(last, 0);
+        String out = decode(segment);
+        assertEquals(2, out.split("\n").length);
+        assertFalse(out.contains("row2"));
+
+        // the length is garbage (larger than the segment)
+        segment.putInt(last, Integer.MAX_VALUE);
+        assertEquals(2, decode(segment).split("\n").length);
+    }
+
+    private static ByteBuffer segment(Path dir) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(BinaryLogFilePacketListener.segmentFile(dir.toFile(), 0).toPath()));
+    }
+
+    private static String decode(ByteBuffer segment) throws IOException {
+        StringBuilder out = new StringBuilder();
+        new BinaryLogFileDecoder().decode(1, segment.duplicate(), out);
+        return out.toString();
+    }
+}
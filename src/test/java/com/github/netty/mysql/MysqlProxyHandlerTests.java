@@ -0,0 +1,197 @@
+package com.github.netty.mysql;
+
+import com.github.netty.protocol.mysql.CapabilityFlags;
+import com.github.netty.protocol.mysql.Constants;
+import com.github.netty.protocol.mysql.MysqlProxyHandler;
+import com.github.netty.protocol.mysql.Session;
+import com.github.netty.protocol.mysql.server.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * passthrough mode. the backend data is split into many reads, the decoder only see the required packets.
+ */
+public class MysqlProxyHandlerTests {
+    private static final int MAX_PACKET_SIZE = 32 * 1024 * 1024;
+
+    @Test
+    public void splitHeader() {
+        byte[] resultset = resultset(row("1"), row("22"));
+        List<Class<?>> expect = Arrays.asList(ServerColumnCountPacket.class, ServerColumnDefinitionPacket.class,
+                ServerEofPacket.class, ServerEofPacket.class);
+        // every split point. the header (4) and the first byte of the payload is split into two reads
+        for (int split = 1; split < resultset.length; split++) {
+            Backend backend = new Backend();
+            backend.read(Arrays.copyOfRange(resultset, 0, split));
+            backend.read(Arrays.copyOfRange(resultset, split, resultset.length));
+            assertEquals(expect, backend.decoded(), "split=" + split);
+            assertArrayEquals(resultset, backend.forwarded(), "split=" + split);
+        }
+        // one byte a read
+        Backend backend = new Backend();
+        for (byte b : resultset) {
+            backend.read(new byte[]{b});
+        }
+        assertEquals(expect, backend.decoded());
+        assertArrayEquals(resultset, backend.forwarded());
+    }
+
+    @Test
+    public void continuationRow() {
+        // the row start with 0xFE (the string more than 16MB), and the last packet start with 0xFF.
+        // both is the part of the row, not the EOF or ERR
+        int length = Constants.MAX_PACKET_LENGTH - 9 + 10;
+        byte[] row = new byte[Constants.MAX_PACKET_LENGTH + 10];
+        row[0] = (byte) 0xFE;
+        for (int i = 0; i < 8; i++) {
+            row[1 + i] = (byte) (length >>> (8 * i));
+        }
+        row[Constants.MAX_PACKET_LENGTH] = (byte) 0xFF;
+        byte[] resultset = resultset(row, row("1"));
+
+        Backend backend = new Backend();
+        int chunk = 64 * 1024 + 3;
+        for (int i = 0; i < resultset.length; i += chunk) {
+            backend.read(Arrays.copyOfRange(resultset, i, Math.min(i + chunk, resultset.length)));
+        }
+        assertEquals(Arrays.asList(ServerColumnCountPacket.class, ServerColumnDefinitionPacket.class,
+                ServerEofPacket.class, ServerEofPacket.class), backend.decoded());
+        assertArrayEquals(resultset, backend.forwarded());
+    }
+
+    @Test
+    public void flipToDecode() {
+        byte[] head = resultset(row("1"));
+        // column count, column definition, EOF, row. without the last EOF
+        head = Arrays.copyOf(head, head.length - 9);
+        byte[] tail = packets(5, row("22"), new byte[]{(byte) 0xFE, 0, 0, 2, 0});
+
+        Backend backend = new Backend();
+        backend.read(head);
+        // the session need the rows now. (e.g. the query cache start capture)
+        backend.session.setDecodeResultsetRow(true);
+        backend.read(tail);
+
+        List<Object> decoded = backend.decodedPackets();
+        assertEquals(Arrays.asList(ServerColumnCountPacket.class, ServerColumnDefinitionPacket.class,
+                ServerEofPacket.class, ServerResultsetRowPacket.class, ServerEofPacket.class), classes(decoded));
+        assertEquals(Collections.singletonList("22"), ((ServerResultsetRowPacket) decoded.get(3)).getValues());
+
+        ByteBuf forwarded = Unpooled.wrappedBuffer(head, tail);
+        assertArrayEquals(toBytes(forwarded), backend.forwarded());
+    }
+
+    /**
+     * the backend channel. the data is forward to the frontend channel
+     */
+    private static class Backend {
+        private final EmbeddedChannel frontend = new EmbeddedChannel();
+        private final EmbeddedChannel channel;
+        private final Session session = new Session("1");
+
+        Backend() {
+            session.setFrontendChannel(frontend);
+            session.setFrontendCapabilities(Collections.singleton(CapabilityFlags.CLIENT_PROTOCOL_41));
+            // skip the rows
+            session.setDecodeResultsetRow(false);
+            channel = new EmbeddedChannel(new MysqlProxyHandler(() -> frontend, true),
+                    new ServerResultsetDecoder(session, MAX_PACKET_SIZE));
+            session.setBackendChannel(channel);
+        }
+
+        void read(byte[] bytes) {
+            channel.writeInbound(Unpooled.wrappedBuffer(bytes));
+        }
+
+        List<Object> decodedPackets() {
+            List<Object> list = new ArrayList<>();
+            Object packet;
+            while ((packet = channel.readInbound()) != null) {
+                list.add(packet);
+                ReferenceCountUtil.release(packet);
+            }
+            return list;
+        }
+
+        List<Class<?>> decoded() {
+            return classes(decodedPackets());
+        }
+
+        byte[] forwarded() {
+            ByteBuf all = Unpooled.buffer();
+            ByteBuf buf;
+            while ((buf = frontend.readOutbound()) != null) {
+                all.writeBytes(buf);
+                buf.release();
+            }
+            channel.finishAndReleaseAll();
+            frontend.finishAndReleaseAll();
+            return toBytes(all);
+        }
+    }
+
+    private static List<Class<?>> classes(List<Object> packets) {
+        List<Class<?>> list = new ArrayList<>();
+        for (Object packet : packets) {
+            list.add(packet.getClass());
+        }
+        return list;
+    }
+
+    private static byte[] toBytes(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        buf.release();
+        return bytes;
+    }
+
+    private static byte[] row(String value) {
+        byte[] row = new byte[1 + value.length()];
+        row[0] = (byte) value.length();
+        System.arraycopy(value.getBytes(), 0, row, 1, value.length());
+        return row;
+    }
+
+    /**
+     * one column resultset. column count, column definition, EOF, rows, EOF
+     */
+    private static byte[] resultset(byte[]... rows) {
+        byte[][] payloads = new byte[rows.length + 4][];
+        payloads[0] = new byte[]{1};
+        payloads[1] = new byte[]{3, 'd', 'e', 'f', 0, 0, 0, 1, 'a', 0, 0x0C, 0x21, 0,
+                (byte) 0xFF, 0, 0, 0, (byte) 0xFD, 0, 0, 0, 0, 0};
+        payloads[2] = new byte[]{(byte) 0xFE, 0, 0, 2, 0};
+        System.arraycopy(rows, 0, payloads, 3, rows.length);
+        payloads[payloads.length - 1] = new byte[]{(byte) 0xFE, 0, 0, 2, 0};
+        return packets(1, payloads);
+    }
+
+    /**
+     * the payload more than 16MB is split into many packets
+     */
+    private static byte[] packets(int sequenceId, byte[]... payloads) {
+        ByteBuf buf = Unpooled.buffer();
+        for (byte[] payload : payloads) {
+            int index = 0;
+            do {
+                int length = Math.min(Constants.MAX_PACKET_LENGTH, payload.length - index);
+                buf.writeMediumLE(length).writeByte(sequenceId++).writeBytes(payload, index, length);
+                index += length;
+                if (length < Constants.MAX_PACKET_LENGTH) {
+                    break;
+                }
+            } while (true);
+        }
+        return toBytes(buf);
+    }
+}
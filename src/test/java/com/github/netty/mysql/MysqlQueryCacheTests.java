@@ -0,0 +1,120 @@
+package com.github.netty.mysql;
+
+import com.github.netty.protocol.mysql.MysqlProxyHandler;
+import com.github.netty.protocol.mysql.MysqlQueryCache;
+import com.github.netty.protocol.mysql.Session;
+import com.github.netty.protocol.mysql.client.ClientQueryPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MysqlQueryCacheTests {
+
+    private static Set<String> setOf(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    @Test
+    public void normalize() {
+        assertEquals("select * from user where id = 1",
+                MysqlQueryCache.normalize("  select *\n\tfrom   user /* comment */ where id = 1 ;"));
+        assertEquals("select * from user where name = 'a  b'",
+                MysqlQueryCache.normalize("/* head */ select * from user where name = 'a  b'"));
+        assertEquals("select `a  b` from t",
+                MysqlQueryCache.normalize("select   `a  b`   from t;;"));
+        assertEquals("select /*!40001 SQL_NO_CACHE */ * from t",
+                MysqlQueryCache.normalize("select /*!40001 SQL_NO_CACHE */ * from t"));
+        assertEquals(MysqlQueryCache.normalize("SELECT 1\r\n"), MysqlQueryCache.normalize("SELECT   1"));
+    }
+
+    @Test
+    public void readTables() {
+        Set<String> tables = MysqlQueryCache.tables("select u.id from db.user u join `order` o on o.user_id = u.id where u.name = 'from other'", false);
+        assertTrue(tables.containsAll(setOf("user", "order")), tables.toString());
+        assertFalse(tables.contains("other"));
+        assertFalse(tables.contains("select"));
+
+        tables = MysqlQueryCache.tables("select * from a where id in (select a_id from b)", false);
+        assertTrue(tables.containsAll(setOf("a", "b")), tables.toString());
+    }
+
+    @Test
+    public void writeTables() {
+        assertEquals(Collections.singleton("user"), MysqlQueryCache.tables("update user set name = 'x' where id = 1", true));
+        assertEquals(Collections.singleton("user"), MysqlQueryCache.tables("UPDATE `db`.`user` SET name = 1", true));
+        assertEquals(Collections.singleton("order"), MysqlQueryCache.tables("insert into `order` (id, name) values (1, 'a')", true));
+        assertEquals(Collections.singleton("user"), MysqlQueryCache.tables("delete from user where id = 1", true));
+        assertEquals(Collections.singleton("user"), MysqlQueryCache.tables("replace into user values (1)", true));
+        assertEquals(Collections.singleton("user"), MysqlQueryCache.tables("truncate table user", true));
+    }
+
+    @Test
+    public void cacheable() {
+        assertTrue(MysqlQueryCache.isCacheable("select * from user where id = 1"));
+        assertFalse(MysqlQueryCache.isCacheable("select now()"));
+        assertFalse(MysqlQueryCache.isCacheable("select @a"));
+        assertFalse(MysqlQueryCache.isCacheable("select SQL_NO_CACHE * from user"));
+        assertFalse(MysqlQueryCache.isCacheable("select * from information_schema.tables"));
+    }
+
+    @Test
+    public void keyByUser() {
+        MysqlQueryCache cache = new MysqlQueryCache();
+        String sql = "select * from user where id = 1";
+        // miss, the response is captured
+        assertFalse(query(cache, "alice", sql, true));
+        assertEquals(1, cache.size());
+        // the same user hit
+        assertTrue(query(cache, "alice", sql, false));
+        // the other user not see the result of alice. (the grants maybe different)
+        assertFalse(query(cache, "bob", sql, false));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    /**
+     * @return true if the response is write from the cache
+     */
+    private static boolean query(MysqlQueryCache cache, String username, String sql, boolean response) {
+        Session session = new Session("1");
+        EmbeddedChannel frontend = new EmbeddedChannel();
+        EmbeddedChannel backend = new EmbeddedChannel();
+        session.setFrontendChannel(frontend);
+        session.setBackendChannel(backend);
+        session.setUsername(username);
+        session.setDatabase("test");
+        MysqlQueryCache.SessionCache sessionCache = cache.newSessionCache(session);
+        frontend.pipeline().addLast(sessionCache);
+
+        byte[] query = sql.getBytes(StandardCharsets.UTF_8);
+        ByteBuf packet = Unpooled.buffer();
+        packet.writeMediumLE(1 + query.length).writeByte(0).writeByte(0x03).writeBytes(query);
+        MysqlProxyHandler.setReadyWritePacket(backend, packet);
+        try {
+            boolean hit = sessionCache.onCommand(new ClientQueryPacket(0, sql));
+            if (response) {
+                // column count, column definition, EOF, row, EOF
+                frontend.writeOutbound(Unpooled.wrappedBuffer(new byte[]{
+                        1, 0, 0, 1, 1,
+                        3, 0, 0, 2, 'd', 'e', 'f',
+                        5, 0, 0, 3, (byte) 0xFE, 0, 0, 2, 0,
+                        2, 0, 0, 4, 1, '1',
+                        5, 0, 0, 5, (byte) 0xFE, 0, 0, 2, 0}));
+            }
+            return hit;
+        } finally {
+            ReferenceCountUtil.release(MysqlProxyHandler.getReadyWritePacket(backend));
+            frontend.finishAndReleaseAll();
+            backend.finishAndReleaseAll();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.netty.mysql;
+
+import com.github.netty.protocol.mysql.client.StatementType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StatementTypeTests {
+
+    @Test
+    public void select() {
+        assertEquals(StatementType.SELECT, StatementType.of("select * from user where id = 1"));
+        assertEquals(StatementType.SELECT, StatementType.of("  /* comment */ SELECT 1;"));
+        assertEquals(StatementType.SELECT, StatementType.of("(select a from t1) union (select a from t2)"));
+        assertEquals(StatementType.SELECT, StatementType.of("select * from user where name = 'for update'x"));
+    }
+
+    @Test
+    public void lockingSelect() {
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select * from user where id = 1 for update"));
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select * from user where id = 1\nFOR UPDATE"));
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select * from user where id = 1\tFOR\tSHARE"));
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select * from user where id = 1 lock  in\r\nshare mode"));
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select id\ninto @id from user"));
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select last_insert_id()"));
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select GET_LOCK('a', 10)"));
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select SQL_CALC_FOUND_ROWS * from user limit 10"));
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select found_rows()"));
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select @rank := @rank + 1, id from user"));
+        assertEquals(StatementType.LOCKING_SELECT, StatementType.of("select id, @last:=name from user"));
+    }
+
+    @Test
+    public void transaction() {
+        assertEquals(StatementType.TRANSACTION, StatementType.of("begin"));
+        assertEquals(StatementType.TRANSACTION, StatementType.of("START TRANSACTION READ ONLY"));
+        assertEquals(StatementType.TRANSACTION, StatementType.of("commit;"));
+        assertEquals(StatementType.TRANSACTION, StatementType.of("rollback"));
+        assertEquals(StatementType.TRANSACTION, StatementType.of("set autocommit = 0"));
+        assertEquals(StatementType.TRANSACTION, StatementType.of("set transaction isolation level read committed"));
+        assertEquals(StatementType.TRANSACTION, StatementType.of("set session\ttransaction read only"));
+    }
+
+    @Test
+    public void other() {
+        assertEquals(StatementType.SET, StatementType.of("set names utf8mb4"));
+        assertEquals(StatementType.USE, StatementType.of("use test"));
+        assertEquals(StatementType.LOCK, StatementType.of("lock tables user write"));
+        assertEquals(StatementType.LOCK, StatementType.of("create temporary table t (id int)"));
+        assertEquals(StatementType.WRITE, StatementType.of("insert into user (id) values (1)"));
+        assertEquals(StatementType.WRITE, StatementType.of("UPDATE user SET name = 'a'"));
+        assertEquals(StatementType.WRITE, StatementType.of("create table t (id int)"));
+        assertEquals(StatementType.OTHER, StatementType.of("show tables"));
+        assertEquals(StatementType.OTHER, StatementType.of("select 1; select 2"));
+        assertEquals(StatementType.OTHER, StatementType.of(null));
+    }
+}
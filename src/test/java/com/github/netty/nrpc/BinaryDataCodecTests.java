@@ -0,0 +1,137 @@
+package com.github.netty.nrpc;
+
+import com.github.netty.nrpc.api.HelloDTO;
+import com.github.netty.protocol.nrpc.RpcClient;
+import com.github.netty.protocol.nrpc.RpcMethod;
+import com.github.netty.protocol.nrpc.RpcServerInstance;
+import com.github.netty.protocol.nrpc.codec.BinaryDataCodec;
+import com.github.netty.protocol.nrpc.codec.DataCodec;
+import com.github.netty.protocol.nrpc.codec.FastJsonDataCodec;
+import com.github.netty.protocol.nrpc.codec.JdkDataCodec;
+import com.github.netty.protocol.nrpc.service.RpcCommandServiceImpl;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryDataCodecTests {
+
+    @SuppressWarnings("unchecked")
+    private static <INSTANCE> RpcMethod<INSTANCE> getMethod(String name) {
+        Map<String, RpcMethod<Object>> methodMap = RpcMethod.getMethodMap(null, CodecService.class,
+                method -> parameterNames(method), Method::getName, false);
+        return (RpcMethod<INSTANCE>) methodMap.get(name);
+    }
+
+    private static String[] parameterNames(Method method) {
+        String[] names = new String[method.getParameterCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "arg" + i;
+        }
+        return names;
+    }
+
+    private static HelloDTO newHello(int id, String name) {
+        HelloDTO hello = new HelloDTO();
+        hello.setId(id);
+        hello.setName(name);
+        return hello;
+    }
+
+    @Test
+    public void requestRoundTrip() {
+        BinaryDataCodec codec = new BinaryDataCodec(new FastJsonDataCodec());
+        RpcMethod<RpcClient> clientMethod = getMethod("call");
+        RpcMethod<RpcServerInstance> serverMethod = getMethod("call");
+        Object[] args = {1, -2L, true, 'c', 1.5D, "中文", new byte[]{1, 2}, null, 7, newHello(3, "x"),
+                Arrays.asList(newHello(4, "y"), newHello(5, "z"))};
+
+        byte[] bytes = codec.encodeRequestData(args, clientMethod);
+        assertEquals(BinaryDataCodec.MAGIC, bytes[0]);
+        assertTrue(BinaryDataCodec.isBinary(bytes));
+
+        Object[] decode = codec.decodeRequestData(bytes, serverMethod);
+        assertEquals(args.length, decode.length);
+        assertEquals(1, decode[0]);
+        assertEquals(-2L, decode[1]);
+        assertEquals(true, decode[2]);
+        assertEquals('c', decode[3]);
+        assertEquals(1.5D, decode[4]);
+        assertEquals("中文", decode[5]);
+        assertArrayEquals(new byte[]{1, 2}, (byte[]) decode[6]);
+        assertNull(decode[7]);
+        assertEquals(7, decode[8]);
+        assertEquals("x", ((HelloDTO) decode[9]).getName());
+        List<?> list = (List<?>) decode[10];
+        assertEquals(2, list.size());
+        assertEquals(5, ((HelloDTO) list.get(1)).getId());
+    }
+
+    @Test
+    public void responseRoundTrip() {
+        BinaryDataCodec codec = new BinaryDataCodec(new FastJsonDataCodec());
+        RpcMethod<RpcServerInstance> serverMethod = getMethod("hello");
+        RpcMethod<RpcClient> clientMethod = getMethod("hello");
+
+        byte[] bytes = codec.encodeResponseData(newHello(1, "hi"), serverMethod);
+        assertEquals(BinaryDataCodec.MAGIC, bytes[0]);
+        HelloDTO hello = (HelloDTO) codec.decodeResponseData(bytes, clientMethod);
+        assertEquals(1, hello.getId());
+        assertEquals("hi", hello.getName());
+
+        assertNull(codec.decodeResponseData(codec.encodeResponseData(null, serverMethod), clientMethod));
+        assertEquals("s", codec.decodeResponseData(codec.encodeResponseData("s", getMethod("name")), getMethod("name")));
+    }
+
+    @Test
+    public void jsonFallback() {
+        FastJsonDataCodec json = new FastJsonDataCodec();
+        BinaryDataCodec codec = new BinaryDataCodec(json);
+        RpcMethod<RpcClient> clientMethod = getMethod("hello");
+        RpcMethod<RpcServerInstance> serverMethod = getMethod("hello");
+
+        // the old client send json, the first byte is not the magic
+        byte[] request = json.encodeRequestData(new Object[]{newHello(2, "old")}, clientMethod);
+        assertFalse(BinaryDataCodec.isBinary(request));
+        Object[] args = codec.decodeRequestData(request, serverMethod);
+        assertEquals("old", ((HelloDTO) args[0]).getName());
+
+        byte[] response = json.encodeResponseData(newHello(3, "json"), serverMethod);
+        assertFalse(BinaryDataCodec.isBinary(response));
+        assertEquals("json", ((HelloDTO) codec.decodeResponseData(response, clientMethod)).getName());
+    }
+
+    @Test
+    public void firstByte() {
+        RpcMethod<RpcClient> clientMethod = getMethod("hello");
+        Object[] args = {newHello(1, "a")};
+        assertFalse(BinaryDataCodec.isBinary(new JdkDataCodec().encodeRequestData(args, clientMethod)));
+        assertFalse(BinaryDataCodec.isBinary(new FastJsonDataCodec().encodeRequestData(args, clientMethod)));
+        assertFalse(BinaryDataCodec.isBinary((byte[]) null));
+        assertFalse(BinaryDataCodec.isBinary(new byte[0]));
+        assertTrue(BinaryDataCodec.isBinary(new byte[]{BinaryDataCodec.MAGIC}));
+    }
+
+    @Test
+    public void negotiateName() {
+        assertEquals("binary/jdk", new BinaryDataCodec().getName());
+        assertEquals("binary/fastjson", new BinaryDataCodec(new FastJsonDataCodec()).getName());
+        // the server advertise the fallback of the binary codec, a different fallback must not match
+        assertEquals("binary/jdk", new String(new RpcCommandServiceImpl(new JdkDataCodec()).dataCodecs(), DataCodec.CHARSET_UTF8));
+        assertEquals("binary/fastjson", new String(new RpcCommandServiceImpl(new BinaryDataCodec(new FastJsonDataCodec())).dataCodecs(), DataCodec.CHARSET_UTF8));
+        assertNotEquals(new BinaryDataCodec().getName(), new BinaryDataCodec(new FastJsonDataCodec()).getName());
+    }
+
+    public interface CodecService {
+        String call(int i, long l, boolean b, char c, double d, String s, byte[] bytes,
+                    String nullValue, Integer boxed, HelloDTO hello, List<HelloDTO> list);
+
+        HelloDTO hello(HelloDTO request);
+
+        String name();
+    }
+}
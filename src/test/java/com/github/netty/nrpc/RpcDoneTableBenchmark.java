@@ -0,0 +1,98 @@
+package com.github.netty.nrpc;
+
+import com.github.netty.core.util.ExpiryLRUMap;
+import com.github.netty.protocol.nrpc.ChunkAck;
+import com.github.netty.protocol.nrpc.RpcDone;
+import com.github.netty.protocol.nrpc.RpcDoneTable;
+import com.github.netty.protocol.nrpc.RpcPacket;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client in-flight call table. ExpiryLRUMap&lt;Integer, RpcDone&gt; (before) vs RpcDoneTable
+ * <p>
+ * one op = put + take of a call. 4 threads like 4 caller threads.
+ * gc.alloc.rate.norm is the allocation per call.
+ * <p>
+ * run main method.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RpcDoneTableBenchmark {
+    private final AtomicInteger requestIdIncr = new AtomicInteger();
+    private final RpcDone rpcDone = new EmptyRpcDone();
+    private ExpiryLRUMap<Integer, RpcDone> rpcDoneMap;
+    private RpcDoneTable rpcDoneTable;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RpcDoneTableBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        rpcDoneMap = new ExpiryLRUMap<>(512, Long.MAX_VALUE, Long.MAX_VALUE, null);
+        rpcDoneTable = new RpcDoneTable(1024);
+    }
+
+    private int newRequestId() {
+        return requestIdIncr.getAndIncrement() & Integer.MAX_VALUE;
+    }
+
+    @Benchmark
+    public RpcDone expiryLRUMap() {
+        int requestId = newRequestId();
+        rpcDoneMap.put(requestId, rpcDone);
+        return rpcDoneMap.remove(requestId);
+    }
+
+    @Benchmark
+    public RpcDone expiryLRUMapTimeout() {
+        int requestId = newRequestId();
+        rpcDoneMap.put(requestId, rpcDone, 1000);
+        return rpcDoneMap.remove(requestId);
+    }
+
+    @Benchmark
+    public RpcDone doneTable() {
+        int requestId = newRequestId();
+        rpcDoneTable.put(requestId, rpcDone);
+        return rpcDoneTable.take(requestId);
+    }
+
+    @Benchmark
+    public RpcDone doneTableTimeout() {
+        int requestId = newRequestId();
+        rpcDoneTable.put(requestId, rpcDone, 1000);
+        return rpcDoneTable.take(requestId);
+    }
+
+    private static class EmptyRpcDone implements RpcDone {
+        @Override
+        public void chunk(RpcPacket.ResponseChunkPacket rpcResponse, ChunkAck ack) {
+        }
+
+        @Override
+        public void done(RpcPacket.ResponseLastPacket rpcResponse) {
+        }
+
+        @Override
+        public void doneTimeout(int requestId, long createTimestamp, long expiryTimestamp) {
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.netty.nrpc;
+
+import com.github.netty.protocol.nrpc.ChunkAck;
+import com.github.netty.protocol.nrpc.RpcDone;
+import com.github.netty.protocol.nrpc.RpcDoneTable;
+import com.github.netty.protocol.nrpc.RpcPacket;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RpcDoneTableTests {
+
+    @Test
+    public void overflow() {
+        RpcDoneTable table = new RpcDoneTable(4);
+        assertEquals(4, table.capacity());
+        TestRpcDone[] dones = new TestRpcDone[6];
+        for (int i = 0; i < dones.length; i++) {
+            dones[i] = new TestRpcDone();
+            // 4 and 5 use the slot of 0 and 1, put to the overflow map
+            table.put(i, dones[i]);
+        }
+        assertEquals(6, table.size());
+        assertSame(dones[4], table.get(4));
+        assertSame(dones[0], table.get(0));
+
+        assertSame(dones[4], table.take(4));
+        assertNull(table.take(4));
+        assertSame(dones[0], table.take(0));
+        assertNull(table.get(0));
+        assertEquals(4, table.size());
+
+        // the slot of 0 is free again
+        TestRpcDone done = new TestRpcDone();
+        table.put(8, done);
+        assertSame(done, table.take(8));
+        assertSame(dones[5], table.take(5));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void timeout() throws InterruptedException {
+        RpcDoneTable table = new RpcDoneTable(4);
+        AtomicInteger outstanding = new AtomicInteger();
+        TestRpcDone slotDone = new TestRpcDone();
+        TestRpcDone overflowDone = new TestRpcDone();
+        TestRpcDone takeDone = new TestRpcDone();
+        table.put(0, slotDone, 50, outstanding);
+        table.put(4, overflowDone, 50, outstanding);
+        table.put(1, takeDone, 50, outstanding);
+        assertEquals(3, outstanding.get());
+        // the response arrive before the timeout
+        assertSame(takeDone, table.take(1));
+
+        assertTrue(slotDone.timeoutLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(overflowDone.timeoutLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, slotDone.timeoutRequestId);
+        assertEquals(4, overflowDone.timeoutRequestId);
+        assertNull(table.take(0));
+        assertNull(table.take(4));
+        assertEquals(0, table.size());
+        assertEquals(0, outstanding.get());
+
+        Thread.sleep(100);
+        assertEquals(1, takeDone.timeoutLatch.getCount());
+    }
+
+    @Test
+    public void failOutstanding() {
+        RpcDoneTable table = new RpcDoneTable(4);
+        AtomicInteger closed = new AtomicInteger();
+        AtomicInteger open = new AtomicInteger();
+        TestRpcDone slotDone = new TestRpcDone();
+        TestRpcDone overflowDone = new TestRpcDone();
+        TestRpcDone openDone = new TestRpcDone();
+        // never timeout. (e.g. a chunk subscription)
+        table.put(0, slotDone, -1, closed);
+        table.put(4, overflowDone, -1, closed);
+        table.put(1, openDone, -1, open);
+
+        assertEquals(2, table.failOutstanding(closed, "channel inactive"));
+        assertEquals(0, closed.get());
+        assertEquals(1, open.get());
+        assertEquals(1, table.size());
+        assertFailed(slotDone, 0);
+        assertFailed(overflowDone, 4);
+        assertNull(openDone.response);
+        assertNull(table.take(0));
+        assertNull(table.take(4));
+
+        assertEquals(0, table.failOutstanding(closed, "channel inactive"));
+        assertSame(openDone, table.take(1));
+        assertEquals(0, open.get());
+    }
+
+    private static void assertFailed(TestRpcDone done, int requestId) {
+        assertNotNull(done.response);
+        assertEquals(requestId, done.response.getRequestId());
+        assertEquals(RpcPacket.ResponsePacket.SERVICE_UNAVAILABLE, done.response.getStatus());
+        assertEquals("channel inactive", done.response.getMessage());
+    }
+
+    private static class TestRpcDone implements RpcDone {
+        private final CountDownLatch timeoutLatch = new CountDownLatch(1);
+        private volatile int timeoutRequestId = -1;
+        private volatile RpcPacket.ResponseLastPacket response;
+
+        @Override
+        public void chunk(RpcPacket.ResponseChunkPacket rpcResponse, ChunkAck ack) {
+
+        }
+
+        @Override
+        public void done(RpcPacket.ResponseLastPacket rpcResponse) {
+            this.response = rpcResponse;
+        }
+
+        @Override
+        public void doneTimeout(int requestId, long createTimestamp, long expiryTimestamp) {
+            this.timeoutRequestId = requestId;
+            timeoutLatch.countDown();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.netty.nrpc;
+
+import com.github.netty.protocol.nrpc.RpcMethod;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server side method invoke benchmark. MethodHandle#invokeWithArguments (before) vs RpcMethodInvoker
+ * <p>
+ * run main method.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RpcMethodInvokeBenchmark {
+    private final Service service = new Service();
+    private final Object[] args2 = {"key", 1800};
+    private final Object[] args6 = {"a", "b", "c", "d", "e", "f"};
+    private RpcMethod<Object> get2;
+    private RpcMethod<Object> join6;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RpcMethodInvokeBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        Map<String, RpcMethod<Object>> methodMap = RpcMethod.getMethodMap(Service.class);
+        get2 = methodMap.get("get2");
+        join6 = methodMap.get("join6");
+    }
+
+    @Benchmark
+    public Object invokeWithArguments2() throws Throwable {
+        return get2.getMethodHandle().invokeWithArguments(service, args2[0], args2[1]);
+    }
+
+    @Benchmark
+    public Object invoker2() throws Throwable {
+        return get2.invoke(service, args2);
+    }
+
+    @Benchmark
+    public Object invokeWithArguments6() throws Throwable {
+        return join6.getMethodHandle().invokeWithArguments(service, args6[0], args6[1], args6[2], args6[3], args6[4], args6[5]);
+    }
+
+    @Benchmark
+    public Object invoker6() throws Throwable {
+        return join6.invoke(service, args6);
+    }
+
+    public static class Service {
+        public String get2(String key, int expireSecond) {
+            return key;
+        }
+
+        public int join6(String a, String b, String c, String d, String e, String f) {
+            return a.length() + f.length();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.netty.session;
+
+import com.github.netty.protocol.servlet.BinarySessionCodec;
+import com.github.netty.protocol.servlet.JavaSessionCodec;
+import com.github.netty.protocol.servlet.Session;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinarySessionCodecTests {
+
+    private static Session newSession() {
+        Map<String, Object> attributeMap = new LinkedHashMap<>();
+        attributeMap.put("userId", 10086L);
+        attributeMap.put("userName", "王子豪");
+        attributeMap.put("tenantId", 1);
+        attributeMap.put("admin", Boolean.TRUE);
+        attributeMap.put("score", 99.5D);
+        attributeMap.put("avatar", new byte[]{1, 2, 3});
+        attributeMap.put("roles", new ArrayList<>(Arrays.asList("ROLE_USER", "ROLE_ADMIN")));
+
+        Session session = new Session("0f8fad5b-d9cb-469f-a165-70867728950e", 1800);
+        session.setAttributeMap(attributeMap);
+        session.setCreationTime(1000L);
+        session.setLastAccessedTime(2000L);
+        session.setAccessCount(12);
+        return session;
+    }
+
+    private static void assertSessionEquals(Session expect, Session actual) {
+        assertEquals(expect.getId(), actual.getId());
+        assertEquals(expect.getCreationTime(), actual.getCreationTime());
+        assertEquals(expect.getLastAccessedTime(), actual.getLastAccessedTime());
+        assertEquals(expect.getMaxInactiveInterval(), actual.getMaxInactiveInterval());
+        assertEquals(expect.getAccessCount(), actual.getAccessCount());
+        Map<String, Object> expectMap = expect.getAttributeMap();
+        Map<String, Object> actualMap = actual.getAttributeMap();
+        assertEquals(expectMap.keySet(), actualMap.keySet());
+        for (Map.Entry<String, Object> entry : expectMap.entrySet()) {
+            Object value = actualMap.get(entry.getKey());
+            if (entry.getValue() instanceof byte[]) {
+                assertArrayEquals((byte[]) entry.getValue(), (byte[]) value);
+            } else {
+                assertEquals(entry.getValue(), value, entry.getKey());
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        BinarySessionCodec codec = new BinarySessionCodec();
+        Session session = newSession();
+        byte[] bytes = codec.encode(session);
+        assertEquals('N', bytes[0]);
+        assertEquals('S', bytes[1]);
+        assertSessionEquals(session, codec.decode(bytes));
+    }
+
+    @Test
+    public void roundTripCompressed() {
+        BinarySessionCodec codec = new BinarySessionCodec();
+        codec.setCompressThreshold(16);
+        Session session = newSession();
+        session.getAttributeMap().put("text", String.join(",", Collections.nCopies(100, "repeat")));
+        assertSessionEquals(session, codec.decode(codec.encode(session)));
+    }
+
+    @Test
+    public void decodeJavaSessionCodec() {
+        Session session = newSession();
+        byte[] bytes = JavaSessionCodec.INSTANCE.encode(session);
+        assertSessionEquals(session, new BinarySessionCodec().decode(bytes));
+    }
+
+    @Test
+    public void decodeEmpty() {
+        BinarySessionCodec codec = new BinarySessionCodec();
+        assertNull(codec.decode(null));
+        assertNull(codec.decode(new byte[0]));
+        assertThrows(IllegalStateException.class, () -> codec.decode(new byte[]{'x', 'y', 1, 0}));
+    }
+}
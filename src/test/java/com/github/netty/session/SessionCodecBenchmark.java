@@ -0,0 +1,102 @@
+package com.github.netty.session;
+
+import com.github.netty.protocol.servlet.BinarySessionCodec;
+import com.github.netty.protocol.servlet.JavaSessionCodec;
+import com.github.netty.protocol.servlet.Session;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session codec benchmark. JavaSessionCodec (legacy ObjectOutputStream format) vs BinarySessionCodec
+ * <p>
+ * run main method.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionCodecBenchmark {
+    private final JavaSessionCodec javaCodec = JavaSessionCodec.INSTANCE;
+    private final BinarySessionCodec binaryCodec = new BinarySessionCodec();
+    private final BinarySessionCodec binaryCompressCodec = new BinarySessionCodec();
+    private Session session;
+    private byte[] javaBytes;
+    private byte[] binaryBytes;
+    private byte[] binaryCompressBytes;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SessionCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        binaryCompressCodec.setCompressThreshold(256);
+
+        Map<String, Object> attributeMap = new HashMap<>();
+        attributeMap.put("userId", 10086L);
+        attributeMap.put("userName", "wangzihao");
+        attributeMap.put("tenantId", 1);
+        attributeMap.put("admin", Boolean.TRUE);
+        attributeMap.put("score", 99.5D);
+        attributeMap.put("csrfToken", "4a2d6f0c-2a7d-4bb3-8a7b-4d1f6b3c9e11");
+        attributeMap.put("avatar", new byte[512]);
+        ArrayList<String> roles = new ArrayList<>();
+        roles.add("ROLE_USER");
+        roles.add("ROLE_ADMIN");
+        attributeMap.put("roles", roles);
+
+        session = new Session("0f8fad5b-d9cb-469f-a165-70867728950e", 1800);
+        session.setAttributeMap(attributeMap);
+        session.setAccessCount(12);
+
+        javaBytes = javaCodec.encode(session);
+        binaryBytes = binaryCodec.encode(session);
+        binaryCompressBytes = binaryCompressCodec.encode(session);
+        System.out.println("bytes: java=" + javaBytes.length
+                + ", binary=" + binaryBytes.length
+                + ", binaryCompress=" + binaryCompressBytes.length);
+    }
+
+    @Benchmark
+    public byte[] javaEncode() {
+        return javaCodec.encode(session);
+    }
+
+    @Benchmark
+    public Session javaDecode() {
+        return javaCodec.decode(javaBytes);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return binaryCodec.encode(session);
+    }
+
+    @Benchmark
+    public Session binaryDecode() {
+        return binaryCodec.decode(binaryBytes);
+    }
+
+    @Benchmark
+    public byte[] binaryCompressEncode() {
+        return binaryCompressCodec.encode(session);
+    }
+
+    @Benchmark
+    public Session binaryCompressDecode() {
+        return binaryCompressCodec.decode(binaryCompressBytes);
+    }
+}